@@ -0,0 +1,140 @@
+package ru.maxizenit.chartographer.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+import ru.maxizenit.chartographer.exception.ChartaNotFoundException;
+import ru.maxizenit.chartographer.exception.ImageNoCrossingException;
+import ru.maxizenit.chartographer.exception.InvalidImageException;
+import ru.maxizenit.chartographer.service.ChartaService;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Общее состояние бенчмарков, работающих с заполненной хартой. Харта разбивается на фрагменты
+ * {@link AbstractChartaBenchmark#TILE_SIZE} на {@link AbstractChartaBenchmark#TILE_SIZE}
+ * пикселей, а запрашиваемые области перебираются по кругу из заранее вычисленных положений,
+ * выровненных по фрагментам или пересекающих их границы.
+ */
+@State(Scope.Benchmark)
+public abstract class AbstractChartaBenchmark {
+
+  /** Размер фрагмента харты. */
+  protected static final int TILE_SIZE = 1_000;
+
+  /** Размер стороны харты. */
+  @Param({"2000", "5000", "10000"})
+  public int chartaSize;
+
+  /** Размер стороны запрашиваемой области. */
+  @Param({"100", "1000", "2500"})
+  public int windowSize;
+
+  /** Положение области относительно фрагментов. */
+  @Param({"ALIGNED", "CROSSING"})
+  public WindowAlignment alignment;
+
+  protected ConfigurableApplicationContext context;
+  protected ChartaService chartaService;
+  protected int chartaId;
+
+  /** Случайное изображение размера области. */
+  protected BufferedImage windowImage;
+
+  /** Изображение размера области в формате BMP. */
+  protected byte[] windowBmp;
+
+  private Path contentPath;
+  private List<int[]> positions;
+  private int nextPosition;
+
+  /**
+   * Поднимает контекст приложения во временной папке, создаёт заполненную харту и вычисляет
+   * положения областей.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   * @throws ChartaNotFoundException если харта не создалась
+   * @throws ImageNoCrossingException если полоса не пересекается с хартой
+   * @throws InvalidImageException если полоса не прочиталась
+   */
+  @Setup(Level.Trial)
+  public void setUpCharta()
+      throws IOException, ChartaNotFoundException, ImageNoCrossingException,
+          InvalidImageException {
+    contentPath = Files.createTempDirectory("chartographer-benchmark");
+    context = BenchmarkSupport.startContext(contentPath);
+    chartaService = context.getBean(ChartaService.class);
+    chartaId = chartaService.createCharta(chartaSize, chartaSize, TILE_SIZE);
+    windowImage = BenchmarkSupport.createRandomImage(windowSize, windowSize);
+    windowBmp = BenchmarkSupport.toBmp(windowImage);
+    positions = createPositions();
+
+    BenchmarkSupport.fillCharta(chartaService, chartaId, chartaSize, chartaSize);
+  }
+
+  /**
+   * Удаляет харту, закрывает контекст приложения и удаляет временную папку.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   * @throws ChartaNotFoundException если харты не существует
+   */
+  @TearDown(Level.Trial)
+  public void tearDownCharta() throws IOException, ChartaNotFoundException {
+    chartaService.deleteCharta(chartaId);
+    context.close();
+    FileSystemUtils.deleteRecursively(contentPath);
+  }
+
+  /**
+   * Возвращает координаты следующей области.
+   *
+   * @return массив из координат области по осям X и Y
+   */
+  protected int[] nextPosition() {
+    int[] position = positions.get(nextPosition);
+
+    nextPosition = (nextPosition + 1) % positions.size();
+
+    return position;
+  }
+
+  /**
+   * Вычисляет положения областей. Выровненные области начинаются в углах фрагментов и не выходят
+   * за харту, пересекающие границы центрируются на внутренних углах фрагментов. Если подходящих
+   * положений нет, область начинается в начале координат.
+   *
+   * @return список координат областей
+   */
+  private List<int[]> createPositions() {
+    List<int[]> result = new ArrayList<>();
+
+    for (int tileY = 0; tileY < chartaSize; tileY += TILE_SIZE) {
+      for (int tileX = 0; tileX < chartaSize; tileX += TILE_SIZE) {
+        if (alignment == WindowAlignment.ALIGNED) {
+          if (tileX + windowSize <= chartaSize && tileY + windowSize <= chartaSize) {
+            result.add(new int[] {tileX, tileY});
+          }
+        } else if (tileX > 0 && tileY > 0) {
+          result.add(
+              new int[] {Math.max(0, tileX - windowSize / 2), Math.max(0, tileY - windowSize / 2)});
+        }
+      }
+    }
+
+    if (result.isEmpty()) {
+      result.add(new int[] {0, 0});
+    }
+
+    return result;
+  }
+}
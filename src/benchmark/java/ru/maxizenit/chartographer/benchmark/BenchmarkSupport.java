@@ -0,0 +1,101 @@
+package ru.maxizenit.chartographer.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.maxizenit.chartographer.ChartographerApplication;
+import ru.maxizenit.chartographer.bmp.BmpEncoder;
+import ru.maxizenit.chartographer.exception.ChartaNotFoundException;
+import ru.maxizenit.chartographer.exception.ImageNoCrossingException;
+import ru.maxizenit.chartographer.exception.InvalidImageException;
+import ru.maxizenit.chartographer.service.ChartaService;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+/** Вспомогательные методы для подготовки бенчмарков. */
+final class BenchmarkSupport {
+
+  /** Высота полосы, которой заполняется харта. */
+  private static final int FILL_BAND_HEIGHT = 250;
+
+  private BenchmarkSupport() {}
+
+  /**
+   * Поднимает контекст приложения без веб-сервера с папкой контента в заданном каталоге.
+   *
+   * @param contentPath папка контента
+   * @param properties свойства, переопределяющие конфигурацию, в виде {@code имя=значение}
+   * @return контекст приложения
+   */
+  static ConfigurableApplicationContext startContext(Path contentPath, String... properties) {
+    ChartographerApplication.contentPath = contentPath.toString();
+
+    return new SpringApplicationBuilder(ChartographerApplication.class)
+        .web(WebApplicationType.NONE)
+        .properties("chartographer.catalog.force-writes=false")
+        .properties(properties)
+        .run();
+  }
+
+  /**
+   * Заполняет харту случайным изображением полосами во всю ширину.
+   *
+   * @param chartaService сервис харт
+   * @param id идентификатор харты
+   * @param width ширина харты
+   * @param height высота харты
+   * @throws IOException если возникло исключение при работе с файловой системой
+   * @throws ChartaNotFoundException если харты не существует
+   * @throws ImageNoCrossingException если полоса не пересекается с хартой
+   * @throws InvalidImageException если полоса не прочиталась
+   */
+  static void fillCharta(ChartaService chartaService, int id, int width, int height)
+      throws IOException, ChartaNotFoundException, ImageNoCrossingException,
+          InvalidImageException {
+    byte[] band = toBmp(createRandomImage(width, FILL_BAND_HEIGHT));
+
+    for (int y = 0; y < height; y += FILL_BAND_HEIGHT) {
+      chartaService.saveChartaPart(
+          id, new ByteArrayInputStream(band), 0, y, width, FILL_BAND_HEIGHT);
+    }
+  }
+
+  /**
+   * Создаёт изображение заданного размера со случайными пикселями.
+   *
+   * @param width ширина
+   * @param height высота
+   * @return изображение
+   */
+  static BufferedImage createRandomImage(int width, int height) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+    Random random = new Random(width * 31L + height);
+
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, random.nextInt());
+      }
+    }
+
+    return image;
+  }
+
+  /**
+   * Кодирует изображение в BMP.
+   *
+   * @param image изображение
+   * @return байты BMP-файла
+   * @throws IOException если возникло исключение при записи изображения
+   */
+  static byte[] toBmp(BufferedImage image) throws IOException {
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    new BmpEncoder(stream, image.getWidth(), image.getHeight()).writeBand(image);
+
+    return stream.toByteArray();
+  }
+}
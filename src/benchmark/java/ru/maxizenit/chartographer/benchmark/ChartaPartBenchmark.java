@@ -0,0 +1,72 @@
+package ru.maxizenit.chartographer.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.maxizenit.chartographer.exception.ChartaNotFoundException;
+import ru.maxizenit.chartographer.exception.ImageNoCrossingException;
+import ru.maxizenit.chartographer.exception.InvalidImageException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк полного пути получения и сохранения части харты через {@link
+ * ru.maxizenit.chartographer.service.ChartaService}: поиск фрагментов, чтение или запись их
+ * изображений и кодирование или декодирование BMP. Измеряются пропускная способность и
+ * распределение задержек.
+ *
+ * <p>Запуск: {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="ChartaPartBenchmark"}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class ChartaPartBenchmark extends AbstractChartaBenchmark {
+
+  /**
+   * Получает область харты и записывает её в пустой поток.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   * @throws ChartaNotFoundException если харты не существует
+   * @throws ImageNoCrossingException если область не пересекается с хартой
+   */
+  @Benchmark
+  public void getPart() throws IOException, ChartaNotFoundException, ImageNoCrossingException {
+    int[] position = nextPosition();
+
+    chartaService
+        .getChartaPartWriter(chartaId, position[0], position[1], windowSize, windowSize)
+        .writeTo(OutputStream.nullOutputStream());
+  }
+
+  /**
+   * Сохраняет BMP-изображение в область харты.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   * @throws ChartaNotFoundException если харты не существует
+   * @throws ImageNoCrossingException если область не пересекается с хартой
+   * @throws InvalidImageException если изображение не прочиталось
+   */
+  @Benchmark
+  public void savePart()
+      throws IOException, ChartaNotFoundException, ImageNoCrossingException,
+          InvalidImageException {
+    int[] position = nextPosition();
+
+    chartaService.saveChartaPart(
+        chartaId,
+        new ByteArrayInputStream(windowBmp),
+        position[0],
+        position[1],
+        windowSize,
+        windowSize);
+  }
+}
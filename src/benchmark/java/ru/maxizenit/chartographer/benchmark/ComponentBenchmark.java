@@ -0,0 +1,246 @@
+package ru.maxizenit.chartographer.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.maxizenit.chartographer.bmp.BmpDecoder;
+import ru.maxizenit.chartographer.bmp.BmpEncoder;
+import ru.maxizenit.chartographer.bmp.BmpHeader;
+import ru.maxizenit.chartographer.dao.ChartaDao;
+import ru.maxizenit.chartographer.dao.ImageDao;
+import ru.maxizenit.chartographer.exception.ChartaNotFoundException;
+import ru.maxizenit.chartographer.exception.ImageNoCrossingException;
+import ru.maxizenit.chartographer.model.Charta;
+import ru.maxizenit.chartographer.model.Fragment;
+import ru.maxizenit.chartographer.raster.ImagePool;
+import ru.maxizenit.chartographer.service.FragmentService;
+import ru.maxizenit.chartographer.service.ImageService;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк отдельных звеньев пути запроса: поиска фрагментов, сборки и записи изображения
+ * области, кодирования и декодирования BMP и чтения и записи изображения фрагмента через {@link
+ * ImageDao}. Измеряются пропускная способность и распределение задержек.
+ *
+ * <p>Запуск: {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="ComponentBenchmark"}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class ComponentBenchmark extends AbstractChartaBenchmark {
+
+  private FragmentService fragmentService;
+  private ImageService imageService;
+  private ImageDao imageDao;
+  private Charta charta;
+
+  /** Пул изображений для чтения частей фрагментов. */
+  private ImagePool imagePool;
+
+  /** Буфер для строки декодируемого изображения. */
+  private byte[] row;
+
+  /**
+   * Получает компоненты приложения из контекста.
+   *
+   * @throws ChartaNotFoundException если харты не существует
+   */
+  @Setup(Level.Trial)
+  public void setUpComponents() throws ChartaNotFoundException {
+    fragmentService = context.getBean(FragmentService.class);
+    imageService = context.getBean(ImageService.class);
+    imageDao = context.getBean(ImageDao.class);
+    charta = context.getBean(ChartaDao.class).get(chartaId);
+    row = new byte[windowSize * BmpHeader.BYTES_PER_PIXEL];
+    imagePool = new ImagePool(Long.MAX_VALUE);
+  }
+
+  /**
+   * Ищет фрагменты, пересекающиеся с областью, по индексу харты.
+   *
+   * @return найденные фрагменты
+   * @throws ImageNoCrossingException если область не пересекается с хартой
+   */
+  @Benchmark
+  public List<Fragment> filterFragments() throws ImageNoCrossingException {
+    int[] position = nextPosition();
+
+    return fragmentService.filterFragments(
+        charta, position[0], position[1], windowSize, windowSize);
+  }
+
+  /**
+   * Собирает изображение области из фрагментов харты.
+   *
+   * @return изображение области
+   * @throws IOException если возникло исключение при работе с файловой системой
+   * @throws ImageNoCrossingException если область не пересекается с хартой
+   */
+  @Benchmark
+  public BufferedImage createImage() throws IOException, ImageNoCrossingException {
+    int[] position = nextPosition();
+    List<Fragment> fragments =
+        fragmentService.filterFragments(charta, position[0], position[1], windowSize, windowSize);
+
+    return imageService.createImage(fragments, position[0], position[1], windowSize, windowSize);
+  }
+
+  /**
+   * Собирает изображение области из фрагментов харты в изображение из пула и возвращает его в
+   * пул. В сравнении с {@link ComponentBenchmark#createImage()} по {@code gc.alloc.rate.norm}
+   * показывает, сколько памяти на запрос экономит пул.
+   *
+   * @return ширина изображения области
+   * @throws IOException если возникло исключение при работе с файловой системой
+   * @throws ImageNoCrossingException если область не пересекается с хартой
+   */
+  @Benchmark
+  public int leaseImage() throws IOException, ImageNoCrossingException {
+    int[] position = nextPosition();
+    List<Fragment> fragments =
+        fragmentService.filterFragments(charta, position[0], position[1], windowSize, windowSize);
+
+    try (ImagePool.Lease lease =
+        imageService.leaseImage(fragments, position[0], position[1], windowSize, windowSize)) {
+      return lease.getImage().getWidth();
+    }
+  }
+
+  /**
+   * Записывает изображение области во фрагменты харты.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   * @throws ImageNoCrossingException если область не пересекается с хартой
+   */
+  @Benchmark
+  public void writeImage() throws IOException, ImageNoCrossingException {
+    int[] position = nextPosition();
+    List<Fragment> fragments =
+        fragmentService.filterFragments(charta, position[0], position[1], windowSize, windowSize);
+
+    imageService.writeImage(
+        fragments, windowImage, position[0], position[1], windowSize, windowSize);
+  }
+
+  /**
+   * Кодирует изображение области в BMP и записывает его в пустой поток.
+   *
+   * @throws IOException если возникло исключение при записи изображения
+   */
+  @Benchmark
+  public void encodeBmp() throws IOException {
+    new BmpEncoder(OutputStream.nullOutputStream(), windowSize, windowSize)
+        .writeBand(windowImage);
+  }
+
+  /**
+   * Декодирует BMP-изображение области построчно.
+   *
+   * @return буфер с последней прочитанной строкой
+   * @throws IOException если возникло исключение при чтении изображения
+   */
+  @Benchmark
+  public byte[] decodeBmp() throws IOException {
+    BmpDecoder decoder = BmpDecoder.open(new ByteArrayInputStream(windowBmp));
+
+    while (decoder.hasNextRow()) {
+      decoder.readRow(row, 0, row.length);
+    }
+
+    return row;
+  }
+
+  /**
+   * Читает из хранилища часть изображения первого фрагмента, пересекающегося с областью.
+   *
+   * @return прочитанная часть изображения
+   * @throws IOException если возникло исключение при работе с файловой системой
+   * @throws ImageNoCrossingException если область не пересекается с хартой
+   */
+  @Benchmark
+  public BufferedImage readFragment() throws IOException, ImageNoCrossingException {
+    int[] position = nextPosition();
+    Fragment fragment = getFirstFragment(position);
+    int x = Math.max(position[0], fragment.getX());
+    int y = Math.max(position[1], fragment.getY());
+    int width = Math.min(position[0] + windowSize, fragment.getX() + fragment.getWidth()) - x;
+    int height = Math.min(position[1] + windowSize, fragment.getY() + fragment.getHeight()) - y;
+
+    return imageDao.getPart(
+        fragment.getImageName(), x - fragment.getX(), y - fragment.getY(), width, height);
+  }
+
+  /**
+   * Читает из хранилища часть изображения первого фрагмента, пересекающегося с областью, в
+   * изображение из пула. В сравнении с {@link ComponentBenchmark#readFragment()} по {@code
+   * gc.alloc.rate.norm} показывает, сколько памяти на чтение остаётся за DAO.
+   *
+   * @return ширина прочитанной части
+   * @throws IOException если возникло исключение при работе с файловой системой
+   * @throws ImageNoCrossingException если область не пересекается с хартой
+   */
+  @Benchmark
+  public int readFragmentPooled() throws IOException, ImageNoCrossingException {
+    int[] position = nextPosition();
+    Fragment fragment = getFirstFragment(position);
+    int x = Math.max(position[0], fragment.getX());
+    int y = Math.max(position[1], fragment.getY());
+    int width = Math.min(position[0] + windowSize, fragment.getX() + fragment.getWidth()) - x;
+    int height = Math.min(position[1] + windowSize, fragment.getY() + fragment.getHeight()) - y;
+
+    try (ImagePool.Lease lease = imagePool.lease(width, height)) {
+      imageDao.readPart(
+          fragment.getImageName(), x - fragment.getX(), y - fragment.getY(), lease.getImage());
+      return lease.getImage().getWidth();
+    }
+  }
+
+  /**
+   * Записывает в хранилище часть изображения первого фрагмента, пересекающегося с областью.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   * @throws ImageNoCrossingException если область не пересекается с хартой
+   */
+  @Benchmark
+  public void writeFragment() throws IOException, ImageNoCrossingException {
+    int[] position = nextPosition();
+    Fragment fragment = getFirstFragment(position);
+    int x = Math.max(position[0], fragment.getX());
+    int y = Math.max(position[1], fragment.getY());
+    int width = Math.min(position[0] + windowSize, fragment.getX() + fragment.getWidth()) - x;
+    int height = Math.min(position[1] + windowSize, fragment.getY() + fragment.getHeight()) - y;
+
+    imageDao.updatePart(
+        windowImage.getSubimage(0, 0, width, height),
+        fragment.getImageName(),
+        x - fragment.getX(),
+        y - fragment.getY());
+  }
+
+  /**
+   * Возвращает первый фрагмент харты, пересекающийся с областью.
+   *
+   * @param position координаты области
+   * @return фрагмент
+   * @throws ImageNoCrossingException если область не пересекается с хартой
+   */
+  private Fragment getFirstFragment(int[] position) throws ImageNoCrossingException {
+    return fragmentService
+        .filterFragments(charta, position[0], position[1], windowSize, windowSize)
+        .get(0);
+  }
+}
@@ -0,0 +1,99 @@
+package ru.maxizenit.chartographer.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.maxizenit.chartographer.raster.RasterCopier;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк копирования части изображения фрагмента в изображение области: рисование через
+ * {@link Graphics2D}, которым изображение области собиралось раньше, и построчное копирование
+ * через {@link RasterCopier}. Область сдвинута относительно фрагмента, поэтому копируется
+ * подызображение, а копия обрезается по границам области.
+ *
+ * <p>Запуск: {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="RasterCopyBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class RasterCopyBenchmark {
+
+  /** Размер стороны изображения фрагмента. */
+  private static final int TILE_SIZE = 1_000;
+
+  /** Размер стороны области. */
+  @Param({"100", "1000", "2500"})
+  public int windowSize;
+
+  /** Формат копируемого изображения: совпадающий с форматом области или отличающийся. */
+  @Param({"TYPE_3BYTE_BGR", "TYPE_INT_RGB"})
+  public String sourceType;
+
+  private BufferedImage part;
+  private BufferedImage window;
+  private int offset;
+
+  /** Создаёт изображение фрагмента, вырезает из него копируемую часть и создаёт область. */
+  @Setup(Level.Trial)
+  public void setUp() {
+    BufferedImage tile = BenchmarkSupport.createRandomImage(TILE_SIZE, TILE_SIZE);
+    int partSize = Math.min(windowSize, TILE_SIZE) / 2;
+
+    if ("TYPE_INT_RGB".equals(sourceType)) {
+      BufferedImage converted =
+          new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+      Graphics2D graphics = converted.createGraphics();
+
+      graphics.drawImage(tile, 0, 0, null);
+      graphics.dispose();
+      tile = converted;
+    }
+
+    part = tile.getSubimage(partSize / 2, partSize / 2, partSize, partSize);
+    window = new BufferedImage(windowSize, windowSize, BufferedImage.TYPE_3BYTE_BGR);
+    offset = windowSize - partSize * 3 / 4;
+  }
+
+  /**
+   * Копирует часть фрагмента в область через {@link Graphics2D}.
+   *
+   * @return изображение области
+   */
+  @Benchmark
+  public BufferedImage graphics() {
+    Graphics2D graphics = window.createGraphics();
+
+    graphics.drawImage(part, offset, offset, null);
+    graphics.dispose();
+
+    return window;
+  }
+
+  /**
+   * Копирует часть фрагмента в область через {@link RasterCopier}.
+   *
+   * @return изображение области
+   */
+  @Benchmark
+  public BufferedImage rasterCopier() {
+    RasterCopier.copy(part, window, offset, offset);
+
+    return window;
+  }
+}
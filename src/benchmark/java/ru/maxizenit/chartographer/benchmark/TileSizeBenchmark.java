@@ -0,0 +1,127 @@
+package ru.maxizenit.chartographer.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+import ru.maxizenit.chartographer.exception.ChartaNotFoundException;
+import ru.maxizenit.chartographer.exception.ImageNoCrossingException;
+import ru.maxizenit.chartographer.exception.InvalidImageException;
+import ru.maxizenit.chartographer.service.ChartaService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк задержки получения части харты в зависимости от размера фрагмента. Харта
+ * {@link TileSizeBenchmark#CHARTA_SIZE} на {@link TileSizeBenchmark#CHARTA_SIZE} пикселей
+ * заполняется случайным изображением, после чего запрашиваются квадратные области в случайных
+ * местах харты.
+ *
+ * <p>Запуск: {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="TileSizeBenchmark"}.
+ * Параметры переопределяются аргументами JMH, например {@code -p strategy=STRIPS}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class TileSizeBenchmark {
+
+  /** Размер стороны харты. */
+  private static final int CHARTA_SIZE = 6_000;
+
+  /** Размер фрагмента харты. */
+  @Param({"256", "512", "1000", "2500", "5000"})
+  public int tileSize;
+
+  /** Размер стороны запрашиваемой области. */
+  @Param({"100", "1000", "2500", "5000"})
+  public int windowSize;
+
+  /** Стратегия разбиения харты. */
+  @Param({"SQUARE"})
+  public String strategy;
+
+  /** Объём кеша фрагментов в байтах, {@code 0} отключает кеш. */
+  @Param({"0", "268435456"})
+  public long cacheBytes;
+
+  private Path contentPath;
+  private ConfigurableApplicationContext context;
+  private ChartaService chartaService;
+  private int chartaId;
+  private Random random;
+
+  /**
+   * Поднимает контекст приложения во временной папке и создаёт заполненную харту.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   * @throws ChartaNotFoundException если харта не создалась
+   * @throws ImageNoCrossingException если полоса не пересекается с хартой
+   * @throws InvalidImageException если полоса не прочиталась
+   */
+  @Setup(Level.Trial)
+  public void setUp()
+      throws IOException, ChartaNotFoundException, ImageNoCrossingException,
+          InvalidImageException {
+    contentPath = Files.createTempDirectory("chartographer-benchmark");
+    context =
+        BenchmarkSupport.startContext(
+            contentPath,
+            "chartographer.tiling.strategy=" + strategy,
+            "chartographer.tile-cache.max-bytes=" + cacheBytes);
+    chartaService = context.getBean(ChartaService.class);
+    chartaId = chartaService.createCharta(CHARTA_SIZE, CHARTA_SIZE, tileSize);
+    random = new Random(tileSize);
+
+    BenchmarkSupport.fillCharta(chartaService, chartaId, CHARTA_SIZE, CHARTA_SIZE);
+  }
+
+  /**
+   * Удаляет харту, закрывает контекст приложения и удаляет временную папку.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   * @throws ChartaNotFoundException если харты не существует
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException, ChartaNotFoundException {
+    chartaService.deleteCharta(chartaId);
+    context.close();
+    FileSystemUtils.deleteRecursively(contentPath);
+  }
+
+  /**
+   * Получает область харты в случайном месте и записывает её в пустой поток.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   * @throws ChartaNotFoundException если харты не существует
+   * @throws ImageNoCrossingException если область не пересекается с хартой
+   */
+  @Benchmark
+  public void getChartaPart()
+      throws IOException, ChartaNotFoundException, ImageNoCrossingException {
+    int x = random.nextInt(CHARTA_SIZE - windowSize + 1);
+    int y = random.nextInt(CHARTA_SIZE - windowSize + 1);
+
+    chartaService
+        .getChartaPartWriter(chartaId, x, y, windowSize, windowSize)
+        .writeTo(OutputStream.nullOutputStream());
+  }
+}
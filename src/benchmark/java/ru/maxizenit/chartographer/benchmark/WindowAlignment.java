@@ -0,0 +1,11 @@
+package ru.maxizenit.chartographer.benchmark;
+
+/** Положение запрашиваемой области относительно фрагментов харты. */
+public enum WindowAlignment {
+
+  /** Область начинается в левом верхнем углу фрагмента. */
+  ALIGNED,
+
+  /** Центр области совпадает с общим углом четырёх фрагментов. */
+  CROSSING
+}
@@ -0,0 +1,122 @@
+package ru.maxizenit.chartographer.bmp;
+
+import lombok.Getter;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Класс {@code BmpDecoder} читает BMP-изображение без сжатия с глубиной цвета 24 бита из потока по
+ * одной строке, не загружая его целиком в память. Строки читаются в порядке их хранения в файле:
+ * обычно снизу вверх.
+ */
+public class BmpDecoder {
+
+  /** Поток для чтения. */
+  private final InputStream stream;
+
+  /** Заголовок читаемого изображения. */
+  @Getter private final BmpHeader header;
+
+  /** Количество прочитанных строк. */
+  private int rowsRead;
+
+  private BmpDecoder(InputStream stream, BmpHeader header) {
+    this.stream = stream;
+    this.header = header;
+  }
+
+  /**
+   * Читает заголовок изображения и создаёт декодер. Если поток не содержит BMP-изображение без
+   * сжатия с глубиной цвета 24 бита, поток возвращается в исходное положение.
+   *
+   * @param stream поток с поддержкой {@link InputStream#mark(int)}
+   * @return декодер или {@code null}, если формат изображения не поддерживается
+   * @throws IOException если возникло исключение при чтении из потока
+   */
+  public static BmpDecoder open(InputStream stream) throws IOException {
+    stream.mark(BmpHeader.SIZE);
+
+    byte[] bytes = stream.readNBytes(BmpHeader.SIZE);
+    BmpHeader header;
+
+    try {
+      header = BmpHeader.read(ByteBuffer.wrap(bytes));
+    } catch (IOException e) {
+      stream.reset();
+      return null;
+    }
+
+    if (header.getWidth() <= 0
+        || header.getHeight() <= 0
+        || header.getPixelDataOffset() < BmpHeader.SIZE) {
+      stream.reset();
+      return null;
+    }
+
+    skipFully(stream, header.getPixelDataOffset() - BmpHeader.SIZE);
+
+    return new BmpDecoder(stream, header);
+  }
+
+  /**
+   * Возвращает {@code true}, если в изображении остались непрочитанные строки.
+   *
+   * @return {@code true}, если остались непрочитанные строки
+   */
+  public boolean hasNextRow() {
+    return rowsRead < header.getHeight();
+  }
+
+  /**
+   * Возвращает номер следующей строки, считая сверху.
+   *
+   * @return номер строки
+   */
+  public int getNextRowY() {
+    return header.isTopDown() ? rowsRead : header.getHeight() - 1 - rowsRead;
+  }
+
+  /**
+   * Читает следующую строку. В буфер копируются первые {@code length} байт строки в порядке BGR,
+   * остальные байты строки пропускаются.
+   *
+   * @param buffer буфер для пикселей
+   * @param offset смещение в буфере
+   * @param length количество копируемых байт, не больше ширины строки без выравнивания
+   * @throws IOException если возникло исключение при чтении или поток закончился раньше времени
+   */
+  public void readRow(byte[] buffer, int offset, int length) throws IOException {
+    if (stream.readNBytes(buffer, offset, length) < length) {
+      throw new EOFException();
+    }
+
+    skipFully(stream, header.getRowSize() - length);
+    rowsRead++;
+  }
+
+  /**
+   * Пропускает заданное количество байт потока.
+   *
+   * @param stream поток
+   * @param count количество байт
+   * @throws IOException если возникло исключение при чтении или поток закончился раньше времени
+   */
+  private static void skipFully(InputStream stream, long count) throws IOException {
+    while (count > 0) {
+      long skipped = stream.skip(count);
+
+      if (skipped <= 0) {
+        if (stream.read() < 0) {
+          throw new EOFException();
+        }
+
+        skipped = 1;
+      }
+
+      count -= skipped;
+    }
+  }
+}
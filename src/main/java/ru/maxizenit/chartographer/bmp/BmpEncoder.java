@@ -0,0 +1,104 @@
+package ru.maxizenit.chartographer.bmp;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Класс {@code BmpEncoder} записывает BMP-изображение в поток по частям, не собирая его целиком в
+ * памяти. Строки BMP-файла хранятся снизу вверх, поэтому изображение передаётся горизонтальными
+ * полосами, начиная с нижней.
+ */
+public class BmpEncoder {
+
+  /** Сообщение о полосе, не подходящей к изображению. */
+  private static final String INVALID_BAND_MESSAGE =
+      "Полоса не совпадает по ширине с изображением или выходит за его верхний край";
+
+  /** Поток для записи. */
+  private final OutputStream stream;
+
+  /** Заголовок записываемого изображения. */
+  private final BmpHeader header;
+
+  /** Байты выравнивания в конце строки. */
+  private final byte[] padding;
+
+  /** Количество строк, которые ещё не записаны. */
+  private int remainingRows;
+
+  /**
+   * Создаёт кодировщик и записывает в поток заголовок изображения.
+   *
+   * @param stream поток для записи
+   * @param width ширина изображения
+   * @param height высота изображения
+   * @throws IOException если возникло исключение при записи в поток
+   */
+  public BmpEncoder(OutputStream stream, int width, int height) throws IOException {
+    this.stream = stream;
+    header = new BmpHeader(width, height);
+    padding = new byte[header.getRowSize() - width * BmpHeader.BYTES_PER_PIXEL];
+    remainingRows = height;
+
+    stream.write(header.toByteBuffer().array());
+  }
+
+  /**
+   * Записывает очередную полосу изображения. Полосы передаются снизу вверх, ширина полосы должна
+   * совпадать с шириной изображения.
+   *
+   * @param band полоса изображения
+   * @throws IOException если возникло исключение при записи в поток
+   */
+  public void writeBand(BufferedImage band) throws IOException {
+    int height = band.getHeight();
+
+    if (band.getWidth() != header.getWidth() || height > remainingRows) {
+      throw new IllegalArgumentException(INVALID_BAND_MESSAGE);
+    }
+
+    byte[] pixels = getPixels(band);
+    int rowLength = header.getWidth() * BmpHeader.BYTES_PER_PIXEL;
+
+    for (int row = height - 1; row >= 0; row--) {
+      stream.write(pixels, row * rowLength, rowLength);
+      stream.write(padding);
+    }
+
+    remainingRows -= height;
+  }
+
+  /**
+   * Возвращает пиксели изображения в порядке BGR построчно без выравнивания. Если изображение
+   * хранится в другом формате, оно предварительно конвертируется.
+   *
+   * @param image изображение
+   * @return массив пикселей
+   */
+  public static byte[] getPixels(BufferedImage image) {
+    WritableRaster raster = image.getRaster();
+
+    if (image.getType() == BufferedImage.TYPE_3BYTE_BGR
+        && raster.getParent() == null
+        && raster.getSampleModel() instanceof ComponentSampleModel
+        && ((ComponentSampleModel) raster.getSampleModel()).getScanlineStride()
+            == image.getWidth() * BmpHeader.BYTES_PER_PIXEL
+        && raster.getDataBuffer().getOffset() == 0) {
+      return ((DataBufferByte) raster.getDataBuffer()).getData();
+    }
+
+    BufferedImage converted =
+        new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+    Graphics2D graphics = converted.createGraphics();
+
+    graphics.drawImage(image, 0, 0, null);
+    graphics.dispose();
+
+    return ((DataBufferByte) converted.getRaster().getDataBuffer()).getData();
+  }
+}
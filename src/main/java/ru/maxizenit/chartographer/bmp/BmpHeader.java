@@ -0,0 +1,184 @@
+package ru.maxizenit.chartographer.bmp;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Класс {@code BmpHeader} представляет заголовок BMP-изображения без сжатия с глубиной цвета 24
+ * бита на пиксель. Позволяет вычислять смещения строк пикселей в файле без чтения всего
+ * изображения.
+ */
+@Getter
+public class BmpHeader {
+
+  /** Размер заголовка (BITMAPFILEHEADER и BITMAPINFOHEADER) в байтах. */
+  public static final int SIZE = 54;
+
+  /** Количество байт на пиксель. */
+  public static final int BYTES_PER_PIXEL = 3;
+
+  /** Сигнатура BMP-файла ("BM"). */
+  private static final short SIGNATURE = 0x4D42;
+
+  /** Размер BITMAPINFOHEADER в байтах. */
+  private static final int INFO_HEADER_SIZE = 40;
+
+  /** Глубина цвета в битах на пиксель. */
+  private static final short BITS_PER_PIXEL = 24;
+
+  /** Тип сжатия BI_RGB (без сжатия). */
+  private static final int NO_COMPRESSION = 0;
+
+  /** Смещение поля со смещением пиксельных данных. */
+  private static final int PIXEL_DATA_OFFSET_POSITION = 10;
+
+  /** Смещение поля с шириной изображения. */
+  private static final int WIDTH_POSITION = 18;
+
+  /** Смещение поля с высотой изображения. */
+  private static final int HEIGHT_POSITION = 22;
+
+  /** Смещение поля с глубиной цвета. */
+  private static final int BITS_PER_PIXEL_POSITION = 28;
+
+  /** Смещение поля с типом сжатия. */
+  private static final int COMPRESSION_POSITION = 30;
+
+  /** Сообщение о неподдерживаемом формате изображения. */
+  private static final String UNSUPPORTED_FORMAT_MESSAGE =
+      "Поддерживаются только BMP-изображения без сжатия с глубиной цвета 24 бита";
+
+  /** Ширина изображения. */
+  private final int width;
+
+  /** Высота изображения. */
+  private final int height;
+
+  /** {@code true}, если строки хранятся сверху вниз. */
+  private final boolean topDown;
+
+  /** Смещение пиксельных данных от начала файла. */
+  private final int pixelDataOffset;
+
+  /**
+   * Создаёт заголовок нового изображения со строками, хранящимися снизу вверх.
+   *
+   * @param width ширина
+   * @param height высота
+   */
+  public BmpHeader(int width, int height) {
+    this(width, height, false, SIZE);
+  }
+
+  private BmpHeader(int width, int height, boolean topDown, int pixelDataOffset) {
+    this.width = width;
+    this.height = height;
+    this.topDown = topDown;
+    this.pixelDataOffset = pixelDataOffset;
+  }
+
+  /**
+   * Читает заголовок из буфера, начиная с его текущей позиции.
+   *
+   * @param buffer буфер с первыми {@link BmpHeader#SIZE} байтами файла
+   * @return заголовок изображения
+   * @throws IOException если изображение не является BMP без сжатия с глубиной цвета 24 бита
+   */
+  public static BmpHeader read(ByteBuffer buffer) throws IOException {
+    ByteBuffer header = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+
+    if (header.remaining() < SIZE
+        || header.getShort(0) != SIGNATURE
+        || header.getShort(BITS_PER_PIXEL_POSITION) != BITS_PER_PIXEL
+        || header.getInt(COMPRESSION_POSITION) != NO_COMPRESSION) {
+      throw new IOException(UNSUPPORTED_FORMAT_MESSAGE);
+    }
+
+    int height = header.getInt(HEIGHT_POSITION);
+
+    return new BmpHeader(
+        header.getInt(WIDTH_POSITION),
+        Math.abs(height),
+        height < 0,
+        header.getInt(PIXEL_DATA_OFFSET_POSITION));
+  }
+
+  /**
+   * Возвращает заголовок в виде буфера, готового к записи в начало файла.
+   *
+   * @return буфер размером {@link BmpHeader#SIZE} байт
+   */
+  public ByteBuffer toByteBuffer() {
+    ByteBuffer buffer = ByteBuffer.allocate(SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    buffer.putShort(SIGNATURE);
+    buffer.putInt((int) getFileSize());
+    buffer.putInt(0);
+    buffer.putInt(pixelDataOffset);
+    buffer.putInt(INFO_HEADER_SIZE);
+    buffer.putInt(width);
+    buffer.putInt(topDown ? -height : height);
+    buffer.putShort((short) 1);
+    buffer.putShort(BITS_PER_PIXEL);
+    buffer.putInt(NO_COMPRESSION);
+    buffer.putInt((int) getPixelDataSize());
+    buffer.putInt(0);
+    buffer.putInt(0);
+    buffer.putInt(0);
+    buffer.putInt(0);
+
+    return buffer.flip();
+  }
+
+  /**
+   * Возвращает размер строки пикселей в файле с учётом выравнивания до 4 байт.
+   *
+   * @return размер строки в байтах
+   */
+  public int getRowSize() {
+    return (width * BYTES_PER_PIXEL + 3) & ~3;
+  }
+
+  /**
+   * Возвращает смещение строки изображения от начала файла.
+   *
+   * @param y номер строки, считая сверху
+   * @return смещение строки в байтах
+   */
+  public long getRowOffset(int y) {
+    int storedRow = topDown ? y : height - 1 - y;
+    return pixelDataOffset + (long) storedRow * getRowSize();
+  }
+
+  /**
+   * Возвращает смещение первого байта непрерывного участка файла, содержащего заданные строки.
+   *
+   * @param y номер первой строки, считая сверху
+   * @param rows количество строк
+   * @return смещение участка в байтах
+   */
+  public long getRowsOffset(int y, int rows) {
+    return Math.min(getRowOffset(y), getRowOffset(y + rows - 1));
+  }
+
+  /**
+   * Возвращает размер пиксельных данных.
+   *
+   * @return размер пиксельных данных в байтах
+   */
+  public long getPixelDataSize() {
+    return (long) getRowSize() * height;
+  }
+
+  /**
+   * Возвращает размер файла.
+   *
+   * @return размер файла в байтах
+   */
+  public long getFileSize() {
+    return pixelDataOffset + getPixelDataSize();
+  }
+}
@@ -0,0 +1,17 @@
+package ru.maxizenit.chartographer.bmp;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/** Функциональный интерфейс для отложенной записи BMP-изображения в поток. */
+@FunctionalInterface
+public interface BmpWriter {
+
+  /**
+   * Записывает изображение в поток.
+   *
+   * @param stream поток для записи
+   * @throws IOException если возникло исключение при чтении изображения или записи в поток
+   */
+  void writeTo(OutputStream stream) throws IOException;
+}
@@ -0,0 +1,17 @@
+package ru.maxizenit.chartographer.bmp;
+
+import lombok.Value;
+
+/**
+ * Класс {@code TaggedBmpWriter} представляет объект для записи изображения области вместе с тегом
+ * сущности (ETag), вычисленным по тем же фрагментам и той же версии области, что и изображение.
+ */
+@Value
+public class TaggedBmpWriter {
+
+  /** Тег сущности в кавычках. */
+  String tag;
+
+  /** Объект для записи изображения. */
+  BmpWriter writer;
+}
@@ -0,0 +1,12 @@
+package ru.maxizenit.chartographer.concurrent;
+
+/**
+ * Захваченная блокировка области фрагмента. Освобождается вызовом {@link RegionLock#close()}, что
+ * позволяет использовать её в конструкции try-with-resources.
+ */
+public interface RegionLock extends AutoCloseable {
+
+  /** Освобождает блокировку. */
+  @Override
+  void close();
+}
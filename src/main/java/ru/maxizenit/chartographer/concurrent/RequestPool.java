@@ -0,0 +1,180 @@
+package ru.maxizenit.chartographer.concurrent;
+
+import ru.maxizenit.chartographer.exception.ServiceOverloadedException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Класс {@code RequestPool} представляет ограниченный пул потоков для обработки запросов. Пул
+ * принимает не больше задач, чем у него потоков и мест в очереди; задача, которой не хватило
+ * места, не ставится в очередь, а сразу отклоняется исключением {@link
+ * ServiceOverloadedException}. Место в пуле занимается разрешением {@link Permit}, которое
+ * освобождается по завершении задачи, поэтому его можно занять заранее, ещё до того, как задача
+ * будет передана в пул.
+ */
+public class RequestPool implements AutoCloseable {
+
+  /** Время простоя, после которого поток пула завершается, в секундах. */
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  /** Сообщение о заполненном пуле. */
+  private static final String OVERLOADED_MESSAGE = "Пул обработки запросов заполнен: ";
+
+  /** Имя пула. */
+  private final String name;
+
+  /** Разрешения на занятие места в пуле. */
+  private final Semaphore permits;
+
+  /** Исполнитель задач. Очередь исполнителя не ограничена, её размер ограничивают разрешения. */
+  private final ThreadPoolExecutor executor;
+
+  /**
+   * Создаёт пул.
+   *
+   * @param name имя пула, используемое в именах потоков
+   * @param threads количество потоков
+   * @param queueCapacity количество задач, которые могут ожидать свободного потока
+   */
+  public RequestPool(String name, int threads, int queueCapacity) {
+    AtomicInteger threadCount = new AtomicInteger();
+
+    this.name = name;
+    this.permits = new Semaphore(threads + queueCapacity);
+    this.executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+              Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Занимает место в пуле.
+   *
+   * @return разрешение, которое нужно освободить по завершении задачи
+   * @throws ServiceOverloadedException если свободных мест в пуле нет
+   */
+  public Permit acquire() throws ServiceOverloadedException {
+    if (!permits.tryAcquire()) {
+      throw new ServiceOverloadedException(OVERLOADED_MESSAGE + name);
+    }
+
+    return new Permit();
+  }
+
+  /**
+   * Выполняет задачу в пуле. Место в пуле освобождается до того, как завершается результат;
+   * проверенные исключения задачи завершают результат без обёртки. Если пул уже остановлен,
+   * место освобождается сразу, а задача отклоняется так же, как при заполненном пуле.
+   *
+   * @param task задача
+   * @param <T> тип результата задачи
+   * @return результат задачи
+   * @throws ServiceOverloadedException если свободных мест в пуле нет или пул остановлен
+   */
+  public <T> CompletableFuture<T> submit(Task<T> task) throws ServiceOverloadedException {
+    return submit(acquire(), task);
+  }
+
+  /**
+   * Выполняет задачу в пуле на заранее занятом месте. Место освобождается так же, как в {@link
+   * RequestPool#submit(Task)}, в том числе если пул уже остановлен.
+   *
+   * @param permit место, занятое методом {@link RequestPool#acquire()}
+   * @param task задача
+   * @param <T> тип результата задачи
+   * @return результат задачи
+   * @throws ServiceOverloadedException если пул остановлен
+   */
+  public <T> CompletableFuture<T> submit(Permit permit, Task<T> task)
+      throws ServiceOverloadedException {
+    CompletableFuture<T> result = new CompletableFuture<>();
+
+    try {
+      executor.execute(
+          () -> {
+            T value;
+
+            try (permit) {
+              value = task.call();
+            } catch (Throwable e) {
+              result.completeExceptionally(e);
+              return;
+            }
+
+            result.complete(value);
+          });
+    } catch (RejectedExecutionException e) {
+      permit.close();
+      throw new ServiceOverloadedException(OVERLOADED_MESSAGE + name);
+    }
+
+    return result;
+  }
+
+  /**
+   * Возвращает количество свободных мест в пуле.
+   *
+   * @return количество мест
+   */
+  public int getAvailablePermits() {
+    return permits.availablePermits();
+  }
+
+  /** Завершает потоки пула после выполнения принятых задач. */
+  @Override
+  public void close() {
+    executor.shutdown();
+  }
+
+  /**
+   * Задача, выполняемая в пуле.
+   *
+   * @param <T> тип результата
+   */
+  @FunctionalInterface
+  public interface Task<T> {
+
+    /**
+     * Выполняет задачу.
+     *
+     * @return результат
+     * @throws Exception если задача завершилась с ошибкой
+     */
+    T call() throws Exception;
+  }
+
+  /**
+   * Занятое место в пуле. Освобождается вызовом {@link Permit#close()}; повторные вызовы ничего не
+   * делают.
+   */
+  public class Permit implements AutoCloseable {
+
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private Permit() {}
+
+    /** Освобождает место в пуле. */
+    @Override
+    public void close() {
+      if (released.compareAndSet(false, true)) {
+        permits.release();
+      }
+    }
+  }
+}
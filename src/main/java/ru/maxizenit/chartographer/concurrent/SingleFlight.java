@@ -0,0 +1,110 @@
+package ru.maxizenit.chartographer.concurrent;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Класс {@code SingleFlight} объединяет одновременные вычисления с одинаковым ключом: первый
+ * вызов вычисляет результат, а вызовы с тем же ключом, пришедшие до его завершения, ждут и
+ * получают тот же результат или то же исключение. Результат не запоминается: вызов, пришедший
+ * после завершения вычисления, начинает новое.
+ *
+ * @param <K> тип ключа
+ * @param <V> тип результата
+ */
+public class SingleFlight<K, V> {
+
+  /** Незавершённые вычисления по ключам. */
+  private final ConcurrentHashMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+
+  /** Количество вызовов, получивших результат чужого вычисления. */
+  private final AtomicLong sharedCount = new AtomicLong();
+
+  /**
+   * Возвращает результат вычисления с заданным ключом, запуская его, если такое вычисление ещё не
+   * идёт.
+   *
+   * @param key ключ
+   * @param call вычисление
+   * @return результат
+   * @throws IOException если вычисление завершилось исключением или ожидание было прервано
+   */
+  public V execute(K key, Call<V> call) throws IOException {
+    CompletableFuture<V> result = new CompletableFuture<>();
+    CompletableFuture<V> running = calls.putIfAbsent(key, result);
+
+    if (running != null) {
+      sharedCount.incrementAndGet();
+      return await(running);
+    }
+
+    try {
+      V value = call.call();
+      result.complete(value);
+      return value;
+    } catch (IOException | RuntimeException | Error e) {
+      result.completeExceptionally(e);
+      throw e;
+    } finally {
+      calls.remove(key, result);
+    }
+  }
+
+  /**
+   * Возвращает количество вызовов, получивших результат чужого вычисления.
+   *
+   * @return количество вызовов
+   */
+  public long getSharedCount() {
+    return sharedCount.get();
+  }
+
+  /**
+   * Ждёт завершения чужого вычисления и возвращает его результат.
+   *
+   * @param running вычисление
+   * @return результат
+   * @throws IOException если вычисление завершилось исключением или ожидание было прервано
+   */
+  private V await(CompletableFuture<V> running) throws IOException {
+    try {
+      return running.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+
+      throw (Error) cause;
+    }
+  }
+
+  /**
+   * Вычисление, результат которого можно разделить между вызовами.
+   *
+   * @param <V> тип результата
+   */
+  @FunctionalInterface
+  public interface Call<V> {
+
+    /**
+     * Выполняет вычисление.
+     *
+     * @return результат
+     * @throws IOException если возникло исключение при работе с файловой системой
+     */
+    V call() throws IOException;
+  }
+}
@@ -0,0 +1,65 @@
+package ru.maxizenit.chartographer.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import ru.maxizenit.chartographer.concurrent.RequestPool;
+
+/**
+ * Конфигурация пулов обработки запросов. Чтение и запись изображений выполняются в отдельных
+ * ограниченных пулах, поэтому поток тяжёлых записей не занимает потоки, которые отдают области
+ * харт, и наоборот. Тела ответов записываются в отдельном исполнителе асинхронной обработки MVC.
+ */
+@Configuration
+public class RequestPoolConfig {
+
+  /**
+   * Возвращает пул для запросов на чтение областей харт.
+   *
+   * @param threads количество потоков
+   * @param queueCapacity количество запросов, которые могут ожидать свободного потока
+   * @return пул
+   */
+  @Bean
+  public RequestPool readRequestPool(
+      @Value("${chartographer.requests.read.threads}") int threads,
+      @Value("${chartographer.requests.read.queue}") int queueCapacity) {
+    return new RequestPool("request-read", threads, queueCapacity);
+  }
+
+  /**
+   * Возвращает пул для запросов на запись в харты и их удаление.
+   *
+   * @param threads количество потоков
+   * @param queueCapacity количество запросов, которые могут ожидать свободного потока
+   * @return пул
+   */
+  @Bean
+  public RequestPool writeRequestPool(
+      @Value("${chartographer.requests.write.threads}") int threads,
+      @Value("${chartographer.requests.write.queue}") int queueCapacity) {
+    return new RequestPool("request-write", threads, queueCapacity);
+  }
+
+  /**
+   * Возвращает исполнитель асинхронной обработки Spring MVC, в котором записываются тела ответов
+   * {@code StreamingResponseBody}.
+   *
+   * @param threads количество потоков
+   * @return исполнитель
+   */
+  @Bean
+  public ThreadPoolTaskExecutor mvcAsyncExecutor(
+      @Value("${chartographer.requests.async.threads}") int threads) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    executor.setCorePoolSize(threads);
+    executor.setMaxPoolSize(threads);
+    executor.setAllowCoreThreadTimeOut(true);
+    executor.setThreadNamePrefix("mvc-async-");
+    executor.setDaemon(true);
+
+    return executor;
+  }
+}
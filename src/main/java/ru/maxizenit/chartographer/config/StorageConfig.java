@@ -0,0 +1,45 @@
+package ru.maxizenit.chartographer.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import ru.maxizenit.chartographer.dao.ImageDao;
+import ru.maxizenit.chartographer.dao.impl.DeflateImageDaoImpl;
+import ru.maxizenit.chartographer.dao.impl.BmpImageDaoImpl;
+import ru.maxizenit.chartographer.dao.impl.RawImageDaoImpl;
+
+/**
+ * Конфигурация хранилища изображений. Выбирает реализацию {@link ImageDao}, которой пользуются
+ * сервисы, по свойству {@code chartographer.storage.format}. Изображения, сохранённые в одном
+ * формате, не читаются реализацией другого, поэтому формат меняется только на пустом хранилище.
+ */
+@Configuration
+public class StorageConfig {
+
+  /**
+   * Возвращает реализацию {@link ImageDao} для заданного формата хранения.
+   *
+   * @param format формат хранения
+   * @param bmpImageDao реализация для BMP-файлов
+   * @param rawImageDao реализация для внутреннего формата
+   * @param deflateImageDao реализация для сжатого формата
+   * @return реализация {@link ImageDao}
+   */
+  @Bean
+  @Primary
+  public ImageDao imageDao(
+      @Value("${chartographer.storage.format}") StorageFormat format,
+      BmpImageDaoImpl bmpImageDao,
+      RawImageDaoImpl rawImageDao,
+      DeflateImageDaoImpl deflateImageDao) {
+    switch (format) {
+      case RAW:
+        return rawImageDao;
+      case DEFLATE:
+        return deflateImageDao;
+      default:
+        return bmpImageDao;
+    }
+  }
+}
@@ -0,0 +1,14 @@
+package ru.maxizenit.chartographer.config;
+
+/** Формат хранения изображений фрагментов на диске. */
+public enum StorageFormat {
+
+  /** BMP-файлы без сжатия с глубиной цвета 24 бита. */
+  BMP,
+
+  /** Внутренний формат с заголовком фиксированного размера и пикселями без выравнивания. */
+  RAW,
+
+  /** Сжатый формат, в котором подтайлы изображения сжимаются Deflate по отдельности. */
+  DEFLATE
+}
@@ -0,0 +1,36 @@
+package ru.maxizenit.chartographer.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.maxizenit.chartographer.tiling.HilbertTilingStrategy;
+import ru.maxizenit.chartographer.tiling.SquareTilingStrategy;
+import ru.maxizenit.chartographer.tiling.StripTilingStrategy;
+import ru.maxizenit.chartographer.tiling.TilingStrategy;
+
+/**
+ * Конфигурация разбиения харт на фрагменты. Выбирает {@link TilingStrategy} по свойству {@code
+ * chartographer.tiling.strategy}. Уже созданные харты сохраняют своё разбиение.
+ */
+@Configuration
+public class TilingConfig {
+
+  /**
+   * Возвращает стратегию разбиения заданного типа.
+   *
+   * @param type тип стратегии
+   * @return стратегия разбиения
+   */
+  @Bean
+  public TilingStrategy tilingStrategy(
+      @Value("${chartographer.tiling.strategy}") TilingStrategyType type) {
+    switch (type) {
+      case STRIPS:
+        return new StripTilingStrategy();
+      case HILBERT:
+        return new HilbertTilingStrategy();
+      default:
+        return new SquareTilingStrategy();
+    }
+  }
+}
@@ -0,0 +1,14 @@
+package ru.maxizenit.chartographer.config;
+
+/** Стратегия разбиения новых харт на фрагменты. */
+public enum TilingStrategyType {
+
+  /** Квадратные фрагменты, перечисленные построчно. */
+  SQUARE,
+
+  /** Горизонтальные полосы во всю ширину харты. */
+  STRIPS,
+
+  /** Квадратные фрагменты, перечисленные вдоль кривой Гильберта. */
+  HILBERT
+}
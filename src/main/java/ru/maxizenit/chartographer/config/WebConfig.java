@@ -0,0 +1,30 @@
+package ru.maxizenit.chartographer.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Конфигурация Spring MVC. Тела ответов {@code StreamingResponseBody} и другая асинхронная
+ * обработка MVC выполняются в отдельном исполнителе, а не в пулах обработки запросов. Количество
+ * одновременно записываемых тел ответов ограничивают места пула чтения: контроллер занимает место
+ * до возврата ответа, а запись тела освобождает его.
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+  private final AsyncTaskExecutor mvcAsyncExecutor;
+
+  @Autowired
+  public WebConfig(@Qualifier("mvcAsyncExecutor") AsyncTaskExecutor mvcAsyncExecutor) {
+    this.mvcAsyncExecutor = mvcAsyncExecutor;
+  }
+
+  @Override
+  public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+    configurer.setTaskExecutor(mvcAsyncExecutor);
+  }
+}
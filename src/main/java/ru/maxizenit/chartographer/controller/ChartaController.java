@@ -1,6 +1,9 @@
 package ru.maxizenit.chartographer.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
@@ -11,18 +14,44 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.ExceptionHandler;
-import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.maxizenit.chartographer.bmp.BmpHeader;
+import ru.maxizenit.chartographer.bmp.BmpWriter;
+import ru.maxizenit.chartographer.bmp.TaggedBmpWriter;
+import ru.maxizenit.chartographer.concurrent.RequestPool;
 import ru.maxizenit.chartographer.exception.ChartaNotFoundException;
 import ru.maxizenit.chartographer.exception.ImageNoCrossingException;
+import ru.maxizenit.chartographer.exception.InvalidImageException;
+import ru.maxizenit.chartographer.exception.InvalidLevelException;
+import ru.maxizenit.chartographer.exception.PartialBatchException;
+import ru.maxizenit.chartographer.exception.PyramidNotReadyException;
+import ru.maxizenit.chartographer.exception.ServiceOverloadedException;
 import ru.maxizenit.chartographer.service.ChartaService;
 
 import javax.validation.ConstraintViolationException;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Size;
+import java.awt.Rectangle;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
-/** REST-контроллер для харт. */
+/**
+ * REST-контроллер для харт. Запросы на запись и удаление выполняются асинхронно в пуле записи, а
+ * тела ответов с изображениями записываются в пуле чтения, поэтому потоки сервера не ждут
+ * файловой системы. Если в нужном пуле нет свободного места, запрос сразу отклоняется с
+ * HTTP-статусом 503 и заголовком {@code Retry-After}.
+ */
 @Validated
 @RestController
 @RequestMapping("/chartas")
@@ -31,6 +60,15 @@ public class ChartaController {
   /** MIME-тип BMP-изображения. */
   private static final String MIME_BMP = "image/bmp";
 
+  /** MIME-тип пакета изображений. */
+  private static final String MIME_OCTET_STREAM = "application/octet-stream";
+
+  /** MIME-тип составного ответа. */
+  private static final String MIME_MULTIPART_MIXED = "multipart/mixed";
+
+  /** Перевод строки в заголовках составного ответа. */
+  private static final String CRLF = "\r\n";
+
   /** Параметр запроса "x". */
   private static final String X_PARAM = "x";
 
@@ -43,6 +81,39 @@ public class ChartaController {
   /** Параметр запроса "height". */
   private static final String HEIGHT_PARAM = "height";
 
+  /** Параметр запроса "level". */
+  private static final String LEVEL_PARAM = "level";
+
+  /** Параметр запроса "tileSize". */
+  private static final String TILE_SIZE_PARAM = "tileSize";
+
+  /** Параметр запроса "window". */
+  private static final String WINDOW_PARAM = "window";
+
+  /** Формат параметра "window": координаты, ширина и высота области через запятую. */
+  private static final String WINDOW_PATTERN = "\\d{1,9},\\d{1,9},\\d{1,9},\\d{1,9}";
+
+  /** Тег, совпадающий с любым тегом в заголовке {@code If-None-Match}. */
+  private static final String ANY_TAG = "*";
+
+  /** Префикс слабого тега. */
+  private static final String WEAK_TAG_PREFIX = "W/";
+
+  /** Разделитель тегов в заголовке {@code If-None-Match}. */
+  private static final String TAG_SEPARATOR = ",";
+
+  /** Разделитель чисел в параметре "window". */
+  private static final String WINDOW_SEPARATOR = ",";
+
+  /** Заголовок ответа с количеством сохранённых записей пакета. */
+  private static final String APPLIED_COUNT_HEADER = "X-Applied-Count";
+
+  /** Максимальное количество областей в одном запросе. */
+  private static final int MAX_WINDOWS = 256;
+
+  /** Сообщение о некорректном размере области. */
+  private static final String INVALID_WINDOW_MESSAGE = "Некорректный размер области: ";
+
   /** Минимальная координата. */
   private static final int MIN_COORDINATE = 0;
 
@@ -58,11 +129,40 @@ public class ChartaController {
   /** Максимальная высота харты. */
   private static final int MAX_HEIGHT = 50_000;
 
+  /** Номер уровня пирамиды с хартой в полном разрешении. */
+  private static final int MIN_LEVEL = 0;
+
+  /** Максимальный номер уровня пирамиды. */
+  private static final int MAX_LEVEL = 16;
+
+  /** Минимальный размер фрагмента харты. */
+  private static final int MIN_TILE_SIZE = 64;
+
+  /** Максимальный размер фрагмента харты. */
+  private static final int MAX_TILE_SIZE = 5_000;
+
   private final ChartaService chartaService;
+  private final RequestPool readRequestPool;
+  private final RequestPool writeRequestPool;
+
+  /** Время в секундах, через которое клиенту предлагается повторить отклонённый запрос. */
+  private final long retryAfter;
+
+  /** Наибольший размер тела запроса на запись в байтах, которое принимается в память. */
+  private final int bodyMemoryThreshold;
 
   @Autowired
-  public ChartaController(ChartaService chartaService) {
+  public ChartaController(
+      ChartaService chartaService,
+      @Qualifier("readRequestPool") RequestPool readRequestPool,
+      @Qualifier("writeRequestPool") RequestPool writeRequestPool,
+      @Value("${chartographer.requests.retry-after}") long retryAfter,
+      @Value("${chartographer.requests.body.memory-threshold}") int bodyMemoryThreshold) {
     this.chartaService = chartaService;
+    this.readRequestPool = readRequestPool;
+    this.writeRequestPool = writeRequestPool;
+    this.retryAfter = retryAfter;
+    this.bodyMemoryThreshold = bodyMemoryThreshold;
   }
 
   /**
@@ -70,11 +170,29 @@ public class ChartaController {
    *
    * @return ответ с HTTP-статусом 400
    */
-  @ExceptionHandler({ConstraintViolationException.class, ImageNoCrossingException.class})
+  @ExceptionHandler({
+    ConstraintViolationException.class,
+    ImageNoCrossingException.class,
+    InvalidImageException.class,
+    InvalidLevelException.class
+  })
   public ResponseEntity<?> handleInvalidArgumentsException() {
     return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
   }
 
+  /**
+   * Обработчик исключения, связанного с некорректной записью пакета изображений.
+   *
+   * @param e исключение с количеством сохранённых записей пакета
+   * @return ответ с HTTP-статусом 400 и заголовком {@code X-Applied-Count}
+   */
+  @ExceptionHandler(PartialBatchException.class)
+  public ResponseEntity<?> handlePartialBatchException(PartialBatchException e) {
+    return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+        .header(APPLIED_COUNT_HEADER, Integer.toString(e.getAppliedCount()))
+        .build();
+  }
+
   /**
    * Обработчик исключений, связанных с ошибкой нахождения харты.
    *
@@ -86,87 +204,388 @@ public class ChartaController {
   }
 
   /**
-   * Создаёт новую харту и возвращает её идентификатор.
+   * Обработчик исключений, связанных с заполненным пулом обработки запросов или строящейся
+   * пирамидой харты.
+   *
+   * @return ответ с HTTP-статусом 503 и заголовком {@code Retry-After}
+   */
+  @ExceptionHandler({ServiceOverloadedException.class, PyramidNotReadyException.class})
+  public ResponseEntity<?> handleServiceUnavailableException() {
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+        .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter))
+        .build();
+  }
+
+  /**
+   * Создаёт новую харту и возвращает её идентификатор. Если размер фрагмента не задан, харта
+   * разбивается на фрагменты размера из конфигурации.
    *
    * @param width ширина харты
    * @param height высота харты
+   * @param tileSize размер фрагмента харты или {@code null}
    * @return ответ с идентификатором созданной харты и HTTP-статусом 201
    * @throws IOException если возникло исключение при работе с файловой системой
    */
   @PostMapping
   public ResponseEntity<String> create(
       @RequestParam(WIDTH_PARAM) @Min(MIN_SIZE) @Max(MAX_WIDTH) int width,
-      @RequestParam(HEIGHT_PARAM) @Min(MIN_SIZE) @Max(MAX_HEIGHT) int height)
+      @RequestParam(HEIGHT_PARAM) @Min(MIN_SIZE) @Max(MAX_HEIGHT) int height,
+      @RequestParam(value = TILE_SIZE_PARAM, required = false)
+          @Min(MIN_TILE_SIZE)
+          @Max(MAX_TILE_SIZE)
+          Integer tileSize)
       throws IOException {
-    String id = chartaService.createCharta(width, height).toString();
-    return new ResponseEntity<>(id, HttpStatus.CREATED);
+    Integer id =
+        tileSize == null
+            ? chartaService.createCharta(width, height)
+            : chartaService.createCharta(width, height, tileSize);
+    return new ResponseEntity<>(id.toString(), HttpStatus.CREATED);
   }
 
   /**
-   * Записывает изображение в область харты по заданным координатам и размерам сторон.
+   * Записывает изображение в область харты по заданным координатам и размерам сторон. Место в пуле
+   * записи занимается до чтения тела запроса, поэтому при заполненном пуле запрос отклоняется, не
+   * читая тело. Тело принимается в {@link SpooledBody}: небольшие тела в памяти, большие во
+   * временном файле, поэтому размер изображения не ограничен размером кучи.
    *
    * @param id идентификатор харты
    * @param x координата области по оси X
    * @param y координата области по оси Y
    * @param width ширина области
    * @param height высота области
-   * @param image записываемое изображение
-   * @return ответ с HTTP-статусом 200
-   * @throws ChartaNotFoundException если харты с заданным идентификатором не существует
-   * @throws ImageNoCrossingException если заданная область не пересекается с хартой
-   * @throws IOException если возникло исключение при работе с файловой системой
+   * @param image поток с записываемым изображением
+   * @return ответ с HTTP-статусом 200, завершаемый исключениями {@link ChartaNotFoundException},
+   *     {@link ImageNoCrossingException}, {@link InvalidImageException} или {@link IOException}
+   * @throws IOException если не удалось принять тело запроса
+   * @throws ServiceOverloadedException если пул записи заполнен
    */
   @PostMapping(value = "/{id}", consumes = MIME_BMP)
-  public ResponseEntity<?> savePart(
+  public CompletableFuture<ResponseEntity<?>> savePart(
       @PathVariable int id,
       @RequestParam(X_PARAM) @Min(MIN_COORDINATE) int x,
       @RequestParam(Y_PARAM) @Min(MIN_COORDINATE) int y,
       @RequestParam(WIDTH_PARAM) @Min(MIN_SIZE) @Max(MAX_WIDTH) int width,
       @RequestParam(HEIGHT_PARAM) @Min(MIN_SIZE) @Max(MAX_HEIGHT) int height,
-      @RequestBody byte[] image)
-      throws ChartaNotFoundException, ImageNoCrossingException, IOException {
-    chartaService.saveChartaPart(id, image, x, y, width, height);
-    return new ResponseEntity<>(HttpStatus.OK);
+      InputStream image)
+      throws IOException, ServiceOverloadedException {
+    return submitWrite(
+        image,
+        body -> {
+          chartaService.saveChartaPart(id, body, x, y, width, height);
+          return new ResponseEntity<>(HttpStatus.OK);
+        });
+  }
+
+  /**
+   * Записывает в харту пакет изображений. Формат пакета описан в {@link
+   * ChartaService#saveChartaParts(int, InputStream)}. Изображения, попадающие в один фрагмент
+   * харты, накладываются на него в памяти, и фрагмент перезаписывается один раз. Заголовок {@code
+   * X-Applied-Count} ответа содержит количество сохранённых записей: если пакет содержит
+   * некорректную запись, сохраняются только записи до неё, и ответ имеет HTTP-статус 400. Тело
+   * запроса, как в {@link ChartaController#savePart}, читается только после того, как занято место
+   * в пуле записи.
+   *
+   * @param id идентификатор харты
+   * @param batch поток с пакетом изображений
+   * @return ответ с HTTP-статусом 200, завершаемый исключениями {@link ChartaNotFoundException},
+   *     {@link PartialBatchException} или {@link IOException}
+   * @throws IOException если не удалось принять тело запроса
+   * @throws ServiceOverloadedException если пул записи заполнен
+   */
+  @PostMapping(value = "/{id}/batch", consumes = MIME_OCTET_STREAM)
+  public CompletableFuture<ResponseEntity<?>> saveParts(@PathVariable int id, InputStream batch)
+      throws IOException, ServiceOverloadedException {
+    return submitWrite(
+        batch,
+        body -> {
+          int applied = chartaService.saveChartaParts(id, body);
+          return ResponseEntity.ok()
+              .header(APPLIED_COUNT_HEADER, Integer.toString(applied))
+              .build();
+        });
   }
 
   /**
    * Возвращает изображение харты в указанной области. Если часть области лежит вне харты, эта часть
-   * закрашивается чёрным цветом.
+   * закрашивается чёрным цветом. Изображение записывается в ответ по мере чтения, не собираясь в
+   * памяти целиком. Если задан уровень пирамиды, изображение читается из копии харты, уменьшенной
+   * в {@code 2^level} раз, а координаты и размеры области задаются в пикселях этой копии.
+   *
+   * <p>Ответ содержит тег {@code ETag}, вычисленный по версиям фрагментов области. Если тег
+   * совпадает с одним из тегов заголовка {@code If-None-Match}, изображение не читается, а
+   * возвращается ответ с HTTP-статусом 304.
    *
    * @param id идентификатор харты
+   * @param level номер уровня пирамиды
    * @param x координата области по оси X
    * @param y координата области по оси Y
    * @param width ширина области
    * @param height высота области
-   * @return ответ с изображением области и HTTP-статусом 200
+   * @param ifNoneMatch значение заголовка {@code If-None-Match} или {@code null}
+   * @return ответ с изображением области и HTTP-статусом 200 или пустой ответ с HTTP-статусом 304
    * @throws ChartaNotFoundException если харты с заданным идентификатором не существует
+   * @throws InvalidLevelException если у харты нет уровня с заданным номером
+   * @throws PyramidNotReadyException если пирамида харты ещё строится
    * @throws ImageNoCrossingException если заданная область не пересекается с хартой
-   * @throws IOException если возникло исключение при работе с файловой системой
+   * @throws ServiceOverloadedException если пул чтения заполнен
    */
   @GetMapping(value = "/{id}", produces = MIME_BMP)
-  public ResponseEntity<byte[]> getPart(
+  public ResponseEntity<StreamingResponseBody> getPart(
       @PathVariable int id,
+      @RequestParam(value = LEVEL_PARAM, defaultValue = "0") @Min(MIN_LEVEL) @Max(MAX_LEVEL)
+          int level,
       @RequestParam(X_PARAM) @Min(MIN_COORDINATE) int x,
       @RequestParam(Y_PARAM) @Min(MIN_COORDINATE) int y,
       @RequestParam(WIDTH_PARAM) @Min(MIN_SIZE) @Max(MAX_PART_SIZE) int width,
-      @RequestParam(HEIGHT_PARAM) @Min(MIN_SIZE) @Max(MAX_PART_SIZE) int height)
-      throws ChartaNotFoundException, ImageNoCrossingException, IOException {
-    byte[] part = chartaService.getChartaPart(id, x, y, width, height);
-    return new ResponseEntity<>(part, HttpStatus.OK);
+      @RequestParam(HEIGHT_PARAM) @Min(MIN_SIZE) @Max(MAX_PART_SIZE) int height,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
+      throws ChartaNotFoundException, InvalidLevelException, PyramidNotReadyException,
+          ImageNoCrossingException, ServiceOverloadedException {
+    TaggedBmpWriter part = chartaService.getTaggedChartaPartWriter(id, level, x, y, width, height);
+    String tag = part.getTag();
+
+    if (ifNoneMatch != null && matchesTag(ifNoneMatch, tag)) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(tag).build();
+    }
+
+    BmpWriter writer = part.getWriter();
+    return ResponseEntity.ok()
+        .eTag(tag)
+        .contentLength(new BmpHeader(width, height).getFileSize())
+        .body(withReadPermit(writer::writeTo));
   }
 
   /**
-   * Удаляет харту с заданным идентификатором.
+   * Возвращает изображения нескольких областей харты одним ответом в формате {@code
+   * multipart/mixed}. Каждая область задаётся параметром {@code window} вида {@code
+   * x,y,width,height}, части ответа идут в порядке параметров. Фрагменты хранилища, общие для
+   * нескольких областей, читаются один раз.
    *
    * @param id идентификатор харты
-   * @return ответ с HTTP-статусом 200
+   * @param windows области в формате {@code x,y,width,height}
+   * @return ответ с изображениями областей и HTTP-статусом 200
    * @throws ChartaNotFoundException если харты с заданным идентификатором не существует
-   * @throws IOException если возникло исключение при работе с файловой системой
+   * @throws ImageNoCrossingException если одна из областей не пересекается с хартой
+   * @throws ServiceOverloadedException если пул чтения заполнен
+   */
+  @GetMapping("/{id}/batch")
+  public ResponseEntity<StreamingResponseBody> getParts(
+      @PathVariable int id,
+      @RequestParam(WINDOW_PARAM) @Size(min = MIN_SIZE, max = MAX_WINDOWS)
+          List<@Pattern(regexp = WINDOW_PATTERN) String> windows)
+      throws ChartaNotFoundException, ImageNoCrossingException, ServiceOverloadedException {
+    List<Rectangle> areas = new ArrayList<>(windows.size());
+
+    for (String window : windows) {
+      areas.add(parseWindow(window));
+    }
+
+    List<BmpWriter> writers = chartaService.getChartaPartWriters(id, areas);
+    String boundary = UUID.randomUUID().toString();
+    List<byte[]> headers = new ArrayList<>(areas.size());
+    long contentLength = getClosingDelimiter(boundary).length;
+
+    for (Rectangle area : areas) {
+      long fileSize = new BmpHeader(area.width, area.height).getFileSize();
+      byte[] header = getPartHeader(boundary, area, fileSize);
+
+      headers.add(header);
+      contentLength += header.length + fileSize + CRLF.length();
+    }
+
+    return ResponseEntity.ok()
+        .header(HttpHeaders.CONTENT_TYPE, MIME_MULTIPART_MIXED + "; boundary=" + boundary)
+        .contentLength(contentLength)
+        .body(withReadPermit(stream -> writeParts(stream, boundary, headers, writers)));
+  }
+
+  /**
+   * Выполняет задачу с телом запроса в пуле записи. Сначала занимается место в пуле, и только
+   * затем принимается тело запроса, поэтому при заполненном пуле тело не читается. Место
+   * освобождается, если тело не удалось принять, а тело закрывается, когда задача завершена или
+   * отклонена.
+   *
+   * @param input поток с телом запроса
+   * @param task задача, читающая принятое тело запроса
+   * @return ответ задачи
+   * @throws IOException если не удалось принять тело запроса
+   * @throws ServiceOverloadedException если пул записи заполнен
+   */
+  private CompletableFuture<ResponseEntity<?>> submitWrite(InputStream input, BodyTask task)
+      throws IOException, ServiceOverloadedException {
+    RequestPool.Permit permit = writeRequestPool.acquire();
+    SpooledBody body;
+
+    try {
+      body = SpooledBody.receive(input, bodyMemoryThreshold);
+    } catch (IOException | RuntimeException e) {
+      permit.close();
+      throw e;
+    }
+
+    try {
+      return writeRequestPool.submit(
+          permit,
+          () -> {
+            try (body) {
+              return task.call(body.getStream());
+            }
+          });
+    } catch (ServiceOverloadedException e) {
+      body.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Занимает место в пуле чтения под запись тела ответа. Место освобождается, когда тело записано
+   * или запись завершилась ошибкой.
+   *
+   * @param body тело ответа
+   * @return тело ответа, освобождающее место в пуле после записи
+   * @throws ServiceOverloadedException если пул чтения заполнен
+   */
+  private StreamingResponseBody withReadPermit(StreamingResponseBody body)
+      throws ServiceOverloadedException {
+    RequestPool.Permit permit = readRequestPool.acquire();
+
+    return stream -> {
+      try (permit) {
+        body.writeTo(stream);
+      }
+    };
+  }
+
+  /**
+   * Проверяет, совпадает ли тег с одним из тегов заголовка {@code If-None-Match}. Теги сравниваются
+   * без учёта признака слабого тега.
+   *
+   * @param ifNoneMatch значение заголовка {@code If-None-Match}
+   * @param tag тег в кавычках
+   * @return {@code true}, если тег совпадает
+   */
+  private boolean matchesTag(String ifNoneMatch, String tag) {
+    for (String candidate : ifNoneMatch.split(TAG_SEPARATOR)) {
+      candidate = candidate.trim();
+
+      if (candidate.startsWith(WEAK_TAG_PREFIX)) {
+        candidate = candidate.substring(WEAK_TAG_PREFIX.length());
+      }
+
+      if (candidate.equals(ANY_TAG) || candidate.equals(tag)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Разбирает область из параметра {@code window}.
+   *
+   * @param window область в формате {@code x,y,width,height}
+   * @return область
+   * @throws ConstraintViolationException если ширина или высота области вне допустимых пределов
+   */
+  private Rectangle parseWindow(String window) {
+    String[] values = window.split(WINDOW_SEPARATOR);
+    Rectangle area =
+        new Rectangle(
+            Integer.parseInt(values[0]),
+            Integer.parseInt(values[1]),
+            Integer.parseInt(values[2]),
+            Integer.parseInt(values[3]));
+
+    if (area.width < MIN_SIZE
+        || area.width > MAX_PART_SIZE
+        || area.height < MIN_SIZE
+        || area.height > MAX_PART_SIZE) {
+      throw new ConstraintViolationException(INVALID_WINDOW_MESSAGE + window, Set.of());
+    }
+
+    return area;
+  }
+
+  /**
+   * Возвращает заголовок части составного ответа вместе с предшествующим ему разделителем.
+   *
+   * @param boundary разделитель частей
+   * @param area область
+   * @param fileSize размер BMP-изображения области в байтах
+   * @return байты заголовка
+   */
+  private byte[] getPartHeader(String boundary, Rectangle area, long fileSize) {
+    String header =
+        "--" + boundary + CRLF
+            + HttpHeaders.CONTENT_TYPE + ": " + MIME_BMP + CRLF
+            + HttpHeaders.CONTENT_LENGTH + ": " + fileSize + CRLF
+            + HttpHeaders.CONTENT_DISPOSITION + ": inline; filename=\""
+            + area.x + "_" + area.y + "_" + area.width + "_" + area.height + ".bmp\"" + CRLF
+            + CRLF;
+
+    return header.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Возвращает завершающий разделитель составного ответа.
+   *
+   * @param boundary разделитель частей
+   * @return байты завершающего разделителя
+   */
+  private byte[] getClosingDelimiter(String boundary) {
+    return ("--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Записывает части составного ответа в поток.
+   *
+   * @param stream поток для записи
+   * @param boundary разделитель частей
+   * @param headers заголовки частей
+   * @param writers объекты для записи изображений частей
+   * @throws IOException если возникло исключение при чтении изображений или записи в поток
+   */
+  private void writeParts(
+      OutputStream stream, String boundary, List<byte[]> headers, List<BmpWriter> writers)
+      throws IOException {
+    for (int i = 0; i < writers.size(); i++) {
+      stream.write(headers.get(i));
+      writers.get(i).writeTo(stream);
+      stream.write(CRLF.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    stream.write(getClosingDelimiter(boundary));
+  }
+
+  /**
+   * Удаляет харту с заданным идентификатором.
+   *
+   * @param id идентификатор харты
+   * @return ответ с HTTP-статусом 200, завершаемый исключениями {@link ChartaNotFoundException}
+   *     или {@link IOException}
+   * @throws ServiceOverloadedException если пул записи заполнен
    */
   @DeleteMapping("/{id}")
-  public ResponseEntity<?> delete(@PathVariable int id)
-      throws ChartaNotFoundException, IOException {
-    chartaService.deleteCharta(id);
-    return new ResponseEntity<>(HttpStatus.OK);
+  public CompletableFuture<ResponseEntity<?>> delete(@PathVariable int id)
+      throws ServiceOverloadedException {
+    return writeRequestPool.submit(
+        () -> {
+          chartaService.deleteCharta(id);
+          return new ResponseEntity<>(HttpStatus.OK);
+        });
+  }
+
+  /** Задача пула записи, читающая принятое тело запроса. */
+  @FunctionalInterface
+  private interface BodyTask {
+
+    /**
+     * Выполняет задачу.
+     *
+     * @param body поток с принятым телом запроса
+     * @return ответ
+     * @throws Exception если задача завершилась с ошибкой
+     */
+    ResponseEntity<?> call(InputStream body) throws Exception;
   }
 }
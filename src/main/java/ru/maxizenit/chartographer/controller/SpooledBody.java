@@ -0,0 +1,104 @@
+package ru.maxizenit.chartographer.controller;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Класс {@code SpooledBody} представляет тело запроса, целиком принятое от клиента до того, как
+ * запрос передаётся в пул обработки, поэтому медленный клиент не занимает поток пула. Тела не
+ * больше заданного порога хранятся в памяти, а большие записываются во временный файл, который
+ * удаляется при закрытии.
+ */
+public class SpooledBody implements AutoCloseable {
+
+  /** Префикс названий временных файлов. */
+  private static final String TEMP_FILE_PREFIX = "chartographer-body-";
+
+  /** Тело запроса в памяти или {@code null}, если оно записано во временный файл. */
+  private final byte[] bytes;
+
+  /** Временный файл с телом запроса или {@code null}, если тело хранится в памяти. */
+  private final Path file;
+
+  /** Открытый поток с телом запроса или {@code null}, если поток ещё не открыт. */
+  private InputStream stream;
+
+  private SpooledBody(byte[] bytes, Path file) {
+    this.bytes = bytes;
+    this.file = file;
+  }
+
+  /**
+   * Читает тело запроса из потока до конца.
+   *
+   * @param input поток с телом запроса
+   * @param memoryThreshold наибольший размер тела в байтах, которое хранится в памяти
+   * @return принятое тело запроса
+   * @throws IOException если возникло исключение при чтении потока или записи временного файла
+   */
+  public static SpooledBody receive(InputStream input, int memoryThreshold) throws IOException {
+    byte[] head = input.readNBytes(memoryThreshold);
+    int next = input.read();
+
+    if (next < 0) {
+      return new SpooledBody(head, null);
+    }
+
+    Path file = Files.createTempFile(TEMP_FILE_PREFIX, null);
+
+    try (OutputStream output = Files.newOutputStream(file)) {
+      output.write(head);
+      output.write(next);
+      input.transferTo(output);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(file);
+      throw e;
+    }
+
+    return new SpooledBody(null, file);
+  }
+
+  /**
+   * Возвращает поток с телом запроса. Поток открывается при первом вызове и закрывается вместе с
+   * телом.
+   *
+   * @return поток с телом запроса
+   * @throws IOException если не удалось открыть временный файл
+   */
+  public InputStream getStream() throws IOException {
+    if (stream == null) {
+      stream = file == null ? new ByteArrayInputStream(bytes) : Files.newInputStream(file);
+    }
+
+    return stream;
+  }
+
+  /**
+   * Возвращает временный файл с телом запроса.
+   *
+   * @return файл или {@code null}, если тело хранится в памяти
+   */
+  Path getFile() {
+    return file;
+  }
+
+  /** Закрывает поток с телом запроса и удаляет временный файл. */
+  @Override
+  public void close() {
+    try {
+      if (stream != null) {
+        stream.close();
+      }
+
+      if (file != null) {
+        Files.deleteIfExists(file);
+      }
+    } catch (IOException e) {
+      file.toFile().deleteOnExit();
+    }
+  }
+}
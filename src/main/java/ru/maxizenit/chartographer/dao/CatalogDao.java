@@ -0,0 +1,54 @@
+package ru.maxizenit.chartographer.dao;
+
+import ru.maxizenit.chartographer.model.Charta;
+
+import java.util.List;
+
+/**
+ * DAO-интерфейс для каталога харт. Каталог хранит сведения о хартах и их фрагментах, а также
+ * счётчики идентификаторов, и переживает перезапуск сервиса.
+ */
+public interface CatalogDao {
+
+  /**
+   * Возвращает харты, восстановленные из каталога при запуске.
+   *
+   * @return список харт
+   */
+  List<Charta> getChartas();
+
+  /**
+   * Возвращает идентификатор, который будет присвоен следующей созданной харте.
+   *
+   * @return следующий идентификатор харты
+   */
+  int getNextChartaId();
+
+  /**
+   * Возвращает идентификатор, который будет присвоен следующему сохранённому изображению.
+   *
+   * @return следующий идентификатор изображения
+   */
+  int getNextImageId();
+
+  /**
+   * Записывает в каталог новую харту: размеры, фрагменты и названия их изображений.
+   *
+   * @param charta харта
+   */
+  void save(Charta charta);
+
+  /**
+   * Записывает в каталог изменённое состояние харты, если она не была удалена.
+   *
+   * @param charta харта
+   */
+  void update(Charta charta);
+
+  /**
+   * Записывает в каталог удаление харты.
+   *
+   * @param id идентификатор харты
+   */
+  void delete(int id);
+}
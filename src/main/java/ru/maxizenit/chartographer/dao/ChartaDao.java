@@ -3,6 +3,8 @@ package ru.maxizenit.chartographer.dao;
 import ru.maxizenit.chartographer.exception.ChartaNotFoundException;
 import ru.maxizenit.chartographer.model.Charta;
 
+import java.util.List;
+
 /** DAO-интерфейс для харт. */
 public interface ChartaDao {
 
@@ -28,4 +30,25 @@ public interface ChartaDao {
    * @param charta сохраняемый объект харты
    */
   void save(Charta charta);
+
+  /**
+   * Сохраняет изменения харты, например появившиеся у её фрагментов изображения.
+   *
+   * @param charta изменённый объект харты
+   */
+  void update(Charta charta);
+
+  /**
+   * Возвращает все харты хранилища.
+   *
+   * @return список харт
+   */
+  List<Charta> getChartas();
+
+  /**
+   * Возвращает количество харт в хранилище.
+   *
+   * @return количество харт
+   */
+  int count();
 }
@@ -15,6 +15,33 @@ public interface ImageDao {
    */
   BufferedImage get(String name) throws IOException;
 
+  /**
+   * Возвращает область изображения по его названию.
+   *
+   * @param name название изображения
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param width ширина области
+   * @param height высота области
+   * @return изображение заданной области
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  BufferedImage getPart(String name, int x, int y, int width, int height) throws IOException;
+
+  /**
+   * Читает область изображения по его названию в переданное изображение, размер которого задаёт
+   * размер области. Изображение должно быть чёрным, иметь формат {@link
+   * BufferedImage#TYPE_3BYTE_BGR} и хранить строки подряд, как изображения из {@link
+   * ru.maxizenit.chartographer.raster.ImagePool}; после вызова оно не используется.
+   *
+   * @param name название изображения
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param part изображение, в которое читается область
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  void readPart(String name, int x, int y, BufferedImage part) throws IOException;
+
   /**
    * Удаляет изображение по его названию.
    *
@@ -32,6 +59,17 @@ public interface ImageDao {
    */
   String save(BufferedImage image) throws IOException;
 
+  /**
+   * Сохраняет в хранилище изображение заданного размера с чёрной заливкой и возвращает его
+   * название.
+   *
+   * @param width ширина
+   * @param height высота
+   * @return название, присвоенное изображению в файловой системе
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  String saveEmpty(int width, int height) throws IOException;
+
   /**
    * Обновляет изображение по его названию.
    *
@@ -40,4 +78,15 @@ public interface ImageDao {
    * @throws IOException если возникло исключение при работе с файловой системой
    */
   void update(BufferedImage image, String name) throws IOException;
+
+  /**
+   * Перезаписывает область изображения переданным изображением, начиная с заданных координат.
+   *
+   * @param part записываемое изображение
+   * @param name название изображения
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  void updatePart(BufferedImage part, String name, int x, int y) throws IOException;
 }
@@ -0,0 +1,41 @@
+package ru.maxizenit.chartographer.dao;
+
+import ru.maxizenit.chartographer.bmp.BmpHeader;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * DAO-интерфейс для изображений, которые хранятся в виде BMP-файлов и могут передаваться клиенту
+ * без декодирования. Реализуется только теми {@link ImageDao}, чей формат хранения совпадает с
+ * форматом ответа.
+ */
+public interface TransferableImageDao extends ImageDao {
+
+  /**
+   * Проверяет, можно ли передать файл изображения клиенту без декодирования: файл начинается
+   * ровно с заданного заголовка и имеет указанный в нём размер.
+   *
+   * @param name название изображения
+   * @param header заголовок, с которым отдаётся изображение
+   * @return {@code true}, если участки файла можно передавать методом {@link
+   *     TransferableImageDao#transferTo(String, long, long, WritableByteChannel)}
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  boolean supportsTransfer(String name, BmpHeader header) throws IOException;
+
+  /**
+   * Передаёт участок файла изображения в канал без копирования через память приложения.
+   * Вызывается только для изображений, для которых {@link
+   * TransferableImageDao#supportsTransfer(String, BmpHeader)} вернул {@code true}.
+   *
+   * @param name название изображения
+   * @param position смещение участка от начала файла
+   * @param count размер участка в байтах
+   * @param target канал для записи
+   * @throws IOException если файл оказался короче участка или возникло исключение при работе с
+   *     файловой системой или записи в канал
+   */
+  void transferTo(String name, long position, long count, WritableByteChannel target)
+      throws IOException;
+}
@@ -0,0 +1,366 @@
+package ru.maxizenit.chartographer.dao.impl;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ru.maxizenit.chartographer.ChartographerApplication;
+import ru.maxizenit.chartographer.bmp.BmpEncoder;
+import ru.maxizenit.chartographer.bmp.BmpHeader;
+import ru.maxizenit.chartographer.dao.CatalogDao;
+import ru.maxizenit.chartographer.dao.ImageDao;
+import ru.maxizenit.chartographer.dao.TransferableImageDao;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Реализация {@link ImageDao}, хранящая изображения в BMP-файлах и читающая или записывающая
+ * позиционными операциями {@link FileChannel} только те участки строк, которые покрывает
+ * запрошенная область. Файлы не отображаются в память: записи проходят через кэш страниц так же,
+ * как записи журнала каталога, а освобождение ресурсов не зависит от сборщика мусора.
+ */
+@Service
+public class BmpImageDaoImpl implements TransferableImageDao {
+
+  /** Сообщение о выходе области за границы изображения. */
+  private static final String OUT_OF_BOUNDS_MESSAGE = "Область выходит за границы изображения ";
+
+  /** BMP-формат изображений. */
+  private static final String BMP_FORMAT = "bmp";
+
+  /** Путь к папке изображений. */
+  private final String imagesPath;
+
+  /** Счётчик для присвоения уникального пути файлу изображения. */
+  private static volatile int currentId;
+
+  @Autowired
+  public BmpImageDaoImpl(CatalogDao catalogDao) {
+    currentId = catalogDao.getNextImageId();
+    imagesPath = ChartographerApplication.contentPath;
+  }
+
+  @Override
+  public BufferedImage get(String name) throws IOException {
+    try (FileChannel channel = FileChannel.open(createPathByName(name), StandardOpenOption.READ)) {
+      BmpHeader header = readHeader(channel);
+      BufferedImage image = createImage(header.getWidth(), header.getHeight());
+
+      readPart(channel, header, name, 0, 0, image);
+      return image;
+    }
+  }
+
+  @Override
+  public BufferedImage getPart(String name, int x, int y, int width, int height)
+      throws IOException {
+    BufferedImage part = createImage(width, height);
+
+    readPart(name, x, y, part);
+    return part;
+  }
+
+  @Override
+  public void readPart(String name, int x, int y, BufferedImage part) throws IOException {
+    try (FileChannel channel = FileChannel.open(createPathByName(name), StandardOpenOption.READ)) {
+      readPart(channel, readHeader(channel), name, x, y, part);
+    }
+  }
+
+  @Override
+  public boolean supportsTransfer(String name, BmpHeader header) throws IOException {
+    try (FileChannel channel = FileChannel.open(createPathByName(name), StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate(BmpHeader.SIZE);
+
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, buffer.position()) < 0) {
+          break;
+        }
+      }
+
+      return channel.size() == header.getFileSize()
+          && buffer.flip().equals(header.toByteBuffer());
+    }
+  }
+
+  @Override
+  public void transferTo(String name, long position, long count, WritableByteChannel target)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(createPathByName(name), StandardOpenOption.READ)) {
+      while (count > 0) {
+        long transferred = channel.transferTo(position, count, target);
+
+        if (transferred <= 0) {
+          throw new EOFException(
+              String.format("Файл изображения короче %d байт", position + count));
+        }
+
+        position += transferred;
+        count -= transferred;
+      }
+    }
+  }
+
+  @Override
+  public void delete(String name) throws IOException {
+    Files.delete(createPathByName(name));
+  }
+
+  @Override
+  public synchronized String save(BufferedImage image) throws IOException {
+    Path path = createNewPath();
+
+    try (FileChannel channel =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      writeImage(channel, image);
+    }
+
+    return path.getFileName().toString();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Пиксельные данные не записываются: файл расширяется до нужного размера, и незаписанная
+   * область читается как нулевые байты, то есть как чёрный цвет. На файловых системах с поддержкой
+   * разреженных файлов такая область не занимает места на диске.
+   */
+  @Override
+  public synchronized String saveEmpty(int width, int height) throws IOException {
+    Path path = createNewPath();
+    BmpHeader header = new BmpHeader(width, height);
+
+    try (FileChannel channel =
+        FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      channel.write(header.toByteBuffer(), 0);
+      channel.write(ByteBuffer.allocate(1), header.getFileSize() - 1);
+    }
+
+    return path.getFileName().toString();
+  }
+
+  @Override
+  public void update(BufferedImage image, String name) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(
+            createPathByName(name),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      writeImage(channel, image);
+    }
+  }
+
+  @Override
+  public void updatePart(BufferedImage part, String name, int x, int y) throws IOException {
+    int width = part.getWidth();
+    int height = part.getHeight();
+
+    try (FileChannel channel =
+        FileChannel.open(
+            createPathByName(name), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      BmpHeader header = readHeader(channel);
+      checkBounds(header, name, x, y, width, height);
+
+      byte[] pixels = BmpEncoder.getPixels(part);
+      int rowLength = width * BmpHeader.BYTES_PER_PIXEL;
+
+      for (int row = 0; row < height; row++) {
+        writeFully(
+            channel,
+            ByteBuffer.wrap(pixels, row * rowLength, rowLength),
+            header.getRowOffset(y + row) + (long) x * BmpHeader.BYTES_PER_PIXEL);
+      }
+    }
+  }
+
+  /**
+   * Записывает изображение в файл целиком, вместе с заголовком. Строки дополняются нулями до
+   * выравнивания и записываются по одной.
+   *
+   * @param channel канал файла изображения
+   * @param image записываемое изображение
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void writeImage(FileChannel channel, BufferedImage image) throws IOException {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    BmpHeader header = new BmpHeader(width, height);
+    byte[] pixels = BmpEncoder.getPixels(image);
+    int rowLength = width * BmpHeader.BYTES_PER_PIXEL;
+    ByteBuffer row = ByteBuffer.allocate(header.getRowSize());
+
+    channel.truncate(header.getFileSize());
+    writeFully(channel, header.toByteBuffer(), 0);
+
+    for (int y = 0; y < height; y++) {
+      row.clear();
+      row.put(pixels, y * rowLength, rowLength).clear();
+      writeFully(channel, row, header.getRowOffset(y));
+    }
+  }
+
+  /**
+   * Читает участки строк, покрытые областью, в переданное изображение.
+   *
+   * @param channel канал файла изображения
+   * @param header заголовок изображения
+   * @param name название изображения
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param part изображение, в которое читается область, размером с область
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void readPart(
+      FileChannel channel, BmpHeader header, String name, int x, int y, BufferedImage part)
+      throws IOException {
+    int width = part.getWidth();
+    int height = part.getHeight();
+
+    checkBounds(header, name, x, y, width, height);
+
+    byte[] pixels = ((DataBufferByte) part.getRaster().getDataBuffer()).getData();
+    int rowLength = width * BmpHeader.BYTES_PER_PIXEL;
+
+    for (int row = 0; row < height; row++) {
+      readFully(
+          channel,
+          ByteBuffer.wrap(pixels, row * rowLength, rowLength),
+          header.getRowOffset(y + row) + (long) x * BmpHeader.BYTES_PER_PIXEL);
+    }
+  }
+
+  /**
+   * Читает из файла заданное количество байт, начиная с заданной позиции.
+   *
+   * @param channel канал файла
+   * @param buffer буфер, который требуется заполнить целиком
+   * @param position позиция в файле
+   * @throws IOException если файл закончился раньше или возникло исключение при работе с файловой
+   *     системой
+   */
+  private void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    long start = position - buffer.position();
+
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, start + buffer.position()) < 0) {
+        throw new EOFException();
+      }
+    }
+  }
+
+  /**
+   * Записывает в файл оставшиеся байты буфера, начиная с заданной позиции.
+   *
+   * @param channel канал файла
+   * @param buffer записываемый буфер
+   * @param position позиция в файле
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    long start = position - buffer.position();
+
+    while (buffer.hasRemaining()) {
+      channel.write(buffer, start + buffer.position());
+    }
+  }
+
+  /**
+   * Читает заголовок BMP-файла.
+   *
+   * @param channel канал файла изображения
+   * @return заголовок изображения
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private BmpHeader readHeader(FileChannel channel) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(BmpHeader.SIZE);
+
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, buffer.position()) < 0) {
+        break;
+      }
+    }
+
+    return BmpHeader.read(buffer.flip());
+  }
+
+  /**
+   * Проверяет, что область целиком лежит внутри изображения.
+   *
+   * @param header заголовок изображения
+   * @param name название изображения
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param width ширина области
+   * @param height высота области
+   */
+  private void checkBounds(BmpHeader header, String name, int x, int y, int width, int height) {
+    if (x < 0
+        || y < 0
+        || width <= 0
+        || height <= 0
+        || x + width > header.getWidth()
+        || y + height > header.getHeight()) {
+      throw new IllegalArgumentException(OUT_OF_BOUNDS_MESSAGE + name);
+    }
+  }
+
+  /**
+   * Создаёт полный путь к существующему изображению по его названию.
+   *
+   * @param name название изображения
+   * @return путь в файловой системе для изображения
+   */
+  private Path createPathByName(String name) {
+    return Path.of(imagesPath, name);
+  }
+
+  /**
+   * Возвращает путь к новому изображению, который ещё не занят другим файлом.
+   *
+   * @return путь в файловой системе для нового изображения
+   */
+  private Path createNewPath() {
+    Path path = createPathById(currentId++);
+
+    while (Files.exists(path)) {
+      path = createPathById(currentId++);
+    }
+
+    return path;
+  }
+
+  /**
+   * Создаёт полный путь к новому изображению по заданному идентификатору.
+   *
+   * @param id уникальный идентификатор изображения
+   * @return путь в файловой системе для нового изображения
+   */
+  private Path createPathById(int id) {
+    return Path.of(imagesPath, String.format("%d.%s", id, BMP_FORMAT));
+  }
+
+  /**
+   * Создаёт чёрное изображение заданного размера.
+   *
+   * @param width ширина
+   * @param height высота
+   * @return изображение
+   */
+  private BufferedImage createImage(int width, int height) {
+    return new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+  }
+}
@@ -0,0 +1,1022 @@
+package ru.maxizenit.chartographer.dao.impl;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.maxizenit.chartographer.ChartographerApplication;
+import ru.maxizenit.chartographer.dao.CatalogDao;
+import ru.maxizenit.chartographer.model.Charta;
+import ru.maxizenit.chartographer.model.Fragment;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Реализация {@link CatalogDao}, хранящая каталог в папке контента в виде снимка и журнала
+ * упреждающей записи. Создание и удаление харты дописывают в конец журнала запись о харте
+ * целиком, а появление изображений у фрагментов — запись только о новых изображениях. После
+ * заданного количества записей журнал переименовывается, вместо него начинается новый, а
+ * состояние каталога переносится в новый снимок в фоновом потоке, после чего старый журнал
+ * удаляется. При запуске читается снимок, после чего к нему применяются записи старого, если он
+ * остался, и нового журналов.
+ *
+ * <p>Записи журнала снабжены контрольной суммой: недописанная при сбое запись в конце журнала
+ * отбрасывается. Повторное применение записей к снимку, который уже их содержит, не меняет
+ * результата, поэтому снимок может включать изменения, сделанные после переименования журнала, а
+ * сбой между заменой снимка и удалением старого журнала безопасен.
+ *
+ * <p>Записи о создании и удалении харт сбрасываются на диск, если это задано настройкой, уже
+ * после того, как монитор каталога отпущен. Записи о новых изображениях не сбрасываются: как и
+ * сами изображения фрагментов, они попадают на диск вместе со следующим сбросом, и после сбоя
+ * фрагмент может остаться чёрным.
+ *
+ * <p>Если папка контента не задана, каталог ничего не сохраняет.
+ */
+@Slf4j
+@Service
+public class CatalogDaoImpl implements CatalogDao {
+
+  /** Название папки каталога внутри папки контента. */
+  private static final String CATALOG_DIRECTORY = "catalog";
+
+  /** Название файла снимка. */
+  private static final String SNAPSHOT_FILE = "snapshot";
+
+  /** Название временного файла, в который пишется новый снимок. */
+  private static final String SNAPSHOT_TEMP_FILE = "snapshot.tmp";
+
+  /** Название файла журнала. */
+  private static final String LOG_FILE = "wal";
+
+  /** Название файла журнала, записи которого переносятся в создаваемый снимок. */
+  private static final String PREVIOUS_LOG_FILE = "wal.prev";
+
+  /** Сигнатура файла снимка. */
+  private static final int SNAPSHOT_SIGNATURE = 0x43525441;
+
+  /** Версия формата снимка и записей журнала. */
+  private static final int FORMAT_VERSION = 2;
+
+  /** Версия формата, в которой харты сохранялись без уровней пирамиды. */
+  private static final int FORMAT_VERSION_WITHOUT_LEVELS = 1;
+
+  /** Тип записи журнала о сохранении харты без уровней пирамиды, оставшийся от версии 1. */
+  private static final byte SAVE_RECORD_WITHOUT_LEVELS = 1;
+
+  /** Тип записи журнала об удалении харты. */
+  private static final byte DELETE_RECORD = 2;
+
+  /** Тип записи журнала о сохранении харты. */
+  private static final byte SAVE_RECORD = 3;
+
+  /** Тип записи журнала о появившихся у фрагментов харты изображениях. */
+  private static final byte IMAGE_RECORD = 4;
+
+  /** Размер заголовка записи журнала (длина и контрольная сумма) в байтах. */
+  private static final int RECORD_HEADER_SIZE = 8;
+
+  /** Сообщение о повреждённом снимке. */
+  private static final String CORRUPTED_SNAPSHOT_MESSAGE = "Снимок каталога повреждён: ";
+
+  /** Папка каталога или {@code null}, если каталог ничего не сохраняет. */
+  private final Path directory;
+
+  /** Количество записей журнала, после которого создаётся новый снимок. */
+  private final int snapshotInterval;
+
+  /** {@code true}, если каждая запись журнала сбрасывается на диск перед возвратом. */
+  private final boolean forceWrites;
+
+  /** Харты, содержащиеся в каталоге. */
+  private final Map<Integer, Charta> chartas;
+
+  /**
+   * Фрагменты, изображения которых уже записаны в журнал или снимок: по набору номеров фрагментов
+   * на харту и на каждый её уровень пирамиды.
+   */
+  private final Map<Integer, BitSet[]> loggedImages;
+
+  /** Поток создания снимков или {@code null}, если каталог ничего не сохраняет. */
+  private final ExecutorService snapshotter;
+
+  /** Создание последнего снимка в фоновом потоке или {@code null}, если снимков не было. */
+  private Future<?> snapshot;
+
+  /** Идентификатор, который будет присвоен следующей харте. */
+  private int nextChartaId;
+
+  /** Идентификатор, который будет присвоен следующему изображению. */
+  private int nextImageId;
+
+  /** Канал файла журнала. */
+  private FileChannel logChannel;
+
+  /** Количество записей в журнале. */
+  private int logRecords;
+
+  @Autowired
+  public CatalogDaoImpl(
+      @Value("${chartographer.catalog.snapshot-interval}") int snapshotInterval,
+      @Value("${chartographer.catalog.force-writes}") boolean forceWrites)
+      throws IOException {
+    this(
+        ChartographerApplication.contentPath == null
+            ? null
+            : Path.of(ChartographerApplication.contentPath, CATALOG_DIRECTORY),
+        snapshotInterval,
+        forceWrites);
+  }
+
+  public CatalogDaoImpl(Path directory, int snapshotInterval, boolean forceWrites)
+      throws IOException {
+    this.directory = directory;
+    this.snapshotInterval = snapshotInterval;
+    this.forceWrites = forceWrites;
+    chartas = new HashMap<>();
+    loggedImages = new HashMap<>();
+
+    if (directory != null) {
+      Files.createDirectories(directory);
+      readSnapshot();
+      replayLogs();
+
+      snapshotter =
+          Executors.newSingleThreadExecutor(
+              runnable -> {
+                Thread thread = new Thread(runnable, "catalog-snapshot");
+                thread.setDaemon(true);
+                return thread;
+              });
+    } else {
+      snapshotter = null;
+    }
+  }
+
+  @Override
+  public synchronized List<Charta> getChartas() {
+    return new ArrayList<>(chartas.values());
+  }
+
+  @Override
+  public synchronized int getNextChartaId() {
+    return nextChartaId;
+  }
+
+  @Override
+  public synchronized int getNextImageId() {
+    return nextImageId;
+  }
+
+  @Override
+  public void save(Charta charta) {
+    if (directory != null) {
+      byte[] payload = createSaveRecord(charta);
+      FileChannel channel;
+
+      synchronized (this) {
+        applySave(charta);
+        channel = appendRecord(payload);
+      }
+
+      force(channel);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>В журнал записываются только изображения, появившиеся у фрагментов после предыдущей записи
+   * о харте. Если у харты появились уровни пирамиды, харта записывается целиком. Если харта уже
+   * удалена из каталога, запись не делается, чтобы удалённая харта не восстановилась при
+   * следующем запуске.
+   */
+  @Override
+  public void update(Charta charta) {
+    if (directory == null) {
+      return;
+    }
+
+    BitSet[] logged;
+
+    synchronized (this) {
+      if (chartas.get(charta.getId()) != charta) {
+        return;
+      }
+
+      logged = loggedImages.get(charta.getId());
+    }
+
+    if (logged.length != getLevels(charta).size() + 1) {
+      byte[] payload = createSaveRecord(charta);
+      FileChannel channel;
+
+      synchronized (this) {
+        if (chartas.get(charta.getId()) != charta) {
+          return;
+        }
+
+        applySave(charta);
+        channel = appendRecord(payload);
+      }
+
+      force(channel);
+      return;
+    }
+
+    List<ImageAssignment> assignments = collectNewImages(charta, logged);
+
+    if (assignments.isEmpty()) {
+      return;
+    }
+
+    byte[] payload = createImageRecord(charta.getId(), assignments);
+
+    synchronized (this) {
+      if (chartas.get(charta.getId()) == charta) {
+        for (ImageAssignment assignment : assignments) {
+          nextImageId = Math.max(nextImageId, getImageId(assignment.getImageName()) + 1);
+        }
+
+        appendRecord(payload);
+      }
+    }
+  }
+
+  @Override
+  public void delete(int id) {
+    if (directory == null) {
+      return;
+    }
+
+    FileChannel channel;
+
+    synchronized (this) {
+      if (chartas.remove(id) == null) {
+        return;
+      }
+
+      loggedImages.remove(id);
+      channel = appendRecord(createDeleteRecord(id));
+    }
+
+    force(channel);
+  }
+
+  /**
+   * Дожидается создания снимка, начатого в фоновом потоке, переносит незафиксированные в снимке
+   * записи журнала в новый снимок и закрывает журнал.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @PreDestroy
+  public void close() throws IOException {
+    awaitSnapshot();
+
+    synchronized (this) {
+      if (logChannel != null) {
+        if (logRecords > 0 || Files.exists(directory.resolve(PREVIOUS_LOG_FILE))) {
+          writeSnapshot();
+        }
+
+        logChannel.close();
+        logChannel = null;
+      }
+    }
+
+    if (snapshotter != null) {
+      snapshotter.shutdown();
+    }
+  }
+
+  /** Дожидается создания снимка, начатого в фоновом потоке, если оно ещё не завершилось. */
+  void awaitSnapshot() {
+    Future<?> current;
+
+    synchronized (this) {
+      current = snapshot;
+    }
+
+    if (current == null) {
+      return;
+    }
+
+    try {
+      current.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      log.error("Не удалось создать снимок каталога", e.getCause());
+    }
+  }
+
+  /**
+   * Дописывает запись в конец журнала и при необходимости начинает создание нового снимка.
+   * Вызывается под монитором каталога.
+   *
+   * @param payload содержимое записи
+   * @return канал журнала, в который сделана запись
+   */
+  private FileChannel appendRecord(byte[] payload) {
+    FileChannel channel = logChannel;
+
+    try {
+      CRC32 checksum = new CRC32();
+      checksum.update(payload);
+
+      ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+      record.putInt(payload.length).putInt((int) checksum.getValue()).put(payload).flip();
+
+      while (record.hasRemaining()) {
+        channel.write(record);
+      }
+
+      if (++logRecords >= snapshotInterval) {
+        startSnapshot();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    return channel;
+  }
+
+  /**
+   * Сбрасывает журнал на диск, если это задано настройкой. Журнал, закрытый после записи при
+   * начале создания снимка, уже сброшен на диск.
+   *
+   * @param channel канал журнала, в который сделана запись
+   */
+  private void force(FileChannel channel) {
+    if (!forceWrites) {
+      return;
+    }
+
+    try {
+      channel.force(false);
+    } catch (ClosedChannelException e) {
+      // Журнал сброшен на диск перед переименованием
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Начинает создание снимка в фоновом потоке. Журнал сбрасывается на диск и переименовывается,
+   * вместо него начинается новый, а снимок пишется по копии списков харт и фрагментов. Если
+   * старый журнал остался от неудавшегося снимка, он не заменяется, а новый журнал продолжается:
+   * снимок всё равно содержит записи обоих. Вызывается под монитором каталога.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void startSnapshot() throws IOException {
+    if (snapshot != null && !snapshot.isDone()) {
+      return;
+    }
+
+    Path previous = directory.resolve(PREVIOUS_LOG_FILE);
+
+    if (!Files.exists(previous)) {
+      logChannel.force(true);
+      logChannel.close();
+      Files.move(directory.resolve(LOG_FILE), previous, StandardCopyOption.ATOMIC_MOVE);
+      logChannel = openLog(LOG_FILE);
+    }
+
+    List<Charta> state = new ArrayList<>(chartas.size());
+    int chartaId = nextChartaId;
+    int imageId = nextImageId;
+
+    for (Charta charta : chartas.values()) {
+      state.add(copyCharta(charta));
+    }
+
+    logRecords = 0;
+    snapshot =
+        snapshotter.submit(
+            () -> {
+              writeSnapshotFile(state, chartaId, imageId);
+              Files.deleteIfExists(previous);
+              return null;
+            });
+  }
+
+  /**
+   * Читает снимок каталога, если он существует.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой или снимок
+   *     повреждён
+   */
+  private void readSnapshot() throws IOException {
+    Path path = directory.resolve(SNAPSHOT_FILE);
+
+    if (!Files.exists(path)) {
+      return;
+    }
+
+    try (InputStream stream = new BufferedInputStream(Files.newInputStream(path))) {
+      CheckedInputStream checked = new CheckedInputStream(stream, new CRC32());
+      DataInputStream input = new DataInputStream(checked);
+
+      int signature = input.readInt();
+      int version = input.readInt();
+
+      if (signature != SNAPSHOT_SIGNATURE
+          || version != FORMAT_VERSION && version != FORMAT_VERSION_WITHOUT_LEVELS) {
+        throw new IOException(CORRUPTED_SNAPSHOT_MESSAGE + path);
+      }
+
+      nextChartaId = input.readInt();
+      nextImageId = input.readInt();
+      int count = input.readInt();
+
+      for (int i = 0; i < count; i++) {
+        applySave(readCharta(input, version == FORMAT_VERSION));
+      }
+
+      int expected = (int) checked.getChecksum().getValue();
+
+      if (new DataInputStream(stream).readInt() != expected) {
+        throw new IOException(CORRUPTED_SNAPSHOT_MESSAGE + path);
+      }
+    }
+  }
+
+  /**
+   * Применяет к прочитанному снимку записи старого журнала, если он остался от незавершённого
+   * снимка, и текущего журнала, после чего открывает текущий журнал для записи. Если старый журнал
+   * был, состояние каталога сразу переносится в новый снимок.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void replayLogs() throws IOException {
+    Path previous = directory.resolve(PREVIOUS_LOG_FILE);
+
+    if (Files.exists(previous)) {
+      try (FileChannel channel = openLog(PREVIOUS_LOG_FILE)) {
+        replayLog(channel);
+      }
+    }
+
+    logChannel = openLog(LOG_FILE);
+    replayLog(logChannel);
+
+    if (Files.exists(previous)) {
+      writeSnapshot();
+    }
+  }
+
+  /**
+   * Открывает файл журнала для чтения и записи, создавая его при необходимости.
+   *
+   * @param name название файла журнала
+   * @return канал файла журнала
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private FileChannel openLog(String name) throws IOException {
+    return FileChannel.open(
+        directory.resolve(name),
+        StandardOpenOption.CREATE,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+  }
+
+  /**
+   * Применяет записи журнала к каталогу. Журнал обрезается по последней целой записи.
+   *
+   * @param channel канал файла журнала
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void replayLog(FileChannel channel) throws IOException {
+    long size = channel.size();
+    long position = 0;
+    ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+
+    while (position + RECORD_HEADER_SIZE <= size) {
+      readFully(channel, header.clear(), position);
+      int length = header.getInt(0);
+
+      if (length <= 0 || position + RECORD_HEADER_SIZE + length > size) {
+        break;
+      }
+
+      ByteBuffer payload = ByteBuffer.allocate(length);
+      readFully(channel, payload, position + RECORD_HEADER_SIZE);
+
+      CRC32 checksum = new CRC32();
+      checksum.update(payload.array());
+
+      if ((int) checksum.getValue() != header.getInt(4)) {
+        break;
+      }
+
+      applyRecord(new DataInputStream(new ByteArrayInputStream(payload.array())));
+      position += RECORD_HEADER_SIZE + length;
+      logRecords++;
+    }
+
+    if (position < size) {
+      channel.truncate(position);
+    }
+
+    channel.position(position);
+  }
+
+  /**
+   * Применяет запись журнала к каталогу.
+   *
+   * @param input поток с содержимым записи
+   * @throws IOException если возникло исключение при чтении записи
+   */
+  private void applyRecord(DataInput input) throws IOException {
+    byte type = input.readByte();
+
+    if (type == SAVE_RECORD || type == SAVE_RECORD_WITHOUT_LEVELS) {
+      applySave(readCharta(input, type == SAVE_RECORD));
+    } else if (type == DELETE_RECORD) {
+      int id = input.readInt();
+
+      chartas.remove(id);
+      loggedImages.remove(id);
+    } else if (type == IMAGE_RECORD) {
+      applyImages(input);
+    }
+  }
+
+  /**
+   * Применяет запись журнала о появившихся у фрагментов харты изображениях. Если харта удалена,
+   * запись пропускается.
+   *
+   * @param input поток с содержимым записи после типа
+   * @throws IOException если возникло исключение при чтении записи
+   */
+  private void applyImages(DataInput input) throws IOException {
+    int id = input.readInt();
+    int count = input.readInt();
+    Charta charta = chartas.get(id);
+    BitSet[] logged = loggedImages.get(id);
+
+    for (int i = 0; i < count; i++) {
+      int level = input.readInt();
+      int index = input.readInt();
+      String imageName = input.readUTF();
+
+      if (charta == null || level >= logged.length) {
+        continue;
+      }
+
+      List<Fragment> fragments = getFragments(getLevel(charta, level));
+
+      if (index < fragments.size()) {
+        fragments.get(index).setImageName(imageName);
+        logged[level].set(index);
+        nextImageId = Math.max(nextImageId, getImageId(imageName) + 1);
+      }
+    }
+  }
+
+  /**
+   * Добавляет харту в каталог и сдвигает счётчики идентификаторов за её идентификатор и
+   * идентификаторы изображений фрагментов харты и её уровней пирамиды.
+   *
+   * @param charta харта
+   */
+  private void applySave(Charta charta) {
+    List<Charta> levels = getLevels(charta);
+    BitSet[] logged = new BitSet[levels.size() + 1];
+
+    chartas.put(charta.getId(), charta);
+    nextChartaId = Math.max(nextChartaId, charta.getId() + 1);
+
+    for (int level = 0; level < logged.length; level++) {
+      logged[level] = applyImageIds(getLevel(charta, level));
+    }
+
+    loggedImages.put(charta.getId(), logged);
+  }
+
+  /**
+   * Сдвигает счётчик идентификаторов изображений за идентификаторы изображений фрагментов харты.
+   *
+   * @param charta харта или уровень пирамиды
+   * @return номера фрагментов, у которых есть изображения
+   */
+  private BitSet applyImageIds(Charta charta) {
+    List<Fragment> fragments = getFragments(charta);
+    BitSet logged = new BitSet(fragments.size());
+
+    for (int index = 0; index < fragments.size(); index++) {
+      String imageName = fragments.get(index).getImageName();
+
+      if (imageName != null) {
+        nextImageId = Math.max(nextImageId, getImageId(imageName) + 1);
+        logged.set(index);
+      }
+    }
+
+    return logged;
+  }
+
+  /**
+   * Находит изображения, появившиеся у фрагментов харты и её уровней после предыдущей записи о
+   * харте, и отмечает их записанными.
+   *
+   * @param charta харта
+   * @param logged номера фрагментов харты и уровней, изображения которых уже записаны
+   * @return новые изображения фрагментов
+   */
+  private List<ImageAssignment> collectNewImages(Charta charta, BitSet[] logged) {
+    List<ImageAssignment> assignments = new ArrayList<>();
+
+    synchronized (logged) {
+      for (int level = 0; level < logged.length; level++) {
+        List<Fragment> fragments = getFragments(getLevel(charta, level));
+
+        for (int index = 0; index < fragments.size(); index++) {
+          String imageName = fragments.get(index).getImageName();
+
+          if (imageName != null && !logged[level].get(index)) {
+            logged[level].set(index);
+            assignments.add(new ImageAssignment(level, index, imageName));
+          }
+        }
+      }
+    }
+
+    return assignments;
+  }
+
+  /**
+   * Записывает состояние каталога в новый снимок, заменяет им старый, удаляет старый журнал и
+   * очищает текущий. Вызывается под монитором каталога при запуске и остановке сервиса.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void writeSnapshot() throws IOException {
+    writeSnapshotFile(chartas.values(), nextChartaId, nextImageId);
+    Files.deleteIfExists(directory.resolve(PREVIOUS_LOG_FILE));
+
+    logChannel.truncate(0);
+    logChannel.position(0);
+    logChannel.force(true);
+    logRecords = 0;
+  }
+
+  /**
+   * Записывает харты и счётчики идентификаторов в новый снимок и заменяет им старый.
+   *
+   * @param state харты
+   * @param chartaId идентификатор, который будет присвоен следующей харте
+   * @param imageId идентификатор, который будет присвоен следующему изображению
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void writeSnapshotFile(Collection<Charta> state, int chartaId, int imageId)
+      throws IOException {
+    Path temp = directory.resolve(SNAPSHOT_TEMP_FILE);
+
+    try (FileChannel channel =
+        FileChannel.open(
+            temp,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      BufferedOutputStream stream = new BufferedOutputStream(Channels.newOutputStream(channel));
+      CheckedOutputStream checked = new CheckedOutputStream(stream, new CRC32());
+      DataOutputStream output = new DataOutputStream(checked);
+
+      output.writeInt(SNAPSHOT_SIGNATURE);
+      output.writeInt(FORMAT_VERSION);
+      output.writeInt(chartaId);
+      output.writeInt(imageId);
+      output.writeInt(state.size());
+
+      for (Charta charta : state) {
+        writeCharta(output, charta);
+      }
+
+      output.flush();
+      new DataOutputStream(stream).writeInt((int) checked.getChecksum().getValue());
+      stream.flush();
+      channel.force(true);
+    }
+
+    Files.move(
+        temp,
+        directory.resolve(SNAPSHOT_FILE),
+        StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Возвращает копию харты со своими списками фрагментов харты и уровней, которую можно
+   * записывать в снимок без монитора каталога. Сами фрагменты не копируются.
+   *
+   * @param charta харта
+   * @return копия харты
+   */
+  private Charta copyCharta(Charta charta) {
+    Charta copy = copyLevel(charta);
+
+    copy.setId(charta.getId());
+
+    if (charta.getLevels() != null) {
+      List<Charta> levels = new ArrayList<>(charta.getLevels().size());
+
+      for (Charta level : charta.getLevels()) {
+        levels.add(copyLevel(level));
+      }
+
+      copy.setLevels(levels);
+    }
+
+    return copy;
+  }
+
+  /**
+   * Возвращает копию харты или уровня пирамиды со своим списком фрагментов.
+   *
+   * @param charta харта или уровень пирамиды
+   * @return копия без идентификатора и уровней
+   */
+  private Charta copyLevel(Charta charta) {
+    Charta copy = new Charta(charta.getWidth(), charta.getHeight());
+
+    copy.setFragments(new ArrayList<>(getFragments(charta)));
+
+    return copy;
+  }
+
+  /**
+   * Возвращает содержимое записи журнала о сохранении харты.
+   *
+   * @param charta харта
+   * @return содержимое записи
+   */
+  private byte[] createSaveRecord(Charta charta) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream output = new DataOutputStream(bytes);
+
+      output.writeByte(SAVE_RECORD);
+      writeCharta(output, charta);
+
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Возвращает содержимое записи журнала об удалении харты.
+   *
+   * @param id идентификатор харты
+   * @return содержимое записи
+   */
+  private byte[] createDeleteRecord(int id) {
+    return ByteBuffer.allocate(Byte.BYTES + Integer.BYTES).put(DELETE_RECORD).putInt(id).array();
+  }
+
+  /**
+   * Возвращает содержимое записи журнала о появившихся у фрагментов харты изображениях: номер
+   * уровня, номер фрагмента в уровне и название изображения для каждого фрагмента.
+   *
+   * @param id идентификатор харты
+   * @param assignments новые изображения фрагментов
+   * @return содержимое записи
+   */
+  private byte[] createImageRecord(int id, List<ImageAssignment> assignments) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream output = new DataOutputStream(bytes);
+
+      output.writeByte(IMAGE_RECORD);
+      output.writeInt(id);
+      output.writeInt(assignments.size());
+
+      for (ImageAssignment assignment : assignments) {
+        output.writeInt(assignment.getLevel());
+        output.writeInt(assignment.getIndex());
+        output.writeUTF(assignment.getImageName());
+      }
+
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Записывает харту вместе с фрагментами и уровнями пирамиды. Вместо количества уровней у харты
+   * без пирамиды записывается {@code -1}.
+   *
+   * @param output поток для записи
+   * @param charta харта
+   * @throws IOException если возникло исключение при записи
+   */
+  private void writeCharta(DataOutput output, Charta charta) throws IOException {
+    output.writeInt(charta.getId());
+    writeLevel(output, charta);
+    output.writeInt(charta.getLevels() == null ? -1 : charta.getLevels().size());
+
+    for (Charta level : getLevels(charta)) {
+      writeLevel(output, level);
+    }
+  }
+
+  /**
+   * Записывает размеры и фрагменты харты или уровня пирамиды.
+   *
+   * @param output поток для записи
+   * @param charta харта или уровень пирамиды
+   * @throws IOException если возникло исключение при записи
+   */
+  private void writeLevel(DataOutput output, Charta charta) throws IOException {
+    List<Fragment> fragments = getFragments(charta);
+
+    output.writeInt(charta.getWidth());
+    output.writeInt(charta.getHeight());
+    output.writeInt(fragments.size());
+
+    for (Fragment fragment : fragments) {
+      String imageName = fragment.getImageName();
+
+      output.writeInt(fragment.getX());
+      output.writeInt(fragment.getY());
+      output.writeInt(fragment.getWidth());
+      output.writeInt(fragment.getHeight());
+      output.writeBoolean(imageName != null);
+
+      if (imageName != null) {
+        output.writeUTF(imageName);
+      }
+    }
+  }
+
+  /**
+   * Читает харту вместе с фрагментами и, если они записаны, уровнями пирамиды.
+   *
+   * @param input поток для чтения
+   * @param withLevels {@code true}, если харта записана вместе с уровнями пирамиды
+   * @return харта
+   * @throws IOException если возникло исключение при чтении
+   */
+  private Charta readCharta(DataInput input, boolean withLevels) throws IOException {
+    int id = input.readInt();
+    Charta charta = readLevel(input);
+    int count = withLevels ? input.readInt() : -1;
+
+    if (count >= 0) {
+      List<Charta> levels = new ArrayList<>(count);
+
+      for (int i = 0; i < count; i++) {
+        levels.add(readLevel(input));
+      }
+
+      charta.setLevels(levels);
+    }
+
+    charta.setId(id);
+
+    return charta;
+  }
+
+  /**
+   * Читает размеры и фрагменты харты или уровня пирамиды.
+   *
+   * @param input поток для чтения
+   * @return харта без идентификатора
+   * @throws IOException если возникло исключение при чтении
+   */
+  private Charta readLevel(DataInput input) throws IOException {
+    Charta charta = new Charta(input.readInt(), input.readInt());
+    int count = input.readInt();
+    List<Fragment> fragments = new ArrayList<>(count);
+
+    for (int i = 0; i < count; i++) {
+      int x = input.readInt();
+      int y = input.readInt();
+      int width = input.readInt();
+      int height = input.readInt();
+      String imageName = input.readBoolean() ? input.readUTF() : null;
+
+      fragments.add(new Fragment(x, y, width, height, imageName));
+    }
+
+    charta.setFragments(fragments);
+
+    return charta;
+  }
+
+  /**
+   * Читает из журнала заданное количество байт, начиная с заданной позиции.
+   *
+   * @param channel канал файла журнала
+   * @param buffer буфер, который требуется заполнить целиком
+   * @param position позиция в файле журнала
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException();
+      }
+    }
+  }
+
+  /**
+   * Возвращает фрагменты харты или пустой список, если фрагменты не заданы.
+   *
+   * @param charta харта
+   * @return список фрагментов
+   */
+  private List<Fragment> getFragments(Charta charta) {
+    return charta.getFragments() == null ? List.of() : charta.getFragments();
+  }
+
+  /**
+   * Возвращает харту или уровень её пирамиды по номеру.
+   *
+   * @param charta харта
+   * @param level номер уровня, нулевой уровень совпадает с хартой
+   * @return харта или уровень пирамиды
+   */
+  private Charta getLevel(Charta charta, int level) {
+    return level == 0 ? charta : charta.getLevels().get(level - 1);
+  }
+
+  /**
+   * Возвращает уровни пирамиды харты или пустой список, если пирамида не построена.
+   *
+   * @param charta харта
+   * @return список уровней
+   */
+  private List<Charta> getLevels(Charta charta) {
+    return charta.getLevels() == null ? List.of() : charta.getLevels();
+  }
+
+  /**
+   * Возвращает идентификатор изображения по его названию вида {@code <id>.<формат>}.
+   *
+   * @param imageName название изображения
+   * @return идентификатор изображения или {@code -1}, если название имеет другой вид
+   */
+  private int getImageId(String imageName) {
+    int end = imageName.indexOf('.');
+
+    try {
+      return Integer.parseInt(end < 0 ? imageName : imageName.substring(0, end));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /** Изображение, появившееся у фрагмента харты или уровня её пирамиды. */
+  @Getter
+  @AllArgsConstructor
+  private static class ImageAssignment {
+
+    /** Номер уровня, нулевой уровень совпадает с хартой. */
+    private final int level;
+
+    /** Номер фрагмента в списке фрагментов уровня. */
+    private final int index;
+
+    /** Название изображения. */
+    private final String imageName;
+  }
+}
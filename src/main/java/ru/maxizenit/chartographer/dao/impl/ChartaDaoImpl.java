@@ -1,11 +1,17 @@
 package ru.maxizenit.chartographer.dao.impl;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import ru.maxizenit.chartographer.dao.CatalogDao;
 import ru.maxizenit.chartographer.dao.ChartaDao;
 import ru.maxizenit.chartographer.exception.ChartaNotFoundException;
 import ru.maxizenit.chartographer.model.Charta;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class ChartaDaoImpl implements ChartaDao {
@@ -14,14 +20,23 @@ public class ChartaDaoImpl implements ChartaDao {
   private static final String CHARTA_NOT_FOUND_MESSAGE = "Не найдено харты с данным id: ";
 
   /** Хэшмап для харт. */
-  private final HashMap<Integer, Charta> chartas;
+  private final Map<Integer, Charta> chartas;
 
   /** Счётчик добавленных харт для присвоения идентификаторов. */
-  private static volatile int currentId;
+  private final AtomicInteger currentId;
 
-  public ChartaDaoImpl() {
-    chartas = new HashMap<>();
-    currentId = 0;
+  /** Каталог, в котором харты сохраняются между перезапусками. */
+  private final CatalogDao catalogDao;
+
+  @Autowired
+  public ChartaDaoImpl(CatalogDao catalogDao) {
+    this.catalogDao = catalogDao;
+    chartas = new ConcurrentHashMap<>();
+    currentId = new AtomicInteger(catalogDao.getNextChartaId());
+
+    for (Charta charta : catalogDao.getChartas()) {
+      chartas.put(charta.getId(), charta);
+    }
   }
 
   @Override
@@ -37,12 +52,29 @@ public class ChartaDaoImpl implements ChartaDao {
 
   @Override
   public void delete(int id) {
+    catalogDao.delete(id);
     chartas.remove(id);
   }
 
   @Override
-  public synchronized void save(Charta charta) {
-    charta.setId(currentId++);
+  public void save(Charta charta) {
+    charta.setId(currentId.getAndIncrement());
+    catalogDao.save(charta);
     chartas.put(charta.getId(), charta);
   }
+
+  @Override
+  public void update(Charta charta) {
+    catalogDao.update(charta);
+  }
+
+  @Override
+  public List<Charta> getChartas() {
+    return new ArrayList<>(chartas.values());
+  }
+
+  @Override
+  public int count() {
+    return chartas.size();
+  }
 }
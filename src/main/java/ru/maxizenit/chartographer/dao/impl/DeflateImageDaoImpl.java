@@ -0,0 +1,788 @@
+package ru.maxizenit.chartographer.dao.impl;
+
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.maxizenit.chartographer.ChartographerApplication;
+import ru.maxizenit.chartographer.bmp.BmpEncoder;
+import ru.maxizenit.chartographer.dao.CatalogDao;
+import ru.maxizenit.chartographer.dao.ImageDao;
+import ru.maxizenit.chartographer.deflate.DeflateImageHeader;
+import ru.maxizenit.chartographer.metrics.ChartographerTimers;
+import ru.maxizenit.chartographer.model.CompressionStatistics;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Реализация {@link ImageDao}, хранящая изображения в сжатом формате {@link DeflateImageHeader}.
+ * Подтайлы сжимаются по отдельности, поэтому для чтения области распаковываются только
+ * пересекающиеся с ней подтайлы, а их положение в файле берётся из индекса. Чёрные подтайлы не
+ * хранятся вовсе.
+ *
+ * <p>При записи области изменённые подтайлы сжимаются заново и дописываются в конец файла, и
+ * только после этого в индексе меняются их смещения, поэтому прерванная запись не повреждает
+ * ранее записанные подтайлы. Когда устаревшие подтайлы занимают больше места, чем актуальные,
+ * файл переписывается во временный и атомарно подменяется. Чтение и запись одного изображения
+ * разделяются блокировкой чтения-записи.
+ */
+@Service
+public class DeflateImageDaoImpl implements ImageDao {
+
+  /** Сообщение о выходе области за границы изображения. */
+  private static final String OUT_OF_BOUNDS_MESSAGE = "Область выходит за границы изображения ";
+
+  /** Сообщение о повреждённом подтайле. */
+  private static final String CORRUPTED_TILE_MESSAGE = "Подтайл изображения повреждён ";
+
+  /** Расширение файлов изображений. */
+  private static final String DEFLATE_FORMAT = "dfl";
+
+  /** Расширение временного файла, в который переписывается изображение. */
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  /** Количество блокировок, между которыми распределяются изображения. */
+  private static final int LOCK_STRIPES = 64;
+
+  /** Наименьший объём устаревших подтайлов в байтах, при котором файл переписывается. */
+  private static final long MIN_COMPACTION_GARBAGE = 1 << 20;
+
+  /** Путь к папке изображений. */
+  private final String imagesPath;
+
+  /** Размер стороны подтайла новых изображений или {@code 0}, если подтайлы не нужны. */
+  private final int tileSize;
+
+  /** Уровень сжатия Deflate от 0 до 9. */
+  private final int level;
+
+  /** Блокировки изображений. */
+  private final ReadWriteLock[] locks;
+
+  private final ChartographerTimers timers;
+
+  /** Суммарный размер сжатых подтайлов до сжатия в байтах. */
+  private final AtomicLong rawBytes;
+
+  /** Суммарный размер сжатых подтайлов после сжатия в байтах. */
+  private final AtomicLong compressedBytes;
+
+  /** Суммарный размер распакованных подтайлов в байтах. */
+  private final AtomicLong inflatedBytes;
+
+  /** Счётчик для присвоения уникального пути файлу изображения. */
+  private static volatile int currentId;
+
+  @Autowired
+  public DeflateImageDaoImpl(
+      CatalogDao catalogDao,
+      @Value("${chartographer.storage.deflate.tile-size}") int tileSize,
+      @Value("${chartographer.storage.deflate.level}") int level,
+      ChartographerTimers timers) {
+    currentId = catalogDao.getNextImageId();
+    imagesPath = ChartographerApplication.contentPath;
+    this.tileSize = tileSize;
+    this.level = level;
+    this.timers = timers;
+
+    locks = new ReadWriteLock[LOCK_STRIPES];
+    Arrays.setAll(locks, i -> new ReentrantReadWriteLock());
+    rawBytes = new AtomicLong();
+    compressedBytes = new AtomicLong();
+    inflatedBytes = new AtomicLong();
+  }
+
+  @Override
+  public BufferedImage get(String name) throws IOException {
+    Lock lock = getLock(name).readLock();
+    lock.lock();
+
+    try (FileChannel channel = FileChannel.open(createPathByName(name), StandardOpenOption.READ)) {
+      DeflateImageHeader header = readHeader(channel);
+      BufferedImage image = createImage(header.getWidth(), header.getHeight());
+
+      readPart(channel, header, name, 0, 0, image);
+      return image;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public BufferedImage getPart(String name, int x, int y, int width, int height)
+      throws IOException {
+    BufferedImage part = createImage(width, height);
+
+    readPart(name, x, y, part);
+    return part;
+  }
+
+  @Override
+  public void readPart(String name, int x, int y, BufferedImage part) throws IOException {
+    Lock lock = getLock(name).readLock();
+    lock.lock();
+
+    try (FileChannel channel = FileChannel.open(createPathByName(name), StandardOpenOption.READ)) {
+      readPart(channel, readHeader(channel), name, x, y, part);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void delete(String name) throws IOException {
+    Files.delete(createPathByName(name));
+  }
+
+  @Override
+  public synchronized String save(BufferedImage image) throws IOException {
+    Path path = createNewPath();
+
+    try (FileChannel channel =
+        FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      writeImage(channel, image);
+    }
+
+    return path.getFileName().toString();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Подтайлы не записываются: индекс заполняется нулями, и все подтайлы читаются как чёрные.
+   */
+  @Override
+  public synchronized String saveEmpty(int width, int height) throws IOException {
+    Path path = createNewPath();
+    DeflateImageHeader header = new DeflateImageHeader(width, height, tileSize);
+
+    try (FileChannel channel =
+        FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      writeFully(channel, header.toByteBuffer(), 0);
+      writeFully(channel, createIndex(header), DeflateImageHeader.SIZE);
+    }
+
+    return path.getFileName().toString();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Изображение записывается во временный файл, который затем атомарно подменяет прежний.
+   */
+  @Override
+  public void update(BufferedImage image, String name) throws IOException {
+    Path path = createPathByName(name);
+    Path tempPath = createTempPath(name);
+    Lock lock = getLock(name).writeLock();
+    lock.lock();
+
+    try {
+      try (FileChannel channel =
+          FileChannel.open(
+              tempPath,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.TRUNCATE_EXISTING,
+              StandardOpenOption.WRITE)) {
+        writeImage(channel, image);
+      }
+
+      Files.move(
+          tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void updatePart(BufferedImage part, String name, int x, int y) throws IOException {
+    byte[] pixels = BmpEncoder.getPixels(part);
+    int width = part.getWidth();
+    int height = part.getHeight();
+    int rowLength = width * DeflateImageHeader.BYTES_PER_PIXEL;
+    Lock lock = getLock(name).writeLock();
+    lock.lock();
+
+    try (FileChannel channel =
+        FileChannel.open(
+            createPathByName(name), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      DeflateImageHeader header = readHeader(channel);
+
+      checkBounds(header, name, x, y, width, height);
+
+      ByteBuffer index = readIndex(channel, header);
+      long end = channel.size();
+      int tileWidth = header.getTileWidth();
+      int tileHeight = header.getTileHeight();
+
+      for (int row = y / tileHeight; row <= (y + height - 1) / tileHeight; row++) {
+        int rowHeight = header.getTileHeight(row);
+        int startY = Math.max(y, row * tileHeight);
+        int endY = Math.min(y + height, row * tileHeight + rowHeight);
+
+        for (int column = x / tileWidth; column <= (x + width - 1) / tileWidth; column++) {
+          int columnWidth = header.getTileWidth(column);
+          int startX = Math.max(x, column * tileWidth);
+          int endX = Math.min(x + width, column * tileWidth + columnWidth);
+          int entry = (row * header.getColumns() + column) * DeflateImageHeader.INDEX_ENTRY_SIZE;
+          int tileRowLength = columnWidth * DeflateImageHeader.BYTES_PER_PIXEL;
+          boolean isCovered = endX - startX == columnWidth && endY - startY == rowHeight;
+          byte[] tile =
+              isCovered
+                  ? new byte[tileRowLength * rowHeight]
+                  : readTile(channel, index, entry, name, tileRowLength * rowHeight);
+
+          copyRows(
+              pixels,
+              (startY - y) * rowLength + (startX - x) * DeflateImageHeader.BYTES_PER_PIXEL,
+              rowLength,
+              tile,
+              (startY - row * tileHeight) * tileRowLength
+                  + (startX - column * tileWidth) * DeflateImageHeader.BYTES_PER_PIXEL,
+              tileRowLength,
+              (endX - startX) * DeflateImageHeader.BYTES_PER_PIXEL,
+              endY - startY);
+          end = appendTile(channel, index, entry, tile, end);
+        }
+      }
+
+      writeFully(channel, index.clear(), DeflateImageHeader.SIZE);
+      compactIfNeeded(channel, header, index, name, end);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Возвращает снимок счётчиков сжатия и распаковки подтайлов.
+   *
+   * @return снимок счётчиков
+   */
+  public CompressionStatistics getStatistics() {
+    return new CompressionStatistics(rawBytes.get(), compressedBytes.get(), inflatedBytes.get());
+  }
+
+  /**
+   * Записывает изображение в пустой файл целиком: заголовок, индекс и сжатые подтайлы.
+   *
+   * @param channel канал файла изображения
+   * @param image записываемое изображение
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void writeImage(FileChannel channel, BufferedImage image) throws IOException {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int rowLength = width * DeflateImageHeader.BYTES_PER_PIXEL;
+    byte[] pixels = BmpEncoder.getPixels(image);
+    DeflateImageHeader header = new DeflateImageHeader(width, height, tileSize);
+    ByteBuffer index = createIndex(header);
+    long end = header.getDataOffset();
+
+    for (int row = 0; row < header.getRows(); row++) {
+      int rowHeight = header.getTileHeight(row);
+
+      for (int column = 0; column < header.getColumns(); column++) {
+        int tileRowLength = header.getTileWidth(column) * DeflateImageHeader.BYTES_PER_PIXEL;
+        byte[] tile = new byte[tileRowLength * rowHeight];
+
+        copyRows(
+            pixels,
+            row * header.getTileHeight() * rowLength
+                + column * header.getTileWidth() * DeflateImageHeader.BYTES_PER_PIXEL,
+            rowLength,
+            tile,
+            0,
+            tileRowLength,
+            tileRowLength,
+            rowHeight);
+        end =
+            appendTile(
+                channel,
+                index,
+                (row * header.getColumns() + column) * DeflateImageHeader.INDEX_ENTRY_SIZE,
+                tile,
+                end);
+      }
+    }
+
+    writeFully(channel, header.toByteBuffer(), 0);
+    writeFully(channel, index.clear(), DeflateImageHeader.SIZE);
+  }
+
+  /**
+   * Читает область изображения в переданное изображение, распаковывая только пересекающиеся с ней
+   * подтайлы. Подтайлы нулевой длины пропускаются, поэтому изображение должно быть чёрным.
+   *
+   * @param channel канал файла изображения
+   * @param header заголовок изображения
+   * @param name название изображения
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param part изображение, в которое читается область, размером с область
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void readPart(
+      FileChannel channel,
+      DeflateImageHeader header,
+      String name,
+      int x,
+      int y,
+      BufferedImage part)
+      throws IOException {
+    int width = part.getWidth();
+    int height = part.getHeight();
+
+    checkBounds(header, name, x, y, width, height);
+
+    byte[] pixels = ((DataBufferByte) part.getRaster().getDataBuffer()).getData();
+    ByteBuffer index = readIndex(channel, header);
+    int rowLength = width * DeflateImageHeader.BYTES_PER_PIXEL;
+    int tileWidth = header.getTileWidth();
+    int tileHeight = header.getTileHeight();
+
+    for (int row = y / tileHeight; row <= (y + height - 1) / tileHeight; row++) {
+      int rowHeight = header.getTileHeight(row);
+      int startY = Math.max(y, row * tileHeight);
+      int endY = Math.min(y + height, row * tileHeight + rowHeight);
+
+      for (int column = x / tileWidth; column <= (x + width - 1) / tileWidth; column++) {
+        int entry = (row * header.getColumns() + column) * DeflateImageHeader.INDEX_ENTRY_SIZE;
+
+        if (index.getInt(entry + Long.BYTES) == 0) {
+          continue;
+        }
+
+        int columnWidth = header.getTileWidth(column);
+        int startX = Math.max(x, column * tileWidth);
+        int endX = Math.min(x + width, column * tileWidth + columnWidth);
+        int tileRowLength = columnWidth * DeflateImageHeader.BYTES_PER_PIXEL;
+        byte[] tile = readTile(channel, index, entry, name, tileRowLength * rowHeight);
+
+        copyRows(
+            tile,
+            (startY - row * tileHeight) * tileRowLength
+                + (startX - column * tileWidth) * DeflateImageHeader.BYTES_PER_PIXEL,
+            tileRowLength,
+            pixels,
+            (startY - y) * rowLength + (startX - x) * DeflateImageHeader.BYTES_PER_PIXEL,
+            rowLength,
+            (endX - startX) * DeflateImageHeader.BYTES_PER_PIXEL,
+            endY - startY);
+      }
+    }
+  }
+
+  /**
+   * Читает и распаковывает подтайл по записи индекса. Подтайл нулевой длины возвращается чёрным.
+   *
+   * @param channel канал файла изображения
+   * @param index индекс изображения
+   * @param entry смещение записи подтайла в индексе
+   * @param name название изображения
+   * @param length размер подтайла после распаковки в байтах
+   * @return пиксели подтайла
+   * @throws IOException если возникло исключение при работе с файловой системой или подтайл
+   *     повреждён
+   */
+  private byte[] readTile(
+      FileChannel channel, ByteBuffer index, int entry, String name, int length)
+      throws IOException {
+    byte[] tile = new byte[length];
+    int compressedLength = index.getInt(entry + Long.BYTES);
+
+    if (compressedLength == 0) {
+      return tile;
+    }
+
+    byte[] compressed = new byte[compressedLength];
+    Timer.Sample sample = Timer.start();
+    Inflater inflater = new Inflater();
+
+    readFully(channel, ByteBuffer.wrap(compressed), index.getLong(entry));
+
+    try {
+      inflater.setInput(compressed);
+
+      int inflated = 0;
+
+      while (inflated < length && !inflater.finished()) {
+        int count = inflater.inflate(tile, inflated, length - inflated);
+
+        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+
+        inflated += count;
+      }
+
+      if (inflated != length) {
+        throw new IOException(CORRUPTED_TILE_MESSAGE + name);
+      }
+    } catch (DataFormatException e) {
+      throw new IOException(CORRUPTED_TILE_MESSAGE + name, e);
+    } finally {
+      inflater.end();
+      sample.stop(timers.getTileInflate());
+    }
+
+    inflatedBytes.addAndGet(length);
+
+    return tile;
+  }
+
+  /**
+   * Сжимает подтайл, дописывает его в файл с заданной позиции и обновляет его запись в индексе.
+   * Чёрный подтайл не записывается, а получает в индексе нулевую длину.
+   *
+   * @param channel канал файла изображения
+   * @param index индекс изображения
+   * @param entry смещение записи подтайла в индексе
+   * @param tile пиксели подтайла
+   * @param position позиция в файле, с которой дописывается подтайл
+   * @return позиция в файле после дописанного подтайла
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private long appendTile(
+      FileChannel channel, ByteBuffer index, int entry, byte[] tile, long position)
+      throws IOException {
+    if (isBlack(tile)) {
+      index.putLong(entry, 0).putInt(entry + Long.BYTES, 0);
+      return position;
+    }
+
+    ByteBuffer compressed = deflate(tile);
+    int length = compressed.remaining();
+
+    writeFully(channel, compressed, position);
+    index.putLong(entry, position).putInt(entry + Long.BYTES, length);
+
+    return position + length;
+  }
+
+  /**
+   * Сжимает пиксели подтайла.
+   *
+   * @param tile пиксели подтайла
+   * @return буфер со сжатым подтайлом
+   */
+  private ByteBuffer deflate(byte[] tile) {
+    Timer.Sample sample = Timer.start();
+    Deflater deflater = new Deflater(level);
+    byte[] buffer = new byte[Math.max(64, tile.length / 4)];
+    int length = 0;
+
+    try {
+      deflater.setInput(tile);
+      deflater.finish();
+
+      while (!deflater.finished()) {
+        if (length == buffer.length) {
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+
+        length += deflater.deflate(buffer, length, buffer.length - length);
+      }
+    } finally {
+      deflater.end();
+      sample.stop(timers.getTileDeflate());
+    }
+
+    rawBytes.addAndGet(tile.length);
+    compressedBytes.addAndGet(length);
+
+    return ByteBuffer.wrap(buffer, 0, length);
+  }
+
+  /**
+   * Переписывает файл без устаревших подтайлов, если они занимают больше места, чем актуальные,
+   * и не меньше {@link DeflateImageDaoImpl#MIN_COMPACTION_GARBAGE} байт. Файл переписывается во
+   * временный, который атомарно подменяет прежний.
+   *
+   * @param channel канал файла изображения
+   * @param header заголовок изображения
+   * @param index индекс изображения
+   * @param name название изображения
+   * @param end размер файла в байтах
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void compactIfNeeded(
+      FileChannel channel, DeflateImageHeader header, ByteBuffer index, String name, long end)
+      throws IOException {
+    long liveBytes = 0;
+
+    for (int entry = 0; entry < index.capacity(); entry += DeflateImageHeader.INDEX_ENTRY_SIZE) {
+      liveBytes += index.getInt(entry + Long.BYTES);
+    }
+
+    long garbageBytes = end - header.getDataOffset() - liveBytes;
+
+    if (garbageBytes <= liveBytes || garbageBytes < MIN_COMPACTION_GARBAGE) {
+      return;
+    }
+
+    Path tempPath = createTempPath(name);
+    ByteBuffer compactIndex = createIndex(header);
+    long position = header.getDataOffset();
+
+    try (FileChannel compactChannel =
+        FileChannel.open(
+            tempPath,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      for (int entry = 0; entry < index.capacity(); entry += DeflateImageHeader.INDEX_ENTRY_SIZE) {
+        int length = index.getInt(entry + Long.BYTES);
+
+        if (length == 0) {
+          continue;
+        }
+
+        ByteBuffer compressed = ByteBuffer.allocate(length);
+
+        readFully(channel, compressed, index.getLong(entry));
+        writeFully(compactChannel, compressed.flip(), position);
+        compactIndex.putLong(entry, position).putInt(entry + Long.BYTES, length);
+        position += length;
+      }
+
+      writeFully(compactChannel, header.toByteBuffer(), 0);
+      writeFully(compactChannel, compactIndex.clear(), DeflateImageHeader.SIZE);
+    }
+
+    Files.move(
+        tempPath,
+        createPathByName(name),
+        StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Копирует строки прямоугольной области из одного массива пикселей в другой.
+   *
+   * @param source исходный массив
+   * @param sourceOffset смещение первой строки в исходном массиве
+   * @param sourceStride длина строки исходного массива в байтах
+   * @param target массив, в который выполняется копирование
+   * @param targetOffset смещение первой строки в массиве, в который выполняется копирование
+   * @param targetStride длина строки массива, в который выполняется копирование, в байтах
+   * @param length длина копируемой строки в байтах
+   * @param rows количество строк
+   */
+  private void copyRows(
+      byte[] source,
+      int sourceOffset,
+      int sourceStride,
+      byte[] target,
+      int targetOffset,
+      int targetStride,
+      int length,
+      int rows) {
+    for (int i = 0; i < rows; i++) {
+      System.arraycopy(
+          source, sourceOffset + i * sourceStride, target, targetOffset + i * targetStride, length);
+    }
+  }
+
+  /**
+   * Возвращает {@code true}, если все пиксели подтайла чёрные.
+   *
+   * @param tile пиксели подтайла
+   * @return {@code true}, если подтайл чёрный
+   */
+  private boolean isBlack(byte[] tile) {
+    for (byte value : tile) {
+      if (value != 0) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Создаёт пустой индекс изображения, в котором все подтайлы чёрные.
+   *
+   * @param header заголовок изображения
+   * @return буфер индекса
+   */
+  private ByteBuffer createIndex(DeflateImageHeader header) {
+    return ByteBuffer.allocate((int) (header.getDataOffset() - DeflateImageHeader.SIZE));
+  }
+
+  /**
+   * Читает индекс изображения.
+   *
+   * @param channel канал файла изображения
+   * @param header заголовок изображения
+   * @return буфер индекса
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private ByteBuffer readIndex(FileChannel channel, DeflateImageHeader header)
+      throws IOException {
+    ByteBuffer index = createIndex(header);
+
+    readFully(channel, index, DeflateImageHeader.SIZE);
+
+    return index.clear();
+  }
+
+  /**
+   * Читает заголовок изображения.
+   *
+   * @param channel канал файла изображения
+   * @return заголовок изображения
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private DeflateImageHeader readHeader(FileChannel channel) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(DeflateImageHeader.SIZE);
+
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, buffer.position()) < 0) {
+        break;
+      }
+    }
+
+    return DeflateImageHeader.read(buffer.flip());
+  }
+
+  /**
+   * Читает буфер целиком, начиная с заданной позиции файла.
+   *
+   * @param channel канал файла изображения
+   * @param buffer буфер
+   * @param position позиция в файле
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    long start = position - buffer.position();
+
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, start + buffer.position()) < 0) {
+        throw new EOFException();
+      }
+    }
+  }
+
+  /**
+   * Записывает буфер целиком, начиная с заданной позиции файла.
+   *
+   * @param channel канал файла изображения
+   * @param buffer буфер
+   * @param position позиция в файле
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    long start = position - buffer.position();
+
+    while (buffer.hasRemaining()) {
+      channel.write(buffer, start + buffer.position());
+    }
+  }
+
+  /**
+   * Проверяет, что область целиком лежит внутри изображения.
+   *
+   * @param header заголовок изображения
+   * @param name название изображения
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param width ширина области
+   * @param height высота области
+   */
+  private void checkBounds(
+      DeflateImageHeader header, String name, int x, int y, int width, int height) {
+    if (x < 0
+        || y < 0
+        || width <= 0
+        || height <= 0
+        || x + width > header.getWidth()
+        || y + height > header.getHeight()) {
+      throw new IllegalArgumentException(OUT_OF_BOUNDS_MESSAGE + name);
+    }
+  }
+
+  /**
+   * Возвращает блокировку изображения.
+   *
+   * @param name название изображения
+   * @return блокировка чтения-записи
+   */
+  private ReadWriteLock getLock(String name) {
+    return locks[Math.floorMod(name.hashCode(), locks.length)];
+  }
+
+  /**
+   * Создаёт полный путь к существующему изображению по его названию.
+   *
+   * @param name название изображения
+   * @return путь в файловой системе для изображения
+   */
+  private Path createPathByName(String name) {
+    return Path.of(imagesPath, name);
+  }
+
+  /**
+   * Создаёт полный путь к временному файлу, в который переписывается изображение.
+   *
+   * @param name название изображения
+   * @return путь в файловой системе для временного файла
+   */
+  private Path createTempPath(String name) {
+    return Path.of(imagesPath, name + TEMP_SUFFIX);
+  }
+
+  /**
+   * Возвращает путь к новому изображению, который ещё не занят другим файлом.
+   *
+   * @return путь в файловой системе для нового изображения
+   */
+  private Path createNewPath() {
+    Path path = createPathById(currentId++);
+
+    while (Files.exists(path)) {
+      path = createPathById(currentId++);
+    }
+
+    return path;
+  }
+
+  /**
+   * Создаёт полный путь к новому изображению по заданному идентификатору.
+   *
+   * @param id уникальный идентификатор изображения
+   * @return путь в файловой системе для нового изображения
+   */
+  private Path createPathById(int id) {
+    return Path.of(imagesPath, String.format("%d.%s", id, DEFLATE_FORMAT));
+  }
+
+  /**
+   * Создаёт чёрное изображение заданного размера.
+   *
+   * @param width ширина
+   * @param height высота
+   * @return изображение
+   */
+  private BufferedImage createImage(int width, int height) {
+    return new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+  }
+}
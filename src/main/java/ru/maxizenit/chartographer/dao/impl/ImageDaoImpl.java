@@ -1,10 +1,14 @@
 package ru.maxizenit.chartographer.dao.impl;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import ru.maxizenit.chartographer.ChartographerApplication;
+import ru.maxizenit.chartographer.dao.CatalogDao;
 import ru.maxizenit.chartographer.dao.ImageDao;
+import ru.maxizenit.chartographer.raster.RasterCopier;
 
 import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
@@ -23,8 +27,9 @@ public class ImageDaoImpl implements ImageDao {
   /** Счётчик для присвоения уникального пути файлу изображения. */
   private static volatile int currentId;
 
-  public ImageDaoImpl() {
-    currentId = 0;
+  @Autowired
+  public ImageDaoImpl(CatalogDao catalogDao) {
+    currentId = catalogDao.getNextImageId();
     imagesPath = ChartographerApplication.contentPath;
   }
 
@@ -33,6 +38,17 @@ public class ImageDaoImpl implements ImageDao {
     return ImageIO.read(new File(createPathByName(name)));
   }
 
+  @Override
+  public BufferedImage getPart(String name, int x, int y, int width, int height)
+      throws IOException {
+    return get(name).getSubimage(x, y, width, height);
+  }
+
+  @Override
+  public void readPart(String name, int x, int y, BufferedImage part) throws IOException {
+    RasterCopier.copy(get(name), x, y, part, 0, 0, part.getWidth(), part.getHeight());
+  }
+
   @Override
   public void delete(String name) throws IOException {
     Files.delete(Path.of(createPathByName(name)));
@@ -42,14 +58,19 @@ public class ImageDaoImpl implements ImageDao {
   public synchronized String save(BufferedImage image) throws IOException {
     File file = new File(createPathById(currentId++));
 
-    if (file.exists()) {
-      Files.delete(Path.of(file.getPath()));
+    while (file.exists()) {
+      file = new File(createPathById(currentId++));
     }
 
     ImageIO.write(image, BMP_FORMAT, file);
     return file.getName();
   }
 
+  @Override
+  public String saveEmpty(int width, int height) throws IOException {
+    return save(new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR));
+  }
+
   /**
    * Создаёт полный путь к существующему изображению по его назвнанию.
    *
@@ -74,4 +95,15 @@ public class ImageDaoImpl implements ImageDao {
   public void update(BufferedImage image, String name) throws IOException {
     ImageIO.write(image, BMP_FORMAT, new File(imagesPath + "/" + name));
   }
+
+  @Override
+  public void updatePart(BufferedImage part, String name, int x, int y) throws IOException {
+    BufferedImage image = get(name);
+    Graphics2D graphics = image.createGraphics();
+
+    graphics.drawImage(part, x, y, null);
+    graphics.dispose();
+
+    update(image, name);
+  }
 }
@@ -0,0 +1,417 @@
+package ru.maxizenit.chartographer.dao.impl;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.maxizenit.chartographer.ChartographerApplication;
+import ru.maxizenit.chartographer.bmp.BmpEncoder;
+import ru.maxizenit.chartographer.dao.CatalogDao;
+import ru.maxizenit.chartographer.dao.ImageDao;
+import ru.maxizenit.chartographer.raw.RawImageHeader;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Реализация {@link ImageDao}, хранящая изображения во внутреннем формате {@link RawImageHeader}.
+ * Смещения строк запрошенной области вычисляются по заголовку, и область читается или
+ * записывается позиционными операциями ввода-вывода без разбора BMP и переворота строк.
+ */
+@Service
+public class RawImageDaoImpl implements ImageDao {
+
+  /** Сообщение о выходе области за границы изображения. */
+  private static final String OUT_OF_BOUNDS_MESSAGE = "Область выходит за границы изображения ";
+
+  /** Расширение файлов изображений. */
+  private static final String RAW_FORMAT = "raw";
+
+  /** Наибольший размер промежуточного буфера для чтения строк подтайла одним вызовом. */
+  private static final int MAX_BLOCK_SIZE = 1 << 20;
+
+  /** Путь к папке изображений. */
+  private final String imagesPath;
+
+  /** Размер стороны подтайла новых изображений или {@code 0}, если подтайлы не нужны. */
+  private final int tileSize;
+
+  /** Счётчик для присвоения уникального пути файлу изображения. */
+  private static volatile int currentId;
+
+  @Autowired
+  public RawImageDaoImpl(
+      CatalogDao catalogDao, @Value("${chartographer.storage.raw.tile-size}") int tileSize) {
+    currentId = catalogDao.getNextImageId();
+    imagesPath = ChartographerApplication.contentPath;
+    this.tileSize = tileSize;
+  }
+
+  @Override
+  public BufferedImage get(String name) throws IOException {
+    try (FileChannel channel = FileChannel.open(createPathByName(name), StandardOpenOption.READ)) {
+      RawImageHeader header = readHeader(channel);
+      BufferedImage image = createImage(header.getWidth(), header.getHeight());
+
+      readPart(channel, header, name, 0, 0, image);
+      return image;
+    }
+  }
+
+  @Override
+  public BufferedImage getPart(String name, int x, int y, int width, int height)
+      throws IOException {
+    BufferedImage part = createImage(width, height);
+
+    readPart(name, x, y, part);
+    return part;
+  }
+
+  @Override
+  public void readPart(String name, int x, int y, BufferedImage part) throws IOException {
+    try (FileChannel channel = FileChannel.open(createPathByName(name), StandardOpenOption.READ)) {
+      readPart(channel, readHeader(channel), name, x, y, part);
+    }
+  }
+
+  @Override
+  public void delete(String name) throws IOException {
+    Files.delete(createPathByName(name));
+  }
+
+  @Override
+  public synchronized String save(BufferedImage image) throws IOException {
+    Path path = createNewPath();
+
+    try (FileChannel channel =
+        FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      writeImage(channel, image);
+    }
+
+    return path.getFileName().toString();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Пиксельные данные не записываются: файл расширяется до нужного размера, и незаписанная
+   * область читается как нулевые байты, то есть как чёрный цвет.
+   */
+  @Override
+  public synchronized String saveEmpty(int width, int height) throws IOException {
+    Path path = createNewPath();
+    RawImageHeader header = new RawImageHeader(width, height, tileSize);
+
+    try (FileChannel channel =
+        FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      writeFully(channel, header.toByteBuffer(), 0);
+      writeFully(channel, ByteBuffer.allocate(1), header.getFileSize() - 1);
+    }
+
+    return path.getFileName().toString();
+  }
+
+  @Override
+  public void update(BufferedImage image, String name) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(
+            createPathByName(name), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      writeImage(channel, image);
+    }
+  }
+
+  @Override
+  public void updatePart(BufferedImage part, String name, int x, int y) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(
+            createPathByName(name), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      RawImageHeader header = readHeader(channel);
+      int width = part.getWidth();
+      int height = part.getHeight();
+
+      checkBounds(header, name, x, y, width, height);
+      transfer(channel, header, BmpEncoder.getPixels(part), x, y, width, height, true);
+    }
+  }
+
+  /**
+   * Записывает изображение в файл целиком, вместе с заголовком.
+   *
+   * @param channel канал файла изображения
+   * @param image записываемое изображение
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void writeImage(FileChannel channel, BufferedImage image) throws IOException {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    RawImageHeader header = new RawImageHeader(width, height, tileSize);
+
+    channel.truncate(header.getFileSize());
+    writeFully(channel, header.toByteBuffer(), 0);
+    transfer(channel, header, BmpEncoder.getPixels(image), 0, 0, width, height, true);
+  }
+
+  /**
+   * Читает область изображения в переданное изображение.
+   *
+   * @param channel канал файла изображения
+   * @param header заголовок изображения
+   * @param name название изображения
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param part изображение, в которое читается область, размером с область
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void readPart(
+      FileChannel channel, RawImageHeader header, String name, int x, int y, BufferedImage part)
+      throws IOException {
+    int width = part.getWidth();
+    int height = part.getHeight();
+
+    checkBounds(header, name, x, y, width, height);
+
+    byte[] pixels = ((DataBufferByte) part.getRaster().getDataBuffer()).getData();
+
+    transfer(channel, header, pixels, x, y, width, height, false);
+  }
+
+  /**
+   * Читает или записывает пиксели области по подтайлам. Если область покрывает подтайл по всей
+   * ширине, его строки лежат в файле подряд и передаются одним вызовом, иначе каждая строка
+   * передаётся отдельно.
+   *
+   * @param channel канал файла изображения
+   * @param header заголовок изображения
+   * @param pixels пиксели области в порядке BGR построчно без выравнивания
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param width ширина области
+   * @param height высота области
+   * @param write {@code true}, если пиксели записываются в файл
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void transfer(
+      FileChannel channel,
+      RawImageHeader header,
+      byte[] pixels,
+      int x,
+      int y,
+      int width,
+      int height,
+      boolean write)
+      throws IOException {
+    int tileWidth = header.getTileWidth();
+    int tileHeight = header.getTileHeight();
+    int rowLength = width * RawImageHeader.BYTES_PER_PIXEL;
+
+    for (int row = y / tileHeight; row <= (y + height - 1) / tileHeight; row++) {
+      int startY = Math.max(y, row * tileHeight);
+      int endY = Math.min(y + height, row * tileHeight + header.getTileHeight(row));
+
+      for (int column = x / tileWidth; column <= (x + width - 1) / tileWidth; column++) {
+        int columnWidth = header.getTileWidth(column);
+        int startX = Math.max(x, column * tileWidth);
+        int endX = Math.min(x + width, column * tileWidth + columnWidth);
+        int segmentLength = (endX - startX) * RawImageHeader.BYTES_PER_PIXEL;
+        int rows = endY - startY;
+        int blockSize = segmentLength * rows;
+        long offset = header.getPixelOffset(startX, startY);
+        int pixelsOffset = (startY - y) * rowLength + (startX - x) * RawImageHeader.BYTES_PER_PIXEL;
+
+        if (endX - startX == columnWidth && segmentLength == rowLength) {
+          ByteBuffer block = ByteBuffer.wrap(pixels, pixelsOffset, blockSize);
+          transferFully(channel, block, offset, write);
+        } else if (endX - startX == columnWidth && blockSize <= MAX_BLOCK_SIZE) {
+          transferBlock(
+              channel, pixels, pixelsOffset, rowLength, segmentLength, rows, offset, write);
+        } else {
+          long stride = (long) columnWidth * RawImageHeader.BYTES_PER_PIXEL;
+
+          for (int i = 0; i < rows; i++) {
+            ByteBuffer segment =
+                ByteBuffer.wrap(pixels, pixelsOffset + i * rowLength, segmentLength);
+            transferFully(channel, segment, offset + i * stride, write);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Читает или записывает строки подтайла, лежащие в файле подряд, одним вызовом через
+   * промежуточный буфер.
+   *
+   * @param channel канал файла изображения
+   * @param pixels пиксели области
+   * @param pixelsOffset смещение первой строки в массиве пикселей области
+   * @param rowLength длина строки области в байтах
+   * @param segmentLength длина строки подтайла в байтах
+   * @param rows количество строк
+   * @param offset смещение первой строки в файле
+   * @param write {@code true}, если пиксели записываются в файл
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void transferBlock(
+      FileChannel channel,
+      byte[] pixels,
+      int pixelsOffset,
+      int rowLength,
+      int segmentLength,
+      int rows,
+      long offset,
+      boolean write)
+      throws IOException {
+    byte[] block = new byte[segmentLength * rows];
+
+    if (write) {
+      for (int i = 0; i < rows; i++) {
+        System.arraycopy(
+            pixels, pixelsOffset + i * rowLength, block, i * segmentLength, segmentLength);
+      }
+    }
+
+    transferFully(channel, ByteBuffer.wrap(block), offset, write);
+
+    if (!write) {
+      for (int i = 0; i < rows; i++) {
+        System.arraycopy(
+            block, i * segmentLength, pixels, pixelsOffset + i * rowLength, segmentLength);
+      }
+    }
+  }
+
+  /**
+   * Читает или записывает буфер целиком, начиная с заданной позиции файла.
+   *
+   * @param channel канал файла изображения
+   * @param buffer буфер
+   * @param position позиция в файле
+   * @param write {@code true}, если буфер записывается в файл
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void transferFully(FileChannel channel, ByteBuffer buffer, long position, boolean write)
+      throws IOException {
+    if (write) {
+      writeFully(channel, buffer, position);
+      return;
+    }
+
+    long start = position - buffer.position();
+
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, start + buffer.position()) < 0) {
+        throw new EOFException();
+      }
+    }
+  }
+
+  /**
+   * Записывает буфер целиком, начиная с заданной позиции файла.
+   *
+   * @param channel канал файла изображения
+   * @param buffer буфер
+   * @param position позиция в файле
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    long start = position - buffer.position();
+
+    while (buffer.hasRemaining()) {
+      channel.write(buffer, start + buffer.position());
+    }
+  }
+
+  /**
+   * Читает заголовок изображения.
+   *
+   * @param channel канал файла изображения
+   * @return заголовок изображения
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private RawImageHeader readHeader(FileChannel channel) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(RawImageHeader.SIZE);
+
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, buffer.position()) < 0) {
+        break;
+      }
+    }
+
+    return RawImageHeader.read(buffer.flip());
+  }
+
+  /**
+   * Проверяет, что область целиком лежит внутри изображения.
+   *
+   * @param header заголовок изображения
+   * @param name название изображения
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param width ширина области
+   * @param height высота области
+   */
+  private void checkBounds(
+      RawImageHeader header, String name, int x, int y, int width, int height) {
+    if (x < 0
+        || y < 0
+        || width <= 0
+        || height <= 0
+        || x + width > header.getWidth()
+        || y + height > header.getHeight()) {
+      throw new IllegalArgumentException(OUT_OF_BOUNDS_MESSAGE + name);
+    }
+  }
+
+  /**
+   * Создаёт полный путь к существующему изображению по его названию.
+   *
+   * @param name название изображения
+   * @return путь в файловой системе для изображения
+   */
+  private Path createPathByName(String name) {
+    return Path.of(imagesPath, name);
+  }
+
+  /**
+   * Возвращает путь к новому изображению, который ещё не занят другим файлом.
+   *
+   * @return путь в файловой системе для нового изображения
+   */
+  private Path createNewPath() {
+    Path path = createPathById(currentId++);
+
+    while (Files.exists(path)) {
+      path = createPathById(currentId++);
+    }
+
+    return path;
+  }
+
+  /**
+   * Создаёт полный путь к новому изображению по заданному идентификатору.
+   *
+   * @param id уникальный идентификатор изображения
+   * @return путь в файловой системе для нового изображения
+   */
+  private Path createPathById(int id) {
+    return Path.of(imagesPath, String.format("%d.%s", id, RAW_FORMAT));
+  }
+
+  /**
+   * Создаёт чёрное изображение заданного размера.
+   *
+   * @param width ширина
+   * @param height высота
+   * @return изображение
+   */
+  private BufferedImage createImage(int width, int height) {
+    return new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+  }
+}
@@ -0,0 +1,172 @@
+package ru.maxizenit.chartographer.deflate;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Класс {@code DeflateImageHeader} представляет заголовок изображения в сжатом формате хранения.
+ * Изображение делится на квадратные подтайлы, каждый из которых сжимается Deflate отдельно. За
+ * заголовком фиксированного размера следует индекс из записей {@link
+ * DeflateImageHeader#INDEX_ENTRY_SIZE} байт: смещение сжатого подтайла от начала файла и его
+ * длина. Записи индекса лежат построчно, по одной на подтайл. Подтайл нулевой длины целиком
+ * чёрный. После индекса лежат сжатые подтайлы в произвольном порядке; пиксели подтайла до сжатия
+ * хранятся в порядке BGR построчно сверху вниз без выравнивания. Подтайлы у правого и нижнего
+ * краёв обрезаются по размеру изображения. Если размер подтайла равен нулю, изображение хранится
+ * одним подтайлом.
+ */
+@Getter
+public class DeflateImageHeader {
+
+  /** Размер заголовка в байтах. */
+  public static final int SIZE = 32;
+
+  /** Размер записи индекса в байтах. */
+  public static final int INDEX_ENTRY_SIZE = 12;
+
+  /** Количество байт на пиксель. */
+  public static final int BYTES_PER_PIXEL = 3;
+
+  /** Сигнатура файла ("CDFL"). */
+  private static final int SIGNATURE = 0x4344464C;
+
+  /** Версия формата. */
+  private static final int VERSION = 1;
+
+  /** Сообщение о неподдерживаемом формате изображения. */
+  private static final String UNSUPPORTED_FORMAT_MESSAGE =
+      "Файл не является изображением в сжатом формате хранения";
+
+  /** Ширина изображения. */
+  private final int width;
+
+  /** Высота изображения. */
+  private final int height;
+
+  /** Размер стороны подтайла или {@code 0}, если изображение хранится одним подтайлом. */
+  private final int tileSize;
+
+  /**
+   * Создаёт заголовок изображения.
+   *
+   * @param width ширина
+   * @param height высота
+   * @param tileSize размер стороны подтайла или {@code 0}, если изображение хранится одним
+   *     подтайлом
+   */
+  public DeflateImageHeader(int width, int height, int tileSize) {
+    this.width = width;
+    this.height = height;
+    this.tileSize = tileSize;
+  }
+
+  /**
+   * Читает заголовок из буфера, начиная с его текущей позиции.
+   *
+   * @param buffer буфер с первыми {@link DeflateImageHeader#SIZE} байтами файла
+   * @return заголовок изображения
+   * @throws IOException если файл не является изображением в сжатом формате хранения
+   */
+  public static DeflateImageHeader read(ByteBuffer buffer) throws IOException {
+    ByteBuffer header = buffer.slice();
+
+    if (header.remaining() < SIZE
+        || header.getInt(0) != SIGNATURE
+        || header.getInt(4) != VERSION) {
+      throw new IOException(UNSUPPORTED_FORMAT_MESSAGE);
+    }
+
+    return new DeflateImageHeader(header.getInt(8), header.getInt(12), header.getInt(16));
+  }
+
+  /**
+   * Возвращает заголовок в виде буфера, готового к записи в начало файла.
+   *
+   * @return буфер размером {@link DeflateImageHeader#SIZE} байт
+   */
+  public ByteBuffer toByteBuffer() {
+    ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+
+    buffer.putInt(SIGNATURE).putInt(VERSION).putInt(width).putInt(height).putInt(tileSize);
+
+    return buffer.clear();
+  }
+
+  /**
+   * Возвращает ширину полного подтайла.
+   *
+   * @return ширина подтайла
+   */
+  public int getTileWidth() {
+    return tileSize == 0 ? width : tileSize;
+  }
+
+  /**
+   * Возвращает высоту полного подтайла.
+   *
+   * @return высота подтайла
+   */
+  public int getTileHeight() {
+    return tileSize == 0 ? height : tileSize;
+  }
+
+  /**
+   * Возвращает ширину столбца подтайлов с учётом обрезки у правого края.
+   *
+   * @param column номер столбца подтайлов
+   * @return ширина подтайлов столбца
+   */
+  public int getTileWidth(int column) {
+    return Math.min(getTileWidth(), width - column * getTileWidth());
+  }
+
+  /**
+   * Возвращает высоту строки подтайлов с учётом обрезки у нижнего края.
+   *
+   * @param row номер строки подтайлов
+   * @return высота подтайлов строки
+   */
+  public int getTileHeight(int row) {
+    return Math.min(getTileHeight(), height - row * getTileHeight());
+  }
+
+  /**
+   * Возвращает количество столбцов подтайлов.
+   *
+   * @return количество столбцов
+   */
+  public int getColumns() {
+    return (width + getTileWidth() - 1) / getTileWidth();
+  }
+
+  /**
+   * Возвращает количество строк подтайлов.
+   *
+   * @return количество строк
+   */
+  public int getRows() {
+    return (height + getTileHeight() - 1) / getTileHeight();
+  }
+
+  /**
+   * Возвращает смещение записи индекса подтайла от начала файла.
+   *
+   * @param column номер столбца подтайлов
+   * @param row номер строки подтайлов
+   * @return смещение записи индекса в байтах
+   */
+  public long getIndexOffset(int column, int row) {
+    return SIZE + ((long) row * getColumns() + column) * INDEX_ENTRY_SIZE;
+  }
+
+  /**
+   * Возвращает смещение первого сжатого подтайла от начала файла, то есть размер заголовка вместе
+   * с индексом.
+   *
+   * @return смещение в байтах
+   */
+  public long getDataOffset() {
+    return getIndexOffset(0, getRows());
+  }
+}
@@ -0,0 +1,12 @@
+package ru.maxizenit.chartographer.exception;
+
+/**
+ * Сигнализирует о том, что переданное изображение не удалось прочитать: формат не поддерживается
+ * или данные изображения оборваны.
+ */
+public class InvalidImageException extends Exception {
+
+  public InvalidImageException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,9 @@
+package ru.maxizenit.chartographer.exception;
+
+/** Сигнализирует о том, что у харты нет уровня пирамиды с заданным номером. */
+public class InvalidLevelException extends Exception {
+
+  public InvalidLevelException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,19 @@
+package ru.maxizenit.chartographer.exception;
+
+import lombok.Getter;
+
+/**
+ * Сигнализирует о том, что пакет изображений применён частично: одна из записей пакета
+ * некорректна, а записи, идущие до неё, уже сохранены в харту.
+ */
+@Getter
+public class PartialBatchException extends Exception {
+
+  /** Количество сохранённых записей пакета. */
+  private final int appliedCount;
+
+  public PartialBatchException(String message, int appliedCount, Throwable cause) {
+    super(message, cause);
+    this.appliedCount = appliedCount;
+  }
+}
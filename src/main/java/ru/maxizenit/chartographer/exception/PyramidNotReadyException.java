@@ -0,0 +1,9 @@
+package ru.maxizenit.chartographer.exception;
+
+/** Сигнализирует о том, что пирамида харты ещё строится и её уровни нельзя читать. */
+public class PyramidNotReadyException extends Exception {
+
+  public PyramidNotReadyException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,9 @@
+package ru.maxizenit.chartographer.exception;
+
+/** Сигнализирует о том, что пул обработки запросов заполнен и запрос не может быть принят. */
+public class ServiceOverloadedException extends Exception {
+
+  public ServiceOverloadedException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,107 @@
+package ru.maxizenit.chartographer.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Таймеры горячего пути запросов: чтения и записи изображений фрагментов, сборки и записи
+ * изображений областей, кодирования, декодирования и передачи без декодирования BMP и сжатия и
+ * распаковки подтайлов. Гистограммы таймеров включаются свойством {@code
+ * management.metrics.distribution.percentiles-histogram.chartographer}.
+ */
+@Getter
+@Component
+public class ChartographerTimers {
+
+  /** Название таймера операций DAO изображений. */
+  private static final String IMAGE_DAO_TIMER = "chartographer.image.dao";
+
+  /** Название таймера операций сервиса изображений. */
+  private static final String IMAGE_SERVICE_TIMER = "chartographer.image.service";
+
+  /** Название таймера кодирования и декодирования BMP. */
+  private static final String BMP_TIMER = "chartographer.bmp";
+
+  /** Название таймера сжатия и распаковки подтайлов изображений фрагментов. */
+  private static final String CODEC_TIMER = "chartographer.codec";
+
+  /** Тег операции. */
+  private static final String OPERATION_TAG = "operation";
+
+  /** Чтение изображения фрагмента целиком. */
+  private final Timer imageGet;
+
+  /** Чтение части изображения фрагмента. */
+  private final Timer imageGetPart;
+
+  /** Запись части изображения фрагмента. */
+  private final Timer imageUpdatePart;
+
+  /** Создание пустого изображения фрагмента. */
+  private final Timer imageSaveEmpty;
+
+  /** Удаление изображения фрагмента. */
+  private final Timer imageDelete;
+
+  /** Сборка изображения области из фрагментов. */
+  private final Timer createImage;
+
+  /** Запись изображения области во фрагменты. */
+  private final Timer writeImage;
+
+  /** Кодирование области в BMP и её передача в поток. */
+  private final Timer bmpEncode;
+
+  /** Передача BMP-файла фрагмента в поток без декодирования и кодирования. */
+  private final Timer bmpTransfer;
+
+  /** Чтение BMP-изображения из потока и его декодирование. */
+  private final Timer bmpDecode;
+
+  /** Сжатие подтайла изображения фрагмента. */
+  private final Timer tileDeflate;
+
+  /** Распаковка подтайла изображения фрагмента. */
+  private final Timer tileInflate;
+
+  @Autowired
+  public ChartographerTimers(MeterRegistry registry) {
+    imageGet = register(registry, IMAGE_DAO_TIMER, "get", "Чтение изображения фрагмента");
+    imageGetPart =
+        register(registry, IMAGE_DAO_TIMER, "getPart", "Чтение части изображения фрагмента");
+    imageUpdatePart =
+        register(registry, IMAGE_DAO_TIMER, "updatePart", "Запись части изображения фрагмента");
+    imageSaveEmpty =
+        register(registry, IMAGE_DAO_TIMER, "saveEmpty", "Создание изображения фрагмента");
+    imageDelete = register(registry, IMAGE_DAO_TIMER, "delete", "Удаление изображения фрагмента");
+    createImage =
+        register(registry, IMAGE_SERVICE_TIMER, "createImage", "Сборка изображения области");
+    writeImage =
+        register(registry, IMAGE_SERVICE_TIMER, "writeImage", "Запись изображения области");
+    bmpEncode = register(registry, BMP_TIMER, "encode", "Кодирование и передача BMP");
+    bmpTransfer = register(registry, BMP_TIMER, "transfer", "Передача BMP-файла фрагмента");
+    bmpDecode = register(registry, BMP_TIMER, "decode", "Чтение и декодирование BMP");
+    tileDeflate = register(registry, CODEC_TIMER, "deflate", "Сжатие подтайла изображения");
+    tileInflate = register(registry, CODEC_TIMER, "inflate", "Распаковка подтайла изображения");
+  }
+
+  /**
+   * Регистрирует таймер операции.
+   *
+   * @param registry реестр метрик
+   * @param name название таймера
+   * @param operation название операции
+   * @param description описание операции
+   * @return таймер
+   */
+  private Timer register(
+      MeterRegistry registry, String name, String operation, String description) {
+    return Timer.builder(name)
+        .tag(OPERATION_TAG, operation)
+        .description(description)
+        .register(registry);
+  }
+}
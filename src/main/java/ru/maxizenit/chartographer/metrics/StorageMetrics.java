@@ -0,0 +1,284 @@
+package ru.maxizenit.chartographer.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.maxizenit.chartographer.ChartographerApplication;
+import ru.maxizenit.chartographer.dao.ChartaDao;
+import ru.maxizenit.chartographer.dao.impl.DeflateImageDaoImpl;
+import ru.maxizenit.chartographer.service.ChartaService;
+import ru.maxizenit.chartographer.service.ImageService;
+import ru.maxizenit.chartographer.service.ResponseCacheService;
+import ru.maxizenit.chartographer.service.TileCacheService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Метрики хранилища: количество харт, количество и суммарный размер изображений фрагментов на
+ * диске, счётчики кэша фрагментов, кэша изображений областей, совместных сборок областей, пула
+ * изображений и сжатого формата хранения. Скорость распаковки вычисляется как отношение прироста
+ * {@code chartographer.codec.bytes} к приросту суммарного времени таймера {@code
+ * chartographer.codec} той же операции. Папка контента обходится не чаще, чем раз в {@link
+ * StorageMetrics#SCAN_INTERVAL_NANOS} наносекунд, между обходами метрики диска отдают последние
+ * посчитанные значения.
+ */
+@Component
+public class StorageMetrics {
+
+  /** Минимальный интервал между обходами папки контента. */
+  private static final long SCAN_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+  private final ChartaDao chartaDao;
+  private final ChartaService chartaService;
+  private final TileCacheService tileCacheService;
+  private final ResponseCacheService responseCacheService;
+  private final ImageService imageService;
+  private final DeflateImageDaoImpl deflateImageDao;
+
+  /** Путь к папке с изображениями. */
+  private final String imagesPath;
+
+  /** Время последнего обхода папки или {@code null}, если обхода не было. */
+  private Long scannedAt;
+
+  /** Количество изображений на диске. */
+  private long tileCount;
+
+  /** Суммарный размер изображений на диске в байтах. */
+  private long byteCount;
+
+  @Autowired
+  public StorageMetrics(
+      MeterRegistry registry,
+      ChartaDao chartaDao,
+      ChartaService chartaService,
+      TileCacheService tileCacheService,
+      ResponseCacheService responseCacheService,
+      ImageService imageService,
+      DeflateImageDaoImpl deflateImageDao) {
+    this.chartaDao = chartaDao;
+    this.chartaService = chartaService;
+    this.tileCacheService = tileCacheService;
+    this.responseCacheService = responseCacheService;
+    this.imageService = imageService;
+    this.deflateImageDao = deflateImageDao;
+    imagesPath = ChartographerApplication.contentPath;
+
+    register(registry);
+  }
+
+  /**
+   * Регистрирует метрики хранилища в реестре.
+   *
+   * @param registry реестр метрик
+   */
+  private void register(MeterRegistry registry) {
+    Gauge.builder("chartographer.chartas", chartaDao, ChartaDao::count)
+        .description("Количество харт")
+        .register(registry);
+    Gauge.builder("chartographer.tiles", this, StorageMetrics::getTileCount)
+        .description("Количество изображений фрагментов на диске")
+        .register(registry);
+    Gauge.builder("chartographer.tiles.bytes", this, StorageMetrics::getByteCount)
+        .description("Суммарный размер изображений фрагментов на диске")
+        .baseUnit("bytes")
+        .register(registry);
+
+    FunctionCounter.builder(
+            "chartographer.tile.cache.requests",
+            tileCacheService,
+            service -> service.getStatistics().getHitCount())
+        .tag("result", "hit")
+        .description("Обращения к кэшу фрагментов")
+        .register(registry);
+    FunctionCounter.builder(
+            "chartographer.tile.cache.requests",
+            tileCacheService,
+            service -> service.getStatistics().getMissCount())
+        .tag("result", "miss")
+        .description("Обращения к кэшу фрагментов")
+        .register(registry);
+    FunctionCounter.builder(
+            "chartographer.tile.cache.evictions",
+            tileCacheService,
+            service -> service.getStatistics().getEvictionCount())
+        .description("Вытеснения из кэша фрагментов")
+        .register(registry);
+    Gauge.builder(
+            "chartographer.tile.cache.size",
+            tileCacheService,
+            service -> service.getStatistics().getSize())
+        .description("Количество изображений в кэше фрагментов")
+        .register(registry);
+    Gauge.builder(
+            "chartographer.tile.cache.bytes",
+            tileCacheService,
+            service -> service.getStatistics().getBytes())
+        .description("Суммарный размер изображений в кэше фрагментов")
+        .baseUnit("bytes")
+        .register(registry);
+    Gauge.builder(
+            "chartographer.tile.cache.dirty.bytes",
+            tileCacheService,
+            service -> service.getStatistics().getDirtyBytes())
+        .description("Суммарный размер изменённых областей фрагментов, ещё не записанных на диск")
+        .baseUnit("bytes")
+        .register(registry);
+    FunctionCounter.builder(
+            "chartographer.tile.cache.flush.failures",
+            tileCacheService,
+            service -> service.getStatistics().getFlushFailureCount())
+        .description("Неудавшиеся сбросы изменённых областей фрагментов на диск по таймеру")
+        .register(registry);
+
+    FunctionCounter.builder(
+            "chartographer.response.cache.requests",
+            responseCacheService,
+            service -> service.getStatistics().getHitCount())
+        .tag("result", "hit")
+        .description("Обращения к кэшу изображений областей")
+        .register(registry);
+    FunctionCounter.builder(
+            "chartographer.response.cache.requests",
+            responseCacheService,
+            service -> service.getStatistics().getMissCount())
+        .tag("result", "miss")
+        .description("Обращения к кэшу изображений областей")
+        .register(registry);
+    FunctionCounter.builder(
+            "chartographer.response.cache.evictions",
+            responseCacheService,
+            service -> service.getStatistics().getEvictionCount())
+        .description("Вытеснения из кэша изображений областей")
+        .register(registry);
+    Gauge.builder(
+            "chartographer.response.cache.hit.ratio",
+            responseCacheService,
+            service -> service.getStatistics().getHitRatio())
+        .description("Доля попаданий в кэш изображений областей с момента запуска")
+        .register(registry);
+    Gauge.builder(
+            "chartographer.response.cache.bytes",
+            responseCacheService,
+            service -> service.getStatistics().getBytes())
+        .description("Суммарный размер изображений в кэше изображений областей")
+        .baseUnit("bytes")
+        .register(registry);
+    FunctionCounter.builder(
+            "chartographer.single.flight.shared",
+            chartaService,
+            ChartaService::getSharedRenderCount)
+        .description("Запросы, дождавшиеся изображения области, которое собирал другой запрос")
+        .register(registry);
+
+    FunctionCounter.builder(
+            "chartographer.image.pool.requests",
+            imageService,
+            service -> service.getPoolStatistics().getHitCount())
+        .tag("result", "hit")
+        .description("Выдачи изображений из пула")
+        .register(registry);
+    FunctionCounter.builder(
+            "chartographer.image.pool.requests",
+            imageService,
+            service -> service.getPoolStatistics().getMissCount())
+        .tag("result", "miss")
+        .description("Выдачи изображений из пула")
+        .register(registry);
+    Gauge.builder(
+            "chartographer.image.pool.bytes",
+            imageService,
+            service -> service.getPoolStatistics().getBytes())
+        .description("Суммарный размер свободных массивов пикселей в пуле изображений")
+        .baseUnit("bytes")
+        .register(registry);
+
+    FunctionCounter.builder(
+            "chartographer.codec.bytes",
+            deflateImageDao,
+            dao -> dao.getStatistics().getRawBytes())
+        .tag("operation", "deflate")
+        .description("Размер подтайлов до сжатия")
+        .baseUnit("bytes")
+        .register(registry);
+    FunctionCounter.builder(
+            "chartographer.codec.bytes",
+            deflateImageDao,
+            dao -> dao.getStatistics().getInflatedBytes())
+        .tag("operation", "inflate")
+        .description("Размер подтайлов после распаковки")
+        .baseUnit("bytes")
+        .register(registry);
+    FunctionCounter.builder(
+            "chartographer.codec.compressed.bytes",
+            deflateImageDao,
+            dao -> dao.getStatistics().getCompressedBytes())
+        .description("Размер подтайлов после сжатия")
+        .baseUnit("bytes")
+        .register(registry);
+    Gauge.builder(
+            "chartographer.codec.compression.ratio",
+            deflateImageDao,
+            dao -> dao.getStatistics().getCompressionRatio())
+        .description("Степень сжатия подтайлов с момента запуска")
+        .register(registry);
+  }
+
+  /**
+   * Возвращает количество изображений фрагментов на диске.
+   *
+   * @return количество изображений
+   */
+  private synchronized double getTileCount() {
+    scanIfStale();
+    return tileCount;
+  }
+
+  /**
+   * Возвращает суммарный размер изображений фрагментов на диске.
+   *
+   * @return размер в байтах
+   */
+  private synchronized double getByteCount() {
+    scanIfStale();
+    return byteCount;
+  }
+
+  /**
+   * Обходит папку с изображениями, если с прошлого обхода прошло больше {@link
+   * StorageMetrics#SCAN_INTERVAL_NANOS} наносекунд. Вложенные папки, например каталог харт, не
+   * учитываются.
+   */
+  private void scanIfStale() {
+    long now = System.nanoTime();
+
+    if (imagesPath == null || scannedAt != null && now - scannedAt < SCAN_INTERVAL_NANOS) {
+      return;
+    }
+
+    long count = 0;
+    long bytes = 0;
+
+    try (Stream<Path> files = Files.list(Path.of(imagesPath))) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        if (Files.isRegularFile(file)) {
+          count++;
+          bytes += Files.size(file);
+        }
+      }
+    } catch (IOException | UncheckedIOException e) {
+      return;
+    }
+
+    tileCount = count;
+    byteCount = bytes;
+    scannedAt = now;
+  }
+}
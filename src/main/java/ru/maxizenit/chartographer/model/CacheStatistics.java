@@ -0,0 +1,39 @@
+package ru.maxizenit.chartographer.model;
+
+import lombok.Value;
+
+/** Класс {@code CacheStatistics} представляет снимок счётчиков кэша. */
+@Value
+public class CacheStatistics {
+
+  /** Количество попаданий. */
+  long hitCount;
+
+  /** Количество промахов. */
+  long missCount;
+
+  /** Количество вытесненных записей. */
+  long evictionCount;
+
+  /** Количество записей. */
+  long size;
+
+  /** Суммарный размер записей в байтах. */
+  long bytes;
+
+  /** Суммарный размер изменённых областей, ещё не записанных в хранилище, в байтах. */
+  long dirtyBytes;
+
+  /** Количество неудавшихся фоновых записей изменённых областей в хранилище. */
+  long flushFailureCount;
+
+  /**
+   * Возвращает долю попаданий среди всех обращений к кэшу.
+   *
+   * @return доля попаданий от 0 до 1
+   */
+  public double getHitRatio() {
+    long requestCount = hitCount + missCount;
+    return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+  }
+}
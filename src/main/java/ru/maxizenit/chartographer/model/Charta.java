@@ -1,12 +1,19 @@
 package ru.maxizenit.chartographer.model;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.util.List;
 
 /**
  * Класс {@code Charta} представляет свиток, состоящий из фрагментов. Список фрагментов хранится в
- * поле {@link Charta#fragments}.
+ * поле {@link Charta#fragments}, а построенный по нему при первом обращении пространственный
+ * индекс в поле {@link Charta#index}. Уменьшенные копии харты хранятся в поле {@link
+ * Charta#levels}; каждый уровень пирамиды сам представлен хартой без идентификатора.
  */
 @Data
 public class Charta {
@@ -23,8 +30,49 @@ public class Charta {
   /** Фрагменты. */
   private List<Fragment> fragments;
 
+  /**
+   * Уровни пирамиды: копии харты, уменьшенные в 2, 4 и т.д. раз, или {@code null}, если пирамида
+   * ещё не построена.
+   */
+  private List<Charta> levels;
+
+  /** Пространственный индекс фрагментов или {@code null}, если он ещё не построен. */
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private volatile FragmentIndex index;
+
   public Charta(int width, int height) {
     this.width = width;
     this.height = height;
   }
+
+  /**
+   * Задаёт фрагменты харты и сбрасывает их пространственный индекс.
+   *
+   * @param fragments фрагменты
+   */
+  public void setFragments(List<Fragment> fragments) {
+    this.fragments = fragments;
+    index = null;
+  }
+
+  /**
+   * Возвращает пространственный индекс фрагментов, строя его при первом обращении. Харты каталога
+   * поднимаются при запуске целиком, поэтому индекс строится только для тех из них, к которым
+   * обращаются запросы.
+   *
+   * @return индекс или {@code null}, если фрагменты не заданы
+   */
+  public FragmentIndex getIndex() {
+    FragmentIndex result = index;
+
+    if (result == null && fragments != null) {
+      result = new FragmentIndex(fragments);
+      index = result;
+    }
+
+    return result;
+  }
 }
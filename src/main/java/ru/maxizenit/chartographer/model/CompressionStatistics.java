@@ -0,0 +1,26 @@
+package ru.maxizenit.chartographer.model;
+
+import lombok.Value;
+
+/** Класс {@code CompressionStatistics} представляет снимок счётчиков сжатия изображений. */
+@Value
+public class CompressionStatistics {
+
+  /** Суммарный размер сжатых подтайлов до сжатия в байтах. */
+  long rawBytes;
+
+  /** Суммарный размер сжатых подтайлов после сжатия в байтах. */
+  long compressedBytes;
+
+  /** Суммарный размер распакованных подтайлов в байтах. */
+  long inflatedBytes;
+
+  /**
+   * Возвращает степень сжатия: во сколько раз сжатые подтайлы меньше исходных.
+   *
+   * @return степень сжатия или {@code 0}, если ничего не сжималось
+   */
+  public double getCompressionRatio() {
+    return compressedBytes == 0 ? 0 : (double) rawBytes / compressedBytes;
+  }
+}
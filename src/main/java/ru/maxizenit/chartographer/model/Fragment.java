@@ -1,15 +1,16 @@
 package ru.maxizenit.chartographer.model;
 
-import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 
 /**
  * Класс {@code Fragment} представляет фрагмент свитка, расположенный по координатам {@link
  * Fragment#x} и {@link Fragment#y}. Название изображения фрагмента хранится в поле {@link
- * Fragment#imageName}.
+ * Fragment#imageName}. Изображение создаётся при первой записи во фрагмент, до этого поле
+ * содержит {@code null}, а фрагмент считается закрашенным чёрным цветом. Версия фрагмента в поле
+ * {@link Fragment#version} растёт с каждой записью в его изображение и не сохраняется в каталоге.
  */
 @Data
-@AllArgsConstructor
 public class Fragment {
 
   /** Координата по оси X. */
@@ -25,7 +26,26 @@ public class Fragment {
   private int height;
 
   /** Название изображения. */
-  private String imageName;
+  private volatile String imageName;
+
+  /**
+   * Версия изображения: {@code 0}, если с запуска сервиса во фрагмент ничего не записывалось, иначе
+   * номер последней записи.
+   */
+  @EqualsAndHashCode.Exclude
+  private volatile long version;
+
+  /**
+   * {@code true}, если фрагмент удалён вместе с хартой: его изображение удалено, и новое для него
+   * не создаётся.
+   */
+  @EqualsAndHashCode.Exclude
+  private volatile boolean deleted;
+
+  public Fragment(int x, int y, int width, int height, String imageName) {
+    this(x, y, width, height);
+    this.imageName = imageName;
+  }
 
   public Fragment(int x, int y, int width, int height) {
     this.x = x;
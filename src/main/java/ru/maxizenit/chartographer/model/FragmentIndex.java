@@ -0,0 +1,131 @@
+package ru.maxizenit.chartographer.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Класс {@code FragmentIndex} представляет пространственный индекс фрагментов харты. Если
+ * фрагменты образуют сетку, то есть делят харту на столбцы и строки, индекс хранит границы
+ * столбцов и строк, и фрагменты, пересекающиеся с областью, находятся двоичным поиском за
+ * O(log n + k). Для раскладок, не образующих сетку, индекс перебирает все фрагменты.
+ */
+public class FragmentIndex {
+
+  /** Фрагменты харты. */
+  private final List<Fragment> fragments;
+
+  /** Координаты левых границ столбцов сетки по возрастанию или {@code null}, если сетки нет. */
+  private final int[] columnStarts;
+
+  /** Координаты верхних границ строк сетки по возрастанию или {@code null}, если сетки нет. */
+  private final int[] rowStarts;
+
+  /** Фрагменты сетки, уложенные построчно, или {@code null}, если сетки нет. */
+  private final Fragment[] cells;
+
+  /**
+   * Строит индекс по списку фрагментов.
+   *
+   * @param fragments фрагменты харты
+   */
+  public FragmentIndex(List<Fragment> fragments) {
+    this.fragments = fragments;
+
+    int[] columns = fragments.stream().mapToInt(Fragment::getX).sorted().distinct().toArray();
+    int[] rows = fragments.stream().mapToInt(Fragment::getY).sorted().distinct().toArray();
+    Fragment[] grid = new Fragment[columns.length * rows.length];
+    boolean isGrid = grid.length == fragments.size();
+
+    for (int i = 0; isGrid && i < fragments.size(); i++) {
+      Fragment fragment = fragments.get(i);
+      int column = Arrays.binarySearch(columns, fragment.getX());
+      int row = Arrays.binarySearch(rows, fragment.getY());
+      int cell = row * columns.length + column;
+
+      isGrid =
+          grid[cell] == null
+              && (column + 1 == columns.length
+                  || fragment.getX() + fragment.getWidth() == columns[column + 1])
+              && (row + 1 == rows.length
+                  || fragment.getY() + fragment.getHeight() == rows[row + 1]);
+      grid[cell] = fragment;
+    }
+
+    columnStarts = isGrid ? columns : null;
+    rowStarts = isGrid ? rows : null;
+    cells = isGrid ? grid : null;
+  }
+
+  /**
+   * Возвращает фрагменты, пересекающиеся с заданной областью.
+   *
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param width ширина области
+   * @param height высота области
+   * @return список пересекающихся с областью фрагментов, возможно пустой
+   */
+  public List<Fragment> query(int x, int y, int width, int height) {
+    if (cells == null) {
+      List<Fragment> result = new ArrayList<>();
+
+      for (Fragment fragment : fragments) {
+        if (isCrossing(fragment, x, y, width, height)) {
+          result.add(fragment);
+        }
+      }
+
+      return result;
+    }
+
+    int firstColumn = Math.max(0, floorIndex(columnStarts, x));
+    int lastColumn = floorIndex(columnStarts, x + width - 1);
+    int firstRow = Math.max(0, floorIndex(rowStarts, y));
+    int lastRow = floorIndex(rowStarts, y + height - 1);
+    List<Fragment> result =
+        new ArrayList<>(
+            Math.max(0, (lastColumn - firstColumn + 1) * (lastRow - firstRow + 1)));
+
+    for (int row = firstRow; row <= lastRow; row++) {
+      for (int column = firstColumn; column <= lastColumn; column++) {
+        Fragment fragment = cells[row * columnStarts.length + column];
+
+        if (isCrossing(fragment, x, y, width, height)) {
+          result.add(fragment);
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Возвращает номер последней границы, не превосходящей заданную координату.
+   *
+   * @param starts координаты границ по возрастанию
+   * @param coordinate координата
+   * @return номер границы или {@code -1}, если все границы больше координаты
+   */
+  private int floorIndex(int[] starts, int coordinate) {
+    int index = Arrays.binarySearch(starts, coordinate);
+    return index >= 0 ? index : -index - 2;
+  }
+
+  /**
+   * Возвращает {@code true}, если область пересекается с фрагментом.
+   *
+   * @param fragment фрагмент
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param width ширина области
+   * @param height высота области
+   * @return {@code true}, если область пересекается с фрагментом
+   */
+  private boolean isCrossing(Fragment fragment, int x, int y, int width, int height) {
+    return fragment.getX() < x + width
+        && x < fragment.getX() + fragment.getWidth()
+        && fragment.getY() < y + height
+        && y < fragment.getY() + fragment.getHeight();
+  }
+}
@@ -0,0 +1,39 @@
+package ru.maxizenit.chartographer.model;
+
+import lombok.Value;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * Класс {@code ImagePart} представляет изображение, записываемое в область харты с координатами
+ * {@link ImagePart#x} и {@link ImagePart#y}. Часть изображения вне области отбрасывается, а часть
+ * области, которую изображение не покрывает, закрашивается чёрным цветом.
+ */
+@Value
+public class ImagePart {
+
+  /** Координата области по оси X. */
+  int x;
+
+  /** Координата области по оси Y. */
+  int y;
+
+  /** Ширина области. */
+  int width;
+
+  /** Высота области. */
+  int height;
+
+  /** Изображение. */
+  BufferedImage image;
+
+  /**
+   * Возвращает область, в которую записывается изображение.
+   *
+   * @return область в координатах харты
+   */
+  public Rectangle getBounds() {
+    return new Rectangle(x, y, width, height);
+  }
+}
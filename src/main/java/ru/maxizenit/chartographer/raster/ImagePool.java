@@ -0,0 +1,210 @@
+package ru.maxizenit.chartographer.raster;
+
+import ru.maxizenit.chartographer.model.CacheStatistics;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Класс {@code ImagePool} выдаёт во временное пользование изображения в формате {@link
+ * BufferedImage#TYPE_3BYTE_BGR}, массивы пикселей которых переиспользуются. Массивы делятся на
+ * классы размеров {@code 2^k} и {@code 3 * 2^(k - 1)} байт, изображение получает массив
+ * наименьшего подходящего класса. Возвращённые массивы хранятся, пока их суммарный размер не
+ * превышает заданного, поэтому в установившемся режиме изображения полос и областей не создают
+ * новых массивов. Изображение нельзя использовать после возврата и нельзя передавать туда, где
+ * оно может быть сохранено.
+ */
+public class ImagePool {
+
+  /** Количество байт на пиксель. */
+  private static final int BYTES_PER_PIXEL = 3;
+
+  /** Размер наименьшего класса в байтах. */
+  private static final int MIN_CLASS_SIZE = 1 << 16;
+
+  /** Цветовая модель изображений в формате {@link BufferedImage#TYPE_3BYTE_BGR}. */
+  private static final ColorModel COLOR_MODEL =
+      new ComponentColorModel(
+          ColorSpace.getInstance(ColorSpace.CS_sRGB),
+          new int[] {8, 8, 8},
+          false,
+          false,
+          Transparency.OPAQUE,
+          DataBuffer.TYPE_BYTE);
+
+  /** Порядок компонент пикселя в массиве. */
+  private static final int[] BAND_OFFSETS = {2, 1, 0};
+
+  /** Максимальный суммарный размер хранимых массивов в байтах. */
+  private final long maxBytes;
+
+  /** Свободные массивы по размерам классов. */
+  private final Map<Integer, ArrayDeque<byte[]>> free = new HashMap<>();
+
+  /** Суммарный размер свободных массивов в байтах. */
+  private long bytes;
+
+  /** Количество свободных массивов. */
+  private long size;
+
+  /** Количество выдач свободных массивов. */
+  private long hitCount;
+
+  /** Количество созданных массивов. */
+  private long missCount;
+
+  /** Количество возвращённых массивов, которые не поместились в пул. */
+  private long evictionCount;
+
+  /**
+   * Создаёт пул.
+   *
+   * @param maxBytes максимальный суммарный размер хранимых массивов в байтах; {@code 0} отключает
+   *     переиспользование
+   */
+  public ImagePool(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Выдаёт чёрное изображение заданного размера.
+   *
+   * @param width ширина
+   * @param height высота
+   * @return выданное изображение, которое нужно вернуть вызовом {@link Lease#close()}
+   */
+  public Lease lease(int width, int height) {
+    int length = width * height * BYTES_PER_PIXEL;
+    int classSize = getClassSize(length);
+    byte[] pixels = poll(classSize);
+
+    if (pixels == null) {
+      pixels = new byte[classSize <= maxBytes ? classSize : length];
+    } else {
+      Arrays.fill(pixels, 0, length, (byte) 0);
+    }
+
+    WritableRaster raster =
+        Raster.createInterleavedRaster(
+            new DataBufferByte(pixels, length),
+            width,
+            height,
+            width * BYTES_PER_PIXEL,
+            BYTES_PER_PIXEL,
+            BAND_OFFSETS,
+            null);
+
+    return new Lease(new BufferedImage(COLOR_MODEL, raster, false, null), pixels);
+  }
+
+  /**
+   * Возвращает текущие значения счётчиков пула: попадания — выдачи свободных массивов, промахи —
+   * создания новых, вытеснения — возвращённые массивы, не поместившиеся в пул.
+   *
+   * @return статистика пула
+   */
+  public synchronized CacheStatistics getStatistics() {
+    return new CacheStatistics(hitCount, missCount, evictionCount, size, bytes, 0, 0);
+  }
+
+  /**
+   * Возвращает размер класса, в который попадает массив заданной длины.
+   *
+   * @param length длина массива
+   * @return размер класса в байтах
+   */
+  private static int getClassSize(int length) {
+    long classSize = MIN_CLASS_SIZE;
+
+    while (classSize < length) {
+      classSize = Long.bitCount(classSize) == 1 ? classSize / 2 * 3 : classSize / 3 * 4;
+    }
+
+    return (int) Math.min(classSize, Integer.MAX_VALUE - 8);
+  }
+
+  /**
+   * Забирает свободный массив заданного класса.
+   *
+   * @param classSize размер класса
+   * @return массив или {@code null}, если свободных массивов этого класса нет или класс не
+   *     помещается в пул
+   */
+  private synchronized byte[] poll(int classSize) {
+    ArrayDeque<byte[]> arrays = classSize <= maxBytes ? free.get(classSize) : null;
+    byte[] pixels = arrays == null ? null : arrays.pollLast();
+
+    if (pixels == null) {
+      missCount++;
+      return null;
+    }
+
+    hitCount++;
+    size--;
+    bytes -= pixels.length;
+    return pixels;
+  }
+
+  /**
+   * Возвращает массив в пул, если он принадлежит одному из классов и помещается в пул.
+   *
+   * @param pixels массив
+   */
+  private synchronized void offer(byte[] pixels) {
+    if (pixels.length != getClassSize(pixels.length) || bytes + pixels.length > maxBytes) {
+      evictionCount++;
+      return;
+    }
+
+    free.computeIfAbsent(pixels.length, classSize -> new ArrayDeque<>()).addLast(pixels);
+    size++;
+    bytes += pixels.length;
+  }
+
+  /**
+   * Изображение, выданное пулом. Возвращается в пул вызовом {@link Lease#close()}, что позволяет
+   * использовать его в конструкции try-with-resources; повторные вызовы ничего не делают.
+   */
+  public final class Lease implements AutoCloseable {
+
+    /** Изображение. */
+    private final BufferedImage image;
+
+    /** Массив пикселей изображения или {@code null}, если изображение уже возвращено. */
+    private byte[] pixels;
+
+    private Lease(BufferedImage image, byte[] pixels) {
+      this.image = image;
+      this.pixels = pixels;
+    }
+
+    /**
+     * Возвращает выданное изображение.
+     *
+     * @return изображение
+     */
+    public BufferedImage getImage() {
+      return image;
+    }
+
+    /** Возвращает изображение в пул. */
+    @Override
+    public void close() {
+      if (pixels != null) {
+        offer(pixels);
+        pixels = null;
+      }
+    }
+  }
+}
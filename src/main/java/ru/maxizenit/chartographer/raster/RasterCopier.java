@@ -0,0 +1,202 @@
+package ru.maxizenit.chartographer.raster;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * Класс {@code RasterCopier} копирует прямоугольные области между изображениями. Если оба
+ * изображения хранятся в формате {@link BufferedImage#TYPE_3BYTE_BGR}, строки области копируются
+ * из массива пикселей одного изображения в массив другого через {@link System#arraycopy}, минуя
+ * Java2D; в остальных случаях область рисуется через {@link Graphics2D}. Области, выходящие за
+ * границы изображений, обрезаются.
+ */
+public final class RasterCopier {
+
+  /** Количество байт на пиксель в формате {@link BufferedImage#TYPE_3BYTE_BGR}. */
+  private static final int BYTES_PER_PIXEL = 3;
+
+  private RasterCopier() {}
+
+  /**
+   * Копирует изображение целиком в заданное изображение так, что левый верхний угол копии
+   * оказывается в точке с заданными координатами.
+   *
+   * @param source копируемое изображение
+   * @param target изображение, в которое выполняется копирование
+   * @param x координата левого верхнего угла копии по оси X
+   * @param y координата левого верхнего угла копии по оси Y
+   */
+  public static void copy(BufferedImage source, BufferedImage target, int x, int y) {
+    copy(source, 0, 0, target, x, y, source.getWidth(), source.getHeight());
+  }
+
+  /**
+   * Копирует область одного изображения в другое изображение. Изображения не должны разделять
+   * массив пикселей.
+   *
+   * @param source копируемое изображение
+   * @param sourceX координата копируемой области по оси X
+   * @param sourceY координата копируемой области по оси Y
+   * @param target изображение, в которое выполняется копирование
+   * @param x координата копии по оси X
+   * @param y координата копии по оси Y
+   * @param width ширина области
+   * @param height высота области
+   */
+  public static void copy(
+      BufferedImage source,
+      int sourceX,
+      int sourceY,
+      BufferedImage target,
+      int x,
+      int y,
+      int width,
+      int height) {
+    int shiftX = Math.max(0, Math.max(-sourceX, -x));
+    int shiftY = Math.max(0, Math.max(-sourceY, -y));
+
+    sourceX += shiftX;
+    sourceY += shiftY;
+    x += shiftX;
+    y += shiftY;
+    width = Math.min(width - shiftX, Math.min(source.getWidth() - sourceX, target.getWidth() - x));
+    height =
+        Math.min(height - shiftY, Math.min(source.getHeight() - sourceY, target.getHeight() - y));
+
+    if (width <= 0 || height <= 0) {
+      return;
+    }
+
+    if (!isBgr(source) || !isBgr(target)) {
+      Graphics2D graphics = target.createGraphics();
+
+      graphics.drawImage(
+          source,
+          x,
+          y,
+          x + width,
+          y + height,
+          sourceX,
+          sourceY,
+          sourceX + width,
+          sourceY + height,
+          null);
+      graphics.dispose();
+      return;
+    }
+
+    byte[] sourcePixels = getPixels(source);
+    byte[] targetPixels = getPixels(target);
+    int sourceStride = getScanlineStride(source);
+    int targetStride = getScanlineStride(target);
+    int sourceOffset = getOffset(source, sourceX, sourceY);
+    int targetOffset = getOffset(target, x, y);
+    int rowLength = width * BYTES_PER_PIXEL;
+
+    for (int row = 0; row < height; row++) {
+      System.arraycopy(
+          sourcePixels,
+          sourceOffset + row * sourceStride,
+          targetPixels,
+          targetOffset + row * targetStride,
+          rowLength);
+    }
+  }
+
+  /**
+   * Закрашивает область изображения чёрным цветом.
+   *
+   * @param target изображение
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param width ширина области
+   * @param height высота области
+   */
+  public static void clear(BufferedImage target, int x, int y, int width, int height) {
+    int startX = Math.max(0, x);
+    int startY = Math.max(0, y);
+    int endX = Math.min(target.getWidth(), x + width);
+    int endY = Math.min(target.getHeight(), y + height);
+
+    if (startX >= endX || startY >= endY) {
+      return;
+    }
+
+    if (!isBgr(target)) {
+      Graphics2D graphics = target.createGraphics();
+
+      graphics.setColor(Color.BLACK);
+      graphics.fillRect(startX, startY, endX - startX, endY - startY);
+      graphics.dispose();
+      return;
+    }
+
+    byte[] pixels = getPixels(target);
+    int stride = getScanlineStride(target);
+    int offset = getOffset(target, startX, startY);
+    int rowLength = (endX - startX) * BYTES_PER_PIXEL;
+
+    for (int row = 0; row < endY - startY; row++) {
+      int rowStart = offset + row * stride;
+      Arrays.fill(pixels, rowStart, rowStart + rowLength, (byte) 0);
+    }
+  }
+
+  /**
+   * Возвращает {@code true}, если пиксели изображения хранятся в формате {@link
+   * BufferedImage#TYPE_3BYTE_BGR} в одном массиве байт.
+   *
+   * @param image изображение
+   * @return {@code true}, если строки изображения можно копировать напрямую
+   */
+  private static boolean isBgr(BufferedImage image) {
+    WritableRaster raster = image.getRaster();
+
+    return image.getType() == BufferedImage.TYPE_3BYTE_BGR
+        && raster.getSampleModel() instanceof ComponentSampleModel
+        && raster.getDataBuffer() instanceof DataBufferByte
+        && raster.getDataBuffer().getNumBanks() == 1;
+  }
+
+  /**
+   * Возвращает массив пикселей изображения.
+   *
+   * @param image изображение в формате {@link BufferedImage#TYPE_3BYTE_BGR}
+   * @return массив пикселей, общий для изображения и всех его подызображений
+   */
+  private static byte[] getPixels(BufferedImage image) {
+    return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+  }
+
+  /**
+   * Возвращает расстояние в байтах между началами соседних строк изображения.
+   *
+   * @param image изображение в формате {@link BufferedImage#TYPE_3BYTE_BGR}
+   * @return длина строки в массиве пикселей
+   */
+  private static int getScanlineStride(BufferedImage image) {
+    return ((ComponentSampleModel) image.getRaster().getSampleModel()).getScanlineStride();
+  }
+
+  /**
+   * Возвращает положение пикселя изображения в массиве пикселей с учётом того, что изображение
+   * может быть подызображением другого изображения.
+   *
+   * @param image изображение в формате {@link BufferedImage#TYPE_3BYTE_BGR}
+   * @param x координата пикселя по оси X
+   * @param y координата пикселя по оси Y
+   * @return индекс первого байта пикселя
+   */
+  private static int getOffset(BufferedImage image, int x, int y) {
+    WritableRaster raster = image.getRaster();
+
+    return raster.getDataBuffer().getOffset()
+        + (y - raster.getSampleModelTranslateY()) * getScanlineStride(image)
+        + (x - raster.getSampleModelTranslateX()) * BYTES_PER_PIXEL;
+  }
+}
@@ -0,0 +1,166 @@
+package ru.maxizenit.chartographer.raw;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Класс {@code RawImageHeader} представляет заголовок изображения во внутреннем формате хранения.
+ * За заголовком фиксированного размера следуют пиксели в порядке BGR без выравнивания строк.
+ * Изображение может делиться на квадратные подтайлы, которые хранятся друг за другом построчно,
+ * а пиксели внутри подтайла хранятся построчно сверху вниз. Подтайлы у правого и нижнего краёв
+ * обрезаются по размеру изображения. Если размер подтайла равен нулю, изображение хранится одним
+ * тайлом. Смещение любого пикселя вычисляется без чтения файла.
+ */
+@Getter
+public class RawImageHeader {
+
+  /** Размер заголовка в байтах. */
+  public static final int SIZE = 32;
+
+  /** Количество байт на пиксель. */
+  public static final int BYTES_PER_PIXEL = 3;
+
+  /** Сигнатура файла ("CRAW"). */
+  private static final int SIGNATURE = 0x43524157;
+
+  /** Версия формата. */
+  private static final int VERSION = 1;
+
+  /** Сообщение о неподдерживаемом формате изображения. */
+  private static final String UNSUPPORTED_FORMAT_MESSAGE =
+      "Файл не является изображением во внутреннем формате хранения";
+
+  /** Ширина изображения. */
+  private final int width;
+
+  /** Высота изображения. */
+  private final int height;
+
+  /** Размер стороны подтайла или {@code 0}, если изображение хранится одним тайлом. */
+  private final int tileSize;
+
+  /**
+   * Создаёт заголовок изображения.
+   *
+   * @param width ширина
+   * @param height высота
+   * @param tileSize размер стороны подтайла или {@code 0}, если изображение хранится одним тайлом
+   */
+  public RawImageHeader(int width, int height, int tileSize) {
+    this.width = width;
+    this.height = height;
+    this.tileSize = tileSize;
+  }
+
+  /**
+   * Читает заголовок из буфера, начиная с его текущей позиции.
+   *
+   * @param buffer буфер с первыми {@link RawImageHeader#SIZE} байтами файла
+   * @return заголовок изображения
+   * @throws IOException если файл не является изображением во внутреннем формате хранения
+   */
+  public static RawImageHeader read(ByteBuffer buffer) throws IOException {
+    ByteBuffer header = buffer.slice();
+
+    if (header.remaining() < SIZE
+        || header.getInt(0) != SIGNATURE
+        || header.getInt(4) != VERSION) {
+      throw new IOException(UNSUPPORTED_FORMAT_MESSAGE);
+    }
+
+    return new RawImageHeader(header.getInt(8), header.getInt(12), header.getInt(16));
+  }
+
+  /**
+   * Возвращает заголовок в виде буфера, готового к записи в начало файла.
+   *
+   * @return буфер размером {@link RawImageHeader#SIZE} байт
+   */
+  public ByteBuffer toByteBuffer() {
+    ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+
+    buffer.putInt(SIGNATURE).putInt(VERSION).putInt(width).putInt(height).putInt(tileSize);
+
+    return buffer.clear();
+  }
+
+  /**
+   * Возвращает ширину полного подтайла.
+   *
+   * @return ширина подтайла
+   */
+  public int getTileWidth() {
+    return tileSize == 0 ? width : tileSize;
+  }
+
+  /**
+   * Возвращает высоту полного подтайла.
+   *
+   * @return высота подтайла
+   */
+  public int getTileHeight() {
+    return tileSize == 0 ? height : tileSize;
+  }
+
+  /**
+   * Возвращает ширину столбца подтайлов с учётом обрезки у правого края.
+   *
+   * @param column номер столбца подтайлов
+   * @return ширина подтайлов столбца
+   */
+  public int getTileWidth(int column) {
+    return Math.min(getTileWidth(), width - column * getTileWidth());
+  }
+
+  /**
+   * Возвращает высоту строки подтайлов с учётом обрезки у нижнего края.
+   *
+   * @param row номер строки подтайлов
+   * @return высота подтайлов строки
+   */
+  public int getTileHeight(int row) {
+    return Math.min(getTileHeight(), height - row * getTileHeight());
+  }
+
+  /**
+   * Возвращает смещение первого пикселя подтайла от начала файла.
+   *
+   * @param column номер столбца подтайлов
+   * @param row номер строки подтайлов
+   * @return смещение подтайла в байтах
+   */
+  public long getTileOffset(int column, int row) {
+    long rowsAbove = (long) row * getTileHeight() * width;
+    long tilesToLeft = (long) column * getTileWidth() * getTileHeight(row);
+
+    return SIZE + (rowsAbove + tilesToLeft) * BYTES_PER_PIXEL;
+  }
+
+  /**
+   * Возвращает смещение пикселя от начала файла.
+   *
+   * @param x координата пикселя по оси X
+   * @param y координата пикселя по оси Y
+   * @return смещение пикселя в байтах
+   */
+  public long getPixelOffset(int x, int y) {
+    int column = x / getTileWidth();
+    int row = y / getTileHeight();
+    int tileX = x - column * getTileWidth();
+    int tileY = y - row * getTileHeight();
+
+    return getTileOffset(column, row)
+        + ((long) tileY * getTileWidth(column) + tileX) * BYTES_PER_PIXEL;
+  }
+
+  /**
+   * Возвращает размер файла.
+   *
+   * @return размер файла в байтах
+   */
+  public long getFileSize() {
+    return SIZE + (long) width * height * BYTES_PER_PIXEL;
+  }
+}
@@ -1,9 +1,18 @@
 package ru.maxizenit.chartographer.service;
 
+import ru.maxizenit.chartographer.bmp.BmpWriter;
+import ru.maxizenit.chartographer.bmp.TaggedBmpWriter;
 import ru.maxizenit.chartographer.exception.ChartaNotFoundException;
 import ru.maxizenit.chartographer.exception.ImageNoCrossingException;
+import ru.maxizenit.chartographer.exception.InvalidImageException;
+import ru.maxizenit.chartographer.exception.InvalidLevelException;
+import ru.maxizenit.chartographer.exception.PartialBatchException;
+import ru.maxizenit.chartographer.exception.PyramidNotReadyException;
 
+import java.awt.Rectangle;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 
 /** Сервис для работы с хартами. */
 public interface ChartaService {
@@ -18,6 +27,18 @@ public interface ChartaService {
    */
   Integer createCharta(int width, int height) throws IOException;
 
+  /**
+   * Создаёт харту заданного размера, разбитую на фрагменты заданного размера, и возвращает
+   * заданный ей идентификатор.
+   *
+   * @param width ширина
+   * @param height высота
+   * @param tileSize размер фрагмента
+   * @return идентификатор харты
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  Integer createCharta(int width, int height, int tileSize) throws IOException;
+
   /**
    * Удаляет харту с заданным идентификатором.
    *
@@ -42,18 +63,138 @@ public interface ChartaService {
   byte[] getChartaPart(int id, int x, int y, int width, int height)
       throws ChartaNotFoundException, ImageNoCrossingException, IOException;
 
+  /**
+   * Проверяет запрос фрагмента харты и возвращает объект, записывающий изображение фрагмента в
+   * поток в формате BMP. Изображение читается и записывается горизонтальными полосами, поэтому оно
+   * не собирается в памяти целиком.
+   *
+   * @param id идентификатор
+   * @param x координата по оси X
+   * @param y координата по оси Y
+   * @param width ширина
+   * @param height высота
+   * @return объект для записи изображения области харты
+   * @throws ChartaNotFoundException если харты с заданным идентификатором не существует
+   * @throws ImageNoCrossingException если заданный фрагмент не пересекается по координатам с хартой
+   */
+  BmpWriter getChartaPartWriter(int id, int x, int y, int width, int height)
+      throws ChartaNotFoundException, ImageNoCrossingException;
+
+  /**
+   * Проверяет запрос фрагмента уровня пирамиды харты и возвращает объект, записывающий
+   * изображение фрагмента в поток в формате BMP. Координаты и размеры области задаются в пикселях
+   * уровня: на уровне {@code level} харта уменьшена в {@code 2^level} раз. Нулевой уровень
+   * совпадает с самой хартой. Изображения небольших областей кэшируются в закодированном виде до
+   * следующей записи в пересекающиеся с ними фрагменты.
+   *
+   * @param id идентификатор
+   * @param level номер уровня пирамиды
+   * @param x координата по оси X
+   * @param y координата по оси Y
+   * @param width ширина
+   * @param height высота
+   * @return объект для записи изображения области уровня
+   * @throws ChartaNotFoundException если харты с заданным идентификатором не существует
+   * @throws InvalidLevelException если у харты нет уровня с заданным номером
+   * @throws PyramidNotReadyException если пирамида харты ещё строится
+   * @throws ImageNoCrossingException если заданный фрагмент не пересекается по координатам с
+   *     уровнем
+   */
+  BmpWriter getChartaPartWriter(int id, int level, int x, int y, int width, int height)
+      throws ChartaNotFoundException, InvalidLevelException, PyramidNotReadyException,
+          ImageNoCrossingException;
+
+  /**
+   * Проверяет запрос фрагмента уровня пирамиды харты так же, как {@link
+   * ChartaService#getChartaPartWriter(int, int, int, int, int, int)}, и возвращает объект для
+   * записи изображения вместе с тегом сущности (ETag). Тег вычисляется по версиям пересекающихся с
+   * областью фрагментов без чтения их изображений и меняется после любой записи в эти фрагменты, а
+   * также после перезапуска сервиса. Фрагменты области и её версия определяются один раз, поэтому
+   * тег соответствует тем же фрагментам, из которых записывается изображение.
+   *
+   * @param id идентификатор
+   * @param level номер уровня пирамиды
+   * @param x координата по оси X
+   * @param y координата по оси Y
+   * @param width ширина
+   * @param height высота
+   * @return тег и объект для записи изображения области уровня
+   * @throws ChartaNotFoundException если харты с заданным идентификатором не существует
+   * @throws InvalidLevelException если у харты нет уровня с заданным номером
+   * @throws PyramidNotReadyException если пирамида харты ещё строится
+   * @throws ImageNoCrossingException если заданный фрагмент не пересекается по координатам с
+   *     уровнем
+   */
+  TaggedBmpWriter getTaggedChartaPartWriter(
+      int id, int level, int x, int y, int width, int height)
+      throws ChartaNotFoundException, InvalidLevelException, PyramidNotReadyException,
+          ImageNoCrossingException;
+
+  /**
+   * Возвращает объекты для записи в поток изображений нескольких областей харты в формате BMP.
+   * Области собираются группами: фрагменты харты, пересекающиеся с областями группы, читаются
+   * один раз и раскладываются по всем изображениям группы. Группа собирается при записи её первой
+   * области, суммарный размер изображений группы не превосходит размера, заданного свойством
+   * {@code chartographer.batch.max-bytes}, если только группа не состоит из одной области.
+   * Объекты нужно использовать по одному разу в порядке следования областей.
+   *
+   * @param id идентификатор
+   * @param areas области
+   * @return объекты для записи изображений областей в порядке следования областей
+   * @throws ChartaNotFoundException если харты с заданным идентификатором не существует
+   * @throws ImageNoCrossingException если одна из областей не пересекается по координатам с
+   *     хартой
+   */
+  List<BmpWriter> getChartaPartWriters(int id, List<Rectangle> areas)
+      throws ChartaNotFoundException, ImageNoCrossingException;
+
   /**
    * Перезаписывает фрагмент харты переданным изображением по указанным координатам и размеру.
+   * BMP-изображения без сжатия с глубиной цвета 24 бита читаются из потока и записываются
+   * горизонтальными полосами, не загружаясь в память целиком. Изображения в других форматах
+   * читаются целиком.
    *
    * @param id идентификатор
-   * @param image изображение как массив байт
+   * @param image поток с изображением
    * @param x координата по оси X
    * @param y координата по оси Y
    * @param width ширина
    * @param height высота
    * @throws ChartaNotFoundException если харты с заданным идентификатором не существует
    * @throws ImageNoCrossingException если заданный фрагмент не пересекается по координатам с хартой
+   * @throws InvalidImageException если изображение не удалось прочитать
    */
-  void saveChartaPart(int id, byte[] image, int x, int y, int width, int height)
-      throws ChartaNotFoundException, ImageNoCrossingException, IOException;
+  void saveChartaPart(int id, InputStream image, int x, int y, int width, int height)
+      throws ChartaNotFoundException, ImageNoCrossingException, InvalidImageException,
+          IOException;
+
+  /**
+   * Перезаписывает харту пакетом изображений. Пакет состоит из записей, идущих подряд до конца
+   * потока. Каждая запись содержит координаты, ширину и высоту области, длину изображения в байтах
+   * (все пять чисел — 32-битные со старшим байтом вперёд) и само изображение. Записи
+   * применяются по порядку так же, как при {@link ChartaService#saveChartaPart(int, InputStream,
+   * int, int, int, int)}, но записи, попадающие в один фрагмент, накладываются на него в памяти, и
+   * фрагмент перезаписывается один раз.
+   *
+   * <p>Пакет читается из потока по мере записи, поэтому записи не проверяются заранее. Если в
+   * пакете найдена некорректная запись, все записи до неё сохраняются, а она и записи после неё
+   * отбрасываются; количество сохранённых записей передаётся в исключении.
+   *
+   * @param id идентификатор
+   * @param batch поток с пакетом
+   * @return количество сохранённых записей
+   * @throws ChartaNotFoundException если харты с заданным идентификатором не существует
+   * @throws PartialBatchException если запись или изображение в ней не удалось прочитать или
+   *     область записи не пересекается с хартой
+   */
+  int saveChartaParts(int id, InputStream batch)
+      throws ChartaNotFoundException, PartialBatchException, IOException;
+
+  /**
+   * Возвращает количество запросов, получивших изображение области, которое в это же время
+   * собирал другой запрос.
+   *
+   * @return количество запросов
+   */
+  long getSharedRenderCount();
 }
@@ -1,6 +1,7 @@
 package ru.maxizenit.chartographer.service;
 
 import ru.maxizenit.chartographer.exception.ImageNoCrossingException;
+import ru.maxizenit.chartographer.model.Charta;
 import ru.maxizenit.chartographer.model.Fragment;
 
 import java.io.IOException;
@@ -10,7 +11,8 @@ import java.util.List;
 public interface FragmentService {
 
   /**
-   * Создаёт список фрагментов по заданному размеру родительской харты.
+   * Создаёт список фрагментов по заданному размеру родительской харты. Размер фрагментов берётся
+   * из конфигурации.
    *
    * @param width ширина харты
    * @param height высота харты
@@ -19,12 +21,14 @@ public interface FragmentService {
   List<Fragment> createFragments(int width, int height);
 
   /**
-   * Создаёт для каждого фрагмента в списке пустое изображение и сохраняет его.
+   * Создаёт список фрагментов заданного размера по размеру родительской харты.
    *
-   * @param fragments фрагменты
-   * @throws IOException если возникло исключение при работе с файловой системой
+   * @param width ширина харты
+   * @param height высота харты
+   * @param tileSize размер фрагмента
+   * @return список фрагментов
    */
-  void initializeFragmentImages(List<Fragment> fragments) throws IOException;
+  List<Fragment> createFragments(int width, int height, int tileSize);
 
   /**
    * Возвращает список с теми фрагментами, которые пересекаются по координатам с заданной областью.
@@ -41,7 +45,23 @@ public interface FragmentService {
       throws ImageNoCrossingException;
 
   /**
-   * Очищает фрагменты.
+   * Возвращает фрагменты харты, которые пересекаются по координатам с заданной областью. Фрагменты
+   * ищутся по пространственному индексу харты без перебора всех фрагментов.
+   *
+   * @param charta харта
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param width ширина области
+   * @param height высота области
+   * @return список пересекающихся с областью фрагментов
+   * @throws ImageNoCrossingException если пересекающихся с областью фрагментов нет
+   */
+  List<Fragment> filterFragments(Charta charta, int x, int y, int width, int height)
+      throws ImageNoCrossingException;
+
+  /**
+   * Очищает фрагменты удаляемой харты: удаляет их изображения и помечает фрагменты удалёнными,
+   * чтобы запись, состязающаяся с удалением, не создала для них новых изображений.
    *
    * @param fragments фрагменты
    * @throws IOException если возникло исключение при работе с файловой системой
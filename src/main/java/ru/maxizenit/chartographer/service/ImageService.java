@@ -1,9 +1,14 @@
 package ru.maxizenit.chartographer.service;
 
+import ru.maxizenit.chartographer.model.CacheStatistics;
 import ru.maxizenit.chartographer.model.Fragment;
+import ru.maxizenit.chartographer.model.ImagePart;
+import ru.maxizenit.chartographer.raster.ImagePool;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
 import java.util.List;
 
 /** Сервис для работы с изображениями */
@@ -18,6 +23,16 @@ public interface ImageService {
    */
   BufferedImage createEmptyImage(int width, int height);
 
+  /**
+   * Выдаёт из пула изображение заданного размера с чёрной заливкой. Изображение нужно вернуть в
+   * пул, когда оно больше не нужно, и нельзя передавать туда, где оно может быть сохранено.
+   *
+   * @param width ширина
+   * @param height высота
+   * @return выданное изображение
+   */
+  ImagePool.Lease leaseEmptyImage(int width, int height);
+
   /**
    * Создаёт и сохраняет в файловую систему изображение заданного размера с чёрной заливкой,
    * возвращая его название.
@@ -30,7 +45,9 @@ public interface ImageService {
   String saveEmptyImage(int width, int height) throws IOException;
 
   /**
-   * Создаёт изображение из переданных фрагментов и заданной области.
+   * Создаёт изображение из переданных фрагментов и заданной области. Фрагменты, в которые ещё
+   * ничего не записывалось, не читаются и остаются на изображении чёрными. Фрагменты, не
+   * пересекающиеся с областью, пропускаются.
    *
    * @param fragments фрагменты
    * @param x координата области по оси X
@@ -44,7 +61,57 @@ public interface ImageService {
       List<Fragment> fragments, int x, int y, int width, int height) throws IOException;
 
   /**
-   * Записывает переданное изображение в пересекающиеся с его областью фрагменты.
+   * Собирает изображение заданной области, как {@link ImageService#createImage(List, int, int,
+   * int, int)}, в изображение, выданное из пула.
+   *
+   * @param fragments фрагменты
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param width ширина области
+   * @param height высота области
+   * @return выданное изображение области, которое нужно вернуть в пул
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  ImagePool.Lease leaseImage(List<Fragment> fragments, int x, int y, int width, int height)
+      throws IOException;
+
+  /**
+   * Передаёт изображение фрагмента в канал в формате BMP, не декодируя его, если файл изображения
+   * хранится в том же виде, в каком отдаётся изображение совпадающей с фрагментом области, а
+   * отложенная запись выключена. Файл передаётся горизонтальными полосами, каждая под своей
+   * блокировкой на чтение. При отложенной записи изменения могут появиться в памяти посреди
+   * передачи, когда часть файла уже отправлена, поэтому изображение всегда собирается. Наличие
+   * изображения проверяется под блокировкой первой полосы до записи в канал; если фрагмент удалили
+   * позже, оставшиеся полосы передаются чёрными, как у собранного изображения.
+   *
+   * @param fragment фрагмент
+   * @param target канал для записи изображения
+   * @param bandHeight высота полосы
+   * @return {@code true}, если изображение передано, или {@code false}, если его нужно собрать и
+   *     закодировать; в этом случае в канал ничего не записывается
+   * @throws IOException если возникло исключение при работе с файловой системой или записи в канал
+   */
+  boolean transferImage(Fragment fragment, WritableByteChannel target, int bandHeight)
+      throws IOException;
+
+  /**
+   * Создаёт изображения нескольких областей из переданных фрагментов. Каждый фрагмент читается
+   * один раз: из него загружается наименьшая часть, покрывающая все пересекающиеся с ним области,
+   * и раскладывается по изображениям областей. Каждый фрагмент читается под своей блокировкой,
+   * поэтому запись, произошедшая во время сборки, может попасть только в часть фрагментов.
+   *
+   * @param fragments фрагменты
+   * @param areas области в координатах харты
+   * @return изображения областей в порядке следования областей
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  List<BufferedImage> createImages(List<Fragment> fragments, List<Rectangle> areas)
+      throws IOException;
+
+  /**
+   * Записывает переданное изображение в пересекающиеся с его областью фрагменты. Изображения
+   * фрагментов, в которые ещё ничего не записывалось, создаются при этом впервые. Фрагменты, не
+   * пересекающиеся с областью, пропускаются, версии остальных увеличиваются.
    *
    * @param fragments фрагменты
    * @param image изображение
@@ -56,6 +123,20 @@ public interface ImageService {
   void writeImage(
       List<Fragment> fragments, BufferedImage image, int x, int y, int width, int height) throws IOException;
 
+  /**
+   * Записывает переданные изображения в один фрагмент по порядку, так что более поздние
+   * изображения перекрывают более ранние. Область фрагмента, покрывающая все изображения,
+   * читается и записывается один раз. Изображения, не пересекающиеся с фрагментом, пропускаются.
+   * Если фрагмент перезаписан, его версия увеличивается.
+   *
+   * @param fragment фрагмент
+   * @param parts записываемые изображения
+   * @return перезаписанная область в координатах харты, пустая, если изображения не
+   *     пересекаются с фрагментом
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  Rectangle writeImages(Fragment fragment, List<ImagePart> parts) throws IOException;
+
   /**
    * Удаляет изображение по его названию.
    *
@@ -63,4 +144,11 @@ public interface ImageService {
    * @throws IOException если возникло исключение при работе с файловой системой
    */
   void deleteImage(String name) throws IOException;
+
+  /**
+   * Возвращает текущие значения счётчиков пула изображений.
+   *
+   * @return статистика пула
+   */
+  CacheStatistics getPoolStatistics();
 }
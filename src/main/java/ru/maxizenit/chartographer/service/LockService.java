@@ -0,0 +1,37 @@
+package ru.maxizenit.chartographer.service;
+
+import ru.maxizenit.chartographer.concurrent.RegionLock;
+import ru.maxizenit.chartographer.model.Fragment;
+
+import java.util.List;
+
+/** Сервис блокировок областей харты. */
+public interface LockService {
+
+  /**
+   * Захватывает блокировку на чтение заданной области во всех переданных фрагментах. Блокировки на
+   * чтение не мешают друг другу.
+   *
+   * @param fragments фрагменты
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param width ширина области
+   * @param height высота области
+   * @return захваченная блокировка
+   */
+  RegionLock lockRead(List<Fragment> fragments, int x, int y, int width, int height);
+
+  /**
+   * Захватывает блокировку на запись заданной области во всех переданных фрагментах. Записи в
+   * непересекающиеся области могут выполняться параллельно, а пересекающиеся выполняются по
+   * очереди целиком.
+   *
+   * @param fragments фрагменты
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param width ширина области
+   * @param height высота области
+   * @return захваченная блокировка
+   */
+  RegionLock lockWrite(List<Fragment> fragments, int x, int y, int width, int height);
+}
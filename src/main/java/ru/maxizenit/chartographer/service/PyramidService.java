@@ -0,0 +1,51 @@
+package ru.maxizenit.chartographer.service;
+
+import ru.maxizenit.chartographer.model.Charta;
+
+import java.util.List;
+
+/** Сервис для работы с пирамидами уменьшенных копий харт. */
+public interface PyramidService {
+
+  /**
+   * Создаёт уровни пирамиды для харты заданного размера. Каждый следующий уровень вдвое меньше
+   * предыдущего по обеим сторонам; уровни создаются, пока большая сторона превышает минимальный
+   * размер уровня. Изображения фрагментов уровней не создаются.
+   *
+   * @param width ширина харты
+   * @param height высота харты
+   * @return список уровней, начиная с уменьшенного вдвое, возможно пустой
+   */
+  List<Charta> createLevels(int width, int height);
+
+  /**
+   * Запоминает изменённую область харты и пересчитывает затронутые ею области уровней пирамиды в
+   * фоновом потоке. Каждый уровень уменьшается из предыдущего усреднением квадратов 2 на 2
+   * пикселя. Области, изменённые до начала пересчёта, объединяются с пересекающимися, а пересчёты
+   * пирамиды одной харты выполняются по очереди, поэтому уровни догоняют последнюю запись.
+   *
+   * @param charta харта с построенной пирамидой
+   * @param x координата изменённой области по оси X
+   * @param y координата изменённой области по оси Y
+   * @param width ширина изменённой области
+   * @param height высота изменённой области
+   */
+  void updateLevels(Charta charta, int x, int y, int width, int height);
+
+  /**
+   * Начинает построение пирамиды харты, созданной без неё: создаёт уровни и пересчитывает их из
+   * всей харты в фоновом потоке. Если пирамида уже построена или строится, ничего не делает.
+   *
+   * @param charta харта
+   */
+  void buildLevels(Charta charta);
+
+  /**
+   * Проверяет, построена ли пирамида харты. Пирамида, построение которой начато, но не завершено,
+   * построенной не считается.
+   *
+   * @param charta харта
+   * @return {@code true}, если уровни пирамиды можно читать
+   */
+  boolean isBuilt(Charta charta);
+}
@@ -0,0 +1,47 @@
+package ru.maxizenit.chartographer.service;
+
+import ru.maxizenit.chartographer.model.CacheStatistics;
+
+/**
+ * Сервис кэширования закодированных изображений областей харт. Запись кэша относится к области
+ * уровня харты и хранит версию, с которой изображение было собрано: наибольшую версию
+ * пересекающихся с областью фрагментов. После записи в любой из этих фрагментов версия области
+ * растёт, и сохранённое изображение больше не возвращается.
+ */
+public interface ResponseCacheService {
+
+  /**
+   * Проверяет, может ли изображение заданного размера попасть в кэш.
+   *
+   * @param size размер закодированного изображения в байтах
+   * @return {@code true}, если изображение может попасть в кэш
+   */
+  boolean isCacheable(long size);
+
+  /**
+   * Возвращает закодированное изображение области, если оно собрано с заданной версией.
+   * Изображение более старой версии удаляется из кэша.
+   *
+   * @param window ключ области
+   * @param version версия области
+   * @return закодированное изображение или {@code null}, если в кэше его нет
+   */
+  byte[] get(String window, long version);
+
+  /**
+   * Сохраняет закодированное изображение области, если в кэше нет изображения более новой версии.
+   * Массив не должен изменяться после сохранения.
+   *
+   * @param window ключ области
+   * @param version версия области
+   * @param body закодированное изображение
+   */
+  void put(String window, long version, byte[] body);
+
+  /**
+   * Возвращает текущие значения счётчиков кэша.
+   *
+   * @return статистика кэша
+   */
+  CacheStatistics getStatistics();
+}
@@ -0,0 +1,84 @@
+package ru.maxizenit.chartographer.service;
+
+import ru.maxizenit.chartographer.model.CacheStatistics;
+import ru.maxizenit.chartographer.model.Fragment;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Сервис кэширования декодированных изображений фрагментов. Стоит между сервисом изображений и
+ * DAO изображений: чтения часто запрашиваемых фрагментов обслуживаются из памяти, а записи
+ * передаются в DAO сразу либо, в режиме отложенной записи, накапливаются в памяти и сбрасываются
+ * в DAO позже.
+ */
+public interface TileCacheService {
+
+  /**
+   * Возвращает область изображения фрагмента.
+   *
+   * @param fragment фрагмент с созданным изображением
+   * @param x координата области относительно фрагмента по оси X
+   * @param y координата области относительно фрагмента по оси Y
+   * @param width ширина области
+   * @param height высота области
+   * @return изображение заданной области
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  BufferedImage getPart(Fragment fragment, int x, int y, int width, int height)
+      throws IOException;
+
+  /**
+   * Читает область изображения фрагмента в переданное изображение, размер которого задаёт размер
+   * области. Требования к изображению те же, что у {@link
+   * ru.maxizenit.chartographer.dao.ImageDao#readPart(String, int, int, BufferedImage)}.
+   *
+   * @param fragment фрагмент с созданным изображением
+   * @param x координата области относительно фрагмента по оси X
+   * @param y координата области относительно фрагмента по оси Y
+   * @param part изображение, в которое читается область
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  void readPart(Fragment fragment, int x, int y, BufferedImage part) throws IOException;
+
+  /**
+   * Перезаписывает область изображения фрагмента переданным изображением.
+   *
+   * @param fragment фрагмент с созданным изображением
+   * @param part записываемое изображение
+   * @param x координата области относительно фрагмента по оси X
+   * @param y координата области относительно фрагмента по оси Y
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  void updatePart(Fragment fragment, BufferedImage part, int x, int y) throws IOException;
+
+  /**
+   * Удаляет изображение из кэша вместе с ещё не записанными в DAO изменениями.
+   *
+   * @param name название изображения
+   */
+  void evict(String name);
+
+  /**
+   * Возвращает {@code true}, если включена отложенная запись. В режиме сквозной записи изменение
+   * области попадает в DAO, пока на область удерживается блокировка на запись, поэтому под
+   * блокировкой на чтение изображение в DAO всегда актуально.
+   *
+   * @return {@code true}, если записи накапливаются в памяти
+   */
+  boolean isWriteBack();
+
+  /**
+   * Записывает в DAO все накопленные изменения. В режиме сквозной записи ничего не делает.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  void flush() throws IOException;
+
+  /**
+   * Возвращает текущие значения счётчиков кэша.
+   *
+   * @return статистика кэша
+   */
+  CacheStatistics getStatistics();
+}
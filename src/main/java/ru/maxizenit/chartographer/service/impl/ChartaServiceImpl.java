@@ -1,47 +1,142 @@
 package ru.maxizenit.chartographer.service.impl;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import ru.maxizenit.chartographer.bmp.BmpDecoder;
+import ru.maxizenit.chartographer.bmp.BmpEncoder;
+import ru.maxizenit.chartographer.bmp.BmpHeader;
+import ru.maxizenit.chartographer.bmp.BmpWriter;
+import ru.maxizenit.chartographer.bmp.TaggedBmpWriter;
+import ru.maxizenit.chartographer.concurrent.SingleFlight;
 import ru.maxizenit.chartographer.dao.ChartaDao;
 import ru.maxizenit.chartographer.exception.ChartaNotFoundException;
 import ru.maxizenit.chartographer.exception.ImageNoCrossingException;
+import ru.maxizenit.chartographer.exception.InvalidImageException;
+import ru.maxizenit.chartographer.exception.InvalidLevelException;
+import ru.maxizenit.chartographer.exception.PartialBatchException;
+import ru.maxizenit.chartographer.exception.PyramidNotReadyException;
+import ru.maxizenit.chartographer.metrics.ChartographerTimers;
 import ru.maxizenit.chartographer.model.Charta;
 import ru.maxizenit.chartographer.model.Fragment;
+import ru.maxizenit.chartographer.model.ImagePart;
+import ru.maxizenit.chartographer.raster.ImagePool;
 import ru.maxizenit.chartographer.service.ChartaService;
 import ru.maxizenit.chartographer.service.FragmentService;
 import ru.maxizenit.chartographer.service.ImageService;
+import ru.maxizenit.chartographer.service.PyramidService;
+import ru.maxizenit.chartographer.service.ResponseCacheService;
 
 import javax.imageio.ImageIO;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class ChartaServiceImpl implements ChartaService {
 
-  /** BMP-формат изображений. */
-  private final String BMP_FORMAT = "bmp";
-
   private final ChartaDao chartaDao;
   private final FragmentService fragmentService;
   private final ImageService imageService;
+  private final PyramidService pyramidService;
+  private final ResponseCacheService responseCacheService;
+  private final ChartographerTimers timers;
+
+  /** Сообщение о неподдерживаемом формате изображения. */
+  private static final String INVALID_IMAGE_MESSAGE = "Не удалось прочитать изображение";
+
+  /** Сообщение об оборванном изображении. */
+  private static final String TRUNCATED_IMAGE_MESSAGE = "Изображение оборвано";
+
+  /** Сообщение об отсутствии уровня пирамиды. */
+  private static final String INVALID_LEVEL_MESSAGE = "У харты нет уровня пирамиды с номером ";
+
+  /** Сообщение о строящейся пирамиде. */
+  private static final String PYRAMID_NOT_READY_MESSAGE = "Пирамида харты ещё строится: ";
+
+  /** Сообщение о некорректной записи пакета. */
+  private static final String INVALID_BATCH_ENTRY_MESSAGE = "Некорректная запись пакета";
+
+  /** Сообщение о частично применённом пакете. */
+  private static final String PARTIAL_BATCH_MESSAGE = "Пакет сохранён до записи с номером ";
+
+  /**
+   * Время запуска сервиса, входящее в теги изображений. Версии фрагментов не сохраняются в
+   * каталоге и после перезапуска начинаются заново, а с ним теги, выданные до перезапуска, больше
+   * не совпадают.
+   */
+  private final long tagEpoch = System.currentTimeMillis();
+
+  /** Одновременные сборки изображений одной и той же версии области. */
+  private final SingleFlight<String, byte[]> renders = new SingleFlight<>();
+
+  /** Высота полосы, которыми изображение области читается из потока и записывается в поток. */
+  private final int streamBandHeight;
+
+  /**
+   * Наибольший суммарный размер прочитанных изображений пакета в байтах, после которого они
+   * записываются в харту, не дожидаясь конца пакета.
+   */
+  private final long batchMaxBytes;
 
   @Autowired
   public ChartaServiceImpl(
-      ChartaDao chartaDao, FragmentService fragmentService, ImageService imageService) {
+      ChartaDao chartaDao,
+      FragmentService fragmentService,
+      ImageService imageService,
+      PyramidService pyramidService,
+      ResponseCacheService responseCacheService,
+      ChartographerTimers timers,
+      @Value("${chartographer.streaming.band-height}") int streamBandHeight,
+      @Value("${chartographer.batch.max-bytes}") long batchMaxBytes) {
     this.chartaDao = chartaDao;
     this.fragmentService = fragmentService;
     this.imageService = imageService;
+    this.pyramidService = pyramidService;
+    this.responseCacheService = responseCacheService;
+    this.timers = timers;
+    this.streamBandHeight = streamBandHeight;
+    this.batchMaxBytes = batchMaxBytes;
   }
 
   @Override
   public Integer createCharta(int width, int height) throws IOException {
+    return saveCharta(width, height, fragmentService.createFragments(width, height));
+  }
+
+  @Override
+  public Integer createCharta(int width, int height, int tileSize) throws IOException {
+    return saveCharta(width, height, fragmentService.createFragments(width, height, tileSize));
+  }
+
+  /**
+   * Сохраняет харту заданного размера с заданными фрагментами и пустой пирамидой и возвращает её
+   * идентификатор.
+   *
+   * @param width ширина
+   * @param height высота
+   * @param fragments фрагменты харты
+   * @return идентификатор харты
+   */
+  private Integer saveCharta(int width, int height, List<Fragment> fragments) {
     Charta charta = new Charta(width, height);
 
-    charta.setFragments(fragmentService.createFragments(width, height));
-    fragmentService.initializeFragmentImages(charta.getFragments());
+    charta.setFragments(fragments);
+    charta.setLevels(pyramidService.createLevels(width, height));
     chartaDao.save(charta);
 
     return charta.getId();
@@ -51,19 +146,24 @@ public class ChartaServiceImpl implements ChartaService {
   public void deleteCharta(int id) throws ChartaNotFoundException, IOException {
     Charta charta = chartaDao.get(id);
 
-    fragmentService.clearFragments(charta.getFragments());
     chartaDao.delete(id);
+    fragmentService.clearFragments(charta.getFragments());
+
+    if (charta.getLevels() != null) {
+      for (Charta level : charta.getLevels()) {
+        fragmentService.clearFragments(level.getFragments());
+      }
+    }
   }
 
   @Override
   public byte[] getChartaPart(int id, int x, int y, int width, int height)
       throws ChartaNotFoundException, ImageNoCrossingException, IOException {
-    List<Fragment> fragments = getFilteredFragments(id, x, y, width, height);
-    BufferedImage image = imageService.createImage(fragments, x, y, width, height);
+    BmpWriter writer = getChartaPartWriter(id, x, y, width, height);
     byte[] result;
 
     try (ByteArrayOutputStream stream = new ByteArrayOutputStream()) {
-      ImageIO.write(image, BMP_FORMAT, stream);
+      writer.writeTo(stream);
       result = stream.toByteArray();
     }
 
@@ -71,16 +171,609 @@ public class ChartaServiceImpl implements ChartaService {
   }
 
   @Override
-  public void saveChartaPart(int id, byte[] image, int x, int y, int width, int height)
-      throws ChartaNotFoundException, ImageNoCrossingException, IOException {
+  public BmpWriter getChartaPartWriter(int id, int x, int y, int width, int height)
+      throws ChartaNotFoundException, ImageNoCrossingException {
     List<Fragment> fragments = getFilteredFragments(id, x, y, width, height);
-    BufferedImage convertedImage;
 
-    try (ByteArrayInputStream stream = new ByteArrayInputStream(image)) {
-      convertedImage = ImageIO.read(stream);
+    return getWriter(id, 0, fragments, getVersion(fragments), x, y, width, height);
+  }
+
+  @Override
+  public BmpWriter getChartaPartWriter(int id, int level, int x, int y, int width, int height)
+      throws ChartaNotFoundException, InvalidLevelException, PyramidNotReadyException,
+          ImageNoCrossingException {
+    List<Fragment> fragments =
+        fragmentService.filterFragments(getLevel(chartaDao.get(id), level), x, y, width, height);
+
+    return getWriter(id, level, fragments, getVersion(fragments), x, y, width, height);
+  }
+
+  @Override
+  public TaggedBmpWriter getTaggedChartaPartWriter(
+      int id, int level, int x, int y, int width, int height)
+      throws ChartaNotFoundException, InvalidLevelException, PyramidNotReadyException,
+          ImageNoCrossingException {
+    List<Fragment> fragments =
+        fragmentService.filterFragments(getLevel(chartaDao.get(id), level), x, y, width, height);
+    long version = getVersion(fragments);
+
+    String window = getWindowKey(id, level, x, y, width, height);
+    String tag = String.format("\"%x-%s-%x\"", tagEpoch, window, version);
+
+    return new TaggedBmpWriter(
+        tag, getWriter(id, level, fragments, version, x, y, width, height));
+  }
+
+  /**
+   * Возвращает объект, записывающий изображение области в поток. Если область в точности совпадает
+   * с одним фрагментом, файл его изображения по возможности передаётся в поток как есть, без
+   * декодирования и кодирования; иначе изображение записывается объектом из {@link
+   * ChartaServiceImpl#getCachedWriter}.
+   *
+   * @param id идентификатор харты
+   * @param level номер уровня пирамиды
+   * @param fragments фрагменты уровня, в которых лежит область
+   * @param version версия области
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param width ширина области
+   * @param height высота области
+   * @return объект для записи изображения области
+   */
+  private BmpWriter getWriter(
+      int id,
+      int level,
+      List<Fragment> fragments,
+      long version,
+      int x,
+      int y,
+      int width,
+      int height) {
+    BmpWriter writer = getCachedWriter(id, level, fragments, version, x, y, width, height);
+
+    if (fragments.size() != 1) {
+      return writer;
+    }
+
+    Fragment fragment = fragments.get(0);
+
+    if (fragment.getX() != x
+        || fragment.getY() != y
+        || fragment.getWidth() != width
+        || fragment.getHeight() != height) {
+      return writer;
     }
 
-    imageService.writeImage(fragments, convertedImage, x, y, width, height);
+    return stream -> {
+      if (!imageService.transferImage(fragment, Channels.newChannel(stream), streamBandHeight)) {
+        writer.writeTo(stream);
+      }
+    };
+  }
+
+  /**
+   * Возвращает объект, записывающий изображение области в поток. Небольшие изображения берутся из
+   * кэша закодированных изображений, а при промахе кодируются в память и сохраняются в кэш.
+   * Одновременные промахи по одной версии области собирают изображение один раз: остальные
+   * запросы ждут первый и получают его изображение или исключение. Версия области вычисляется
+   * сразу, до чтения изображений фрагментов, поэтому запись, произошедшая после, сохраняется в кэш
+   * под старой версией и не мешает следующим запросам.
+   *
+   * @param id идентификатор харты
+   * @param level номер уровня пирамиды
+   * @param fragments фрагменты уровня, в которых лежит область
+   * @param version версия области
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param width ширина области
+   * @param height высота области
+   * @return объект для записи изображения области
+   */
+  private BmpWriter getCachedWriter(
+      int id,
+      int level,
+      List<Fragment> fragments,
+      long version,
+      int x,
+      int y,
+      int width,
+      int height) {
+    long fileSize = new BmpHeader(width, height).getFileSize();
+
+    if (!responseCacheService.isCacheable(fileSize)) {
+      return stream -> writeChartaPart(stream, fragments, x, y, width, height);
+    }
+
+    String window = getWindowKey(id, level, x, y, width, height);
+
+    return stream -> {
+      byte[] body = responseCacheService.get(window, version);
+
+      if (body == null) {
+        body =
+            renders.execute(
+                window + "-" + Long.toHexString(version),
+                () -> {
+                  ByteArrayOutputStream buffer = new ByteArrayOutputStream((int) fileSize);
+
+                  writeChartaPart(buffer, fragments, x, y, width, height);
+
+                  byte[] rendered = buffer.toByteArray();
+                  responseCacheService.put(window, version, rendered);
+                  return rendered;
+                });
+      }
+
+      stream.write(body);
+    };
+  }
+
+  /**
+   * Возвращает ключ области уровня харты.
+   *
+   * @param id идентификатор харты
+   * @param level номер уровня пирамиды
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param width ширина области
+   * @param height высота области
+   * @return ключ области
+   */
+  private String getWindowKey(int id, int level, int x, int y, int width, int height) {
+    return String.format("%x-%x-%x-%x-%x-%x", id, level, x, y, width, height);
+  }
+
+  /**
+   * Возвращает версию области: наибольшую версию фрагментов, в которых она лежит. Версии
+   * фрагментов берутся из общего счётчика, поэтому запись в любой из них увеличивает версию
+   * области.
+   *
+   * @param fragments фрагменты области
+   * @return версия области
+   */
+  private long getVersion(List<Fragment> fragments) {
+    long version = 0;
+
+    for (Fragment fragment : fragments) {
+      version = Math.max(version, fragment.getVersion());
+    }
+
+    return version;
+  }
+
+  @Override
+  public List<BmpWriter> getChartaPartWriters(int id, List<Rectangle> areas)
+      throws ChartaNotFoundException, ImageNoCrossingException {
+    Charta charta = chartaDao.get(id);
+    List<List<Fragment>> fragments = new ArrayList<>(areas.size());
+
+    for (Rectangle area : areas) {
+      fragments.add(
+          fragmentService.filterFragments(charta, area.x, area.y, area.width, area.height));
+    }
+
+    List<BmpWriter> writers = new ArrayList<>(areas.size());
+    int groupStart = 0;
+    long bytes = 0;
+
+    for (int i = 0; i <= areas.size(); i++) {
+      long areaBytes =
+          i < areas.size()
+              ? (long) areas.get(i).width * areas.get(i).height * BmpHeader.BYTES_PER_PIXEL
+              : 0;
+
+      if (i == areas.size() || (i > groupStart && bytes + areaBytes > batchMaxBytes)) {
+        AreaGroup group =
+            new AreaGroup(fragments.subList(groupStart, i), areas.subList(groupStart, i));
+
+        for (int index = 0; index < i - groupStart; index++) {
+          writers.add(group.getWriter(index));
+        }
+
+        groupStart = i;
+        bytes = 0;
+      }
+
+      bytes += areaBytes;
+    }
+
+    return writers;
+  }
+
+  /**
+   * Возвращает уровень пирамиды харты. Если харта создана без пирамиды, построение пирамиды
+   * начинается в фоне, а до его завершения уровни не выдаются.
+   *
+   * @param charta харта
+   * @param level номер уровня, нулевой уровень совпадает с хартой
+   * @return уровень пирамиды
+   * @throws InvalidLevelException если у харты нет уровня с заданным номером
+   * @throws PyramidNotReadyException если пирамида харты ещё строится
+   */
+  private Charta getLevel(Charta charta, int level)
+      throws InvalidLevelException, PyramidNotReadyException {
+    if (level == 0) {
+      return charta;
+    }
+
+    if (level < 0) {
+      throw new InvalidLevelException(INVALID_LEVEL_MESSAGE + level);
+    }
+
+    if (!pyramidService.isBuilt(charta)) {
+      pyramidService.buildLevels(charta);
+      throw new PyramidNotReadyException(PYRAMID_NOT_READY_MESSAGE + charta.getId());
+    }
+
+    if (level > charta.getLevels().size()) {
+      throw new InvalidLevelException(INVALID_LEVEL_MESSAGE + level);
+    }
+
+    return charta.getLevels().get(level - 1);
+  }
+
+  @Override
+  public void saveChartaPart(int id, InputStream image, int x, int y, int width, int height)
+      throws ChartaNotFoundException, ImageNoCrossingException, InvalidImageException,
+          IOException {
+    Charta charta = chartaDao.get(id);
+    List<Fragment> fragments =
+        fragmentService.filterFragments(charta, x, y, width, height);
+    boolean materializing = fragments.stream().anyMatch(f -> f.getImageName() == null);
+    BufferedInputStream stream = new BufferedInputStream(image);
+    BmpDecoder decoder = BmpDecoder.open(stream);
+
+    if (decoder != null) {
+      readChartaPart(decoder, fragments, x, y, width, height);
+    } else {
+      BufferedImage convertedImage = ImageIO.read(stream);
+
+      if (convertedImage == null) {
+        throw new InvalidImageException(INVALID_IMAGE_MESSAGE);
+      }
+
+      imageService.writeImage(fragments, convertedImage, x, y, width, height);
+    }
+
+    if (charta.getLevels() != null) {
+      pyramidService.updateLevels(charta, x, y, width, height);
+    }
+
+    if (materializing) {
+      chartaDao.update(charta);
+    }
+  }
+
+  @Override
+  public int saveChartaParts(int id, InputStream batch)
+      throws ChartaNotFoundException, PartialBatchException, IOException {
+    Charta charta = chartaDao.get(id);
+    PushbackInputStream stream = new PushbackInputStream(new BufferedInputStream(batch));
+    DataInputStream input = new DataInputStream(stream);
+    Map<Fragment, List<ImagePart>> partsByFragment = new IdentityHashMap<>();
+    boolean materializing = false;
+    int applied = 0;
+    int pending = 0;
+    long bytes = 0;
+
+    try {
+      try {
+        for (ImagePart part = readImagePart(stream, input);
+            part != null;
+            part = readImagePart(stream, input)) {
+          List<Fragment> fragments =
+              fragmentService.filterFragments(
+                  charta, part.getX(), part.getY(), part.getWidth(), part.getHeight());
+
+          for (Fragment fragment : fragments) {
+            partsByFragment.computeIfAbsent(fragment, f -> new ArrayList<>()).add(part);
+          }
+
+          BufferedImage image = part.getImage();
+          bytes += (long) image.getWidth() * image.getHeight() * BmpHeader.BYTES_PER_PIXEL;
+          pending++;
+
+          if (bytes >= batchMaxBytes) {
+            materializing |= writeImageParts(charta, partsByFragment);
+            partsByFragment.clear();
+            applied += pending;
+            pending = 0;
+            bytes = 0;
+          }
+        }
+      } catch (InvalidImageException | ImageNoCrossingException e) {
+        materializing |= writeImageParts(charta, partsByFragment);
+        applied += pending;
+        throw new PartialBatchException(PARTIAL_BATCH_MESSAGE + applied, applied, e);
+      }
+
+      materializing |= writeImageParts(charta, partsByFragment);
+      applied += pending;
+    } finally {
+      if (materializing) {
+        chartaDao.update(charta);
+      }
+    }
+
+    return applied;
+  }
+
+  /**
+   * Записывает сгруппированные по фрагментам изображения пакета, перезаписывая каждый фрагмент
+   * один раз, и передаёт перезаписанные области на пересчёт уровней пирамиды.
+   *
+   * @param charta харта
+   * @param partsByFragment изображения, сгруппированные по фрагментам, в которые они попадают
+   * @return {@code true}, если у фрагментов харты появились новые изображения
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private boolean writeImageParts(Charta charta, Map<Fragment, List<ImagePart>> partsByFragment)
+      throws IOException {
+    boolean materializing = false;
+
+    for (Map.Entry<Fragment, List<ImagePart>> entry : partsByFragment.entrySet()) {
+      materializing |= entry.getKey().getImageName() == null;
+      Rectangle bounds = imageService.writeImages(entry.getKey(), entry.getValue());
+
+      if (charta.getLevels() != null && !bounds.isEmpty()) {
+        pyramidService.updateLevels(charta, bounds.x, bounds.y, bounds.width, bounds.height);
+      }
+    }
+
+    return materializing;
+  }
+
+  /**
+   * Читает следующую запись пакета. Конец пакета определяется по первому байту записи, который
+   * затем возвращается в поток.
+   *
+   * @param stream поток с пакетом
+   * @param input поток с пакетом для чтения чисел, читающий из {@code stream}
+   * @return запись или {@code null}, если пакет закончился
+   * @throws InvalidImageException если запись оборвана, некорректна или изображение в ней не
+   *     удалось прочитать
+   * @throws IOException если возникло исключение при чтении потока
+   */
+  private ImagePart readImagePart(PushbackInputStream stream, DataInputStream input)
+      throws InvalidImageException, IOException {
+    int first = stream.read();
+
+    if (first < 0) {
+      return null;
+    }
+
+    stream.unread(first);
+
+    byte[] image;
+    int x;
+    int y;
+    int width;
+    int height;
+
+    try {
+      x = input.readInt();
+      y = input.readInt();
+      width = input.readInt();
+      height = input.readInt();
+      int length = input.readInt();
+
+      if (x < 0 || y < 0 || width <= 0 || height <= 0 || length < 0 || length > batchMaxBytes) {
+        throw new InvalidImageException(INVALID_BATCH_ENTRY_MESSAGE);
+      }
+
+      image = new byte[length];
+      input.readFully(image);
+    } catch (EOFException e) {
+      throw new InvalidImageException(TRUNCATED_IMAGE_MESSAGE);
+    }
+
+    return new ImagePart(x, y, width, height, decodeImage(image));
+  }
+
+  /**
+   * Декодирует изображение записи пакета. BMP-изображения без сжатия с глубиной цвета 24 бита
+   * читаются декодером построчно, изображения в других форматах — через {@link ImageIO}.
+   *
+   * @param bytes байты изображения
+   * @return изображение
+   * @throws InvalidImageException если изображение не удалось прочитать или оно слишком велико
+   * @throws IOException если возникло исключение при чтении изображения
+   */
+  private BufferedImage decodeImage(byte[] bytes) throws InvalidImageException, IOException {
+    long start = System.nanoTime();
+    BmpDecoder decoder = BmpDecoder.open(new ByteArrayInputStream(bytes));
+
+    if (decoder == null) {
+      BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+
+      if (image == null) {
+        throw new InvalidImageException(INVALID_IMAGE_MESSAGE);
+      }
+
+      return image;
+    }
+
+    BmpHeader header = decoder.getHeader();
+    int rowLength = header.getWidth() * BmpHeader.BYTES_PER_PIXEL;
+
+    if ((long) rowLength * header.getHeight() > batchMaxBytes) {
+      throw new InvalidImageException(INVALID_BATCH_ENTRY_MESSAGE);
+    }
+
+    BufferedImage image =
+        new BufferedImage(header.getWidth(), header.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+    byte[] pixels = BmpEncoder.getPixels(image);
+
+    try {
+      while (decoder.hasNextRow()) {
+        decoder.readRow(pixels, decoder.getNextRowY() * rowLength, rowLength);
+      }
+    } catch (EOFException e) {
+      throw new InvalidImageException(TRUNCATED_IMAGE_MESSAGE);
+    } finally {
+      timers.getBmpDecode().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    return image;
+  }
+
+  /**
+   * Записывает изображение области в поток в формате BMP полосами снизу вверх. Каждая полоса
+   * читается под своей блокировкой, поэтому запись, произошедшая во время передачи, может попасть
+   * только в часть полос. Время кодирования и записи полос в поток учитывается таймером {@link
+   * ChartographerTimers#getBmpEncode()}.
+   *
+   * @param stream поток для записи
+   * @param fragments фрагменты, в которых лежит область
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param width ширина области
+   * @param height высота области
+   * @throws IOException если возникло исключение при чтении изображений или записи в поток
+   */
+  private void writeChartaPart(
+      OutputStream stream, List<Fragment> fragments, int x, int y, int width, int height)
+      throws IOException {
+    long start = System.nanoTime();
+    BmpEncoder encoder = new BmpEncoder(stream, width, height);
+    long encodeNanos = System.nanoTime() - start;
+
+    try {
+      for (int bandEnd = y + height; bandEnd > y; bandEnd -= streamBandHeight) {
+        int bandY = Math.max(y, bandEnd - streamBandHeight);
+
+        try (ImagePool.Lease band =
+            imageService.leaseImage(fragments, x, bandY, width, bandEnd - bandY)) {
+          start = System.nanoTime();
+          encoder.writeBand(band.getImage());
+          encodeNanos += System.nanoTime() - start;
+        }
+      }
+    } finally {
+      timers.getBmpEncode().record(encodeNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * Читает изображение из декодера и записывает его в область харты полосами. Строки изображения,
+   * выходящие за область, пропускаются, а часть области, которую изображение не покрывает,
+   * закрашивается чёрным цветом. Каждая полоса записывается под своей блокировкой, поэтому чтение,
+   * произошедшее во время загрузки, может увидеть только часть записанных полос. Время чтения
+   * строк из декодера учитывается таймером {@link ChartographerTimers#getBmpDecode()}.
+   *
+   * @param decoder декодер изображения
+   * @param fragments фрагменты, в которых лежит область
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param width ширина области
+   * @param height высота области
+   * @throws InvalidImageException если изображение оборвалось раньше времени
+   * @throws IOException если возникло исключение при чтении изображения или работе с файловой
+   *     системой
+   */
+  private void readChartaPart(
+      BmpDecoder decoder, List<Fragment> fragments, int x, int y, int width, int height)
+      throws InvalidImageException, IOException {
+    BmpHeader header = decoder.getHeader();
+    int rows = Math.min(height, header.getHeight());
+    int rowLength = Math.min(width, header.getWidth()) * BmpHeader.BYTES_PER_PIXEL;
+    try (ImagePool.Lease lease =
+        imageService.leaseEmptyImage(width, Math.min(streamBandHeight, rows))) {
+      readChartaPart(decoder, lease.getImage(), fragments, rows, x, y, width);
+    }
+
+    for (int bandY = rows; bandY < height; bandY += streamBandHeight) {
+      int bandHeight = Math.min(streamBandHeight, height - bandY);
+
+      try (ImagePool.Lease band = imageService.leaseEmptyImage(width, bandHeight)) {
+        imageService.writeImage(fragments, band.getImage(), x, y + bandY, width, bandHeight);
+      }
+    }
+  }
+
+  /**
+   * Читает строки изображения из декодера в буфер полосы и записывает заполненные полосы в
+   * область харты.
+   *
+   * @param decoder декодер изображения
+   * @param band буфер полосы
+   * @param fragments фрагменты, в которых лежит область
+   * @param rows количество записываемых строк изображения
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param width ширина области
+   * @throws InvalidImageException если изображение оборвалось раньше времени
+   * @throws IOException если возникло исключение при чтении изображения или работе с файловой
+   *     системой
+   */
+  private void readChartaPart(
+      BmpDecoder decoder,
+      BufferedImage band,
+      List<Fragment> fragments,
+      int rows,
+      int x,
+      int y,
+      int width)
+      throws InvalidImageException, IOException {
+    int rowLength = Math.min(width, decoder.getHeader().getWidth()) * BmpHeader.BYTES_PER_PIXEL;
+    byte[] pixels = BmpEncoder.getPixels(band);
+    int bandStart = -1;
+    long decodeNanos = 0;
+
+    try {
+      while (decoder.hasNextRow()) {
+        int rowY = decoder.getNextRowY();
+        long start = System.nanoTime();
+
+        if (rowY >= rows) {
+          decoder.readRow(pixels, 0, 0);
+          decodeNanos += System.nanoTime() - start;
+          continue;
+        }
+
+        if (bandStart >= 0 && rowY / streamBandHeight != bandStart / streamBandHeight) {
+          writeBand(fragments, band, bandStart, rows, x, y, width);
+          start = System.nanoTime();
+        }
+
+        bandStart = rowY - rowY % streamBandHeight;
+        decoder.readRow(pixels, (rowY - bandStart) * width * BmpHeader.BYTES_PER_PIXEL, rowLength);
+        decodeNanos += System.nanoTime() - start;
+      }
+    } catch (EOFException e) {
+      throw new InvalidImageException(TRUNCATED_IMAGE_MESSAGE);
+    } finally {
+      timers.getBmpDecode().record(decodeNanos, TimeUnit.NANOSECONDS);
+    }
+
+    writeBand(fragments, band, bandStart, rows, x, y, width);
+  }
+
+  /**
+   * Записывает заполненную полосу изображения в область харты.
+   *
+   * @param fragments фрагменты, в которых лежит область
+   * @param band буфер полосы
+   * @param bandStart номер первой строки полосы в изображении
+   * @param rows количество записываемых строк изображения
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param width ширина области
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void writeBand(
+      List<Fragment> fragments,
+      BufferedImage band,
+      int bandStart,
+      int rows,
+      int x,
+      int y,
+      int width)
+      throws IOException {
+    int bandHeight = Math.min(streamBandHeight, rows - bandStart);
+
+    imageService.writeImage(
+        fragments, band.getSubimage(0, 0, width, bandHeight), x, y + bandStart, width, bandHeight);
   }
 
   /**
@@ -97,8 +790,76 @@ public class ChartaServiceImpl implements ChartaService {
    */
   private List<Fragment> getFilteredFragments(int id, int x, int y, int width, int height)
       throws ChartaNotFoundException, ImageNoCrossingException {
-    List<Fragment> fragments = chartaDao.get(id).getFragments();
+    return fragmentService.filterFragments(chartaDao.get(id), x, y, width, height);
+  }
+
+  /**
+   * Класс {@code AreaGroup} представляет группу областей, изображения которых собираются одним
+   * проходом по фрагментам харты при записи первой области группы и отдаются по одному.
+   */
+  private class AreaGroup {
+
+    /** Фрагменты, пересекающиеся с областями группы, без повторов. */
+    private final List<Fragment> fragments;
+
+    /** Области группы. */
+    private final List<Rectangle> areas;
+
+    /** Ещё не записанные изображения областей или {@code null}, если группа не собрана. */
+    private List<BufferedImage> images;
+
+    /**
+     * Создаёт группу областей.
+     *
+     * @param fragments фрагменты, пересекающиеся с каждой из областей
+     * @param areas области
+     */
+    private AreaGroup(List<List<Fragment>> fragments, List<Rectangle> areas) {
+      Map<Fragment, Boolean> unique = new IdentityHashMap<>();
+
+      fragments.forEach(list -> list.forEach(fragment -> unique.put(fragment, Boolean.TRUE)));
+      this.fragments = new ArrayList<>(unique.keySet());
+      this.areas = areas;
+    }
+
+    /**
+     * Возвращает объект для записи изображения области группы в поток в формате BMP.
+     *
+     * @param index номер области в группе
+     * @return объект для записи изображения области
+     */
+    private BmpWriter getWriter(int index) {
+      return stream -> {
+        BufferedImage image = takeImage(index);
+        long start = System.nanoTime();
 
-    return fragmentService.filterFragments(fragments, x, y, width, height);
+        try {
+          new BmpEncoder(stream, image.getWidth(), image.getHeight()).writeBand(image);
+        } finally {
+          timers.getBmpEncode().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+      };
+    }
+
+    /**
+     * Возвращает изображение области, при первом обращении собирая изображения всей группы.
+     * Возвращённое изображение больше не хранится в группе.
+     *
+     * @param index номер области в группе
+     * @return изображение области
+     * @throws IOException если возникло исключение при работе с файловой системой
+     */
+    private synchronized BufferedImage takeImage(int index) throws IOException {
+      if (images == null) {
+        images = imageService.createImages(fragments, areas);
+      }
+
+      return images.set(index, null);
+    }
+  }
+
+  @Override
+  public long getSharedRenderCount() {
+    return renders.getSharedCount();
   }
 }
@@ -1,11 +1,17 @@
 package ru.maxizenit.chartographer.service.impl;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import ru.maxizenit.chartographer.concurrent.RegionLock;
 import ru.maxizenit.chartographer.exception.ImageNoCrossingException;
+import ru.maxizenit.chartographer.model.Charta;
 import ru.maxizenit.chartographer.model.Fragment;
+import ru.maxizenit.chartographer.model.FragmentIndex;
 import ru.maxizenit.chartographer.service.FragmentService;
 import ru.maxizenit.chartographer.service.ImageService;
+import ru.maxizenit.chartographer.service.LockService;
+import ru.maxizenit.chartographer.tiling.TilingStrategy;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -18,37 +24,33 @@ public class FragmentServiceImpl implements FragmentService {
   private static final String IMAGE_NO_CROSSING_MESSAGE =
       "Заданная область не пересекается с хартой";
 
-  /** Максимальный размер создаваемого фрагмента. */
-  private static final int MAX_SIDE_SIZE = 5_000;
-
   private final ImageService imageService;
+  private final LockService lockService;
+  private final TilingStrategy tilingStrategy;
+
+  /** Размер фрагмента по умолчанию. */
+  private final int tileSize;
 
   @Autowired
-  public FragmentServiceImpl(ImageService imageService) {
+  public FragmentServiceImpl(
+      ImageService imageService,
+      LockService lockService,
+      TilingStrategy tilingStrategy,
+      @Value("${chartographer.tiling.tile-size}") int tileSize) {
     this.imageService = imageService;
+    this.lockService = lockService;
+    this.tilingStrategy = tilingStrategy;
+    this.tileSize = tileSize;
   }
 
   @Override
   public List<Fragment> createFragments(int width, int height) {
-    List<Fragment> fragments = new ArrayList<>();
-
-    for (int y = 0; y < height; y += Math.min(MAX_SIDE_SIZE, height - y)) {
-      for (int x = 0; x < width; x += Math.min(MAX_SIDE_SIZE, width - x)) {
-        fragments.add(
-            new Fragment(
-                x, y, Math.min(MAX_SIDE_SIZE, width - x), Math.min(MAX_SIDE_SIZE, height - y)));
-      }
-    }
-
-    return fragments;
+    return createFragments(width, height, tileSize);
   }
 
   @Override
-  public void initializeFragmentImages(List<Fragment> fragments) throws IOException {
-    for (Fragment fragment : fragments) {
-      String path = imageService.saveEmptyImage(fragment.getWidth(), fragment.getHeight());
-      fragment.setImageName(path);
-    }
+  public List<Fragment> createFragments(int width, int height, int tileSize) {
+    return tilingStrategy.createFragments(width, height, tileSize);
   }
 
   @Override
@@ -69,6 +71,20 @@ public class FragmentServiceImpl implements FragmentService {
     return filteredFragments;
   }
 
+  @Override
+  public List<Fragment> filterFragments(Charta charta, int x, int y, int width, int height)
+      throws ImageNoCrossingException {
+    FragmentIndex index = charta.getIndex();
+    List<Fragment> filteredFragments =
+        index == null ? List.of() : index.query(x, y, width, height);
+
+    if (filteredFragments.isEmpty()) {
+      throw new ImageNoCrossingException(IMAGE_NO_CROSSING_MESSAGE);
+    }
+
+    return filteredFragments;
+  }
+
   /**
    * Возвращает {@code true}, если область пересекается с фрагментом.
    *
@@ -93,7 +109,25 @@ public class FragmentServiceImpl implements FragmentService {
   @Override
   public void clearFragments(List<Fragment> fragments) throws IOException {
     for (Fragment fragment : fragments) {
-      imageService.deleteImage(fragment.getImageName());
+      try (RegionLock lock =
+          lockService.lockWrite(
+              List.of(fragment),
+              fragment.getX(),
+              fragment.getY(),
+              fragment.getWidth(),
+              fragment.getHeight())) {
+        String imageName;
+
+        synchronized (fragment) {
+          imageName = fragment.getImageName();
+          fragment.setImageName(null);
+          fragment.setDeleted(true);
+        }
+
+        if (imageName != null) {
+          imageService.deleteImage(imageName);
+        }
+      }
     }
 
     fragments.clear();
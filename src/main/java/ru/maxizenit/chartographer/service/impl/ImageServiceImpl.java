@@ -1,41 +1,130 @@
 package ru.maxizenit.chartographer.service.impl;
 
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import ru.maxizenit.chartographer.bmp.BmpHeader;
+import ru.maxizenit.chartographer.concurrent.RegionLock;
 import ru.maxizenit.chartographer.dao.ImageDao;
+import ru.maxizenit.chartographer.dao.TransferableImageDao;
+import ru.maxizenit.chartographer.metrics.ChartographerTimers;
+import ru.maxizenit.chartographer.model.CacheStatistics;
 import ru.maxizenit.chartographer.model.Fragment;
+import ru.maxizenit.chartographer.model.ImagePart;
+import ru.maxizenit.chartographer.raster.ImagePool;
+import ru.maxizenit.chartographer.raster.RasterCopier;
 import ru.maxizenit.chartographer.service.ImageService;
+import ru.maxizenit.chartographer.service.LockService;
+import ru.maxizenit.chartographer.service.TileCacheService;
 
-import java.awt.Color;
-import java.awt.Graphics2D;
+import javax.annotation.PreDestroy;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
+/**
+ * Реализация {@link ImageService}. Фрагменты области читаются и записываются параллельно в общем
+ * ограниченном пуле потоков: каждый фрагмент копируется в свою часть изображения области, поэтому
+ * задержка для области, пересекающей несколько фрагментов, определяется самым медленным из них, а
+ * не их суммой. Пул не имеет очереди: если все его потоки заняты или пул остановлен, фрагмент
+ * обрабатывается в потоке запроса, поэтому число потоков пула ограничено, а запросы не ждут друг
+ * друга в очереди пула. Блокировки областей захватывает и освобождает поток запроса, дожидаясь всех
+ * фрагментов.
+ */
 @Service
 public class ImageServiceImpl implements ImageService {
 
+  /** Время простоя, после которого поток пула завершается, в секундах. */
+  private static final long COMPOSE_KEEP_ALIVE_SECONDS = 60;
+
   private final ImageDao imageDao;
+  private final LockService lockService;
+  private final TileCacheService tileCacheService;
+  private final ChartographerTimers timers;
+
+  /** Пул потоков для параллельной обработки фрагментов или {@code null}, если она отключена. */
+  private final ExecutorService composeExecutor;
+
+  /**
+   * Номер последней записи во фрагменты. Версии всех фрагментов берутся из одного счётчика,
+   * поэтому запись в любой фрагмент делает его версию больше версий всех остальных.
+   */
+  private final AtomicLong lastVersion = new AtomicLong();
+
+  /** Пул изображений полос и областей. */
+  private final ImagePool imagePool;
 
   @Autowired
-  public ImageServiceImpl(ImageDao imageDao) {
+  public ImageServiceImpl(
+      ImageDao imageDao,
+      LockService lockService,
+      TileCacheService tileCacheService,
+      ChartographerTimers timers,
+      @Value("${chartographer.compose.threads}") int composeThreads,
+      @Value("${chartographer.image-pool.max-bytes}") long imagePoolMaxBytes) {
     this.imageDao = imageDao;
+    this.lockService = lockService;
+    this.tileCacheService = tileCacheService;
+    this.timers = timers;
+    this.imagePool = new ImagePool(imagePoolMaxBytes);
+
+    if (composeThreads > 0) {
+      AtomicInteger threadCount = new AtomicInteger();
+      ThreadPoolExecutor executor =
+          new ThreadPoolExecutor(
+              composeThreads,
+              composeThreads,
+              COMPOSE_KEEP_ALIVE_SECONDS,
+              TimeUnit.SECONDS,
+              new SynchronousQueue<>(),
+              runnable -> {
+                Thread thread =
+                    new Thread(runnable, "image-compose-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+              },
+              (runnable, pool) -> runnable.run());
+
+      executor.allowCoreThreadTimeOut(true);
+      composeExecutor = executor;
+    } else {
+      composeExecutor = null;
+    }
   }
 
   @Override
   public BufferedImage createEmptyImage(int width, int height) {
-    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
-    Graphics2D graphics = image.createGraphics();
+    return new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+  }
 
-    graphics.setColor(Color.BLACK);
-    graphics.fillRect(0, 0, width, height);
+  @Override
+  public String saveEmptyImage(int width, int height) throws IOException {
+    Timer.Sample sample = Timer.start();
 
-    return image;
+    try {
+      return imageDao.saveEmpty(width, height);
+    } finally {
+      sample.stop(timers.getImageSaveEmpty());
+    }
   }
 
   @Override
-  public String saveEmptyImage(int width, int height) throws IOException {
-    return imageDao.save(createEmptyImage(width, height));
+  public ImagePool.Lease leaseEmptyImage(int width, int height) {
+    return imagePool.lease(width, height);
   }
 
   @Override
@@ -43,11 +132,107 @@ public class ImageServiceImpl implements ImageService {
       throws IOException {
     BufferedImage image = createEmptyImage(width, height);
 
-    for (Fragment fragment : fragments) {
-      imposeFragmentOnImage(fragment, image, x, y, width, height);
+    composeImage(fragments, image, x, y);
+    return image;
+  }
+
+  @Override
+  public ImagePool.Lease leaseImage(List<Fragment> fragments, int x, int y, int width, int height)
+      throws IOException {
+    ImagePool.Lease lease = imagePool.lease(width, height);
+
+    try {
+      composeImage(fragments, lease.getImage(), x, y);
+    } catch (IOException | RuntimeException | Error e) {
+      lease.close();
+      throw e;
     }
 
-    return image;
+    return lease;
+  }
+
+  /**
+   * Накладывает на чёрное изображение области пересекающиеся с ней фрагменты.
+   *
+   * @param fragments фрагменты
+   * @param image изображение области
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void composeImage(List<Fragment> fragments, BufferedImage image, int x, int y)
+      throws IOException {
+    Timer.Sample sample = Timer.start();
+    int width = image.getWidth();
+    int height = image.getHeight();
+
+    try (RegionLock lock = lockService.lockRead(fragments, x, y, width, height)) {
+      forEachFragment(
+          fragments,
+          fragment -> {
+            if (fragment.getImageName() != null) {
+              imposeFragmentOnImage(fragment, image, x, y, width, height);
+            }
+          });
+    } finally {
+      sample.stop(timers.getCreateImage());
+    }
+  }
+
+  @Override
+  public List<BufferedImage> createImages(List<Fragment> fragments, List<Rectangle> areas)
+      throws IOException {
+    Timer.Sample sample = Timer.start();
+    List<BufferedImage> images = new ArrayList<>(areas.size());
+
+    for (Rectangle area : areas) {
+      images.add(createEmptyImage(area.width, area.height));
+    }
+
+    try {
+      forEachFragment(fragments, fragment -> imposeFragmentOnImages(fragment, images, areas));
+    } finally {
+      sample.stop(timers.getCreateImage());
+    }
+
+    return images;
+  }
+
+  /**
+   * Накладывает изображение фрагмента на изображения заданных областей, читая его один раз по
+   * наименьшей области, покрывающей пересечения фрагмента с ними.
+   *
+   * @param fragment фрагмент
+   * @param images изображения областей
+   * @param areas области в координатах харты
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void imposeFragmentOnImages(
+      Fragment fragment, List<BufferedImage> images, List<Rectangle> areas) throws IOException {
+    Rectangle bounds = getBounds(fragment, areas);
+
+    if (fragment.getImageName() == null || bounds.isEmpty()) {
+      return;
+    }
+
+    try (ImagePool.Lease part = imagePool.lease(bounds.width, bounds.height)) {
+      try (RegionLock lock =
+          lockService.lockRead(
+              List.of(fragment), bounds.x, bounds.y, bounds.width, bounds.height)) {
+        tileCacheService.readPart(
+            fragment, bounds.x - fragment.getX(), bounds.y - fragment.getY(), part.getImage());
+      }
+
+      for (int i = 0; i < areas.size(); i++) {
+        if (areas.get(i).intersects(bounds)) {
+          RasterCopier.copy(
+              part.getImage(),
+              images.get(i),
+              bounds.x - areas.get(i).x,
+              bounds.y - areas.get(i).y);
+        }
+      }
+    }
   }
 
   /**
@@ -69,22 +254,28 @@ public class ImageServiceImpl implements ImageService {
     int endX = Math.min(x + width, fragment.getX() + fragment.getWidth());
     int endY = Math.min(y + height, fragment.getY() + fragment.getHeight());
 
-    BufferedImage fragmentImage =
-        imageDao
-            .get(fragment.getImageName())
-            .getSubimage(
-                startX - fragment.getX(), startY - fragment.getY(), endX - startX, endY - startY);
-    image
-        .createGraphics()
-        .drawImage(fragmentImage, startX - x, startY - y, endX - startX, endY - startY, null);
+    if (startX >= endX || startY >= endY) {
+      return;
+    }
+
+    try (ImagePool.Lease part = imagePool.lease(endX - startX, endY - startY)) {
+      tileCacheService.readPart(
+          fragment, startX - fragment.getX(), startY - fragment.getY(), part.getImage());
+      RasterCopier.copy(part.getImage(), image, startX - x, startY - y);
+    }
   }
 
   @Override
   public void writeImage(
       List<Fragment> fragments, BufferedImage image, int x, int y, int width, int height)
       throws IOException {
-    for (Fragment fragment : fragments) {
-      imposeImageOnFragment(fragment, image, x, y, width, height);
+    Timer.Sample sample = Timer.start();
+
+    try (RegionLock lock = lockService.lockWrite(fragments, x, y, width, height)) {
+      forEachFragment(
+          fragments, fragment -> imposeImageOnFragment(fragment, image, x, y, width, height));
+    } finally {
+      sample.stop(timers.getWriteImage());
     }
   }
 
@@ -106,22 +297,323 @@ public class ImageServiceImpl implements ImageService {
     int endX = Math.min(x + width, fragment.getX() + fragment.getWidth());
     int endY = Math.min(y + height, fragment.getY() + fragment.getHeight());
 
-    BufferedImage fragmentImage = imageDao.get(fragment.getImageName());
-    fragmentImage
-        .createGraphics()
-        .drawImage(
-            image,
-            startX - fragment.getX(),
-            startY - fragment.getY(),
-            endX - startX,
-            endY - startY,
-            null);
+    if (startX >= endX || startY >= endY) {
+      return;
+    }
+
+    if (!createFragmentImageIfAbsent(fragment)) {
+      return;
+    }
+
+    try (ImagePool.Lease part = imagePool.lease(endX - startX, endY - startY)) {
+      RasterCopier.copy(image, part.getImage(), x - startX, y - startY);
+      tileCacheService.updatePart(
+          fragment, part.getImage(), startX - fragment.getX(), startY - fragment.getY());
+    }
 
-    imageDao.update(fragmentImage, fragment.getImageName());
+    incrementVersion(fragment);
+  }
+
+  @Override
+  public Rectangle writeImages(Fragment fragment, List<ImagePart> parts) throws IOException {
+    Rectangle bounds =
+        getBounds(fragment, parts.stream().map(ImagePart::getBounds).collect(Collectors.toList()));
+
+    if (bounds.isEmpty()) {
+      return bounds;
+    }
+
+    Timer.Sample sample = Timer.start();
+
+    try (RegionLock lock =
+            lockService.lockWrite(
+                List.of(fragment), bounds.x, bounds.y, bounds.width, bounds.height);
+        ImagePool.Lease lease = imagePool.lease(bounds.width, bounds.height)) {
+      int partX = bounds.x - fragment.getX();
+      int partY = bounds.y - fragment.getY();
+      BufferedImage part = lease.getImage();
+
+      if (fragment.getImageName() != null) {
+        tileCacheService.readPart(fragment, partX, partY, part);
+      }
+
+      for (ImagePart imagePart : parts) {
+        int x = imagePart.getX() - bounds.x;
+        int y = imagePart.getY() - bounds.y;
+
+        RasterCopier.clear(part, x, y, imagePart.getWidth(), imagePart.getHeight());
+        RasterCopier.copy(
+            imagePart.getImage(), 0, 0, part, x, y, imagePart.getWidth(), imagePart.getHeight());
+      }
+
+      if (createFragmentImageIfAbsent(fragment)) {
+        tileCacheService.updatePart(fragment, part, partX, partY);
+        incrementVersion(fragment);
+      }
+    } finally {
+      sample.stop(timers.getWriteImage());
+    }
+
+    return bounds;
+  }
+
+  /**
+   * Выполняет действие для каждого фрагмента и дожидается завершения всех действий. Действия для
+   * всех фрагментов, кроме первого, передаются в пул потоков, а первое выполняется в текущем
+   * потоке. Если какое-либо действие завершилось исключением, оно выбрасывается после завершения
+   * остальных действий, чтобы блокировки, захваченные вызывающим потоком, не освобождались, пока
+   * с фрагментами ещё работают.
+   *
+   * @param fragments фрагменты
+   * @param action действие над фрагментом
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void forEachFragment(List<Fragment> fragments, FragmentAction action)
+      throws IOException {
+    if (composeExecutor == null || fragments.size() < 2) {
+      for (Fragment fragment : fragments) {
+        action.apply(fragment);
+      }
+
+      return;
+    }
+
+    List<Future<?>> futures = new ArrayList<>(fragments.size() - 1);
+    Throwable failure = null;
+    boolean interrupted = false;
+
+    for (Fragment fragment : fragments.subList(1, fragments.size())) {
+      futures.add(
+          composeExecutor.submit(
+              () -> {
+                action.apply(fragment);
+                return null;
+              }));
+    }
+
+    try {
+      action.apply(fragments.get(0));
+    } catch (IOException | RuntimeException | Error e) {
+      failure = e;
+    }
+
+    for (Future<?> future : futures) {
+      while (true) {
+        try {
+          future.get();
+          break;
+        } catch (ExecutionException e) {
+          failure = failure == null ? e.getCause() : failure;
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    if (failure instanceof IOException) {
+      throw (IOException) failure;
+    } else if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    } else if (failure instanceof Error) {
+      throw (Error) failure;
+    } else if (failure != null) {
+      throw new IOException(failure);
+    }
+  }
+
+  /** Останавливает пул потоков для параллельной обработки фрагментов. */
+  @PreDestroy
+  public void close() {
+    if (composeExecutor != null) {
+      composeExecutor.shutdown();
+    }
+  }
+
+  /**
+   * Возвращает наименьшую область фрагмента, покрывающую пересечения фрагмента с заданными
+   * областями.
+   *
+   * @param fragment фрагмент
+   * @param areas области в координатах харты
+   * @return область в координатах харты, пустая, если области не пересекаются с фрагментом
+   */
+  private Rectangle getBounds(Fragment fragment, List<Rectangle> areas) {
+    Rectangle fragmentArea =
+        new Rectangle(fragment.getX(), fragment.getY(), fragment.getWidth(), fragment.getHeight());
+    Rectangle bounds = new Rectangle();
+
+    for (Rectangle area : areas) {
+      Rectangle crossing = fragmentArea.intersection(area);
+
+      if (!crossing.isEmpty()) {
+        bounds = bounds.isEmpty() ? crossing : bounds.union(crossing);
+      }
+    }
+
+    return bounds;
+  }
+
+  /**
+   * Создаёт для фрагмента пустое изображение, если в фрагмент ещё ничего не записывалось. Для
+   * фрагмента удалённой харты изображение не создаётся, чтобы запись, состязающаяся с удалением,
+   * не оставила файл, о котором не знает каталог.
+   *
+   * @param fragment фрагмент
+   * @return {@code true}, если у фрагмента есть изображение, или {@code false}, если фрагмент
+   *     удалён и запись в него нужно пропустить
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private boolean createFragmentImageIfAbsent(Fragment fragment) throws IOException {
+    synchronized (fragment) {
+      if (fragment.isDeleted()) {
+        return false;
+      }
+
+      if (fragment.getImageName() == null) {
+        fragment.setImageName(saveEmptyImage(fragment.getWidth(), fragment.getHeight()));
+      }
+
+      return true;
+    }
+  }
+
+  /**
+   * Присваивает фрагменту номер очередной записи. Вызывается после того, как запись попала в
+   * изображение фрагмента, поэтому по версии фрагмента никогда не читается более старое
+   * изображение. Номера присваиваются под монитором фрагмента, чтобы параллельные записи в разные
+   * области фрагмента не уменьшали его версию.
+   *
+   * @param fragment фрагмент
+   */
+  private void incrementVersion(Fragment fragment) {
+    synchronized (fragment) {
+      fragment.setVersion(lastVersion.incrementAndGet());
+    }
+  }
+
+  @Override
+  public boolean transferImage(Fragment fragment, WritableByteChannel target, int bandHeight)
+      throws IOException {
+    String name = fragment.getImageName();
+
+    if (name == null
+        || tileCacheService.isWriteBack()
+        || !(imageDao instanceof TransferableImageDao)) {
+      return false;
+    }
+
+    TransferableImageDao transferableImageDao = (TransferableImageDao) imageDao;
+    int width = fragment.getWidth();
+    int height = fragment.getHeight();
+    BmpHeader header = new BmpHeader(width, height);
+    Timer.Sample sample = null;
+
+    try {
+      for (int bandEnd = height; bandEnd > 0; bandEnd -= bandHeight) {
+        int bandY = Math.max(0, bandEnd - bandHeight);
+        int rows = bandEnd - bandY;
+
+        try (RegionLock lock =
+            lockService.lockRead(
+                List.of(fragment), fragment.getX(), fragment.getY() + bandY, width, rows)) {
+          boolean hasImage = hasImage(fragment, name);
+
+          if (sample == null) {
+            if (!hasImage || !transferableImageDao.supportsTransfer(name, header)) {
+              return false;
+            }
+
+            sample = Timer.start();
+            transferableImageDao.transferTo(name, 0, BmpHeader.SIZE, target);
+          }
+
+          if (hasImage) {
+            transferableImageDao.transferTo(
+                name, header.getRowsOffset(bandY, rows), (long) rows * header.getRowSize(), target);
+          } else {
+            writeBlackRows(target, header.getRowSize(), rows);
+          }
+        }
+      }
+    } finally {
+      if (sample != null) {
+        sample.stop(timers.getBmpTransfer());
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Проверяет, что у фрагмента по-прежнему есть изображение с заданным названием. Вызывается под
+   * блокировкой на чтение области фрагмента, поэтому удаление фрагмента не может произойти до
+   * снятия блокировки.
+   *
+   * @param fragment фрагмент
+   * @param name название изображения
+   * @return {@code true}, если фрагмент не удалён и изображение не заменено
+   */
+  private boolean hasImage(Fragment fragment, String name) {
+    synchronized (fragment) {
+      return !fragment.isDeleted() && name.equals(fragment.getImageName());
+    }
+  }
+
+  /**
+   * Записывает в канал строки BMP-изображения чёрного цвета. Используется, если фрагмент удалили
+   * посреди передачи: собранное изображение удалённого фрагмента тоже чёрное.
+   *
+   * @param target канал для записи
+   * @param rowSize размер строки в байтах с выравниванием
+   * @param rows количество строк
+   * @throws IOException если возникло исключение при записи в канал
+   */
+  private void writeBlackRows(WritableByteChannel target, int rowSize, int rows)
+      throws IOException {
+    ByteBuffer row = ByteBuffer.allocate(rowSize);
+
+    for (int i = 0; i < rows; i++) {
+      row.clear();
+
+      while (row.hasRemaining()) {
+        target.write(row);
+      }
+    }
+  }
+
+  @Override
+  public CacheStatistics getPoolStatistics() {
+    return imagePool.getStatistics();
   }
 
   @Override
   public void deleteImage(String name) throws IOException {
-    imageDao.delete(name);
+    Timer.Sample sample = Timer.start();
+
+    tileCacheService.evict(name);
+
+    try {
+      imageDao.delete(name);
+    } finally {
+      sample.stop(timers.getImageDelete());
+    }
+  }
+
+  /** Действие над фрагментом, которое может выполняться в потоке пула. */
+  @FunctionalInterface
+  private interface FragmentAction {
+
+    /**
+     * Выполняет действие над фрагментом.
+     *
+     * @param fragment фрагмент
+     * @throws IOException если возникло исключение при работе с файловой системой
+     */
+    void apply(Fragment fragment) throws IOException;
   }
 }
@@ -0,0 +1,132 @@
+package ru.maxizenit.chartographer.service.impl;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.maxizenit.chartographer.concurrent.RegionLock;
+import ru.maxizenit.chartographer.model.Fragment;
+import ru.maxizenit.chartographer.service.LockService;
+
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * Реализация {@link LockService} на основе фиксированного набора блокировок чтения-записи. Каждый
+ * фрагмент делится на горизонтальные полосы, и каждой полосе по хэшу сопоставляется одна из
+ * блокировок набора. Все блокировки области захватываются сразу в порядке возрастания их номеров,
+ * поэтому взаимная блокировка потоков невозможна.
+ */
+@Service
+public class LockServiceImpl implements LockService {
+
+  /** Набор блокировок. */
+  private final ReadWriteLock[] stripes;
+
+  /** Высота полосы фрагмента, защищаемой одной блокировкой. */
+  private final int bandHeight;
+
+  @Autowired
+  public LockServiceImpl(
+      @Value("${chartographer.locks.stripes}") int stripes,
+      @Value("${chartographer.locks.band-height}") int bandHeight) {
+    this.stripes = new ReadWriteLock[stripes];
+    this.bandHeight = bandHeight;
+
+    for (int i = 0; i < stripes; i++) {
+      this.stripes[i] = new ReentrantReadWriteLock();
+    }
+  }
+
+  @Override
+  public RegionLock lockRead(List<Fragment> fragments, int x, int y, int width, int height) {
+    return lock(fragments, x, y, width, height, false);
+  }
+
+  @Override
+  public RegionLock lockWrite(List<Fragment> fragments, int x, int y, int width, int height) {
+    return lock(fragments, x, y, width, height, true);
+  }
+
+  /**
+   * Захватывает блокировки всех полос фрагментов, пересекающихся с заданной областью.
+   *
+   * @param fragments фрагменты
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param width ширина области
+   * @param height высота области
+   * @param write {@code true}, если нужна блокировка на запись
+   * @return захваченная блокировка
+   */
+  private RegionLock lock(
+      List<Fragment> fragments, int x, int y, int width, int height, boolean write) {
+    int[] indexes =
+        fragments.stream()
+            .filter(fragment -> isCrossing(fragment, x, y, width, height))
+            .flatMapToInt(fragment -> getStripeIndexes(fragment, y, height))
+            .sorted()
+            .distinct()
+            .toArray();
+    Lock[] locks = new Lock[indexes.length];
+
+    for (int i = 0; i < indexes.length; i++) {
+      locks[i] = write ? stripes[indexes[i]].writeLock() : stripes[indexes[i]].readLock();
+      locks[i].lock();
+    }
+
+    return () -> {
+      for (int i = locks.length - 1; i >= 0; i--) {
+        locks[i].unlock();
+      }
+    };
+  }
+
+  /**
+   * Возвращает номера блокировок, защищающих полосы фрагмента, которые пересекаются с заданными
+   * строками харты.
+   *
+   * @param fragment фрагмент
+   * @param y координата области по оси Y
+   * @param height высота области
+   * @return номера блокировок
+   */
+  private IntStream getStripeIndexes(Fragment fragment, int y, int height) {
+    int startY = Math.max(y, fragment.getY()) - fragment.getY();
+    int endY = Math.min(y + height, fragment.getY() + fragment.getHeight()) - fragment.getY();
+
+    return IntStream.rangeClosed(startY / bandHeight, (endY - 1) / bandHeight)
+        .map(band -> getStripeIndex(fragment, band));
+  }
+
+  /**
+   * Возвращает {@code true}, если область пересекается с фрагментом.
+   *
+   * @param fragment фрагмент
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param width ширина области
+   * @param height высота области
+   * @return {@code true}, если область пересекается с фрагментом
+   */
+  private boolean isCrossing(Fragment fragment, int x, int y, int width, int height) {
+    return fragment.getX() < x + width
+        && x < fragment.getX() + fragment.getWidth()
+        && fragment.getY() < y + height
+        && y < fragment.getY() + fragment.getHeight();
+  }
+
+  /**
+   * Возвращает номер блокировки, защищающей полосу фрагмента.
+   *
+   * @param fragment фрагмент
+   * @param band номер полосы
+   * @return номер блокировки в наборе
+   */
+  private int getStripeIndex(Fragment fragment, int band) {
+    int hash = System.identityHashCode(fragment) * 31 + band;
+    return Math.floorMod(hash ^ (hash >>> 16), stripes.length);
+  }
+}
@@ -0,0 +1,361 @@
+package ru.maxizenit.chartographer.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import ru.maxizenit.chartographer.bmp.BmpEncoder;
+import ru.maxizenit.chartographer.dao.ChartaDao;
+import ru.maxizenit.chartographer.model.Charta;
+import ru.maxizenit.chartographer.model.Fragment;
+import ru.maxizenit.chartographer.service.FragmentService;
+import ru.maxizenit.chartographer.service.ImageService;
+import ru.maxizenit.chartographer.service.PyramidService;
+
+import javax.annotation.PreDestroy;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Реализация {@link PyramidService}. Записи в харту только запоминают изменённые области, а
+ * уровни пересчитываются в фоновых потоках, поэтому запись не ждёт пересчёта пирамиды. Изменённые
+ * области одной харты копятся, пока предыдущий пересчёт её пирамиды не закончится, и
+ * пересчитываются одной задачей; пересекающиеся области при этом объединяются. Уровни
+ * пересчитываются полосами, поэтому объём памяти на пересчёт не зависит от размера изменённой
+ * области.
+ *
+ * <p>Незаконченные пересчёты не сохраняются: если сервис остановлен аварийно, уровни отстают от
+ * харты до следующей записи в изменённые области. Пирамиды харт, созданных без них, строятся в
+ * фоне после запуска сервиса.
+ */
+@Slf4j
+@Service
+public class PyramidServiceImpl implements PyramidService {
+
+  /** Размер большей стороны, начиная с которого харта больше не уменьшается. */
+  private static final int MIN_LEVEL_SIZE = 256;
+
+  /** Высота полосы уровня, пересчитываемой за один раз. */
+  private static final int BAND_HEIGHT = 256;
+
+  /** Количество байт на пиксель. */
+  private static final int BYTES_PER_PIXEL = 3;
+
+  private final ChartaDao chartaDao;
+  private final FragmentService fragmentService;
+  private final ImageService imageService;
+
+  /** Изменённые области харт, уровни пирамид которых ещё не пересчитаны, по хартам. */
+  private final Map<Charta, List<Rectangle>> dirtyAreas = new IdentityHashMap<>();
+
+  /** Харты, пирамиды которых строятся целиком. */
+  private final Set<Charta> building = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  /** Пул потоков для пересчёта уровней. */
+  private final ExecutorService executor;
+
+  @Autowired
+  public PyramidServiceImpl(
+      ChartaDao chartaDao,
+      FragmentService fragmentService,
+      ImageService imageService,
+      @Value("${chartographer.pyramid.threads}") int threads) {
+    this.chartaDao = chartaDao;
+    this.fragmentService = fragmentService;
+    this.imageService = imageService;
+
+    AtomicInteger threadCount = new AtomicInteger();
+    executor =
+        Executors.newFixedThreadPool(
+            threads,
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, "pyramid-update-" + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  @Override
+  public List<Charta> createLevels(int width, int height) {
+    List<Charta> levels = new ArrayList<>();
+
+    while (Math.max(width, height) > MIN_LEVEL_SIZE) {
+      width = (width + 1) / 2;
+      height = (height + 1) / 2;
+
+      Charta level = new Charta(width, height);
+      level.setFragments(fragmentService.createFragments(width, height));
+      levels.add(level);
+    }
+
+    return levels;
+  }
+
+  @Override
+  public void updateLevels(Charta charta, int x, int y, int width, int height) {
+    Rectangle area =
+        new Rectangle(x, y, width, height)
+            .intersection(new Rectangle(charta.getWidth(), charta.getHeight()));
+
+    if (area.isEmpty()) {
+      return;
+    }
+
+    synchronized (dirtyAreas) {
+      List<Rectangle> areas = dirtyAreas.get(charta);
+
+      if (areas == null) {
+        areas = new ArrayList<>();
+        dirtyAreas.put(charta, areas);
+        executor.execute(() -> updatePyramid(charta));
+      }
+
+      addArea(areas, area);
+    }
+  }
+
+  @Override
+  public void buildLevels(Charta charta) {
+    List<Charta> levels = createLevels(charta.getWidth(), charta.getHeight());
+
+    synchronized (dirtyAreas) {
+      if (charta.getLevels() != null) {
+        return;
+      }
+
+      building.add(charta);
+      charta.setLevels(levels);
+    }
+
+    updateLevels(charta, 0, 0, charta.getWidth(), charta.getHeight());
+  }
+
+  @Override
+  public boolean isBuilt(Charta charta) {
+    synchronized (dirtyAreas) {
+      return charta.getLevels() != null && !building.contains(charta);
+    }
+  }
+
+  /** Начинает построение пирамид харт, созданных без них, после запуска сервиса. */
+  @EventListener(ApplicationReadyEvent.class)
+  public void buildMissingLevels() {
+    for (Charta charta : chartaDao.getChartas()) {
+      if (charta.getLevels() == null) {
+        buildLevels(charta);
+      }
+    }
+  }
+
+  /** Дожидается пересчёта всех изменённых областей и останавливает пул потоков пересчёта. */
+  @PreDestroy
+  public void close() {
+    awaitUpdates();
+    executor.shutdown();
+  }
+
+  /** Дожидается, пока не останется изменённых областей, уровни которых не пересчитаны. */
+  void awaitUpdates() {
+    synchronized (dirtyAreas) {
+      while (!dirtyAreas.isEmpty()) {
+        try {
+          dirtyAreas.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Добавляет изменённую область к списку, объединяя её с пересекающимися областями списка.
+   *
+   * @param areas изменённые области, не пересекающиеся друг с другом
+   * @param area новая изменённая область
+   */
+  private void addArea(List<Rectangle> areas, Rectangle area) {
+    boolean merged = true;
+
+    while (merged) {
+      merged = false;
+
+      for (Iterator<Rectangle> iterator = areas.iterator(); iterator.hasNext(); ) {
+        Rectangle other = iterator.next();
+
+        if (other.intersects(area)) {
+          area = area.union(other);
+          iterator.remove();
+          merged = true;
+        }
+      }
+    }
+
+    areas.add(area);
+  }
+
+  /**
+   * Пересчитывает уровни пирамиды харты по изменённым областям, пока они появляются. Если у
+   * фрагментов уровней появились новые изображения, харта сохраняется в каталоге.
+   *
+   * @param charta харта
+   */
+  private void updatePyramid(Charta charta) {
+    while (true) {
+      List<Rectangle> areas;
+
+      synchronized (dirtyAreas) {
+        areas = dirtyAreas.get(charta);
+
+        if (areas.isEmpty()) {
+          dirtyAreas.remove(charta);
+          building.remove(charta);
+          dirtyAreas.notifyAll();
+          return;
+        }
+
+        dirtyAreas.put(charta, new ArrayList<>());
+      }
+
+      try {
+        boolean materialized = false;
+
+        for (Rectangle area : areas) {
+          materialized |= updateLevels(charta, area);
+        }
+
+        if (materialized) {
+          chartaDao.update(charta);
+        }
+      } catch (IOException | RuntimeException e) {
+        log.error("Не удалось пересчитать уровни пирамиды харты {}", charta.getId(), e);
+      }
+    }
+  }
+
+  /**
+   * Пересчитывает области уровней пирамиды, на которые влияет изменённая область харты.
+   *
+   * @param charta харта с построенной пирамидой
+   * @param area изменённая область харты
+   * @return {@code true}, если у фрагментов уровней появились новые изображения
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private boolean updateLevels(Charta charta, Rectangle area) throws IOException {
+    boolean materialized = false;
+    Charta source = charta;
+    int startX = area.x;
+    int startY = area.y;
+    int endX = area.x + area.width;
+    int endY = area.y + area.height;
+
+    for (Charta level : charta.getLevels()) {
+      startX /= 2;
+      startY /= 2;
+      endX = (endX + 1) / 2;
+      endY = (endY + 1) / 2;
+      materialized |= updateLevel(source, level, startX, startY, endX, endY);
+      source = level;
+    }
+
+    return materialized;
+  }
+
+  /**
+   * Пересчитывает область уровня из предыдущего уровня полосами.
+   *
+   * @param source предыдущий уровень
+   * @param level пересчитываемый уровень
+   * @param startX левая граница области уровня
+   * @param startY верхняя граница области уровня
+   * @param endX правая граница области уровня, не включая её
+   * @param endY нижняя граница области уровня, не включая её
+   * @return {@code true}, если у фрагментов уровня появились новые изображения
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private boolean updateLevel(
+      Charta source, Charta level, int startX, int startY, int endX, int endY)
+      throws IOException {
+    boolean materialized = false;
+    int width = endX - startX;
+    int sourceX = startX * 2;
+    int sourceWidth = Math.min(endX * 2, source.getWidth()) - sourceX;
+
+    for (int bandY = startY; bandY < endY; bandY += BAND_HEIGHT) {
+      int bandHeight = Math.min(BAND_HEIGHT, endY - bandY);
+      int sourceY = bandY * 2;
+      int sourceHeight = Math.min((bandY + bandHeight) * 2, source.getHeight()) - sourceY;
+      List<Fragment> sourceFragments =
+          source.getIndex().query(sourceX, sourceY, sourceWidth, sourceHeight);
+      List<Fragment> fragments = level.getIndex().query(startX, bandY, width, bandHeight);
+      BufferedImage band =
+          downsample(
+              imageService.createImage(
+                  sourceFragments, sourceX, sourceY, sourceWidth, sourceHeight),
+              width,
+              bandHeight);
+
+      materialized |= fragments.stream().anyMatch(f -> f.getImageName() == null);
+      imageService.writeImage(fragments, band, startX, bandY, width, bandHeight);
+    }
+
+    return materialized;
+  }
+
+  /**
+   * Уменьшает изображение вдвое, усредняя квадраты 2 на 2 пикселя. У нечётного правого или
+   * нижнего края усредняются только существующие пиксели.
+   *
+   * @param source исходное изображение
+   * @param width ширина уменьшенного изображения
+   * @param height высота уменьшенного изображения
+   * @return уменьшенное изображение
+   */
+  private BufferedImage downsample(BufferedImage source, int width, int height) {
+    BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+    byte[] sourcePixels = BmpEncoder.getPixels(source);
+    byte[] targetPixels = BmpEncoder.getPixels(target);
+    int sourceWidth = source.getWidth();
+    int sourceHeight = source.getHeight();
+
+    for (int y = 0; y < height; y++) {
+      int startY = y * 2;
+      int endY = Math.min(startY + 2, sourceHeight);
+
+      for (int x = 0; x < width; x++) {
+        int startX = x * 2;
+        int endX = Math.min(startX + 2, sourceWidth);
+        int count = (endX - startX) * (endY - startY);
+
+        for (int channel = 0; channel < BYTES_PER_PIXEL; channel++) {
+          int sum = 0;
+
+          for (int row = startY; row < endY; row++) {
+            for (int column = startX; column < endX; column++) {
+              sum += sourcePixels[(row * sourceWidth + column) * BYTES_PER_PIXEL + channel] & 0xFF;
+            }
+          }
+
+          targetPixels[(y * width + x) * BYTES_PER_PIXEL + channel] =
+              (byte) ((sum + count / 2) / count);
+        }
+      }
+    }
+
+    return target;
+  }
+}
@@ -0,0 +1,124 @@
+package ru.maxizenit.chartographer.service.impl;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.maxizenit.chartographer.model.CacheStatistics;
+import ru.maxizenit.chartographer.service.ResponseCacheService;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Реализация {@link ResponseCacheService} с вытеснением давно не использованных изображений (LRU)
+ * при превышении заданного объёма памяти. Для каждой области хранится одно изображение, поэтому
+ * изображения устаревших версий не занимают память дольше, чем до следующего обращения к области.
+ * В кэш попадают только изображения не больше заданного размера: большие области запрашиваются
+ * редко и вытесняли бы много маленьких.
+ */
+@Service
+public class ResponseCacheServiceImpl implements ResponseCacheService {
+
+  /** Максимальный суммарный размер изображений в кэше в байтах. */
+  private final long maxBytes;
+
+  /** Максимальный размер одного изображения в байтах. */
+  private final long maxEntryBytes;
+
+  /** Изображения областей в порядке обращения к ним. */
+  private final LinkedHashMap<String, Entry> entries;
+
+  /** Суммарный размер изображений в кэше в байтах. */
+  private long bytes;
+
+  /** Счётчик попаданий. */
+  private final AtomicLong hitCount;
+
+  /** Счётчик промахов. */
+  private final AtomicLong missCount;
+
+  /** Счётчик вытесненных изображений. */
+  private final AtomicLong evictionCount;
+
+  @Autowired
+  public ResponseCacheServiceImpl(
+      @Value("${chartographer.response-cache.max-bytes}") long maxBytes,
+      @Value("${chartographer.response-cache.max-entry-bytes}") long maxEntryBytes) {
+    this.maxBytes = maxBytes;
+    this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+
+    entries = new LinkedHashMap<>(16, 0.75f, true);
+    hitCount = new AtomicLong();
+    missCount = new AtomicLong();
+    evictionCount = new AtomicLong();
+  }
+
+  @Override
+  public boolean isCacheable(long size) {
+    return size <= maxEntryBytes;
+  }
+
+  @Override
+  public synchronized byte[] get(String window, long version) {
+    Entry entry = entries.get(window);
+
+    if (entry != null && entry.version == version) {
+      hitCount.incrementAndGet();
+      return entry.body;
+    }
+
+    if (entry != null && entry.version < version) {
+      entries.remove(window);
+      bytes -= entry.body.length;
+    }
+
+    missCount.incrementAndGet();
+    return null;
+  }
+
+  @Override
+  public synchronized void put(String window, long version, byte[] body) {
+    if (!isCacheable(body.length)) {
+      return;
+    }
+
+    Entry previous = entries.get(window);
+
+    if (previous != null && previous.version > version) {
+      return;
+    }
+
+    entries.put(window, new Entry(version, body));
+    bytes += body.length - (previous == null ? 0 : previous.body.length);
+
+    Iterator<Entry> iterator = entries.values().iterator();
+
+    while (bytes > maxBytes && iterator.hasNext()) {
+      bytes -= iterator.next().body.length;
+      iterator.remove();
+      evictionCount.incrementAndGet();
+    }
+  }
+
+  @Override
+  public synchronized CacheStatistics getStatistics() {
+    return new CacheStatistics(
+        hitCount.get(), missCount.get(), evictionCount.get(), entries.size(), bytes, 0, 0);
+  }
+
+  /** Закодированное изображение области вместе с версией, с которой оно собрано. */
+  private static final class Entry {
+
+    /** Версия области. */
+    private final long version;
+
+    /** Закодированное изображение. */
+    private final byte[] body;
+
+    private Entry(long version, byte[] body) {
+      this.version = version;
+      this.body = body;
+    }
+  }
+}
@@ -0,0 +1,519 @@
+package ru.maxizenit.chartographer.service.impl;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.maxizenit.chartographer.dao.ImageDao;
+import ru.maxizenit.chartographer.metrics.ChartographerTimers;
+import ru.maxizenit.chartographer.model.CacheStatistics;
+import ru.maxizenit.chartographer.model.Fragment;
+import ru.maxizenit.chartographer.model.ImagePart;
+import ru.maxizenit.chartographer.raster.RasterCopier;
+import ru.maxizenit.chartographer.service.TileCacheService;
+
+import javax.annotation.PreDestroy;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Реализация {@link TileCacheService} с вытеснением давно не использованных изображений (LRU) при
+ * превышении заданного объёма памяти. Изображение фрагмента целиком загружается в кэш только при
+ * повторном промахе: при первом промахе из DAO читается лишь запрошенная область, а название
+ * изображения запоминается. Это не даёт однократно прочитанным фрагментам вытеснять часто
+ * используемые.
+ *
+ * <p>Согласованность с записью обеспечивают блокировки областей, которые вызывающий код держит на
+ * время чтения и записи. Загрузка изображения целиком может пересечься с записью в другую область
+ * того же фрагмента, поэтому такое изображение попадает в кэш, только если во время загрузки во
+ * фрагмент ничего не записывалось.
+ *
+ * <p>Если задан период сброса, запись отложенная: записанные области копируются в память, и
+ * вызов возвращается, не обращаясь к DAO. Области одного изображения хранятся в порядке записи,
+ * а область, целиком перекрытая более поздней, отбрасывается, поэтому повторные записи в одно
+ * место не накапливаются. Области сбрасываются в DAO по таймеру, при превышении заданного объёма
+ * (тогда в потоке записи сбрасываются самые давно изменённые изображения, пока объём не уменьшится
+ * вдвое) и при остановке приложения. DAO перезаписывает только строки и столбцы сбрасываемых
+ * областей. Чтение из DAO накладывает поверх прочитанного ещё не сброшенные области, список
+ * которых берётся до чтения, поэтому чтение видит все завершённые записи, даже если сброс идёт
+ * одновременно с ним.
+ *
+ * <p>Гарантии при аварийном завершении процесса: области каждого изображения сбрасываются в
+ * порядке записи, поэтому после перезапуска каждый пиксель содержит значение одной из записей в
+ * него или исходное, и это значение не старее последней записи в пиксель, завершившейся до
+ * последнего полного сброса. Записи, сделанные после него, могут быть потеряны целиком или
+ * частично, независимо для разных изображений. Файлы изображений при этом не повреждаются: сброс
+ * пишет в них те же строки, что и сквозная запись.
+ */
+@Slf4j
+@Service
+public class TileCacheServiceImpl implements TileCacheService {
+
+  /** Количество байт на пиксель декодированного изображения. */
+  private static final int BYTES_PER_PIXEL = 3;
+
+  /** Количество названий изображений, запоминаемых после первого промаха. */
+  private static final int DOORKEEPER_SIZE = 1_024;
+
+  private final ImageDao imageDao;
+  private final ChartographerTimers timers;
+
+  /** Максимальный суммарный размер изображений в кэше в байтах. */
+  private final long maxBytes;
+
+  /** Изображения фрагментов в порядке обращения к ним. */
+  private final LinkedHashMap<String, BufferedImage> tiles;
+
+  /** Названия изображений, по которым недавно был промах. */
+  private final Set<String> doorkeeper;
+
+  /**
+   * Изображения, загружаемые в кэш в данный момент. Значение {@code true} означает, что во время
+   * загрузки в изображение была запись.
+   */
+  private final Map<String, Boolean> loading;
+
+  /** Суммарный размер изображений в кэше в байтах. */
+  private long bytes;
+
+  /** Счётчик попаданий. */
+  private final AtomicLong hitCount;
+
+  /** Счётчик промахов. */
+  private final AtomicLong missCount;
+
+  /** Счётчик вытесненных изображений. */
+  private final AtomicLong evictionCount;
+
+  /** Счётчик неудавшихся сбросов по таймеру. */
+  private final AtomicLong flushFailureCount;
+
+  /** Максимальный суммарный размер несброшенных областей в байтах. */
+  private final long dirtyMaxBytes;
+
+  /**
+   * Несброшенные области изображений в порядке записи. Изображения упорядочены по времени первой
+   * несброшенной записи.
+   */
+  private final LinkedHashMap<String, List<ImagePart>> dirty;
+
+  /** Суммарный размер несброшенных областей в байтах. */
+  private long dirtyBytes;
+
+  /** Монитор, под которым сбрасываются области и удаляются изображения. */
+  private final Object flushLock;
+
+  /** Поток периодического сброса или {@code null}, если запись сквозная. */
+  private final ScheduledExecutorService flusher;
+
+  @Autowired
+  public TileCacheServiceImpl(
+      ImageDao imageDao,
+      @Value("${chartographer.tile-cache.max-bytes}") long maxBytes,
+      @Value("${chartographer.tile-cache.write-back.flush-interval}") long flushInterval,
+      @Value("${chartographer.tile-cache.write-back.max-bytes}") long dirtyMaxBytes,
+      ChartographerTimers timers) {
+    this.imageDao = imageDao;
+    this.timers = timers;
+    this.maxBytes = maxBytes;
+    this.dirtyMaxBytes = dirtyMaxBytes;
+
+    tiles = new LinkedHashMap<>(16, 0.75f, true);
+    doorkeeper =
+        Collections.newSetFromMap(
+            new LinkedHashMap<>() {
+              @Override
+              protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > DOORKEEPER_SIZE;
+              }
+            });
+    loading = new HashMap<>();
+    hitCount = new AtomicLong();
+    missCount = new AtomicLong();
+    evictionCount = new AtomicLong();
+    flushFailureCount = new AtomicLong();
+    dirty = new LinkedHashMap<>();
+    flushLock = new Object();
+
+    if (flushInterval > 0) {
+      flusher =
+          Executors.newSingleThreadScheduledExecutor(
+              runnable -> {
+                Thread thread = new Thread(runnable, "tile-cache-flusher");
+                thread.setDaemon(true);
+                return thread;
+              });
+      flusher.scheduleWithFixedDelay(
+          this::flushQuietly, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    } else {
+      flusher = null;
+    }
+  }
+
+  @Override
+  public BufferedImage getPart(Fragment fragment, int x, int y, int width, int height)
+      throws IOException {
+    BufferedImage part = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+
+    readPart(fragment, x, y, part);
+    return part;
+  }
+
+  @Override
+  public void readPart(Fragment fragment, int x, int y, BufferedImage part) throws IOException {
+    String name = fragment.getImageName();
+    BufferedImage tile;
+
+    synchronized (this) {
+      tile = tiles.get(name);
+    }
+
+    if (tile != null) {
+      hitCount.incrementAndGet();
+    } else {
+      missCount.incrementAndGet();
+
+      List<ImagePart> patches = getPatches(name);
+
+      if (!startLoading(fragment)) {
+        Timer.Sample sample = Timer.start();
+
+        try {
+          imageDao.readPart(name, x, y, part);
+          applyPatches(part, patches, x, y);
+          return;
+        } finally {
+          sample.stop(timers.getImageGetPart());
+        }
+      }
+
+      Timer.Sample sample = Timer.start();
+
+      try {
+        tile = applyPatches(imageDao.get(name), patches, 0, 0);
+      } finally {
+        sample.stop(timers.getImageGet());
+        finishLoading(name, tile);
+      }
+    }
+
+    RasterCopier.copy(tile, x, y, part, 0, 0, part.getWidth(), part.getHeight());
+  }
+
+  @Override
+  public void updatePart(Fragment fragment, BufferedImage part, int x, int y) throws IOException {
+    String name = fragment.getImageName();
+    BufferedImage tile;
+
+    if (flusher == null) {
+      writePart(name, part, x, y);
+    } else if (addPatch(name, new ImagePart(x, y, part.getWidth(), part.getHeight(), copy(part)))) {
+      flush(dirtyMaxBytes / 2);
+    }
+
+    synchronized (this) {
+      loading.replace(name, Boolean.TRUE);
+      tile = tiles.get(name);
+    }
+
+    if (tile != null) {
+      RasterCopier.copy(part, tile, x, y);
+    }
+  }
+
+  @Override
+  public void evict(String name) {
+    synchronized (flushLock) {
+      synchronized (this) {
+        loading.replace(name, Boolean.TRUE);
+        doorkeeper.remove(name);
+
+        BufferedImage tile = tiles.remove(name);
+
+        if (tile != null) {
+          bytes -= getSize(tile);
+        }
+
+        for (ImagePart patch : dirty.getOrDefault(name, List.of())) {
+          dirtyBytes -= getSize(patch.getImage());
+        }
+
+        dirty.remove(name);
+      }
+    }
+  }
+
+  @Override
+  public boolean isWriteBack() {
+    return flusher != null;
+  }
+
+  @Override
+  public synchronized CacheStatistics getStatistics() {
+    return new CacheStatistics(
+        hitCount.get(),
+        missCount.get(),
+        evictionCount.get(),
+        tiles.size(),
+        bytes,
+        dirtyBytes,
+        flushFailureCount.get());
+  }
+
+  @Override
+  public void flush() throws IOException {
+    flush(0);
+  }
+
+  /**
+   * Останавливает периодический сброс и сбрасывает в DAO все накопленные изменения.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @PreDestroy
+  public void close() throws IOException {
+    if (flusher != null) {
+      flusher.shutdown();
+    }
+
+    flush();
+  }
+
+  /**
+   * Сбрасывает в DAO области самых давно изменённых изображений, пока суммарный размер
+   * несброшенных областей не станет не больше заданного. Области изображения удаляются из памяти
+   * только после того, как записаны в DAO.
+   *
+   * @param targetBytes допустимый размер несброшенных областей в байтах
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void flush(long targetBytes) throws IOException {
+    synchronized (flushLock) {
+      List<String> names;
+
+      synchronized (this) {
+        names = new ArrayList<>(dirty.keySet());
+      }
+
+      for (String name : names) {
+        List<ImagePart> patches;
+
+        synchronized (this) {
+          if (dirtyBytes <= targetBytes) {
+            return;
+          }
+
+          patches = new ArrayList<>(dirty.getOrDefault(name, List.of()));
+        }
+
+        for (ImagePart patch : patches) {
+          writePart(name, patch.getImage(), patch.getX(), patch.getY());
+        }
+
+        removePatches(name, patches);
+      }
+    }
+  }
+
+  /**
+   * Сбрасывает в DAO все накопленные изменения по таймеру. Если сброс не удался, ошибка
+   * записывается в журнал и учитывается в счётчике, а несброшенные области остаются в памяти и
+   * сбрасываются при следующем срабатывании таймера.
+   */
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (IOException | RuntimeException e) {
+      flushFailureCount.incrementAndGet();
+      log.warn(
+          "Не удалось сбросить изменённые области фрагментов, осталось {} байт",
+          getStatistics().getDirtyBytes(),
+          e);
+    }
+  }
+
+  /**
+   * Записывает область изображения в DAO.
+   *
+   * @param name название изображения
+   * @param part записываемое изображение
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  private void writePart(String name, BufferedImage part, int x, int y) throws IOException {
+    Timer.Sample sample = Timer.start();
+
+    try {
+      imageDao.updatePart(part, name, x, y);
+    } finally {
+      sample.stop(timers.getImageUpdatePart());
+    }
+  }
+
+  /**
+   * Добавляет несброшенную область изображения, отбрасывая области, которые она целиком
+   * перекрывает.
+   *
+   * @param name название изображения
+   * @param patch область
+   * @return {@code true}, если суммарный размер несброшенных областей превысил допустимый
+   */
+  private synchronized boolean addPatch(String name, ImagePart patch) {
+    List<ImagePart> patches = dirty.computeIfAbsent(name, key -> new ArrayList<>());
+    Rectangle bounds = patch.getBounds();
+
+    patches.removeIf(
+        previous -> {
+          boolean covered = bounds.contains(previous.getBounds());
+
+          if (covered) {
+            dirtyBytes -= getSize(previous.getImage());
+          }
+
+          return covered;
+        });
+    patches.add(patch);
+    dirtyBytes += getSize(patch.getImage());
+
+    return dirtyBytes > dirtyMaxBytes;
+  }
+
+  /**
+   * Удаляет сброшенные области изображения. Области, добавленные во время сброса, остаются.
+   *
+   * @param name название изображения
+   * @param flushed сброшенные области
+   */
+  private synchronized void removePatches(String name, List<ImagePart> flushed) {
+    List<ImagePart> patches = dirty.get(name);
+
+    if (patches == null) {
+      return;
+    }
+
+    for (ImagePart patch : flushed) {
+      if (patches.remove(patch)) {
+        dirtyBytes -= getSize(patch.getImage());
+      }
+    }
+
+    if (patches.isEmpty()) {
+      dirty.remove(name);
+    }
+  }
+
+  /**
+   * Возвращает копию списка несброшенных областей изображения.
+   *
+   * @param name название изображения
+   * @return список областей в порядке записи, возможно пустой
+   */
+  private synchronized List<ImagePart> getPatches(String name) {
+    List<ImagePart> patches = dirty.get(name);
+    return patches == null ? List.of() : new ArrayList<>(patches);
+  }
+
+  /**
+   * Накладывает несброшенные области изображения на прочитанную из DAO часть изображения.
+   *
+   * @param part прочитанная часть изображения
+   * @param patches несброшенные области в порядке записи
+   * @param x координата части по оси X
+   * @param y координата части по оси Y
+   * @return переданная часть изображения
+   */
+  private BufferedImage applyPatches(BufferedImage part, List<ImagePart> patches, int x, int y) {
+    for (ImagePart patch : patches) {
+      RasterCopier.copy(patch.getImage(), part, patch.getX() - x, patch.getY() - y);
+    }
+
+    return part;
+  }
+
+  /**
+   * Возвращает копию изображения.
+   *
+   * @param image изображение
+   * @return копия изображения
+   */
+  private BufferedImage copy(BufferedImage image) {
+    BufferedImage copy =
+        new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+
+    RasterCopier.copy(image, copy, 0, 0);
+
+    return copy;
+  }
+
+  /**
+   * Решает, нужно ли загрузить изображение фрагмента в кэш целиком, и если нужно, отмечает начало
+   * загрузки.
+   *
+   * @param fragment фрагмент
+   * @return {@code true}, если изображение нужно загрузить
+   */
+  private synchronized boolean startLoading(Fragment fragment) {
+    String name = fragment.getImageName();
+
+    if ((long) fragment.getWidth() * fragment.getHeight() * BYTES_PER_PIXEL > maxBytes
+        || loading.containsKey(name)) {
+      return false;
+    }
+
+    if (doorkeeper.add(name)) {
+      return false;
+    }
+
+    loading.put(name, Boolean.FALSE);
+    return true;
+  }
+
+  /**
+   * Завершает загрузку изображения и помещает его в кэш, если во время загрузки в него ничего не
+   * записывалось. При превышении объёма кэша вытесняет давно не использованные изображения.
+   *
+   * @param name название изображения
+   * @param tile загруженное изображение или {@code null}, если загрузка не удалась
+   */
+  private synchronized void finishLoading(String name, BufferedImage tile) {
+    if (!Boolean.FALSE.equals(loading.remove(name)) || tile == null) {
+      return;
+    }
+
+    BufferedImage previous = tiles.put(name, tile);
+    bytes += getSize(tile) - (previous == null ? 0 : getSize(previous));
+
+    Iterator<BufferedImage> iterator = tiles.values().iterator();
+
+    while (bytes > maxBytes && iterator.hasNext()) {
+      bytes -= getSize(iterator.next());
+      iterator.remove();
+      evictionCount.incrementAndGet();
+    }
+  }
+
+  /**
+   * Возвращает размер декодированного изображения в байтах.
+   *
+   * @param tile изображение
+   * @return размер изображения в байтах
+   */
+  private long getSize(BufferedImage tile) {
+    return (long) tile.getWidth() * tile.getHeight() * BYTES_PER_PIXEL;
+  }
+}
@@ -0,0 +1,63 @@
+package ru.maxizenit.chartographer.tiling;
+
+import ru.maxizenit.chartographer.model.Fragment;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Стратегия, разбивающая харту на те же квадратные фрагменты, что и {@link SquareTilingStrategy},
+ * но перечисляющая их вдоль кривой Гильберта. Соседние в списке фрагменты соседствуют и на харте,
+ * поэтому их изображения создаются и нумеруются в порядке, сохраняющем пространственную
+ * близость.
+ */
+public class HilbertTilingStrategy implements TilingStrategy {
+
+  private final SquareTilingStrategy squareTilingStrategy = new SquareTilingStrategy();
+
+  @Override
+  public List<Fragment> createFragments(int width, int height, int tileSize) {
+    List<Fragment> fragments = squareTilingStrategy.createFragments(width, height, tileSize);
+    int columns = (width + tileSize - 1) / tileSize;
+    int rows = (height + tileSize - 1) / tileSize;
+    int order = Integer.highestOneBit(Math.max(columns, rows) * 2 - 1);
+
+    fragments.sort(
+        Comparator.comparingLong(
+            fragment ->
+                getHilbertIndex(order, fragment.getX() / tileSize, fragment.getY() / tileSize)));
+
+    return fragments;
+  }
+
+  /**
+   * Возвращает номер клетки на кривой Гильберта, заполняющей квадрат заданного размера.
+   *
+   * @param order размер стороны квадрата, степень двойки
+   * @param x номер столбца клетки
+   * @param y номер строки клетки
+   * @return номер клетки на кривой
+   */
+  private long getHilbertIndex(int order, int x, int y) {
+    long index = 0;
+
+    for (int s = order / 2; s > 0; s /= 2) {
+      int rx = (x & s) > 0 ? 1 : 0;
+      int ry = (y & s) > 0 ? 1 : 0;
+      index += (long) s * s * ((3 * rx) ^ ry);
+
+      if (ry == 0) {
+        if (rx == 1) {
+          x = s - 1 - x;
+          y = s - 1 - y;
+        }
+
+        int t = x;
+        x = y;
+        y = t;
+      }
+    }
+
+    return index;
+  }
+}
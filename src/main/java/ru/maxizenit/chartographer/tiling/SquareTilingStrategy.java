@@ -0,0 +1,27 @@
+package ru.maxizenit.chartographer.tiling;
+
+import ru.maxizenit.chartographer.model.Fragment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Стратегия, разбивающая харту на квадратные фрагменты. Фрагменты у правого и нижнего краёв
+ * обрезаются по размеру харты и перечисляются построчно.
+ */
+public class SquareTilingStrategy implements TilingStrategy {
+
+  @Override
+  public List<Fragment> createFragments(int width, int height, int tileSize) {
+    List<Fragment> fragments = new ArrayList<>();
+
+    for (int y = 0; y < height; y += tileSize) {
+      for (int x = 0; x < width; x += tileSize) {
+        fragments.add(
+            new Fragment(x, y, Math.min(tileSize, width - x), Math.min(tileSize, height - y)));
+      }
+    }
+
+    return fragments;
+  }
+}
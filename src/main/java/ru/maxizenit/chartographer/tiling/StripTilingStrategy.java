@@ -0,0 +1,24 @@
+package ru.maxizenit.chartographer.tiling;
+
+import ru.maxizenit.chartographer.model.Fragment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Стратегия, разбивающая харту на горизонтальные полосы во всю ширину. Высота полосы равна
+ * размеру фрагмента, нижняя полоса обрезается по высоте харты.
+ */
+public class StripTilingStrategy implements TilingStrategy {
+
+  @Override
+  public List<Fragment> createFragments(int width, int height, int tileSize) {
+    List<Fragment> fragments = new ArrayList<>();
+
+    for (int y = 0; y < height; y += tileSize) {
+      fragments.add(new Fragment(0, y, width, Math.min(tileSize, height - y)));
+    }
+
+    return fragments;
+  }
+}
@@ -0,0 +1,19 @@
+package ru.maxizenit.chartographer.tiling;
+
+import ru.maxizenit.chartographer.model.Fragment;
+
+import java.util.List;
+
+/** Стратегия разбиения харты на фрагменты. */
+public interface TilingStrategy {
+
+  /**
+   * Разбивает харту заданного размера на фрагменты.
+   *
+   * @param width ширина харты
+   * @param height высота харты
+   * @param tileSize размер стороны фрагмента
+   * @return список фрагментов
+   */
+  List<Fragment> createFragments(int width, int height, int tileSize);
+}
@@ -0,0 +1,129 @@
+package ru.maxizenit.chartographer.concurrent;
+
+import org.junit.jupiter.api.Test;
+import ru.maxizenit.chartographer.exception.ServiceOverloadedException;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Класс юнит-теста для {@link RequestPool}. */
+public class RequestPoolTest {
+
+  /**
+   * Тестирует метод {@link RequestPool#submit(RequestPool.Task)}. Метод проходит проверку, если
+   * пул с одним потоком и одним местом в очереди принимает две задачи, отклоняет третью, а после
+   * их выполнения снова принимает задачи.
+   *
+   * @throws Exception если задача завершилась с ошибкой или ожидание было прервано
+   */
+  @Test
+  public void submitTest() throws Exception {
+    CountDownLatch latch = new CountDownLatch(1);
+
+    try (RequestPool pool = new RequestPool("test", 1, 1)) {
+      CompletableFuture<Integer> first = pool.submit(() -> await(latch, 1));
+      CompletableFuture<Integer> second = pool.submit(() -> await(latch, 2));
+
+      assertThrows(ServiceOverloadedException.class, () -> pool.submit(() -> 3));
+
+      latch.countDown();
+
+      assertEquals(1, first.get());
+      assertEquals(2, second.get());
+      assertEquals(4, pool.submit(() -> 4).get());
+      assertEquals(2, pool.getAvailablePermits());
+    }
+  }
+
+  /**
+   * Тестирует метод {@link RequestPool#submit(RequestPool.Task)}. Метод проходит проверку, если
+   * проверенное исключение задачи завершает результат без обёртки и освобождает место в пуле.
+   *
+   * @throws ServiceOverloadedException если пул заполнен
+   */
+  @Test
+  public void submitFailureTest() throws ServiceOverloadedException {
+    try (RequestPool pool = new RequestPool("test", 1, 0)) {
+      CompletableFuture<Integer> result =
+          pool.submit(
+              () -> {
+                throw new IOException();
+              });
+      ExecutionException exception = assertThrows(ExecutionException.class, result::get);
+
+      assertTrue(exception.getCause() instanceof IOException);
+      assertEquals(1, pool.getAvailablePermits());
+    }
+  }
+
+  /**
+   * Тестирует метод {@link RequestPool#submit(RequestPool.Task)} у остановленного пула. Метод
+   * проходит проверку, если задача отклоняется исключением {@link ServiceOverloadedException}, а
+   * место в пуле освобождается.
+   */
+  @Test
+  public void submitAfterCloseTest() {
+    RequestPool pool = new RequestPool("test", 1, 1);
+
+    pool.close();
+
+    assertThrows(ServiceOverloadedException.class, () -> pool.submit(() -> 1));
+    assertEquals(2, pool.getAvailablePermits());
+  }
+
+  /**
+   * Тестирует метод {@link RequestPool#submit(RequestPool.Permit, RequestPool.Task)}. Метод
+   * проходит проверку, если задача на заранее занятом месте выполняется, не занимая второго места,
+   * и освобождает место по завершении.
+   *
+   * @throws Exception если задача завершилась с ошибкой или ожидание было прервано
+   */
+  @Test
+  public void submitWithPermitTest() throws Exception {
+    try (RequestPool pool = new RequestPool("test", 1, 0)) {
+      RequestPool.Permit permit = pool.acquire();
+
+      assertEquals(1, pool.submit(permit, () -> 1).get());
+      assertEquals(1, pool.getAvailablePermits());
+    }
+  }
+
+  /**
+   * Тестирует метод {@link RequestPool#acquire()}. Метод проходит проверку, если повторное
+   * освобождение разрешения не добавляет в пул лишнего места.
+   *
+   * @throws ServiceOverloadedException если пул заполнен
+   */
+  @Test
+  public void acquireTest() throws ServiceOverloadedException {
+    try (RequestPool pool = new RequestPool("test", 1, 1)) {
+      RequestPool.Permit permit = pool.acquire();
+
+      assertEquals(1, pool.getAvailablePermits());
+
+      permit.close();
+      permit.close();
+
+      assertEquals(2, pool.getAvailablePermits());
+    }
+  }
+
+  /**
+   * Ожидает открытия защёлки и возвращает заданное значение.
+   *
+   * @param latch защёлка
+   * @param value значение
+   * @return значение
+   * @throws InterruptedException если ожидание было прервано
+   */
+  private int await(CountDownLatch latch, int value) throws InterruptedException {
+    latch.await();
+    return value;
+  }
+}
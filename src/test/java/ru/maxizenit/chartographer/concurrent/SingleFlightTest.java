@@ -0,0 +1,135 @@
+package ru.maxizenit.chartographer.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Класс юнит-теста для {@link SingleFlight}. */
+public class SingleFlightTest {
+
+  /** Количество одновременных вызовов. */
+  private static final int CALLERS = 8;
+
+  /**
+   * Тестирует метод {@link SingleFlight#execute(Object, SingleFlight.Call)}. Метод проходит
+   * проверку, если одновременные вызовы с одним ключом выполняют вычисление один раз и получают
+   * один и тот же результат, а вызов после завершения вычисления выполняет его заново.
+   *
+   * @throws Exception если вычисление завершилось с ошибкой или ожидание было прервано
+   */
+  @Test
+  public void executeTest() throws Exception {
+    SingleFlight<String, Object> flight = new SingleFlight<>();
+    AtomicInteger calls = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    List<Future<Object>> results =
+        runConcurrently(
+            flight,
+            () -> {
+              calls.incrementAndGet();
+              await(release);
+              return new Object();
+            },
+            release);
+
+    for (Future<Object> result : results) {
+      assertSame(results.get(0).get(), result.get());
+    }
+
+    assertEquals(1, calls.get());
+    assertEquals(CALLERS - 1, flight.getSharedCount());
+
+    flight.execute("key", calls::incrementAndGet);
+
+    assertEquals(2, calls.get());
+  }
+
+  /**
+   * Тестирует метод {@link SingleFlight#execute(Object, SingleFlight.Call)}. Метод проходит
+   * проверку, если исключение вычисления получают все одновременные вызовы с тем же ключом.
+   *
+   * @throws Exception если ожидание было прервано
+   */
+  @Test
+  public void executeFailureTest() throws Exception {
+    SingleFlight<String, Object> flight = new SingleFlight<>();
+    IOException failure = new IOException();
+    CountDownLatch release = new CountDownLatch(1);
+    List<Future<Object>> results =
+        runConcurrently(
+            flight,
+            () -> {
+              await(release);
+              throw failure;
+            },
+            release);
+
+    for (Future<Object> result : results) {
+      Throwable cause = assertThrows(Exception.class, result::get).getCause();
+      assertSame(failure, cause);
+    }
+  }
+
+  /**
+   * Запускает одновременные вызовы с одним ключом и открывает защёлку, когда все вызовы, кроме
+   * первого, ждут его результат.
+   *
+   * @param flight объединитель вызовов
+   * @param call вычисление, ждущее открытия защёлки
+   * @param release защёлка
+   * @return результаты вызовов
+   * @throws InterruptedException если ожидание было прервано
+   */
+  private List<Future<Object>> runConcurrently(
+      SingleFlight<String, Object> flight, SingleFlight.Call<Object> call, CountDownLatch release)
+      throws InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+    List<Future<Object>> results = new ArrayList<>();
+
+    try {
+      for (int i = 0; i < CALLERS; i++) {
+        results.add(executor.submit(() -> flight.execute("key", call)));
+      }
+
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+      while (flight.getSharedCount() < CALLERS - 1 && System.nanoTime() < deadline) {
+        Thread.sleep(1);
+      }
+
+      release.countDown();
+    } finally {
+      executor.shutdown();
+    }
+
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    return results;
+  }
+
+  /**
+   * Ждёт открытия защёлки.
+   *
+   * @param latch защёлка
+   * @throws IOException если ожидание было прервано
+   */
+  private void await(CountDownLatch latch) throws IOException {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    }
+  }
+}
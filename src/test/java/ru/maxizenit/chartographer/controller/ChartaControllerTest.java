@@ -2,25 +2,46 @@ package ru.maxizenit.chartographer.controller;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.io.ResourceLoader;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.maxizenit.chartographer.ChartographerApplicationTests;
+import ru.maxizenit.chartographer.concurrent.RequestPool;
 import ru.maxizenit.chartographer.dao.ImageDao;
 import ru.maxizenit.chartographer.exception.ChartaNotFoundException;
 import ru.maxizenit.chartographer.exception.ImageNoCrossingException;
+import ru.maxizenit.chartographer.exception.InvalidImageException;
+import ru.maxizenit.chartographer.exception.InvalidLevelException;
+import ru.maxizenit.chartographer.exception.PartialBatchException;
+import ru.maxizenit.chartographer.exception.PyramidNotReadyException;
+import ru.maxizenit.chartographer.exception.ServiceOverloadedException;
 
 import javax.imageio.ImageIO;
 import java.awt.Graphics2D;
 import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /** Класс юнит-теста для {@link ChartaController}. */
 @SpringBootTest
@@ -30,48 +51,59 @@ public class ChartaControllerTest {
   private final String BMP_FORMAT = "bmp";
 
   private final ChartaController chartaController;
+  private final RequestPool writeRequestPool;
 
   @Autowired
   public ChartaControllerTest(
-      ChartaController chartaController, ResourceLoader resourceLoader, ImageDao imageDao)
+      ChartaController chartaController,
+      @Qualifier("writeRequestPool") RequestPool writeRequestPool,
+      ResourceLoader resourceLoader,
+      ImageDao imageDao)
       throws IOException {
     this.chartaController = chartaController;
+    this.writeRequestPool = writeRequestPool;
 
     String classPath = ChartographerApplicationTests.getClassPath(resourceLoader);
     ReflectionTestUtils.setField(imageDao, "imagesPath", classPath);
   }
 
   /**
-   * Тестирует метод {@link ChartaController#create(int, int)}. Метод проходит проверку, если запрос
-   * на создание харты возвращает ответ с HTTP-статусом 201.
+   * Тестирует метод {@link ChartaController#create(int, int, Integer)}. Метод проходит проверку,
+   * если запрос на создание харты с размером фрагмента и без него возвращает ответ с HTTP-статусом
+   * 201.
    *
    * @throws IOException если возникло исключение при работе с файловой системой
    */
   @Test
   public void createTest() throws IOException {
     HttpStatus expected = HttpStatus.CREATED;
-    HttpStatus actual = chartaController.create(1, 1).getStatusCode();
+    HttpStatus actual = chartaController.create(1, 1, null).getStatusCode();
 
     assertEquals(expected, actual);
+    assertEquals(expected, chartaController.create(100, 100, 64).getStatusCode());
   }
 
   /**
-   * Тестирует метод {@link ChartaController#savePart(int, int, int, int, int, byte[])}. Метод
+   * Тестирует метод {@link ChartaController#savePart(int, int, int, int, int, InputStream)}. Метод
    * проходит проверку, если запрос возвращает ответ с HTTP-статусом 200.
    *
    * @throws IOException если возникло исключение при работе с файловой системой
    * @throws ChartaNotFoundException если харты с заданным идентификатором не существует
    * @throws ImageNoCrossingException если заданная область не пересекается с хартой
+   * @throws InvalidImageException если изображение не удалось прочитать
+   * @throws ServiceOverloadedException если пул обработки запросов заполнен
    */
   @Test
-  public void savePartTest() throws IOException, ChartaNotFoundException, ImageNoCrossingException {
+  public void savePartTest()
+      throws IOException, ChartaNotFoundException, ImageNoCrossingException,
+          InvalidImageException, ServiceOverloadedException {
     BufferedImage image = new BufferedImage(20, 20, BufferedImage.TYPE_3BYTE_BGR);
     Graphics2D graphics = image.createGraphics();
 
     graphics.setColor(Color.WHITE);
     graphics.fillRect(0, 0, 20, 20);
 
-    int id = Integer.parseInt(chartaController.create(20, 40).getBody());
+    int id = Integer.parseInt(chartaController.create(20, 40, null).getBody());
     byte[] imageAsByteArray;
 
     try (ByteArrayOutputStream stream = new ByteArrayOutputStream()) {
@@ -81,29 +113,214 @@ public class ChartaControllerTest {
 
     HttpStatus expected = HttpStatus.OK;
     HttpStatus actual =
-        chartaController.savePart(id, 0, 20, 20, 20, imageAsByteArray).getStatusCode();
+        chartaController
+            .savePart(id, 0, 20, 20, 20, new ByteArrayInputStream(imageAsByteArray))
+            .join()
+            .getStatusCode();
 
     assertEquals(expected, actual);
   }
 
   /**
-   * Тестирует метод {@link ChartaController#getPart(int, int, int, int, int)}. Метод проходит
-   * проверку, если запрос возвращает ответ с HTTP-статусом 200 и ненулевым телом ответа.
+   * Тестирует метод {@link ChartaController#savePart(int, int, int, int, int, InputStream)} при
+   * заполненном пуле записи. Метод проходит проверку, если запрос отклоняется исключением {@link
+   * ServiceOverloadedException}, не читая тело запроса.
+   *
+   * @throws ServiceOverloadedException если пул записи заполнен до начала теста
+   */
+  @Test
+  public void savePartOverloadedTest() throws ServiceOverloadedException {
+    List<RequestPool.Permit> permits = new ArrayList<>();
+    InputStream image =
+        new InputStream() {
+          @Override
+          public int read() {
+            throw new AssertionError();
+          }
+        };
+
+    try {
+      while (writeRequestPool.getAvailablePermits() > 0) {
+        permits.add(writeRequestPool.acquire());
+      }
+
+      assertThrows(
+          ServiceOverloadedException.class,
+          () -> chartaController.savePart(1, 0, 0, 1, 1, image));
+      assertThrows(ServiceOverloadedException.class, () -> chartaController.saveParts(1, image));
+    } finally {
+      permits.forEach(RequestPool.Permit::close);
+    }
+  }
+
+  /**
+   * Тестирует метод {@link ChartaController#saveParts(int, InputStream)}. Метод проходит проверку,
+   * если запрос с пакетом из двух изображений возвращает ответ с HTTP-статусом 200 и количеством
+   * сохранённых записей в заголовке {@code X-Applied-Count}, а пакет, оборванный во второй записи,
+   * — ответ с HTTP-статусом 400 и одной сохранённой записью.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   * @throws ServiceOverloadedException если пул обработки запросов заполнен
+   */
+  @Test
+  public void savePartsTest() throws IOException, ServiceOverloadedException {
+    BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_3BYTE_BGR);
+    int id = Integer.parseInt(chartaController.create(20, 20, null).getBody());
+    byte[] batch;
+
+    try (ByteArrayOutputStream imageStream = new ByteArrayOutputStream();
+        ByteArrayOutputStream batchStream = new ByteArrayOutputStream()) {
+      ImageIO.write(image, BMP_FORMAT, imageStream);
+
+      DataOutputStream output = new DataOutputStream(batchStream);
+
+      for (int offset : new int[] {0, 10}) {
+        output.writeInt(offset);
+        output.writeInt(offset);
+        output.writeInt(10);
+        output.writeInt(10);
+        output.writeInt(imageStream.size());
+        imageStream.writeTo(output);
+      }
+
+      batch = batchStream.toByteArray();
+    }
+
+    ResponseEntity<?> response =
+        chartaController.saveParts(id, new ByteArrayInputStream(batch)).join();
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals("2", response.getHeaders().getFirst("X-Applied-Count"));
+
+    byte[] truncated = Arrays.copyOf(batch, batch.length - 3);
+    CompletionException exception =
+        assertThrows(
+            CompletionException.class,
+            () -> chartaController.saveParts(id, new ByteArrayInputStream(truncated)).join());
+    response =
+        chartaController.handlePartialBatchException((PartialBatchException) exception.getCause());
+
+    assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    assertEquals("1", response.getHeaders().getFirst("X-Applied-Count"));
+  }
+
+  /**
+   * Тестирует метод {@link ChartaController#getPart(int, int, int, int, int, int, String)}. Метод
+   * проходит проверку, если запрос возвращает ответ с HTTP-статусом 200 и телом, содержащим
+   * BMP-изображение заданного размера.
    *
    * @throws IOException если возникло исключение при работе с файловой системой
    * @throws ChartaNotFoundException если харты с заданным идентификатором не существует
    * @throws ImageNoCrossingException если заданная область не пересекается с хартой
+   * @throws InvalidLevelException если у харты нет уровня с заданным номером
+   * @throws PyramidNotReadyException если пирамида харты ещё строится
+   * @throws ServiceOverloadedException если пул обработки запросов заполнен
    */
   @Test
-  public void getPartTest() throws IOException, ChartaNotFoundException, ImageNoCrossingException {
-    int id = Integer.parseInt(chartaController.create(20, 20).getBody());
-    ResponseEntity<byte[]> response = chartaController.getPart(id, 0, 0, 10, 10);
+  public void getPartTest()
+      throws IOException, ChartaNotFoundException, ImageNoCrossingException,
+          InvalidLevelException, PyramidNotReadyException, ServiceOverloadedException {
+    int id = Integer.parseInt(chartaController.create(20, 20, null).getBody());
+    ResponseEntity<StreamingResponseBody> response =
+        chartaController.getPart(id, 0, 0, 0, 10, 10, null);
 
     HttpStatus expected = HttpStatus.OK;
     HttpStatus actual = response.getStatusCode();
 
     assertEquals(expected, actual);
     assertNotNull(response.getBody());
+
+    BufferedImage image;
+
+    try (ByteArrayOutputStream stream = new ByteArrayOutputStream()) {
+      response.getBody().writeTo(stream);
+      assertEquals(response.getHeaders().getContentLength(), stream.size());
+      image = ImageIO.read(new ByteArrayInputStream(stream.toByteArray()));
+    }
+
+    assertEquals(10, image.getWidth());
+    assertEquals(10, image.getHeight());
+  }
+
+  /**
+   * Тестирует метод {@link ChartaController#getPart(int, int, int, int, int, int, String)} с
+   * заголовком {@code If-None-Match}. Метод проходит проверку, если запрос с тегом из предыдущего
+   * ответа возвращает пустой ответ с HTTP-статусом 304, а после записи в область — снова
+   * изображение с новым тегом.
+   *
+   * @throws Exception если возникло исключение при работе с хартой
+   */
+  @Test
+  public void getPartNotModifiedTest() throws Exception {
+    int id = Integer.parseInt(chartaController.create(20, 20, null).getBody());
+    String tag = chartaController.getPart(id, 0, 0, 0, 10, 10, null).getHeaders().getETag();
+    ResponseEntity<StreamingResponseBody> response =
+        chartaController.getPart(id, 0, 0, 0, 10, 10, "\"other\", W/" + tag);
+
+    assertNotNull(tag);
+    assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+    assertEquals(tag, response.getHeaders().getETag());
+    assertNull(response.getBody());
+
+    try (ByteArrayOutputStream stream = new ByteArrayOutputStream()) {
+      ImageIO.write(
+          new BufferedImage(5, 5, BufferedImage.TYPE_3BYTE_BGR), BMP_FORMAT, stream);
+      chartaController
+          .savePart(id, 0, 0, 5, 5, new ByteArrayInputStream(stream.toByteArray()))
+          .join();
+    }
+
+    response = chartaController.getPart(id, 0, 0, 0, 10, 10, tag);
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertNotEquals(tag, response.getHeaders().getETag());
+  }
+
+  /**
+   * Тестирует метод {@link ChartaController#getParts(int, List)}. Метод проходит проверку, если
+   * запрос на две области возвращает ответ с HTTP-статусом 200 и составным телом заявленной длины,
+   * части которого содержат BMP-изображения областей в порядке запроса.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   * @throws ChartaNotFoundException если харты с заданным идентификатором не существует
+   * @throws ImageNoCrossingException если одна из областей не пересекается с хартой
+   * @throws ServiceOverloadedException если пул обработки запросов заполнен
+   */
+  @Test
+  public void getPartsTest()
+      throws IOException, ChartaNotFoundException, ImageNoCrossingException,
+          ServiceOverloadedException {
+    int id = Integer.parseInt(chartaController.create(20, 20, null).getBody());
+    ResponseEntity<StreamingResponseBody> response =
+        chartaController.getParts(id, List.of("0,0,10,10", "15,5,7,3"));
+    String contentType = response.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE);
+    String boundary = contentType.substring(contentType.indexOf("boundary=") + 9);
+    byte[] body;
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertTrue(contentType.startsWith("multipart/mixed"));
+
+    try (ByteArrayOutputStream stream = new ByteArrayOutputStream()) {
+      response.getBody().writeTo(stream);
+      body = stream.toByteArray();
+    }
+
+    String text = new String(body, StandardCharsets.ISO_8859_1);
+    int[][] sizes = {{10, 10}, {7, 3}};
+    int offset = 0;
+
+    assertEquals(response.getHeaders().getContentLength(), body.length);
+    assertTrue(text.endsWith("--" + boundary + "--\r\n"));
+
+    for (int[] size : sizes) {
+      offset = text.indexOf("--" + boundary + "\r\n", offset);
+      offset = text.indexOf("\r\n\r\n", offset) + 4;
+
+      BufferedImage image = ImageIO.read(new ByteArrayInputStream(body, offset, body.length));
+
+      assertEquals(size[0], image.getWidth());
+      assertEquals(size[1], image.getHeight());
+    }
   }
 
   /**
@@ -112,14 +329,29 @@ public class ChartaControllerTest {
    *
    * @throws IOException если возникло исключение при работе с файловой системой
    * @throws ChartaNotFoundException если харты с заданным идентификатором не существует
+   * @throws ServiceOverloadedException если пул обработки запросов заполнен
    */
   @Test
-  public void deleteTest() throws IOException, ChartaNotFoundException {
-    int id = Integer.parseInt(chartaController.create(1, 1).getBody());
+  public void deleteTest()
+      throws IOException, ChartaNotFoundException, ServiceOverloadedException {
+    int id = Integer.parseInt(chartaController.create(1, 1, null).getBody());
 
     HttpStatus expected = HttpStatus.OK;
-    HttpStatus actual = chartaController.delete(id).getStatusCode();
+    HttpStatus actual = chartaController.delete(id).join().getStatusCode();
 
     assertEquals(expected, actual);
   }
+
+  /**
+   * Тестирует метод {@link ChartaController#handleServiceUnavailableException()}. Метод проходит
+   * проверку, если ответ на отклонённый запрос имеет HTTP-статус 503 и заголовок {@code
+   * Retry-After}.
+   */
+  @Test
+  public void handleServiceUnavailableExceptionTest() {
+    ResponseEntity<?> response = chartaController.handleServiceUnavailableException();
+
+    assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+    assertEquals("1", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+  }
 }
@@ -0,0 +1,49 @@
+package ru.maxizenit.chartographer.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Класс юнит-теста для {@link SpooledBody}. */
+public class SpooledBodyTest {
+
+  /**
+   * Тестирует метод {@link SpooledBody#receive(java.io.InputStream, int)}. Метод проходит
+   * проверку, если тело не больше порога хранится в памяти, тело больше порога записывается во
+   * временный файл, который удаляется при закрытии, и оба читаются без изменений.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void receiveTest() throws IOException {
+    byte[] bytes = new byte[1000];
+    new Random(0).nextBytes(bytes);
+
+    try (SpooledBody body = SpooledBody.receive(new ByteArrayInputStream(bytes), 1000)) {
+      assertNull(body.getFile());
+      assertArrayEquals(bytes, body.getStream().readAllBytes());
+    }
+
+    Path file;
+
+    try (SpooledBody body = SpooledBody.receive(new ByteArrayInputStream(bytes), 999)) {
+      file = body.getFile();
+
+      assertNotNull(file);
+      assertTrue(Files.exists(file));
+      assertArrayEquals(bytes, body.getStream().readAllBytes());
+    }
+
+    assertFalse(Files.exists(file));
+  }
+}
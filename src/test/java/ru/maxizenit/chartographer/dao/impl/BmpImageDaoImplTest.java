@@ -0,0 +1,172 @@
+package ru.maxizenit.chartographer.dao.impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.maxizenit.chartographer.ChartographerApplicationTests;
+import ru.maxizenit.chartographer.bmp.BmpHeader;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Класс юнит-теста для {@link BmpImageDaoImpl}. */
+@SpringBootTest
+public class BmpImageDaoImplTest {
+
+  private final BmpImageDaoImpl imageDao;
+  private final String classPath;
+
+  @Autowired
+  public BmpImageDaoImplTest(BmpImageDaoImpl imageDao, ResourceLoader resourceLoader)
+      throws IOException {
+    this.imageDao = imageDao;
+
+    classPath = ChartographerApplicationTests.getClassPath(resourceLoader);
+    ReflectionTestUtils.setField(this.imageDao, "imagesPath", classPath);
+  }
+
+  /**
+   * Тестирует метод {@link BmpImageDaoImpl#get(String)}. Метод проходит проверку, если
+   * корректно возвращает заданное заранее изображение по его названию.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void getTest() throws IOException {
+    assertNotNull(imageDao.get("test0.bmp"));
+  }
+
+  /**
+   * Тестирует метод {@link BmpImageDaoImpl#save(BufferedImage)}. Метод проходит проверку, если
+   * сохранённое изображение читается средствами {@link ImageIO} без искажений.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void saveTest() throws IOException {
+    BufferedImage image = createRandomImage(37, 23);
+    String name = imageDao.save(image);
+
+    assertPixelsEqual(image, ImageIO.read(new File(classPath + name)), 0, 0);
+    imageDao.delete(name);
+  }
+
+  /**
+   * Тестирует методы {@link BmpImageDaoImpl#supportsTransfer(String, BmpHeader)} и {@link
+   * BmpImageDaoImpl#transferTo(String, long, long, WritableByteChannel)}. Метод проходит проверку,
+   * если передача поддерживается только для заголовка, с которым файл записан, а переданный
+   * участок совпадает с байтами файла.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void transferToTest() throws IOException {
+    String name = imageDao.save(createRandomImage(37, 23));
+    BmpHeader header = new BmpHeader(37, 23);
+    byte[] file = Files.readAllBytes(Path.of(classPath + name));
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+    assertTrue(imageDao.supportsTransfer(name, header));
+    assertFalse(imageDao.supportsTransfer(name, new BmpHeader(23, 37)));
+
+    imageDao.transferTo(name, 10, file.length - 20, Channels.newChannel(stream));
+
+    assertArrayEquals(Arrays.copyOfRange(file, 10, file.length - 10), stream.toByteArray());
+    imageDao.delete(name);
+  }
+
+  /**
+   * Тестирует метод {@link BmpImageDaoImpl#getPart(String, int, int, int, int)}. Метод проходит
+   * проверку, если возвращённая область совпадает с соответствующей областью исходного
+   * изображения.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void getPartTest() throws IOException {
+    BufferedImage image = createRandomImage(37, 23);
+    String name = imageDao.save(image);
+
+    BufferedImage part = imageDao.getPart(name, 5, 7, 13, 11);
+
+    assertEquals(13, part.getWidth());
+    assertEquals(11, part.getHeight());
+    assertPixelsEqual(part, image, 5, 7);
+    imageDao.delete(name);
+  }
+
+  /**
+   * Тестирует метод {@link BmpImageDaoImpl#updatePart(BufferedImage, String, int, int)}. Метод
+   * проходит проверку, если перезаписанная область изменилась, а остальная часть изображения
+   * осталась прежней.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void updatePartTest() throws IOException {
+    BufferedImage image = createRandomImage(37, 23);
+    BufferedImage part = createRandomImage(10, 6);
+    String name = imageDao.save(image);
+
+    imageDao.updatePart(part, name, 27, 17);
+    BufferedImage actual = imageDao.get(name);
+
+    assertPixelsEqual(part, actual, 27, 17);
+    assertPixelsEqual(imageDao.getPart(name, 0, 0, 27, 23), image, 0, 0);
+    imageDao.delete(name);
+  }
+
+  /**
+   * Создаёт изображение заданного размера со случайными пикселями.
+   *
+   * @param width ширина
+   * @param height высота
+   * @return изображение
+   */
+  private BufferedImage createRandomImage(int width, int height) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+    Random random = new Random(width * 31L + height);
+
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, random.nextInt());
+      }
+    }
+
+    return image;
+  }
+
+  /**
+   * Проверяет, что пиксели изображения совпадают с пикселями другого изображения, начиная с
+   * заданных координат.
+   *
+   * @param expected ожидаемое изображение
+   * @param actual изображение, в котором лежит проверяемая область
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   */
+  private void assertPixelsEqual(BufferedImage expected, BufferedImage actual, int x, int y) {
+    for (int row = 0; row < expected.getHeight(); row++) {
+      for (int column = 0; column < expected.getWidth(); column++) {
+        assertEquals(expected.getRGB(column, row), actual.getRGB(x + column, y + row));
+      }
+    }
+  }
+}
@@ -0,0 +1,230 @@
+package ru.maxizenit.chartographer.dao.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.maxizenit.chartographer.model.Charta;
+import ru.maxizenit.chartographer.model.Fragment;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Класс юнит-теста для {@link CatalogDaoImpl}. */
+public class CatalogDaoImplTest {
+
+  /** Количество харт для проверки времени запуска. */
+  private static final int LARGE_CATALOG_SIZE = 100_000;
+
+  /** Допустимое время чтения большого каталога в миллисекундах. */
+  private static final long MAX_LOAD_MILLIS = 1000;
+
+  @TempDir Path directory;
+
+  /**
+   * Тестирует восстановление каталога из журнала. Метод проходит проверку, если после повторного
+   * открытия каталог содержит сохранённые и изменённые харты без удалённых, а счётчики
+   * идентификаторов указывают за последние выданные идентификаторы.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void replayLogTest() throws IOException {
+    CatalogDaoImpl catalogDao = new CatalogDaoImpl(directory, 100, true);
+    Charta first = createCharta(0, null);
+    Charta second = createCharta(1, null);
+
+    catalogDao.save(first);
+    catalogDao.save(second);
+    first.getFragments().get(0).setImageName("7.bmp");
+    catalogDao.update(first);
+    catalogDao.delete(1);
+    catalogDao.update(second);
+
+    CatalogDaoImpl reopened = new CatalogDaoImpl(directory, 100, true);
+
+    assertEquals(List.of(first), reopened.getChartas());
+    assertEquals(2, reopened.getNextChartaId());
+    assertEquals(8, reopened.getNextImageId());
+  }
+
+  /**
+   * Тестирует создание снимка. Метод проходит проверку, если каталог, часть записей которого
+   * перенесена в снимок, а часть осталась в журнале, восстанавливается целиком.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void snapshotTest() throws IOException {
+    CatalogDaoImpl catalogDao = new CatalogDaoImpl(directory, 4, true);
+    List<Charta> chartas = new ArrayList<>();
+
+    for (int i = 0; i < 10; i++) {
+      Charta charta = createCharta(i, i + ".bmp");
+
+      chartas.add(charta);
+      catalogDao.save(charta);
+    }
+
+    catalogDao.awaitSnapshot();
+
+    assertEquals(chartas, getSortedChartas(new CatalogDaoImpl(directory, 4, true)));
+
+    catalogDao.close();
+
+    assertEquals(chartas, getSortedChartas(new CatalogDaoImpl(directory, 4, true)));
+  }
+
+  /**
+   * Тестирует запись появившихся у фрагментов изображений. Метод проходит проверку, если
+   * изменение харты записывается в журнал только новыми изображениями, а после повторного
+   * открытия харта и её уровень восстанавливаются с ними.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void imageRecordTest() throws IOException {
+    CatalogDaoImpl catalogDao = new CatalogDaoImpl(directory, 100, true);
+    Charta charta = createCharta(0, null);
+    Charta level = new Charta(50, 100);
+
+    level.setFragments(List.of(new Fragment(0, 0, 50, 100)));
+    charta.setLevels(List.of(level));
+    catalogDao.save(charta);
+
+    long size = Files.size(directory.resolve("wal"));
+
+    charta.getFragments().get(1).setImageName("3.bmp");
+    level.getFragments().get(0).setImageName("4.bmp");
+    catalogDao.update(charta);
+    catalogDao.update(charta);
+
+    assertTrue(Files.size(directory.resolve("wal")) - size < size);
+
+    CatalogDaoImpl reopened = new CatalogDaoImpl(directory, 100, true);
+
+    assertEquals(List.of(charta), reopened.getChartas());
+    assertEquals(5, reopened.getNextImageId());
+  }
+
+  /**
+   * Тестирует восстановление после сбоя во время записи в журнал. Метод проходит проверку, если
+   * недописанная последняя запись отбрасывается, а предыдущие записи сохраняются.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void tornRecordTest() throws IOException {
+    CatalogDaoImpl catalogDao = new CatalogDaoImpl(directory, 100, true);
+    Charta charta = createCharta(0, null);
+
+    catalogDao.save(charta);
+    catalogDao.save(createCharta(1, null));
+
+    try (FileChannel channel =
+        FileChannel.open(directory.resolve("wal"), StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 3);
+    }
+
+    CatalogDaoImpl reopened = new CatalogDaoImpl(directory, 100, true);
+
+    assertEquals(List.of(charta), reopened.getChartas());
+
+    reopened.save(createCharta(2, null));
+
+    assertEquals(2, new CatalogDaoImpl(directory, 100, true).getChartas().size());
+  }
+
+  /**
+   * Тестирует сохранение уровней пирамиды. Метод проходит проверку, если харта с уровнями
+   * восстанавливается из журнала и из снимка вместе с уровнями, а счётчик идентификаторов
+   * изображений указывает за изображения фрагментов уровней.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void levelsTest() throws IOException {
+    CatalogDaoImpl catalogDao = new CatalogDaoImpl(directory, 100, true);
+    Charta charta = createCharta(0, "1.bmp");
+    Charta level = new Charta(50, 100);
+
+    level.setFragments(List.of(new Fragment(0, 0, 50, 100, "5.bmp")));
+    charta.setLevels(List.of(level));
+    catalogDao.save(charta);
+    catalogDao.save(createCharta(1, null));
+
+    CatalogDaoImpl reopened = new CatalogDaoImpl(directory, 100, true);
+
+    assertEquals(charta, getSortedChartas(reopened).get(0));
+    assertNull(getSortedChartas(reopened).get(1).getLevels());
+    assertEquals(6, reopened.getNextImageId());
+
+    reopened.close();
+
+    assertEquals(charta, getSortedChartas(new CatalogDaoImpl(directory, 100, true)).get(0));
+  }
+
+  /**
+   * Тестирует время чтения большого каталога. Метод проходит проверку, если каталог из
+   * {@link CatalogDaoImplTest#LARGE_CATALOG_SIZE} харт читается быстрее, чем за
+   * {@link CatalogDaoImplTest#MAX_LOAD_MILLIS} миллисекунд.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void largeCatalogLoadTest() throws IOException {
+    CatalogDaoImpl catalogDao = new CatalogDaoImpl(directory, 10_000, false);
+
+    for (int i = 0; i < LARGE_CATALOG_SIZE; i++) {
+      catalogDao.save(createCharta(i, i + ".bmp"));
+    }
+
+    catalogDao.awaitSnapshot();
+
+    long start = System.nanoTime();
+    CatalogDaoImpl reopened = new CatalogDaoImpl(directory, 10_000, false);
+    long millis = (System.nanoTime() - start) / 1_000_000;
+
+    assertEquals(LARGE_CATALOG_SIZE, reopened.getChartas().size());
+    assertTrue(millis < MAX_LOAD_MILLIS, "Каталог читался " + millis + " мс");
+  }
+
+  /**
+   * Создаёт харту из двух фрагментов.
+   *
+   * @param id идентификатор харты
+   * @param imageName название изображения первого фрагмента
+   * @return харта
+   */
+  private Charta createCharta(int id, String imageName) {
+    Charta charta = new Charta(100, 200);
+
+    charta.setId(id);
+    charta.setFragments(
+        List.of(new Fragment(0, 0, 100, 100, imageName), new Fragment(0, 100, 100, 100)));
+
+    return charta;
+  }
+
+  /**
+   * Возвращает харты каталога, упорядоченные по идентификатору.
+   *
+   * @param catalogDao каталог
+   * @return список харт
+   */
+  private List<Charta> getSortedChartas(CatalogDaoImpl catalogDao) {
+    List<Charta> chartas = catalogDao.getChartas();
+
+    chartas.sort(Comparator.comparing(Charta::getId));
+
+    return chartas;
+  }
+}
@@ -7,7 +7,6 @@ import org.springframework.test.util.ReflectionTestUtils;
 import ru.maxizenit.chartographer.exception.ChartaNotFoundException;
 import ru.maxizenit.chartographer.model.Charta;
 
-import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -51,7 +50,7 @@ public class ChartaDaoImplTest {
     chartaDao.delete(charta.getId());
 
     Map<Integer, Charta> chartaMap =
-        (HashMap<Integer, Charta>) ReflectionTestUtils.getField(chartaDao, "chartas");
+        (Map<Integer, Charta>) ReflectionTestUtils.getField(chartaDao, "chartas");
 
     assertNull(chartaMap.get(charta.getId()));
   }
@@ -67,7 +66,7 @@ public class ChartaDaoImplTest {
     chartaDao.save(charta);
 
     Map<Integer, Charta> chartaMap =
-        (HashMap<Integer, Charta>) ReflectionTestUtils.getField(chartaDao, "chartas");
+        (Map<Integer, Charta>) ReflectionTestUtils.getField(chartaDao, "chartas");
 
     assertEquals(charta, chartaMap.get(charta.getId()));
   }
@@ -0,0 +1,257 @@
+package ru.maxizenit.chartographer.dao.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.maxizenit.chartographer.ChartographerApplicationTests;
+import ru.maxizenit.chartographer.bmp.BmpEncoder;
+import ru.maxizenit.chartographer.deflate.DeflateImageHeader;
+import ru.maxizenit.chartographer.model.CompressionStatistics;
+import ru.maxizenit.chartographer.raster.ImagePool;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Класс юнит-теста для {@link DeflateImageDaoImpl}. */
+@SpringBootTest
+public class DeflateImageDaoImplTest {
+
+  /** Размеры подтайлов, с которыми проверяется каждый метод: без подтайлов и с мелкими. */
+  private static final int[] TILE_SIZES = {0, 8};
+
+  private final DeflateImageDaoImpl imageDao;
+  private final int tileSize;
+
+  @Autowired
+  public DeflateImageDaoImplTest(DeflateImageDaoImpl imageDao, ResourceLoader resourceLoader)
+      throws IOException {
+    this.imageDao = imageDao;
+    tileSize = (int) ReflectionTestUtils.getField(imageDao, "tileSize");
+
+    String classPath = ChartographerApplicationTests.getClassPath(resourceLoader);
+    ReflectionTestUtils.setField(this.imageDao, "imagesPath", classPath);
+  }
+
+  /** Возвращает размер подтайла из конфигурации после каждого теста. */
+  @AfterEach
+  public void restoreTileSize() {
+    ReflectionTestUtils.setField(imageDao, "tileSize", tileSize);
+  }
+
+  /**
+   * Тестирует методы {@link DeflateImageDaoImpl#save(BufferedImage)} и {@link
+   * DeflateImageDaoImpl#get(String)}. Метод проходит проверку, если сохранённое изображение
+   * читается без искажений.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void saveTest() throws IOException {
+    for (int tileSize : TILE_SIZES) {
+      ReflectionTestUtils.setField(imageDao, "tileSize", tileSize);
+
+      BufferedImage image = createRandomImage(37, 23);
+      String name = imageDao.save(image);
+
+      assertPixelsEqual(image, imageDao.get(name), 0, 0);
+      imageDao.delete(name);
+    }
+  }
+
+  /**
+   * Тестирует метод {@link DeflateImageDaoImpl#getPart(String, int, int, int, int)}. Метод проходит
+   * проверку, если области, совпадающие с подтайлами, пересекающие их и лежащие внутри одного
+   * подтайла, совпадают с соответствующими областями исходного изображения.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void getPartTest() throws IOException {
+    for (int tileSize : TILE_SIZES) {
+      ReflectionTestUtils.setField(imageDao, "tileSize", tileSize);
+
+      BufferedImage image = createRandomImage(37, 23);
+      String name = imageDao.save(image);
+
+      assertPixelsEqual(imageDao.getPart(name, 5, 7, 13, 11), image, 5, 7);
+      assertPixelsEqual(imageDao.getPart(name, 8, 8, 8, 8), image, 8, 8);
+      assertPixelsEqual(imageDao.getPart(name, 0, 3, 37, 20), image, 0, 3);
+      assertPixelsEqual(imageDao.getPart(name, 33, 17, 2, 3), image, 33, 17);
+      imageDao.delete(name);
+    }
+  }
+
+  /**
+   * Тестирует метод {@link DeflateImageDaoImpl#readPart(String, int, int, BufferedImage)}. Метод
+   * проходит проверку, если область, прочитанная в изображение из пула с переиспользованным
+   * массивом пикселей, совпадает с областью, прочитанной в новое изображение, в том числе там, где
+   * подтайлы ещё не записывались.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void readPartTest() throws IOException {
+    ImagePool pool = new ImagePool(1 << 20);
+
+    for (int tileSize : TILE_SIZES) {
+      ReflectionTestUtils.setField(imageDao, "tileSize", tileSize);
+
+      String name = imageDao.saveEmpty(37, 23);
+      imageDao.updatePart(createRandomImage(10, 10), name, 3, 4);
+
+      try (ImagePool.Lease lease = pool.lease(37, 23)) {
+        new Random(2).nextBytes(BmpEncoder.getPixels(lease.getImage()));
+      }
+
+      try (ImagePool.Lease lease = pool.lease(30, 19)) {
+        imageDao.readPart(name, 2, 3, lease.getImage());
+        assertPixelsEqual(imageDao.getPart(name, 2, 3, 30, 19), lease.getImage(), 0, 0);
+      }
+
+      imageDao.delete(name);
+    }
+  }
+
+  /**
+   * Тестирует метод {@link DeflateImageDaoImpl#updatePart(BufferedImage, String, int, int)}. Метод
+   * проходит проверку, если перезаписанная область изменилась, а остальная часть изображения
+   * осталась прежней.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void updatePartTest() throws IOException {
+    for (int tileSize : TILE_SIZES) {
+      ReflectionTestUtils.setField(imageDao, "tileSize", tileSize);
+
+      BufferedImage image = createRandomImage(37, 23);
+      BufferedImage part = createRandomImage(20, 6);
+      String name = imageDao.save(image);
+
+      imageDao.updatePart(part, name, 17, 17);
+      BufferedImage actual = imageDao.get(name);
+
+      assertPixelsEqual(part, actual, 17, 17);
+      assertPixelsEqual(imageDao.getPart(name, 0, 0, 17, 23), image, 0, 0);
+      assertPixelsEqual(imageDao.getPart(name, 0, 0, 37, 17), image, 0, 0);
+      imageDao.delete(name);
+    }
+  }
+
+  /**
+   * Тестирует метод {@link DeflateImageDaoImpl#saveEmpty(int, int)}. Метод проходит проверку, если
+   * созданное изображение целиком чёрное, а его файл состоит только из заголовка и индекса.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void saveEmptyTest() throws IOException {
+    String name = imageDao.saveEmpty(37, 23);
+
+    BufferedImage expected = new BufferedImage(37, 23, BufferedImage.TYPE_3BYTE_BGR);
+
+    assertPixelsEqual(expected, imageDao.get(name), 0, 0);
+    assertEquals(
+        new DeflateImageHeader(37, 23, tileSize).getDataOffset(), Files.size(getPath(name)));
+    imageDao.delete(name);
+  }
+
+  /**
+   * Тестирует сжатие и перезапись файла. Метод проходит проверку, если изображение с однотонными
+   * областями хранится в несколько раз компактнее несжатого, счётчики сжатия и распаковки растут,
+   * а после многократной перезаписи одной области файл переписывается без устаревших подтайлов и
+   * читается без искажений.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void compressionTest() throws IOException {
+    ReflectionTestUtils.setField(imageDao, "tileSize", 64);
+
+    BufferedImage image = new BufferedImage(512, 512, BufferedImage.TYPE_3BYTE_BGR);
+    BufferedImage part = createRandomImage(64, 64);
+    Graphics2D graphics = image.createGraphics();
+
+    graphics.setColor(new Color(200, 180, 140));
+    graphics.fillRect(0, 0, 512, 256);
+    graphics.dispose();
+
+    CompressionStatistics before = imageDao.getStatistics();
+    String name = imageDao.save(image);
+
+    assertTrue(Files.size(getPath(name)) * 10 < 512 * 512 * 3);
+    assertPixelsEqual(image, imageDao.get(name), 0, 0);
+
+    for (int i = 0; i < 300; i++) {
+      imageDao.updatePart(part, name, 100, 300);
+    }
+
+    CompressionStatistics after = imageDao.getStatistics();
+    image.getGraphics().drawImage(part, 100, 300, null);
+
+    assertPixelsEqual(image, imageDao.get(name), 0, 0);
+    assertTrue(Files.size(getPath(name)) < (1 << 20) + 64 * 64 * 3 * 4 * 2);
+    assertTrue(after.getRawBytes() - before.getRawBytes() >= 512 * 512 * 3 / 2);
+    assertTrue(after.getInflatedBytes() > before.getInflatedBytes());
+    assertTrue(after.getCompressionRatio() > 1);
+    imageDao.delete(name);
+  }
+
+  /**
+   * Возвращает путь к файлу изображения.
+   *
+   * @param name название изображения
+   * @return путь в файловой системе
+   */
+  private Path getPath(String name) {
+    return Path.of((String) ReflectionTestUtils.getField(imageDao, "imagesPath"), name);
+  }
+
+  /**
+   * Создаёт изображение заданного размера со случайными пикселями.
+   *
+   * @param width ширина
+   * @param height высота
+   * @return изображение
+   */
+  private BufferedImage createRandomImage(int width, int height) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+    Random random = new Random(width * 31L + height);
+
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, random.nextInt());
+      }
+    }
+
+    return image;
+  }
+
+  /**
+   * Проверяет, что пиксели изображения совпадают с пикселями другого изображения, начиная с
+   * заданных координат.
+   *
+   * @param expected ожидаемое изображение
+   * @param actual изображение, в котором лежит проверяемая область
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   */
+  private void assertPixelsEqual(BufferedImage expected, BufferedImage actual, int x, int y) {
+    for (int row = 0; row < expected.getHeight(); row++) {
+      for (int column = 0; column < expected.getWidth(); column++) {
+        assertEquals(expected.getRGB(column, row), actual.getRGB(x + column, y + row));
+      }
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package ru.maxizenit.chartographer.dao.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.maxizenit.chartographer.ChartographerApplicationTests;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Класс юнит-теста для {@link RawImageDaoImpl}. */
+@SpringBootTest
+public class RawImageDaoImplTest {
+
+  /** Размеры подтайлов, с которыми проверяется каждый метод: без подтайлов и с мелкими. */
+  private static final int[] TILE_SIZES = {0, 8};
+
+  private final RawImageDaoImpl imageDao;
+  private final int tileSize;
+
+  @Autowired
+  public RawImageDaoImplTest(RawImageDaoImpl imageDao, ResourceLoader resourceLoader)
+      throws IOException {
+    this.imageDao = imageDao;
+    tileSize = (int) ReflectionTestUtils.getField(imageDao, "tileSize");
+
+    String classPath = ChartographerApplicationTests.getClassPath(resourceLoader);
+    ReflectionTestUtils.setField(this.imageDao, "imagesPath", classPath);
+  }
+
+  /** Возвращает размер подтайла из конфигурации после каждого теста. */
+  @AfterEach
+  public void restoreTileSize() {
+    ReflectionTestUtils.setField(imageDao, "tileSize", tileSize);
+  }
+
+  /**
+   * Тестирует методы {@link RawImageDaoImpl#save(BufferedImage)} и {@link
+   * RawImageDaoImpl#get(String)}. Метод проходит проверку, если сохранённое изображение читается
+   * без искажений.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void saveTest() throws IOException {
+    for (int tileSize : TILE_SIZES) {
+      ReflectionTestUtils.setField(imageDao, "tileSize", tileSize);
+
+      BufferedImage image = createRandomImage(37, 23);
+      String name = imageDao.save(image);
+
+      assertPixelsEqual(image, imageDao.get(name), 0, 0);
+      imageDao.delete(name);
+    }
+  }
+
+  /**
+   * Тестирует метод {@link RawImageDaoImpl#getPart(String, int, int, int, int)}. Метод проходит
+   * проверку, если области, совпадающие с подтайлами, пересекающие их и лежащие внутри одного
+   * подтайла, совпадают с соответствующими областями исходного изображения.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void getPartTest() throws IOException {
+    for (int tileSize : TILE_SIZES) {
+      ReflectionTestUtils.setField(imageDao, "tileSize", tileSize);
+
+      BufferedImage image = createRandomImage(37, 23);
+      String name = imageDao.save(image);
+
+      assertPixelsEqual(imageDao.getPart(name, 5, 7, 13, 11), image, 5, 7);
+      assertPixelsEqual(imageDao.getPart(name, 8, 8, 8, 8), image, 8, 8);
+      assertPixelsEqual(imageDao.getPart(name, 0, 3, 37, 20), image, 0, 3);
+      assertPixelsEqual(imageDao.getPart(name, 33, 17, 2, 3), image, 33, 17);
+      imageDao.delete(name);
+    }
+  }
+
+  /**
+   * Тестирует метод {@link RawImageDaoImpl#updatePart(BufferedImage, String, int, int)}. Метод
+   * проходит проверку, если перезаписанная область изменилась, а остальная часть изображения
+   * осталась прежней.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void updatePartTest() throws IOException {
+    for (int tileSize : TILE_SIZES) {
+      ReflectionTestUtils.setField(imageDao, "tileSize", tileSize);
+
+      BufferedImage image = createRandomImage(37, 23);
+      BufferedImage part = createRandomImage(20, 6);
+      String name = imageDao.save(image);
+
+      imageDao.updatePart(part, name, 17, 17);
+      BufferedImage actual = imageDao.get(name);
+
+      assertPixelsEqual(part, actual, 17, 17);
+      assertPixelsEqual(imageDao.getPart(name, 0, 0, 17, 23), image, 0, 0);
+      assertPixelsEqual(imageDao.getPart(name, 0, 0, 37, 17), image, 0, 0);
+      imageDao.delete(name);
+    }
+  }
+
+  /**
+   * Тестирует метод {@link RawImageDaoImpl#saveEmpty(int, int)}. Метод проходит проверку, если
+   * созданное изображение целиком чёрное.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void saveEmptyTest() throws IOException {
+    String name = imageDao.saveEmpty(37, 23);
+
+    BufferedImage expected = new BufferedImage(37, 23, BufferedImage.TYPE_3BYTE_BGR);
+
+    assertPixelsEqual(expected, imageDao.get(name), 0, 0);
+    imageDao.delete(name);
+  }
+
+  /**
+   * Создаёт изображение заданного размера со случайными пикселями.
+   *
+   * @param width ширина
+   * @param height высота
+   * @return изображение
+   */
+  private BufferedImage createRandomImage(int width, int height) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+    Random random = new Random(width * 31L + height);
+
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, random.nextInt());
+      }
+    }
+
+    return image;
+  }
+
+  /**
+   * Проверяет, что пиксели изображения совпадают с пикселями другого изображения, начиная с
+   * заданных координат.
+   *
+   * @param expected ожидаемое изображение
+   * @param actual изображение, в котором лежит проверяемая область
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   */
+  private void assertPixelsEqual(BufferedImage expected, BufferedImage actual, int x, int y) {
+    for (int row = 0; row < expected.getHeight(); row++) {
+      for (int column = 0; column < expected.getWidth(); column++) {
+        assertEquals(expected.getRGB(column, row), actual.getRGB(x + column, y + row));
+      }
+    }
+  }
+}
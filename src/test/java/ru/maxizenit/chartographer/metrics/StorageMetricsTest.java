@@ -0,0 +1,86 @@
+package ru.maxizenit.chartographer.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.maxizenit.chartographer.ChartographerApplicationTests;
+import ru.maxizenit.chartographer.dao.ChartaDao;
+import ru.maxizenit.chartographer.dao.ImageDao;
+import ru.maxizenit.chartographer.exception.ChartaNotFoundException;
+import ru.maxizenit.chartographer.exception.ImageNoCrossingException;
+import ru.maxizenit.chartographer.service.ChartaService;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Класс юнит-теста для {@link StorageMetrics} и {@link ChartographerTimers}. */
+@SpringBootTest
+public class StorageMetricsTest {
+
+  private final MeterRegistry registry;
+  private final ChartaService chartaService;
+  private final ChartaDao chartaDao;
+
+  @Autowired
+  public StorageMetricsTest(
+      MeterRegistry registry,
+      ChartaService chartaService,
+      ChartaDao chartaDao,
+      ImageDao imageDao,
+      ResourceLoader resourceLoader)
+      throws IOException {
+    this.registry = registry;
+    this.chartaService = chartaService;
+    this.chartaDao = chartaDao;
+
+    String classPath = ChartographerApplicationTests.getClassPath(resourceLoader);
+    ReflectionTestUtils.setField(imageDao, "imagesPath", classPath);
+  }
+
+  /**
+   * Тестирует метрики харты. Метод проходит проверку, если датчик количества харт совпадает с
+   * количеством харт в хранилище, а получение части харты учитывается таймерами сборки
+   * изображения и кодирования BMP, а счётчик совместных сборок областей совпадает с количеством из
+   * сервиса харт.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   * @throws ChartaNotFoundException если харты с заданным идентификатором не существует
+   * @throws ImageNoCrossingException если заданная область не пересекается с хартой
+   */
+  @Test
+  public void chartaMetricsTest()
+      throws IOException, ChartaNotFoundException, ImageNoCrossingException {
+    int id = chartaService.createCharta(10, 10);
+
+    assertEquals(chartaDao.count(), registry.get("chartographer.chartas").gauge().value());
+
+    long createImageCount = getTimerCount("chartographer.image.service", "createImage");
+    long encodeCount = getTimerCount("chartographer.bmp", "encode");
+
+    chartaService.getChartaPart(id, 0, 0, 5, 5);
+
+    assertEquals(
+        createImageCount + 1, getTimerCount("chartographer.image.service", "createImage"));
+    assertEquals(encodeCount + 1, getTimerCount("chartographer.bmp", "encode"));
+    assertEquals(
+        chartaService.getSharedRenderCount(),
+        registry.get("chartographer.single.flight.shared").functionCounter().count());
+
+    chartaService.deleteCharta(id);
+  }
+
+  /**
+   * Возвращает количество измерений таймера операции.
+   *
+   * @param name название таймера
+   * @param operation название операции
+   * @return количество измерений
+   */
+  private long getTimerCount(String name, String operation) {
+    return registry.get(name).tag("operation", operation).timer().count();
+  }
+}
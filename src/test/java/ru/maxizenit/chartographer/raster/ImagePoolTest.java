@@ -0,0 +1,105 @@
+package ru.maxizenit.chartographer.raster;
+
+import org.junit.jupiter.api.Test;
+import ru.maxizenit.chartographer.bmp.BmpEncoder;
+import ru.maxizenit.chartographer.model.CacheStatistics;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/** Класс юнит-теста для {@link ImagePool}. */
+public class ImagePoolTest {
+
+  /**
+   * Тестирует метод {@link ImagePool#lease(int, int)}. Метод проходит проверку, если выданное
+   * изображение имеет заданный размер и формат {@link BufferedImage#TYPE_3BYTE_BGR}, его пиксели
+   * доступны через {@link BmpEncoder#getPixels(BufferedImage)}, а изображение на переиспользованном
+   * массиве чёрное.
+   */
+  @Test
+  public void leaseTest() {
+    ImagePool pool = new ImagePool(1 << 24);
+    byte[] pixels;
+
+    try (ImagePool.Lease lease = pool.lease(300, 200)) {
+      BufferedImage image = lease.getImage();
+
+      assertEquals(300, image.getWidth());
+      assertEquals(200, image.getHeight());
+      assertEquals(BufferedImage.TYPE_3BYTE_BGR, image.getType());
+
+      pixels = BmpEncoder.getPixels(image);
+      new Random(1).nextBytes(pixels);
+    }
+
+    try (ImagePool.Lease lease = pool.lease(290, 190)) {
+      BufferedImage image = lease.getImage();
+
+      assertSame(pixels, BmpEncoder.getPixels(image));
+
+      for (int y = 0; y < image.getHeight(); y++) {
+        for (int x = 0; x < image.getWidth(); x++) {
+          assertEquals(0xFF000000, image.getRGB(x, y));
+        }
+      }
+
+      BufferedImage source = new BufferedImage(10, 10, BufferedImage.TYPE_3BYTE_BGR);
+      source.setRGB(3, 4, 0xFF123456);
+      RasterCopier.copy(source, image, 5, 5);
+
+      assertEquals(0xFF123456, image.getRGB(8, 9));
+    }
+  }
+
+  /**
+   * Тестирует метод {@link ImagePool#getStatistics()}. Метод проходит проверку, если выдачи
+   * свободных массивов считаются попаданиями, создания новых — промахами, повторный возврат
+   * ничего не меняет, а массивы сверх максимального размера пула не хранятся.
+   */
+  @Test
+  public void getStatisticsTest() {
+    ImagePool pool = new ImagePool(1 << 18);
+    ImagePool.Lease first = pool.lease(100, 100);
+    ImagePool.Lease second = pool.lease(100, 100);
+
+    first.close();
+    first.close();
+    second.close();
+
+    CacheStatistics statistics = pool.getStatistics();
+    assertEquals(0, statistics.getHitCount());
+    assertEquals(2, statistics.getMissCount());
+    assertEquals(0, statistics.getEvictionCount());
+    assertEquals(2, statistics.getSize());
+
+    pool.lease(100, 100).close();
+    pool.lease(1000, 1000).close();
+
+    statistics = pool.getStatistics();
+    assertEquals(1, statistics.getHitCount());
+    assertEquals(3, statistics.getMissCount());
+    assertEquals(1, statistics.getEvictionCount());
+    assertEquals(2, statistics.getSize());
+    assertEquals(2 * 65536, statistics.getBytes());
+  }
+
+  /**
+   * Тестирует пул с нулевым максимальным размером. Тест проходит проверку, если возвращённые
+   * массивы не переиспользуются.
+   */
+  @Test
+  public void disabledTest() {
+    ImagePool pool = new ImagePool(0);
+
+    pool.lease(10, 10).close();
+    pool.lease(10, 10).close();
+
+    CacheStatistics statistics = pool.getStatistics();
+    assertEquals(0, statistics.getHitCount());
+    assertEquals(2, statistics.getMissCount());
+    assertEquals(0, statistics.getBytes());
+  }
+}
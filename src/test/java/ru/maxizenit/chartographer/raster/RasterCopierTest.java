@@ -0,0 +1,106 @@
+package ru.maxizenit.chartographer.raster;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Класс юнит-теста для {@link RasterCopier}. */
+public class RasterCopierTest {
+
+  /** Смещения копии относительно изображения, в которое выполняется копирование. */
+  private static final int[][] POSITIONS = {{0, 0}, {7, 5}, {-9, -4}, {30, 20}, {-50, 0}};
+
+  /**
+   * Тестирует метод {@link RasterCopier#copy(BufferedImage, BufferedImage, int, int)}. Метод
+   * проходит проверку, если для изображений и подызображений в формате {@link
+   * BufferedImage#TYPE_3BYTE_BGR} и в других форматах результат совпадает с результатом
+   * рисования через {@link Graphics2D}, в том числе для копий, выходящих за границы.
+   */
+  @Test
+  public void copyTest() {
+    BufferedImage[] sources = {
+      createRandomImage(17, 13, BufferedImage.TYPE_3BYTE_BGR),
+      createRandomImage(40, 30, BufferedImage.TYPE_3BYTE_BGR).getSubimage(11, 7, 17, 13),
+      createRandomImage(17, 13, BufferedImage.TYPE_INT_RGB)
+    };
+
+    for (BufferedImage source : sources) {
+      for (int[] position : POSITIONS) {
+        BufferedImage expected = createRandomImage(33, 25, BufferedImage.TYPE_3BYTE_BGR);
+        BufferedImage actual =
+            createRandomImage(50, 40, BufferedImage.TYPE_3BYTE_BGR).getSubimage(9, 6, 33, 25);
+        Graphics2D graphics = expected.createGraphics();
+
+        RasterCopier.copy(expected, actual, 0, 0);
+        graphics.drawImage(source, position[0], position[1], null);
+        graphics.dispose();
+        RasterCopier.copy(source, actual, position[0], position[1]);
+
+        assertPixelsEqual(expected, actual);
+      }
+    }
+  }
+
+  /**
+   * Тестирует метод {@link RasterCopier#clear(BufferedImage, int, int, int, int)}. Метод проходит
+   * проверку, если закрашенная область, обрезанная по границам изображения, совпадает с
+   * результатом заливки через {@link Graphics2D}.
+   */
+  @Test
+  public void clearTest() {
+    for (int[] position : POSITIONS) {
+      BufferedImage expected = createRandomImage(33, 25, BufferedImage.TYPE_3BYTE_BGR);
+      BufferedImage actual =
+          createRandomImage(50, 40, BufferedImage.TYPE_3BYTE_BGR).getSubimage(9, 6, 33, 25);
+      Graphics2D graphics = expected.createGraphics();
+
+      RasterCopier.copy(expected, actual, 0, 0);
+      graphics.setColor(Color.BLACK);
+      graphics.fillRect(position[0], position[1], 20, 15);
+      graphics.dispose();
+      RasterCopier.clear(actual, position[0], position[1], 20, 15);
+
+      assertPixelsEqual(expected, actual);
+    }
+  }
+
+  /**
+   * Создаёт изображение заданного размера и формата со случайными пикселями.
+   *
+   * @param width ширина
+   * @param height высота
+   * @param type формат изображения
+   * @return изображение
+   */
+  private BufferedImage createRandomImage(int width, int height, int type) {
+    BufferedImage image = new BufferedImage(width, height, type);
+    Random random = new Random(width * 31L + height);
+
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, random.nextInt());
+      }
+    }
+
+    return image;
+  }
+
+  /**
+   * Проверяет, что пиксели двух изображений совпадают.
+   *
+   * @param expected ожидаемое изображение
+   * @param actual проверяемое изображение
+   */
+  private void assertPixelsEqual(BufferedImage expected, BufferedImage actual) {
+    for (int y = 0; y < expected.getHeight(); y++) {
+      for (int x = 0; x < expected.getWidth(); x++) {
+        assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+      }
+    }
+  }
+}
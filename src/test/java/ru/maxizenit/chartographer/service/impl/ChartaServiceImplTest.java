@@ -6,25 +6,77 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.test.util.ReflectionTestUtils;
 import ru.maxizenit.chartographer.ChartographerApplicationTests;
+import ru.maxizenit.chartographer.bmp.BmpWriter;
 import ru.maxizenit.chartographer.dao.ImageDao;
 import ru.maxizenit.chartographer.exception.ChartaNotFoundException;
 import ru.maxizenit.chartographer.exception.ImageNoCrossingException;
+import ru.maxizenit.chartographer.exception.InvalidImageException;
+import ru.maxizenit.chartographer.exception.PartialBatchException;
+import ru.maxizenit.chartographer.metrics.ChartographerTimers;
+import ru.maxizenit.chartographer.service.ResponseCacheService;
 
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /** Класс юнит-теста для {@link ChartaServiceImpl}. */
 @SpringBootTest
 public class ChartaServiceImplTest {
 
+  /** BMP-формат изображений. */
+  private final String BMP_FORMAT = "bmp";
+
+  /** Размер стороны клетки в нагрузочном тесте. */
+  private static final int CELL_SIZE = 20;
+
+  /** Количество столбцов клеток в нагрузочном тесте. */
+  private static final int COLUMNS = 10;
+
+  /** Количество строк клеток в нагрузочном тесте. */
+  private static final int ROWS = 3;
+
+  /** Координата первой клетки по оси X: часть клеток пересекает границу фрагментов. */
+  private static final int ORIGIN_X = 4_910;
+
   private final ChartaServiceImpl chartaService;
+  private final PyramidServiceImpl pyramidService;
+  private final ResponseCacheService responseCacheService;
+  private final ChartographerTimers timers;
 
   @Autowired
   public ChartaServiceImplTest(
-      ChartaServiceImpl chartaService, ImageDao imageDao, ResourceLoader resourceLoader)
+      ChartaServiceImpl chartaService,
+      PyramidServiceImpl pyramidService,
+      ResponseCacheService responseCacheService,
+      ChartographerTimers timers,
+      ImageDao imageDao,
+      ResourceLoader resourceLoader)
       throws IOException {
     this.chartaService = chartaService;
+    this.pyramidService = pyramidService;
+    this.responseCacheService = responseCacheService;
+    this.timers = timers;
 
     String classPath = ChartographerApplicationTests.getClassPath(resourceLoader);
     ReflectionTestUtils.setField(imageDao, "imagesPath", classPath);
@@ -69,4 +121,546 @@ public class ChartaServiceImplTest {
 
     assertNotNull(chartaService.getChartaPart(id, 0, 0, 5, 5));
   }
+
+  /**
+   * Тестирует метод {@link ChartaServiceImpl#getChartaPartWriter(int, int, int, int, int)}. Метод
+   * проходит проверку, если область нечётной ширины, состоящая из нескольких полос и выходящая за
+   * край харты, записывается в поток без искажений, а часть вне харты остаётся чёрной.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   * @throws ChartaNotFoundException если харты с заданным идентификатором не существует
+   * @throws ImageNoCrossingException если заданная область не пересекается с хартой
+   */
+  @Test
+  public void getChartaPartWriterTest()
+      throws IOException, ChartaNotFoundException, ImageNoCrossingException,
+          InvalidImageException {
+    BufferedImage image = createRandomImage(37, 150);
+    int id = chartaService.createCharta(37, 150);
+    BufferedImage actual;
+
+    chartaService.saveChartaPart(id, toInputStream(image, BMP_FORMAT), 0, 0, 37, 150);
+
+    try (ByteArrayOutputStream stream = new ByteArrayOutputStream()) {
+      chartaService.getChartaPartWriter(id, 0, 3, 37, 160).writeTo(stream);
+      actual = ImageIO.read(new ByteArrayInputStream(stream.toByteArray()));
+    }
+
+    for (int y = 0; y < 160; y++) {
+      for (int x = 0; x < 37; x++) {
+        int expected = y + 3 < 150 ? image.getRGB(x, y + 3) : Color.BLACK.getRGB();
+        assertEquals(expected, actual.getRGB(x, y));
+      }
+    }
+
+    chartaService.deleteCharta(id);
+  }
+
+  /**
+   * Тестирует кэш изображений областей в методе {@link ChartaServiceImpl#getChartaPart(int, int,
+   * int, int, int)}. Метод проходит проверку, если повторный запрос области обслуживается из кэша и
+   * возвращает то же изображение, а после записи в область возвращается новое изображение.
+   *
+   * @throws Exception если возникло исключение при работе с хартой
+   */
+  @Test
+  public void getChartaPartCacheTest() throws Exception {
+    int id = chartaService.createCharta(100, 100, 64);
+    byte[] first = chartaService.getChartaPart(id, 10, 10, 60, 60);
+    long hitCount = responseCacheService.getStatistics().getHitCount();
+
+    assertArrayEquals(first, chartaService.getChartaPart(id, 10, 10, 60, 60));
+    assertEquals(hitCount + 1, responseCacheService.getStatistics().getHitCount());
+
+    BufferedImage image = createRandomImage(20, 20);
+
+    chartaService.saveChartaPart(id, toInputStream(image, BMP_FORMAT), 60, 60, 20, 20);
+
+    BufferedImage actual =
+        ImageIO.read(new ByteArrayInputStream(chartaService.getChartaPart(id, 10, 10, 60, 60)));
+
+    assertEquals(image.getRGB(0, 0), actual.getRGB(50, 50));
+    assertEquals(hitCount + 1, responseCacheService.getStatistics().getHitCount());
+
+    chartaService.deleteCharta(id);
+  }
+
+  /**
+   * Тестирует передачу файла фрагмента без декодирования в методе {@link
+   * ChartaServiceImpl#getChartaPartWriter(int, int, int, int, int)}. Метод проходит проверку, если
+   * область, совпадающая с записанным фрагментом, передаётся файлом фрагмента и содержит записанное
+   * изображение, а область, совпадающая с фрагментом без изображения, собирается обычным способом
+   * и остаётся чёрной.
+   *
+   * @throws Exception если возникло исключение при работе с хартой
+   */
+  @Test
+  public void getChartaPartTransferTest() throws Exception {
+    BufferedImage image = createRandomImage(100, 100);
+    int id = chartaService.createCharta(150, 150, 100);
+    long transferCount = timers.getBmpTransfer().count();
+
+    chartaService.saveChartaPart(id, toInputStream(image, BMP_FORMAT), 0, 0, 100, 100);
+
+    BufferedImage actual = readChartaPart(id, 0, 0, 100, 100);
+
+    assertEquals(transferCount + 1, timers.getBmpTransfer().count());
+
+    for (int y = 0; y < 100; y++) {
+      for (int x = 0; x < 100; x++) {
+        assertEquals(image.getRGB(x, y), actual.getRGB(x, y));
+      }
+    }
+
+    actual = readChartaPart(id, 100, 0, 50, 100);
+
+    assertEquals(transferCount + 1, timers.getBmpTransfer().count());
+    assertEquals(Color.BLACK.getRGB(), actual.getRGB(25, 50));
+
+    chartaService.deleteCharta(id);
+  }
+
+  /**
+   * Тестирует метод {@link ChartaServiceImpl#getTaggedChartaPartWriter(int, int, int, int, int,
+   * int)}. Метод проходит проверку, если тег области не меняется между запросами и после записи во
+   * фрагменты, не пересекающиеся с областью, меняется после записи в пересекающийся фрагмент и
+   * различается для разных областей.
+   *
+   * @throws Exception если возникло исключение при работе с хартой
+   */
+  @Test
+  public void getTaggedChartaPartWriterTest() throws Exception {
+    int id = chartaService.createCharta(200, 100, 64);
+    String tag = getTag(id, 0, 0, 50, 50);
+
+    assertEquals(tag, getTag(id, 0, 0, 50, 50));
+    assertNotEquals(tag, getTag(id, 0, 0, 50, 40));
+
+    chartaService.saveChartaPart(
+        id, toInputStream(createRandomImage(20, 20), BMP_FORMAT), 150, 70, 20, 20);
+    assertEquals(tag, getTag(id, 0, 0, 50, 50));
+
+    chartaService.saveChartaPart(
+        id, toInputStream(createRandomImage(20, 20), BMP_FORMAT), 60, 10, 20, 20);
+    String updated = getTag(id, 0, 0, 50, 50);
+
+    assertNotEquals(tag, updated);
+    assertEquals(updated, getTag(id, 0, 0, 50, 50));
+
+    chartaService.deleteCharta(id);
+  }
+
+
+  /**
+   * Тестирует метод {@link ChartaServiceImpl#saveChartaPart(int, InputStream, int, int, int, int)}.
+   * Метод проходит проверку, если BMP-изображение, которое больше области по ширине и меньше по
+   * высоте, записывается в область обрезанным, непокрытая часть области закрашивается чёрным
+   * цветом, изображение в формате PNG записывается так же, а повреждённое изображение приводит к
+   * {@link InvalidImageException}.
+   *
+   * @throws Exception если возникло исключение при работе с хартой
+   */
+  @Test
+  public void saveChartaPartTest() throws Exception {
+    BufferedImage image = createRandomImage(50, 100);
+    int id = chartaService.createCharta(40, 200);
+
+    chartaService.saveChartaPart(
+        id, toInputStream(createRandomImage(40, 200), BMP_FORMAT), 0, 0, 40, 200);
+    chartaService.saveChartaPart(id, toInputStream(image, BMP_FORMAT), 0, 10, 40, 170);
+
+    BufferedImage actual;
+
+    try (ByteArrayInputStream stream =
+        new ByteArrayInputStream(chartaService.getChartaPart(id, 0, 10, 40, 170))) {
+      actual = ImageIO.read(stream);
+    }
+
+    for (int y = 0; y < 170; y++) {
+      for (int x = 0; x < 40; x++) {
+        int expected = y < 100 ? image.getRGB(x, y) : Color.BLACK.getRGB();
+        assertEquals(expected, actual.getRGB(x, y));
+      }
+    }
+
+    chartaService.saveChartaPart(id, toInputStream(image, "png"), 0, 0, 40, 100);
+
+    try (ByteArrayInputStream stream =
+        new ByteArrayInputStream(chartaService.getChartaPart(id, 0, 0, 40, 100))) {
+      actual = ImageIO.read(stream);
+    }
+
+    for (int y = 0; y < 100; y++) {
+      for (int x = 0; x < 40; x++) {
+        assertEquals(image.getRGB(x, y), actual.getRGB(x, y));
+      }
+    }
+
+    byte[] truncated = toInputStream(image, BMP_FORMAT).readNBytes(1000);
+
+    assertThrows(
+        InvalidImageException.class,
+        () -> chartaService.saveChartaPart(id, new ByteArrayInputStream(truncated), 0, 0, 40, 100));
+    assertThrows(
+        InvalidImageException.class,
+        () -> chartaService.saveChartaPart(id, new ByteArrayInputStream(new byte[10]), 0, 0, 1, 1));
+
+    chartaService.deleteCharta(id);
+  }
+
+  /**
+   * Тестирует метод {@link ChartaServiceImpl#saveChartaParts(int, InputStream)}. Метод проходит
+   * проверку, если пакет пересекающихся изображений в форматах BMP и PNG, часть которых выходит за
+   * границы своих областей, фрагментов и харты, даёт ту же харту и тот же уровень пирамиды, что и
+   * последовательная запись тех же изображений, а оборванный пакет и запись вне харты приводят к
+   * исключениям с количеством сохранённых до них записей.
+   *
+   * @throws Exception если возникло исключение при работе с хартой
+   */
+  @Test
+  public void saveChartaPartsTest() throws Exception {
+    int width = 300;
+    int height = 150;
+    int batchId = chartaService.createCharta(width, height, 64);
+    int sequentialId = chartaService.createCharta(width, height, 64);
+    Random random = new Random(0);
+    ByteArrayOutputStream batch = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(batch);
+
+    for (int i = 0; i < 60; i++) {
+      int x = random.nextInt(width);
+      int y = random.nextInt(height);
+      int partWidth = 5 + random.nextInt(60);
+      int partHeight = 5 + random.nextInt(60);
+      int imageWidth = partWidth + random.nextInt(9) - 4;
+      int imageHeight = partHeight + random.nextInt(9) - 4;
+      BufferedImage image = createRandomImage(imageWidth, imageHeight);
+      byte[] bytes = toInputStream(image, i % 10 == 0 ? "png" : BMP_FORMAT).readAllBytes();
+
+      output.writeInt(x);
+      output.writeInt(y);
+      output.writeInt(partWidth);
+      output.writeInt(partHeight);
+      output.writeInt(bytes.length);
+      output.write(bytes);
+      chartaService.saveChartaPart(
+          sequentialId, new ByteArrayInputStream(bytes), x, y, partWidth, partHeight);
+    }
+
+    assertEquals(
+        60,
+        chartaService.saveChartaParts(batchId, new ByteArrayInputStream(batch.toByteArray())));
+    pyramidService.awaitUpdates();
+
+    for (int level = 0; level <= 1; level++) {
+      int levelWidth = width >> level;
+      int levelHeight = height >> level;
+
+      try (ByteArrayOutputStream expected = new ByteArrayOutputStream();
+          ByteArrayOutputStream actual = new ByteArrayOutputStream()) {
+        chartaService
+            .getChartaPartWriter(sequentialId, level, 0, 0, levelWidth, levelHeight)
+            .writeTo(expected);
+        chartaService
+            .getChartaPartWriter(batchId, level, 0, 0, levelWidth, levelHeight)
+            .writeTo(actual);
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+      }
+    }
+
+    byte[] truncated = Arrays.copyOf(batch.toByteArray(), batch.size() - 3);
+    ByteArrayOutputStream outside = new ByteArrayOutputStream();
+    DataOutputStream outsideOutput = new DataOutputStream(outside);
+
+    byte[] image = toInputStream(createRandomImage(10, 10), BMP_FORMAT).readAllBytes();
+
+    for (int value : new int[] {width, 0, 10, 10, image.length}) {
+      outsideOutput.writeInt(value);
+    }
+
+    outsideOutput.write(image);
+
+    PartialBatchException truncatedException =
+        assertThrows(
+            PartialBatchException.class,
+            () -> chartaService.saveChartaParts(batchId, new ByteArrayInputStream(truncated)));
+    assertEquals(59, truncatedException.getAppliedCount());
+    assertInstanceOf(InvalidImageException.class, truncatedException.getCause());
+
+    PartialBatchException outsideException =
+        assertThrows(
+            PartialBatchException.class,
+            () ->
+                chartaService.saveChartaParts(
+                    batchId, new ByteArrayInputStream(outside.toByteArray())));
+    assertEquals(0, outsideException.getAppliedCount());
+    assertInstanceOf(ImageNoCrossingException.class, outsideException.getCause());
+
+    chartaService.deleteCharta(batchId);
+    chartaService.deleteCharta(sequentialId);
+  }
+
+  /**
+   * Тестирует метод {@link ChartaServiceImpl#getChartaPartWriters(int, List)}. Метод проходит
+   * проверку, если изображения пересекающихся областей, в том числе выходящих за край харты и
+   * границы фрагментов, совпадают с изображениями тех же областей, полученными по одной, как при
+   * сборке всех областей одной группой, так и при разбиении на группы.
+   *
+   * @throws Exception если возникло исключение при работе с хартой
+   */
+  @Test
+  public void getChartaPartWritersTest() throws Exception {
+    int id = chartaService.createCharta(200, 150, 64);
+    List<Rectangle> areas =
+        List.of(
+            new Rectangle(0, 0, 100, 100),
+            new Rectangle(50, 50, 100, 100),
+            new Rectangle(150, 120, 80, 60),
+            new Rectangle(60, 0, 10, 150));
+    long batchMaxBytes = (long) ReflectionTestUtils.getField(chartaService, "batchMaxBytes");
+
+    chartaService.saveChartaPart(
+        id, toInputStream(createRandomImage(200, 150), BMP_FORMAT), 0, 0, 200, 150);
+
+    try {
+      for (long maxBytes : new long[] {batchMaxBytes, 40_000}) {
+        ReflectionTestUtils.setField(chartaService, "batchMaxBytes", maxBytes);
+        List<BmpWriter> writers = chartaService.getChartaPartWriters(id, areas);
+
+        for (int i = 0; i < areas.size(); i++) {
+          Rectangle area = areas.get(i);
+
+          try (ByteArrayOutputStream expected = new ByteArrayOutputStream();
+              ByteArrayOutputStream actual = new ByteArrayOutputStream()) {
+            chartaService
+                .getChartaPartWriter(id, area.x, area.y, area.width, area.height)
+                .writeTo(expected);
+            writers.get(i).writeTo(actual);
+            assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+          }
+        }
+      }
+    } finally {
+      ReflectionTestUtils.setField(chartaService, "batchMaxBytes", batchMaxBytes);
+    }
+
+    assertThrows(
+        ImageNoCrossingException.class,
+        () -> chartaService.getChartaPartWriters(id, List.of(new Rectangle(200, 0, 10, 10))));
+
+    chartaService.deleteCharta(id);
+  }
+
+  /**
+   * Нагрузочный тест методов {@link ChartaServiceImpl#saveChartaPart(int, InputStream, int, int,
+   * int, int)} и {@link ChartaServiceImpl#getChartaPart(int, int, int, int, int)}. Сначала
+   * несколько потоков одновременно записывают непересекающиеся клетки харты, затем пишут и читают
+   * пересекающиеся клетки вперемешку. Часть клеток пересекает границу двух фрагментов. Метод
+   * проходит проверку, если ни одна запись первого этапа не потеряна, а после второго этапа каждая
+   * клетка целиком закрашена одним цветом.
+   *
+   * @throws Exception если возникло исключение в одном из потоков
+   */
+  @Test
+  public void concurrentSaveChartaPartTest() throws Exception {
+    int threads = 8;
+    int id = chartaService.createCharta(ORIGIN_X + COLUMNS * CELL_SIZE, ROWS * CELL_SIZE);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = new ArrayList<>();
+
+    try {
+      for (int cell = 0; cell < COLUMNS * ROWS; cell++) {
+        Color color = new Color(cell * 8, 255, 255 - cell);
+        int currentCell = cell;
+
+        futures.add(executor.submit(() -> saveCell(id, currentCell, color)));
+      }
+
+      waitAll(futures);
+
+      for (int cell = 0; cell < COLUMNS * ROWS; cell++) {
+        assertEquals(new Color(cell * 8, 255, 255 - cell).getRGB(), getCellColor(id, cell));
+      }
+
+      for (int thread = 0; thread < threads; thread++) {
+        Color color = new Color(thread * 30, 0, 255);
+        Random random = new Random(thread);
+
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < 50; i++) {
+                    saveCell(id, random.nextInt(COLUMNS * ROWS), color);
+                    getCellColor(id, random.nextInt(COLUMNS * ROWS));
+                  }
+
+                  return null;
+                }));
+      }
+
+      waitAll(futures);
+
+      for (int cell = 0; cell < COLUMNS * ROWS; cell++) {
+        getCellColor(id, cell);
+      }
+    } finally {
+      executor.shutdownNow();
+      chartaService.deleteCharta(id);
+    }
+  }
+
+  /**
+   * Записывает в клетку харты изображение, целиком закрашенное заданным цветом.
+   *
+   * @param id идентификатор харты
+   * @param cell номер клетки
+   * @param color цвет
+   * @return {@code null}
+   * @throws Exception если возникло исключение при записи
+   */
+  private Void saveCell(int id, int cell, Color color) throws Exception {
+    BufferedImage image = new BufferedImage(CELL_SIZE, CELL_SIZE, BufferedImage.TYPE_3BYTE_BGR);
+    Graphics2D graphics = image.createGraphics();
+
+    graphics.setColor(color);
+    graphics.fillRect(0, 0, CELL_SIZE, CELL_SIZE);
+    graphics.dispose();
+
+    chartaService.saveChartaPart(
+        id, toInputStream(image, BMP_FORMAT), getCellX(cell), getCellY(cell), CELL_SIZE, CELL_SIZE);
+
+    return null;
+  }
+
+  /**
+   * Читает клетку харты и проверяет, что она целиком закрашена одним цветом.
+   *
+   * @param id идентификатор харты
+   * @param cell номер клетки
+   * @return цвет клетки в формате RGB
+   * @throws Exception если возникло исключение при чтении
+   */
+  private int getCellColor(int id, int cell) throws Exception {
+    BufferedImage image;
+
+    try (ByteArrayInputStream stream =
+        new ByteArrayInputStream(
+            chartaService.getChartaPart(
+                id, getCellX(cell), getCellY(cell), CELL_SIZE, CELL_SIZE))) {
+      image = ImageIO.read(stream);
+    }
+
+    int color = image.getRGB(0, 0);
+
+    for (int y = 0; y < CELL_SIZE; y++) {
+      for (int x = 0; x < CELL_SIZE; x++) {
+        assertEquals(color, image.getRGB(x, y));
+      }
+    }
+
+    return color;
+  }
+
+  /**
+   * Возвращает тег области нулевого уровня харты.
+   *
+   * @param id идентификатор харты
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param width ширина области
+   * @param height высота области
+   * @return тег области
+   * @throws Exception если возникло исключение при работе с хартой
+   */
+  private String getTag(int id, int x, int y, int width, int height) throws Exception {
+    return chartaService.getTaggedChartaPartWriter(id, 0, x, y, width, height).getTag();
+  }
+
+  /**
+   * Записывает область харты в поток и читает из него изображение.
+   *
+   * @param id идентификатор харты
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   * @param width ширина области
+   * @param height высота области
+   * @return изображение области
+   * @throws Exception если возникло исключение при работе с хартой
+   */
+  private BufferedImage readChartaPart(int id, int x, int y, int width, int height)
+      throws Exception {
+    try (ByteArrayOutputStream stream = new ByteArrayOutputStream()) {
+      chartaService.getChartaPartWriter(id, x, y, width, height).writeTo(stream);
+      return ImageIO.read(new ByteArrayInputStream(stream.toByteArray()));
+    }
+  }
+
+  /**
+   * Создаёт изображение заданного размера со случайными пикселями.
+   *
+   * @param width ширина
+   * @param height высота
+   * @return изображение
+   */
+  private BufferedImage createRandomImage(int width, int height) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+    Random random = new Random(width * 31L + height);
+
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, random.nextInt());
+      }
+    }
+
+    return image;
+  }
+
+  /**
+   * Кодирует изображение в заданном формате и возвращает поток с ним.
+   *
+   * @param image изображение
+   * @param format формат изображения
+   * @return поток с закодированным изображением
+   * @throws IOException если возникло исключение при кодировании
+   */
+  private InputStream toInputStream(BufferedImage image, String format) throws IOException {
+    try (ByteArrayOutputStream stream = new ByteArrayOutputStream()) {
+      ImageIO.write(image, format, stream);
+      return new ByteArrayInputStream(stream.toByteArray());
+    }
+  }
+
+  /**
+   * Возвращает координату клетки по оси X.
+   *
+   * @param cell номер клетки
+   * @return координата клетки по оси X
+   */
+  private int getCellX(int cell) {
+    return ORIGIN_X + (cell % COLUMNS) * CELL_SIZE;
+  }
+
+  /**
+   * Возвращает координату клетки по оси Y.
+   *
+   * @param cell номер клетки
+   * @return координата клетки по оси Y
+   */
+  private int getCellY(int cell) {
+    return (cell / COLUMNS) * CELL_SIZE;
+  }
+
+  /**
+   * Ожидает завершения всех задач и очищает их список.
+   *
+   * @param futures задачи
+   * @throws Exception если одна из задач завершилась с ошибкой
+   */
+  private void waitAll(List<Future<?>> futures) throws Exception {
+    for (Future<?> future : futures) {
+      future.get();
+    }
+
+    futures.clear();
+  }
 }
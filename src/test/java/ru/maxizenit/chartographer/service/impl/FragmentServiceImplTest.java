@@ -8,29 +8,40 @@ import org.springframework.test.util.ReflectionTestUtils;
 import ru.maxizenit.chartographer.ChartographerApplicationTests;
 import ru.maxizenit.chartographer.dao.ImageDao;
 import ru.maxizenit.chartographer.exception.ImageNoCrossingException;
+import ru.maxizenit.chartographer.model.Charta;
 import ru.maxizenit.chartographer.model.Fragment;
+import ru.maxizenit.chartographer.service.ImageService;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /** Класс юнит-теста для {@link FragmentServiceImpl}. */
 @SpringBootTest
 public class FragmentServiceImplTest {
 
   private final FragmentServiceImpl fragmentService;
+  private final ImageService imageService;
   private final ResourceLoader resourceLoader;
 
   @Autowired
   public FragmentServiceImplTest(
-      FragmentServiceImpl fragmentService, ResourceLoader resourceLoader, ImageDao imageDao)
+      FragmentServiceImpl fragmentService,
+      ImageService imageService,
+      ResourceLoader resourceLoader,
+      ImageDao imageDao)
       throws IOException {
     this.fragmentService = fragmentService;
+    this.imageService = imageService;
     this.resourceLoader = resourceLoader;
 
     String classPath = ChartographerApplicationTests.getClassPath(resourceLoader);
@@ -54,6 +65,25 @@ public class FragmentServiceImplTest {
     assertEquals(expected, actual);
   }
 
+  /**
+   * Тестирует метод {@link FragmentServiceImpl#createFragments(int, int, int)}. Метод проходит
+   * проверку, если он создал список из фрагментов заданного размера, обрезанных по краям харты.
+   */
+  @Test
+  public void createFragmentsWithTileSizeTest() {
+    List<Fragment> expected = new ArrayList<>();
+    List<Fragment> actual = fragmentService.createFragments(300, 150, 128);
+
+    expected.add(new Fragment(0, 0, 128, 128));
+    expected.add(new Fragment(128, 0, 128, 128));
+    expected.add(new Fragment(256, 0, 44, 128));
+    expected.add(new Fragment(0, 128, 128, 22));
+    expected.add(new Fragment(128, 128, 128, 22));
+    expected.add(new Fragment(256, 128, 44, 22));
+
+    assertEquals(expected, actual);
+  }
+
   /**
    * Тестирует метод {@link FragmentServiceImpl#filterFragments(List, int, int, int, int)}. Метод
    * проходит проверку, если в отфильтрованном списке находятся те же фрагменты, что в списке
@@ -80,24 +110,71 @@ public class FragmentServiceImplTest {
     assertEquals(expected, actual);
   }
 
+  /**
+   * Тестирует метод {@link FragmentServiceImpl#filterFragments(Charta, int, int, int, int)}. Метод
+   * проходит проверку, если для случайных областей поиск по индексу харты, как сеточному, так и
+   * построенному по раскладке без сетки, возвращает те же фрагменты, что и перебор списка.
+   *
+   * @throws ImageNoCrossingException если переданная область не пересекается с хартой
+   */
+  @Test
+  public void filterFragmentsByIndexTest() throws ImageNoCrossingException {
+    Charta grid = new Charta(23_000, 17_000);
+    Charta irregular = new Charta(100, 100);
+    Random random = new Random(23);
+
+    grid.setFragments(fragmentService.createFragments(23_000, 17_000));
+    irregular.setFragments(
+        List.of(
+            new Fragment(0, 0, 60, 40),
+            new Fragment(60, 0, 40, 70),
+            new Fragment(0, 40, 60, 60),
+            new Fragment(60, 70, 40, 30)));
+
+    for (Charta charta : List.of(grid, irregular)) {
+      for (int i = 0; i < 1_000; i++) {
+        int x = random.nextInt(charta.getWidth());
+        int y = random.nextInt(charta.getHeight());
+        int width = 1 + random.nextInt(charta.getWidth());
+        int height = 1 + random.nextInt(charta.getHeight());
+
+        assertEquals(
+            fragmentService.filterFragments(charta.getFragments(), x, y, width, height),
+            fragmentService.filterFragments(charta, x, y, width, height));
+      }
+    }
+
+    assertThrows(
+        ImageNoCrossingException.class,
+        () -> fragmentService.filterFragments(grid, 23_000, 0, 10, 10));
+  }
+
   /**
    * Тестирует метод {@link FragmentServiceImpl#clearFragments(List)}. Метод проходит проверку, если
-   * созданный список фрагментов становится пустым, а файлы изображений, созданные в процессе
-   * инициализации списка, были удалены.
+   * список фрагментов становится пустым, изображение записанного фрагмента удаляется вместе с его
+   * названием, а запись в удалённый фрагмент не создаёт для него нового изображения.
    *
    * @throws IOException если возникло исключение при работе с файловой системой
    */
   @Test
   public void clearFragmentsTest() throws IOException {
     List<Fragment> fragments = fragmentService.createFragments(1, 1);
-    fragmentService.initializeFragmentImages(fragments);
+    Fragment fragment = fragments.get(0);
+    BufferedImage image = imageService.createEmptyImage(1, 1);
+
+    imageService.writeImage(fragments, image, 0, 0, 1, 1);
 
-    String imageName = fragments.get(0).getImageName();
+    String imageName = fragment.getImageName();
     File imageFile = resourceLoader.getResource("classpath:images/" + imageName).getFile();
 
     fragmentService.clearFragments(fragments);
 
     assertTrue(fragments.isEmpty());
     assertFalse(imageFile.exists());
+    assertNull(fragment.getImageName());
+
+    imageService.writeImage(List.of(fragment), image, 0, 0, 1, 1);
+
+    assertNull(fragment.getImageName());
   }
 }
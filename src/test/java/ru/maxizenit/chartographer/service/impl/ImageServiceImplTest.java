@@ -6,16 +6,28 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.test.util.ReflectionTestUtils;
 import ru.maxizenit.chartographer.ChartographerApplicationTests;
+import ru.maxizenit.chartographer.bmp.BmpHeader;
 import ru.maxizenit.chartographer.dao.ImageDao;
 import ru.maxizenit.chartographer.model.Fragment;
 
+import javax.imageio.ImageIO;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /** Класс юнит-теста для {@link ImageServiceImplTest}. */
@@ -77,6 +89,121 @@ public class ImageServiceImplTest {
     assertTrue(imagesAreEqual(expected, actual));
   }
 
+  /**
+   * Тестирует метод {@link ImageServiceImpl#writeImage(List, BufferedImage, int, int, int, int)}.
+   * Метод проходит проверку, если изображение фрагмента создаётся только при первой записи, а
+   * записанная область, частично лежащая вне фрагмента, читается обратно без искажений.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void writeImageTest() throws IOException {
+    Fragment fragment = new Fragment(0, 0, 20, 20);
+    List<Fragment> fragments = List.of(fragment);
+    BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_3BYTE_BGR);
+    Graphics2D graphics = image.createGraphics();
+
+    graphics.setColor(Color.WHITE);
+    graphics.fillRect(0, 0, 10, 10);
+
+    assertTrue(
+        imagesAreEqual(
+            imageService.createEmptyImage(20, 20),
+            imageService.createImage(fragments, 0, 0, 20, 20)));
+    assertNull(fragment.getImageName());
+
+    imageService.writeImage(fragments, image, 15, 15, 10, 10);
+
+    assertNotNull(fragment.getImageName());
+    assertTrue(
+        imagesAreEqual(
+            image.getSubimage(0, 0, 5, 5), imageService.createImage(fragments, 15, 15, 5, 5)));
+    assertTrue(
+        imagesAreEqual(
+            imageService.createEmptyImage(15, 15),
+            imageService.createImage(fragments, 0, 0, 15, 15)));
+
+    imageService.deleteImage(fragment.getImageName());
+  }
+
+  /**
+   * Тестирует параллельную обработку фрагментов в методах {@link ImageServiceImpl#writeImage(List,
+   * BufferedImage, int, int, int, int)} и {@link ImageServiceImpl#createImage(List, int, int, int,
+   * int)}. Метод проходит проверку, если область, пересекающая сетку из девяти фрагментов,
+   * читается обратно без искажений, а ошибка чтения одного из фрагментов выбрасывается из метода
+   * после обработки остальных.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void parallelFragmentsTest() throws IOException {
+    List<Fragment> fragments = new ArrayList<>();
+    BufferedImage image = new BufferedImage(50, 50, BufferedImage.TYPE_3BYTE_BGR);
+    Random random = new Random(50);
+
+    for (int y = 0; y < 3; y++) {
+      for (int x = 0; x < 3; x++) {
+        fragments.add(new Fragment(x * 20, y * 20, 20, 20));
+      }
+    }
+
+    for (int y = 0; y < 50; y++) {
+      for (int x = 0; x < 50; x++) {
+        image.setRGB(x, y, random.nextInt());
+      }
+    }
+
+    imageService.writeImage(fragments, image, 5, 5, 50, 50);
+
+    assertTrue(imagesAreEqual(image, imageService.createImage(fragments, 5, 5, 50, 50)));
+
+    List<Fragment> brokenFragments = new ArrayList<>(fragments);
+    brokenFragments.set(4, new Fragment(20, 20, 20, 20, "missing.bmp"));
+
+    assertThrows(
+        IOException.class, () -> imageService.createImage(brokenFragments, 5, 5, 50, 50));
+
+    for (Fragment fragment : fragments) {
+      imageService.deleteImage(fragment.getImageName());
+    }
+  }
+
+  /**
+   * Тестирует метод {@link ImageServiceImpl#transferImage(Fragment, WritableByteChannel, int)}.
+   * Метод проходит проверку, если файл фрагмента передаётся полосами целиком и читается как
+   * исходное изображение, а для удалённого фрагмента метод возвращает {@code false}, ничего не
+   * записав в канал.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void transferImageTest() throws IOException {
+    BufferedImage image = new BufferedImage(37, 23, BufferedImage.TYPE_3BYTE_BGR);
+    Random random = new Random(37);
+
+    for (int y = 0; y < image.getHeight(); y++) {
+      for (int x = 0; x < image.getWidth(); x++) {
+        image.setRGB(x, y, random.nextInt());
+      }
+    }
+
+    Fragment fragment = new Fragment(0, 0, 37, 23, imageDao.save(image));
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+    assertTrue(imageService.transferImage(fragment, Channels.newChannel(stream), 5));
+    assertEquals(new BmpHeader(37, 23).getFileSize(), stream.size());
+    assertTrue(imagesAreEqual(image, ImageIO.read(new ByteArrayInputStream(stream.toByteArray()))));
+
+    String name = fragment.getImageName();
+    stream.reset();
+    fragment.setDeleted(true);
+
+    assertFalse(imageService.transferImage(fragment, Channels.newChannel(stream), 5));
+    assertEquals(0, stream.size());
+
+    imageService.deleteImage(name);
+  }
+
   /**
    * Проверяет, одинаковы ли переданные изображения.
    *
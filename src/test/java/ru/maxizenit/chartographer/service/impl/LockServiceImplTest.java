@@ -0,0 +1,89 @@
+package ru.maxizenit.chartographer.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.maxizenit.chartographer.concurrent.RegionLock;
+import ru.maxizenit.chartographer.model.Fragment;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Класс юнит-теста для {@link LockServiceImpl}. */
+@SpringBootTest
+public class LockServiceImplTest {
+
+  /** Время ожидания захвата блокировки другим потоком в миллисекундах. */
+  private static final long TIMEOUT = 200;
+
+  private final LockServiceImpl lockService;
+
+  @Autowired
+  public LockServiceImplTest(LockServiceImpl lockService) {
+    this.lockService = lockService;
+  }
+
+  /**
+   * Тестирует метод {@link LockServiceImpl#lockRead(List, int, int, int, int)}. Метод проходит
+   * проверку, если блокировку на чтение области можно захватить из другого потока, пока первая
+   * блокировка на чтение не освобождена.
+   *
+   * @throws Exception если другой поток не смог захватить блокировку
+   */
+  @Test
+  public void lockReadTest() throws Exception {
+    List<Fragment> fragments = List.of(new Fragment(0, 0, 100, 100));
+
+    try (RegionLock lock = lockService.lockRead(fragments, 0, 0, 100, 100)) {
+      CompletableFuture.runAsync(() -> lockService.lockRead(fragments, 10, 10, 10, 10).close())
+          .get(TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Тестирует метод {@link LockServiceImpl#lockWrite(List, int, int, int, int)}. Метод проходит
+   * проверку, если блокировку на запись пересекающейся области другой поток захватывает только
+   * после освобождения первой блокировки.
+   *
+   * @throws Exception если другой поток не смог захватить блокировку после освобождения
+   */
+  @Test
+  public void lockWriteTest() throws Exception {
+    List<Fragment> fragments = List.of(new Fragment(0, 0, 100, 100));
+    CompletableFuture<Void> future;
+
+    try (RegionLock lock = lockService.lockWrite(fragments, 0, 0, 50, 50)) {
+      future =
+          CompletableFuture.runAsync(
+              () -> lockService.lockWrite(fragments, 40, 40, 20, 20).close());
+
+      assertFalse(isCompleted(future));
+    }
+
+    assertTrue(isCompleted(future));
+  }
+
+  /**
+   * Ожидает завершения задачи в течение {@link LockServiceImplTest#TIMEOUT}.
+   *
+   * @param future задача
+   * @return {@code true}, если задача завершилась
+   * @throws Exception если задача завершилась с ошибкой
+   */
+  private boolean isCompleted(CompletableFuture<Void> future) throws Exception {
+    try {
+      future.get(TIMEOUT, TimeUnit.MILLISECONDS);
+      return true;
+    } catch (TimeoutException e) {
+      return false;
+    } catch (ExecutionException e) {
+      throw (Exception) e.getCause();
+    }
+  }
+}
@@ -0,0 +1,267 @@
+package ru.maxizenit.chartographer.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.maxizenit.chartographer.ChartographerApplicationTests;
+import ru.maxizenit.chartographer.dao.ChartaDao;
+import ru.maxizenit.chartographer.dao.ImageDao;
+import ru.maxizenit.chartographer.exception.ChartaNotFoundException;
+import ru.maxizenit.chartographer.exception.ImageNoCrossingException;
+import ru.maxizenit.chartographer.exception.InvalidImageException;
+import ru.maxizenit.chartographer.exception.InvalidLevelException;
+import ru.maxizenit.chartographer.exception.PyramidNotReadyException;
+import ru.maxizenit.chartographer.model.Charta;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/** Класс юнит-теста для {@link PyramidServiceImpl}. */
+@SpringBootTest
+public class PyramidServiceImplTest {
+
+  /** BMP-формат изображений. */
+  private static final String BMP_FORMAT = "bmp";
+
+  /** Ширина харты. */
+  private static final int WIDTH = 601;
+
+  /** Высота харты. */
+  private static final int HEIGHT = 403;
+
+  /** Размер фрагментов харты: уровни пересчитываются из нескольких фрагментов. */
+  private static final int TILE_SIZE = 128;
+
+  private final PyramidServiceImpl pyramidService;
+  private final ChartaServiceImpl chartaService;
+  private final ChartaDao chartaDao;
+
+  @Autowired
+  public PyramidServiceImplTest(
+      PyramidServiceImpl pyramidService,
+      ChartaServiceImpl chartaService,
+      ChartaDao chartaDao,
+      ImageDao imageDao,
+      ResourceLoader resourceLoader)
+      throws IOException {
+    this.pyramidService = pyramidService;
+    this.chartaService = chartaService;
+    this.chartaDao = chartaDao;
+
+    String classPath = ChartographerApplicationTests.getClassPath(resourceLoader);
+    ReflectionTestUtils.setField(imageDao, "imagesPath", classPath);
+  }
+
+  /**
+   * Тестирует метод {@link PyramidServiceImpl#createLevels(int, int)}. Метод проходит проверку,
+   * если каждый уровень вдвое меньше предыдущего с округлением вверх, а последний уровень
+   * помещается в квадрат 256 на 256.
+   */
+  @Test
+  public void createLevelsTest() {
+    List<Charta> levels = pyramidService.createLevels(WIDTH, HEIGHT);
+
+    assertEquals(2, levels.size());
+    assertEquals(301, levels.get(0).getWidth());
+    assertEquals(202, levels.get(0).getHeight());
+    assertEquals(151, levels.get(1).getWidth());
+    assertEquals(101, levels.get(1).getHeight());
+    assertEquals(0, pyramidService.createLevels(256, 100).size());
+  }
+
+  /**
+   * Тестирует метод {@link PyramidServiceImpl#updateLevels(Charta, int, int, int, int)}. Метод
+   * проходит проверку, если после сохранения изображения и последующего сохранения фрагмента по
+   * нечётным координатам каждый уровень после пересчёта совпадает с уменьшенным вдвое предыдущим
+   * уровнем.
+   *
+   * @throws Exception если возникло исключение при работе с хартой
+   */
+  @Test
+  public void updateLevelsTest() throws Exception {
+    BufferedImage image = createRandomImage(WIDTH, HEIGHT);
+    BufferedImage patch = createRandomImage(77, 33);
+    int id = chartaService.createCharta(WIDTH, HEIGHT, TILE_SIZE);
+
+    chartaService.saveChartaPart(id, toInputStream(image), 0, 0, WIDTH, HEIGHT);
+    chartaService.saveChartaPart(id, toInputStream(patch), 101, 57, 77, 33);
+    image.getGraphics().drawImage(patch, 101, 57, null);
+    pyramidService.awaitUpdates();
+
+    BufferedImage expected = image;
+
+    for (int level = 1; level <= 2; level++) {
+      expected = downsample(expected);
+      assertPixelsEqual(
+          expected, getLevel(id, level, expected.getWidth(), expected.getHeight()));
+    }
+
+    chartaService.deleteCharta(id);
+  }
+
+  /**
+   * Тестирует метод {@link PyramidServiceImpl#buildLevels(Charta)}. Метод проходит проверку, если
+   * уровни харты без пирамиды не выдаются, пока пирамида строится, а после построения совпадают с
+   * уменьшенной хартой.
+   *
+   * @throws Exception если возникло исключение при работе с хартой
+   */
+  @Test
+  public void buildLevelsTest() throws Exception {
+    BufferedImage image = createRandomImage(WIDTH, HEIGHT);
+    int id = chartaService.createCharta(WIDTH, HEIGHT, TILE_SIZE);
+
+    chartaService.saveChartaPart(id, toInputStream(image), 0, 0, WIDTH, HEIGHT);
+    pyramidService.awaitUpdates();
+    chartaDao.get(id).setLevels(null);
+
+    assertThrows(
+        PyramidNotReadyException.class,
+        () -> chartaService.getChartaPartWriter(id, 1, 0, 0, 10, 10));
+
+    pyramidService.awaitUpdates();
+
+    BufferedImage expected = downsample(image);
+    assertPixelsEqual(expected, getLevel(id, 1, expected.getWidth(), expected.getHeight()));
+
+    chartaService.deleteCharta(id);
+  }
+
+  /**
+   * Тестирует метод {@link ChartaServiceImpl#getChartaPartWriter(int, int, int, int, int, int)}
+   * с несуществующим уровнем. Метод проходит проверку, если выбрасывается исключение {@link
+   * InvalidLevelException}.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   * @throws ChartaNotFoundException если харты с заданным идентификатором не существует
+   */
+  @Test
+  public void invalidLevelTest() throws IOException, ChartaNotFoundException {
+    int id = chartaService.createCharta(WIDTH, HEIGHT);
+
+    assertThrows(
+        InvalidLevelException.class,
+        () -> chartaService.getChartaPartWriter(id, 3, 0, 0, 10, 10));
+
+    chartaService.deleteCharta(id);
+  }
+
+  /**
+   * Возвращает уровень харты целиком.
+   *
+   * @param id идентификатор харты
+   * @param level номер уровня
+   * @param width ширина уровня
+   * @param height высота уровня
+   * @return изображение уровня
+   * @throws IOException если возникло исключение при работе с файловой системой
+   * @throws ChartaNotFoundException если харты с заданным идентификатором не существует
+   * @throws ImageNoCrossingException если заданная область не пересекается с уровнем
+   * @throws InvalidLevelException если у харты нет уровня с заданным номером
+   * @throws PyramidNotReadyException если пирамида харты ещё строится
+   */
+  private BufferedImage getLevel(int id, int level, int width, int height)
+      throws IOException, ChartaNotFoundException, ImageNoCrossingException,
+          InvalidLevelException, PyramidNotReadyException {
+    try (ByteArrayOutputStream stream = new ByteArrayOutputStream()) {
+      chartaService.getChartaPartWriter(id, level, 0, 0, width, height).writeTo(stream);
+      return ImageIO.read(new ByteArrayInputStream(stream.toByteArray()));
+    }
+  }
+
+  /**
+   * Уменьшает изображение вдвое, усредняя каждый канал по существующим пикселям квадрата 2 на 2.
+   *
+   * @param source исходное изображение
+   * @return уменьшенное изображение
+   */
+  private BufferedImage downsample(BufferedImage source) {
+    int width = (source.getWidth() + 1) / 2;
+    int height = (source.getHeight() + 1) / 2;
+    BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        int[] sums = new int[3];
+        int count = 0;
+
+        for (int row = y * 2; row < Math.min(y * 2 + 2, source.getHeight()); row++) {
+          for (int column = x * 2; column < Math.min(x * 2 + 2, source.getWidth()); column++) {
+            int rgb = source.getRGB(column, row);
+
+            sums[0] += (rgb >> 16) & 0xFF;
+            sums[1] += (rgb >> 8) & 0xFF;
+            sums[2] += rgb & 0xFF;
+            count++;
+          }
+        }
+
+        int red = (sums[0] + count / 2) / count;
+        int green = (sums[1] + count / 2) / count;
+        int blue = (sums[2] + count / 2) / count;
+        target.setRGB(x, y, (red << 16) | (green << 8) | blue);
+      }
+    }
+
+    return target;
+  }
+
+  /**
+   * Создаёт изображение заданного размера со случайными пикселями.
+   *
+   * @param width ширина
+   * @param height высота
+   * @return изображение
+   */
+  private BufferedImage createRandomImage(int width, int height) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+    Random random = new Random(width * 31L + height);
+
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, random.nextInt());
+      }
+    }
+
+    return image;
+  }
+
+  /**
+   * Кодирует изображение в BMP и возвращает поток с ним.
+   *
+   * @param image изображение
+   * @return поток с закодированным изображением
+   * @throws IOException если возникло исключение при кодировании
+   */
+  private InputStream toInputStream(BufferedImage image) throws IOException {
+    try (ByteArrayOutputStream stream = new ByteArrayOutputStream()) {
+      ImageIO.write(image, BMP_FORMAT, stream);
+      return new ByteArrayInputStream(stream.toByteArray());
+    }
+  }
+
+  /**
+   * Проверяет, что пиксели двух изображений совпадают.
+   *
+   * @param expected ожидаемое изображение
+   * @param actual проверяемое изображение
+   */
+  private void assertPixelsEqual(BufferedImage expected, BufferedImage actual) {
+    for (int y = 0; y < expected.getHeight(); y++) {
+      for (int x = 0; x < expected.getWidth(); x++) {
+        assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+      }
+    }
+  }
+}
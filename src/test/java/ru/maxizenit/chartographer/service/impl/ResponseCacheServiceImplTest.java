@@ -0,0 +1,66 @@
+package ru.maxizenit.chartographer.service.impl;
+
+import org.junit.jupiter.api.Test;
+import ru.maxizenit.chartographer.model.CacheStatistics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/** Класс юнит-теста для {@link ResponseCacheServiceImpl}. */
+public class ResponseCacheServiceImplTest {
+
+  /**
+   * Тестирует методы {@link ResponseCacheServiceImpl#get(String, long)} и {@link
+   * ResponseCacheServiceImpl#put(String, long, byte[])}. Метод проходит проверку, если изображение
+   * возвращается только для версии, с которой оно сохранено, запрос более новой версии удаляет его,
+   * а изображение более старой версии не заменяет более новое.
+   */
+  @Test
+  public void versionTest() {
+    ResponseCacheServiceImpl cache = new ResponseCacheServiceImpl(100, 50);
+    byte[] body = {1, 2, 3};
+
+    cache.put("a", 2, body);
+
+    assertArrayEquals(body, cache.get("a", 2));
+    assertNull(cache.get("a", 1));
+
+    cache.put("a", 1, new byte[] {4});
+
+    assertArrayEquals(body, cache.get("a", 2));
+    assertNull(cache.get("a", 3));
+    assertNull(cache.get("a", 2));
+
+    CacheStatistics statistics = cache.getStatistics();
+
+    assertEquals(2, statistics.getHitCount());
+    assertEquals(3, statistics.getMissCount());
+    assertEquals(0, statistics.getSize());
+    assertEquals(0, statistics.getBytes());
+  }
+
+  /**
+   * Тестирует вытеснение из кэша. Метод проходит проверку, если при превышении объёма вытесняется
+   * давно не использованное изображение, а изображение больше допустимого размера не сохраняется.
+   */
+  @Test
+  public void evictionTest() {
+    ResponseCacheServiceImpl cache = new ResponseCacheServiceImpl(100, 40);
+
+    cache.put("a", 1, new byte[40]);
+    cache.put("b", 1, new byte[40]);
+    cache.get("a", 1);
+    cache.put("c", 1, new byte[40]);
+    cache.put("d", 1, new byte[41]);
+
+    assertFalse(cache.isCacheable(41));
+    assertNull(cache.get("b", 1));
+    assertNull(cache.get("d", 1));
+    assertEquals(40, cache.get("a", 1).length);
+    assertEquals(40, cache.get("c", 1).length);
+    assertEquals(1, cache.getStatistics().getEvictionCount());
+    assertEquals(80, cache.getStatistics().getBytes());
+  }
+}
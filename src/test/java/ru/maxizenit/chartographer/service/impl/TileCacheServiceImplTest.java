@@ -0,0 +1,278 @@
+package ru.maxizenit.chartographer.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.maxizenit.chartographer.ChartographerApplicationTests;
+import ru.maxizenit.chartographer.dao.ImageDao;
+import ru.maxizenit.chartographer.metrics.ChartographerTimers;
+import ru.maxizenit.chartographer.model.CacheStatistics;
+import ru.maxizenit.chartographer.model.Fragment;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Класс юнит-теста для {@link TileCacheServiceImpl}. */
+@SpringBootTest
+public class TileCacheServiceImplTest {
+
+  /** Ширина изображения фрагмента. */
+  private static final int WIDTH = 40;
+
+  /** Высота изображения фрагмента. */
+  private static final int HEIGHT = 30;
+
+  private final TileCacheServiceImpl tileCacheService;
+  private final ImageDao imageDao;
+  private final ChartographerTimers timers;
+
+  @Autowired
+  public TileCacheServiceImplTest(
+      TileCacheServiceImpl tileCacheService,
+      ImageDao imageDao,
+      ChartographerTimers timers,
+      ResourceLoader resourceLoader)
+      throws IOException {
+    this.tileCacheService = tileCacheService;
+    this.imageDao = imageDao;
+    this.timers = timers;
+
+    String classPath = ChartographerApplicationTests.getClassPath(resourceLoader);
+    ReflectionTestUtils.setField(this.imageDao, "imagesPath", classPath);
+  }
+
+  /**
+   * Тестирует метод {@link TileCacheServiceImpl#getPart(Fragment, int, int, int, int)}. Метод
+   * проходит проверку, если первые два чтения фрагмента считаются промахами, третье попаданием, и
+   * все три возвращают одну и ту же верную область.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void getPartTest() throws IOException {
+    BufferedImage image = createRandomImage();
+    Fragment fragment = new Fragment(0, 0, WIDTH, HEIGHT, imageDao.save(image));
+    CacheStatistics before = tileCacheService.getStatistics();
+
+    for (int i = 0; i < 3; i++) {
+      assertPixelsEqual(tileCacheService.getPart(fragment, 5, 6, 20, 10), image, 5, 6);
+    }
+
+    CacheStatistics after = tileCacheService.getStatistics();
+
+    assertEquals(2, after.getMissCount() - before.getMissCount());
+    assertEquals(1, after.getHitCount() - before.getHitCount());
+
+    tileCacheService.evict(fragment.getImageName());
+    imageDao.delete(fragment.getImageName());
+  }
+
+  /**
+   * Тестирует метод {@link TileCacheServiceImpl#updatePart(Fragment, BufferedImage, int, int)}.
+   * Метод проходит проверку, если записанная область видна как при чтении из кэша, так и при
+   * чтении напрямую из DAO.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void updatePartTest() throws IOException {
+    Fragment fragment = new Fragment(0, 0, WIDTH, HEIGHT, imageDao.save(createRandomImage()));
+    BufferedImage part = createRandomImage().getSubimage(0, 0, 10, 10);
+
+    tileCacheService.getPart(fragment, 0, 0, 1, 1);
+    tileCacheService.getPart(fragment, 0, 0, 1, 1);
+    tileCacheService.updatePart(fragment, part, 30, 20);
+
+    assertPixelsEqual(part, tileCacheService.getPart(fragment, 30, 20, 10, 10), 0, 0);
+    assertPixelsEqual(part, imageDao.getPart(fragment.getImageName(), 30, 20, 10, 10), 0, 0);
+
+    tileCacheService.evict(fragment.getImageName());
+    imageDao.delete(fragment.getImageName());
+  }
+
+  /**
+   * Тестирует вытеснение изображений из кэша. Метод проходит проверку, если при загрузке второго
+   * изображения в кэш, вмещающий только одно изображение, первое изображение вытесняется.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void evictionTest() throws IOException {
+    TileCacheServiceImpl smallCache =
+        new TileCacheServiceImpl(imageDao, WIDTH * HEIGHT * 3, 0, 0, timers);
+    Fragment first = new Fragment(0, 0, WIDTH, HEIGHT, imageDao.save(createRandomImage()));
+    Fragment second = new Fragment(0, 0, WIDTH, HEIGHT, imageDao.save(createRandomImage()));
+
+    for (Fragment fragment : new Fragment[] {first, first, second, second}) {
+      smallCache.getPart(fragment, 0, 0, 1, 1);
+    }
+
+    CacheStatistics statistics = smallCache.getStatistics();
+
+    assertEquals(1, statistics.getEvictionCount());
+    assertEquals(1, statistics.getSize());
+    assertEquals(WIDTH * HEIGHT * 3, statistics.getBytes());
+
+    imageDao.delete(first.getImageName());
+    imageDao.delete(second.getImageName());
+  }
+
+  /**
+   * Тестирует отложенную запись. Метод проходит проверку, если записанная область сразу видна
+   * через кэш, но не попадает в DAO до сброса, повторная запись в то же место не увеличивает
+   * объём несброшенных областей, а после аварийного завершения, смоделированного чтением напрямую
+   * из DAO без сброса, изображение содержит записи до последнего сброса и не содержит более
+   * поздних. При остановке сервиса сбрасываются все оставшиеся записи. Кэш с отложенной записью
+   * сообщает о ней, а кэш со сквозной записью — нет.
+   *
+   * @throws IOException если возникло исключение при работе с файловой системой
+   */
+  @Test
+  public void writeBackTest() throws IOException {
+    TileCacheServiceImpl writeBackCache =
+        new TileCacheServiceImpl(imageDao, WIDTH * HEIGHT * 3, 60_000, 1_000_000, timers);
+    BufferedImage image = createRandomImage();
+    Fragment fragment = new Fragment(0, 0, WIDTH, HEIGHT, imageDao.save(image));
+    BufferedImage first = createRandomImage().getSubimage(0, 0, 10, 10);
+    BufferedImage second = createRandomImage().getSubimage(0, 0, 10, 10);
+
+    assertTrue(writeBackCache.isWriteBack());
+    assertFalse(tileCacheService.isWriteBack());
+
+    writeBackCache.updatePart(fragment, first, 5, 5);
+
+    assertPixelsEqual(first, writeBackCache.getPart(fragment, 5, 5, 10, 10), 0, 0);
+    assertPixelsEqual(image, imageDao.get(fragment.getImageName()), 0, 0);
+
+    writeBackCache.flush();
+    writeBackCache.updatePart(fragment, second, 10, 10);
+    writeBackCache.updatePart(fragment, second, 10, 10);
+
+    assertEquals(10 * 10 * 3, writeBackCache.getStatistics().getDirtyBytes());
+    assertPixelsEqual(second, writeBackCache.getPart(fragment, 10, 10, 10, 10), 0, 0);
+    assertPixelsEqual(first, imageDao.getPart(fragment.getImageName(), 5, 5, 10, 10), 0, 0);
+
+    writeBackCache.close();
+
+    BufferedImage persisted = imageDao.get(fragment.getImageName());
+
+    assertEquals(0, writeBackCache.getStatistics().getDirtyBytes());
+    assertPixelsEqual(first.getSubimage(0, 0, 5, 10), persisted, 5, 5);
+    assertPixelsEqual(second, persisted, 10, 10);
+
+    imageDao.delete(fragment.getImageName());
+  }
+
+  /**
+   * Тестирует сброс отложенной записи при превышении объёма и по таймеру. Метод проходит проверку,
+   * если при превышении объёма самые давно изменённые изображения сбрасываются в потоке записи, а
+   * оставшиеся изменения сбрасываются по таймеру без явного вызова.
+   *
+   * @throws Exception если возникло исключение при работе с файловой системой или ожидании
+   */
+  @Test
+  public void writeBackFlushTest() throws Exception {
+    TileCacheServiceImpl writeBackCache =
+        new TileCacheServiceImpl(imageDao, WIDTH * HEIGHT * 3, 200, 10 * 10 * 3 * 2, timers);
+    List<Fragment> fragments = new ArrayList<>();
+    BufferedImage part = createRandomImage().getSubimage(0, 0, 10, 10);
+
+    for (int i = 0; i < 3; i++) {
+      Fragment fragment = new Fragment(0, 0, WIDTH, HEIGHT, imageDao.save(createRandomImage()));
+
+      fragments.add(fragment);
+      writeBackCache.updatePart(fragment, part, 0, 0);
+    }
+
+    assertPixelsEqual(part, imageDao.getPart(fragments.get(0).getImageName(), 0, 0, 10, 10), 0, 0);
+    assertTrue(writeBackCache.getStatistics().getDirtyBytes() <= 10 * 10 * 3 * 2);
+
+    long deadline = System.currentTimeMillis() + 10_000;
+
+    while (writeBackCache.getStatistics().getDirtyBytes() > 0
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+
+    for (Fragment fragment : fragments) {
+      assertPixelsEqual(part, imageDao.getPart(fragment.getImageName(), 0, 0, 10, 10), 0, 0);
+      writeBackCache.evict(fragment.getImageName());
+      imageDao.delete(fragment.getImageName());
+    }
+
+    writeBackCache.close();
+  }
+
+  /**
+   * Тестирует учёт неудавшихся сбросов по таймеру. Метод проходит проверку, если сброс области
+   * удалённого изображения считается в {@link CacheStatistics#getFlushFailureCount()}, область
+   * остаётся несброшенной, а явный сброс при остановке выбрасывает исключение.
+   *
+   * @throws Exception если возникло исключение при работе с файловой системой или ожидании
+   */
+  @Test
+  public void flushFailureTest() throws Exception {
+    TileCacheServiceImpl writeBackCache =
+        new TileCacheServiceImpl(imageDao, WIDTH * HEIGHT * 3, 50, WIDTH * HEIGHT * 3, timers);
+    Fragment fragment = new Fragment(0, 0, WIDTH, HEIGHT, imageDao.save(createRandomImage()));
+
+    writeBackCache.updatePart(fragment, createRandomImage().getSubimage(0, 0, 10, 10), 0, 0);
+    imageDao.delete(fragment.getImageName());
+
+    long deadline = System.currentTimeMillis() + 10_000;
+
+    while (writeBackCache.getStatistics().getFlushFailureCount() == 0
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+
+    assertTrue(writeBackCache.getStatistics().getFlushFailureCount() > 0);
+    assertEquals(10 * 10 * 3, writeBackCache.getStatistics().getDirtyBytes());
+    assertThrows(IOException.class, writeBackCache::close);
+  }
+
+  /**
+   * Создаёт изображение размера фрагмента со случайными пикселями.
+   *
+   * @return изображение
+   */
+  private BufferedImage createRandomImage() {
+    BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_3BYTE_BGR);
+    Random random = new Random();
+
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        image.setRGB(x, y, random.nextInt());
+      }
+    }
+
+    return image;
+  }
+
+  /**
+   * Проверяет, что пиксели изображения совпадают с пикселями другого изображения, начиная с
+   * заданных координат.
+   *
+   * @param expected ожидаемое изображение
+   * @param actual изображение, в котором лежит проверяемая область
+   * @param x координата области по оси X
+   * @param y координата области по оси Y
+   */
+  private void assertPixelsEqual(BufferedImage expected, BufferedImage actual, int x, int y) {
+    for (int row = 0; row < expected.getHeight(); row++) {
+      for (int column = 0; column < expected.getWidth(); column++) {
+        assertEquals(expected.getRGB(column, row), actual.getRGB(x + column, y + row));
+      }
+    }
+  }
+}
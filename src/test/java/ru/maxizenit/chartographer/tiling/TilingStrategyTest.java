@@ -0,0 +1,88 @@
+package ru.maxizenit.chartographer.tiling;
+
+import org.junit.jupiter.api.Test;
+import ru.maxizenit.chartographer.model.Fragment;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Класс юнит-теста для реализаций {@link TilingStrategy}. */
+public class TilingStrategyTest {
+
+  /** Ширина разбиваемой харты. */
+  private static final int WIDTH = 1_000;
+
+  /** Высота разбиваемой харты. */
+  private static final int HEIGHT = 700;
+
+  /** Размер фрагмента. */
+  private static final int TILE_SIZE = 96;
+
+  /**
+   * Тестирует разбиение всеми стратегиями. Метод проходит проверку, если фрагменты каждой
+   * стратегии покрывают харту целиком, не пересекаясь и не выходя за её границы.
+   */
+  @Test
+  public void coverageTest() {
+    List<TilingStrategy> strategies =
+        List.of(new SquareTilingStrategy(), new StripTilingStrategy(), new HilbertTilingStrategy());
+
+    for (TilingStrategy strategy : strategies) {
+      int[] coverage = new int[WIDTH * HEIGHT];
+
+      for (Fragment fragment : strategy.createFragments(WIDTH, HEIGHT, TILE_SIZE)) {
+        for (int y = fragment.getY(); y < fragment.getY() + fragment.getHeight(); y++) {
+          for (int x = fragment.getX(); x < fragment.getX() + fragment.getWidth(); x++) {
+            coverage[y * WIDTH + x]++;
+          }
+        }
+      }
+
+      for (int count : coverage) {
+        assertEquals(1, count, strategy.getClass().getSimpleName());
+      }
+    }
+  }
+
+  /**
+   * Тестирует метод {@link StripTilingStrategy#createFragments(int, int, int)}. Метод проходит
+   * проверку, если каждая полоса занимает всю ширину харты.
+   */
+  @Test
+  public void stripsTest() {
+    List<Fragment> fragments = new StripTilingStrategy().createFragments(WIDTH, HEIGHT, TILE_SIZE);
+
+    assertEquals((HEIGHT + TILE_SIZE - 1) / TILE_SIZE, fragments.size());
+
+    for (Fragment fragment : fragments) {
+      assertEquals(0, fragment.getX());
+      assertEquals(WIDTH, fragment.getWidth());
+    }
+  }
+
+  /**
+   * Тестирует метод {@link HilbertTilingStrategy#createFragments(int, int, int)}. Метод проходит
+   * проверку, если он возвращает те же фрагменты, что и {@link SquareTilingStrategy}, а соседние
+   * в списке фрагменты квадратной сетки соседствуют и на харте.
+   */
+  @Test
+  public void hilbertOrderTest() {
+    int size = 8 * TILE_SIZE;
+    List<Fragment> fragments = new HilbertTilingStrategy().createFragments(size, size, TILE_SIZE);
+    List<Fragment> square = new SquareTilingStrategy().createFragments(size, size, TILE_SIZE);
+
+    assertEquals(square.size(), fragments.size());
+    assertTrue(fragments.containsAll(square));
+
+    for (int i = 1; i < fragments.size(); i++) {
+      Fragment previous = fragments.get(i - 1);
+      Fragment current = fragments.get(i);
+      int distance =
+          Math.abs(previous.getX() - current.getX()) + Math.abs(previous.getY() - current.getY());
+
+      assertEquals(TILE_SIZE, distance);
+    }
+  }
+}